@@ -1,45 +1,77 @@
 package org.hypertrace.entity.data.service.rxclient;
 
-import static java.util.Objects.isNull;
-import static java.util.Objects.nonNull;
-
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
-import com.google.common.util.concurrent.Striped;
 import io.grpc.CallCredentials;
 import io.grpc.Channel;
+import io.grpc.Status;
+import io.grpc.Status.Code;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
 import io.reactivex.rxjava3.core.Completable;
 import io.reactivex.rxjava3.core.Single;
 import io.reactivex.rxjava3.disposables.Disposable;
-import io.reactivex.rxjava3.internal.functions.Functions;
+import io.reactivex.rxjava3.schedulers.Schedulers;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.Optional;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import lombok.extern.slf4j.Slf4j;
+import org.hypertrace.core.grpcutils.context.ContextualKey;
 import org.hypertrace.core.grpcutils.context.RequestContext;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.entity.data.service.v1.Entity;
 import org.hypertrace.entity.data.service.v1.EntityDataServiceGrpc;
 import org.hypertrace.entity.data.service.v1.EntityDataServiceGrpc.EntityDataServiceStub;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntitiesRequest;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntitiesResponse;
 import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityRequest;
 import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityRequest.UpsertCondition;
 import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityResponse;
 
+/**
+ * Caches the upserted entities, and throttles the eventual upserts. Pending eventual upserts are
+ * held in a single timing wheel until their deadline, and the due ones are sent in batches by
+ * request context, with a bounded number of batches in flight. The requests of a batch which fail,
+ * or all of them if the server does not support batches, are sent again one by one.
+ */
 @Slf4j
 class EntityDataCachingClient implements EntityDataClient {
-  private static final int PENDING_UPDATE_MAX_LOCK_COUNT = 1000;
+  private static final Duration TICK_DURATION = Duration.ofMillis(10);
+  private static final int TIMING_WHEEL_BUCKET_COUNT = 512;
+  private static final String FLUSH_BATCH_SIZE_METRIC =
+      "entity.data.client.eventual.upsert.batch.size";
+  private static final String FLUSH_LAG_METRIC = "entity.data.client.eventual.upsert.lag";
+
   private final EntityDataServiceStub entityDataClient;
   private final LoadingCache<EntityKey, Single<Entity>> cache;
   private final ConcurrentMap<EntityKey, PendingEntityUpdate> pendingEntityUpdates =
       new ConcurrentHashMap<>();
-  private final Striped<Lock> pendingUpdateStripedLock =
-      Striped.lazyWeakLock(PENDING_UPDATE_MAX_LOCK_COUNT);
+  private final TimingWheel<PendingEntityUpdate> pendingUpdateTimingWheel =
+      new TimingWheel<>(TICK_DURATION, TIMING_WHEEL_BUCKET_COUNT);
+  // Set while updates are pending, and only changed with the timing wheel locked
+  private volatile Disposable pendingUpdateTimingWheelTicker;
+  private volatile boolean batchUpsertSupported = true;
+  // Guarded by itself, as is the count of batches in flight
+  private final Map<ContextualKey<Void>, Deque<PendingEntityUpdate>> dueUpdatesByContext =
+      new LinkedHashMap<>();
+  private int inFlightBatchCount;
+  private final int maxBatchSize;
+  private final int maxInFlightBatches;
+  private final DistributionSummary batchSizeSummary;
+  private final Timer flushLagTimer;
   private final Clock clock;
 
   EntityDataCachingClient(
@@ -47,7 +79,9 @@ class EntityDataCachingClient implements EntityDataClient {
       @Nonnull Channel channel,
       @Nonnull CallCredentials credentials,
       int maxCacheContexts,
-      @Nonnull Duration cacheExpiration) {
+      @Nonnull Duration cacheExpiration,
+      int maxBatchSize,
+      int maxInFlightBatches) {
     this.clock = clock;
     this.entityDataClient = EntityDataServiceGrpc.newStub(channel).withCallCredentials(credentials);
     this.cache =
@@ -55,6 +89,13 @@ class EntityDataCachingClient implements EntityDataClient {
             .maximumSize(maxCacheContexts)
             .expireAfterWrite(cacheExpiration)
             .build(CacheLoader.from(this::upsertEntityWithoutCaching));
+    this.maxBatchSize = maxBatchSize;
+    this.maxInFlightBatches = maxInFlightBatches;
+    this.batchSizeSummary =
+        DistributionSummary.builder(FLUSH_BATCH_SIZE_METRIC)
+            .register(PlatformMetricsRegistry.getMeterRegistry());
+    this.flushLagTimer =
+        Timer.builder(FLUSH_LAG_METRIC).register(PlatformMetricsRegistry.getMeterRegistry());
   }
 
   @Override
@@ -64,16 +105,23 @@ class EntityDataCachingClient implements EntityDataClient {
       UpsertCondition condition,
       Duration maximumUpsertDelay) {
     EntityKey entityKey = new EntityKey(requestContext, entity);
+    long deadlineTick = this.pendingUpdateTimingWheel.getDeadlineTick(maximumUpsertDelay);
+    Instant deadline = this.clock.instant().plus(maximumUpsertDelay);
 
-    // Don't allow other update processing until finished
-    Lock lock = this.pendingUpdateStripedLock.get(entityKey);
-    try {
-      lock.lock();
-      this.pendingEntityUpdates
-          .computeIfAbsent(entityKey, unused -> new PendingEntityUpdate())
-          .addNewUpdate(entityKey, condition, maximumUpsertDelay);
-    } finally {
-      lock.unlock();
+    // The map entry is locked while merging, so that the update is not flushed meanwhile
+    this.pendingEntityUpdates.compute(
+        entityKey,
+        (unused, pendingUpdate) -> {
+          PendingEntityUpdate update =
+              pendingUpdate == null ? new PendingEntityUpdate(entityKey) : pendingUpdate;
+          if (update.addNewUpdate(entityKey, condition, deadlineTick, deadline)) {
+            this.pendingUpdateTimingWheel.schedule(update, deadlineTick);
+          }
+          return update;
+        });
+    // Checked after adding the update, as the ticker stops before checking for pending updates
+    if (this.pendingUpdateTimingWheelTicker == null) {
+      this.startPendingUpdateTimingWheel();
     }
   }
 
@@ -109,49 +157,225 @@ class EntityDataCachingClient implements EntityDataClient {
         .cache();
   }
 
-  private class PendingEntityUpdate {
-    private EntityKey entityKey;
-    private Disposable updateExecutionTimer;
-    private Instant currentDeadline;
-    private UpsertCondition condition;
+  private void startPendingUpdateTimingWheel() {
+    synchronized (this.pendingUpdateTimingWheel) {
+      if (this.pendingUpdateTimingWheelTicker == null) {
+        this.pendingUpdateTimingWheelTicker =
+            Schedulers.computation()
+                .schedulePeriodicallyDirect(
+                    this::advancePendingUpdateTimingWheel,
+                    TICK_DURATION.toNanos(),
+                    TICK_DURATION.toNanos(),
+                    TimeUnit.NANOSECONDS);
+      }
+    }
+  }
 
-    private void executeUpdate() {
-      // Make sure no current additions
-      Lock lock = pendingUpdateStripedLock.get(entityKey);
-      try {
-        lock.lock();
-        EntityDataCachingClient.this.pendingEntityUpdates.remove(entityKey);
-      } finally {
-        lock.unlock();
+  private void stopPendingUpdateTimingWheelIfIdle() {
+    synchronized (this.pendingUpdateTimingWheel) {
+      if (this.pendingUpdateTimingWheelTicker == null || !this.pendingEntityUpdates.isEmpty()) {
+        return;
       }
-      EntityDataCachingClient.this
-          .createOrUpdateEntity(entityKey, condition)
-          .blockingSubscribe(
-              Functions.emptyConsumer(), error -> log.error("Error upserting entity", error));
+      this.pendingUpdateTimingWheelTicker.dispose();
+      this.pendingUpdateTimingWheelTicker = null;
+    }
+    // An update may have been added without seeing the ticker stop
+    if (!this.pendingEntityUpdates.isEmpty()) {
+      this.startPendingUpdateTimingWheel();
+    }
+  }
+
+  private void advancePendingUpdateTimingWheel() {
+    List<PendingEntityUpdate> dueUpdates = new ArrayList<>();
+    this.pendingUpdateTimingWheel.advance(
+        (pendingUpdate, deadlineTick) -> {
+          // Updates are scheduled again when their deadline moves, which leaves stale timeouts
+          boolean[] due = new boolean[1];
+          this.pendingEntityUpdates.computeIfPresent(
+              pendingUpdate.getMapKey(),
+              (unused, currentUpdate) -> {
+                due[0] =
+                    currentUpdate == pendingUpdate
+                        && currentUpdate.getDeadlineTick() == deadlineTick;
+                return due[0] ? null : currentUpdate;
+              });
+          if (due[0]) {
+            dueUpdates.add(pendingUpdate);
+          }
+        });
+    if (dueUpdates.isEmpty()) {
+      this.stopPendingUpdateTimingWheelIfIdle();
+      return;
+    }
+
+    synchronized (this.dueUpdatesByContext) {
+      dueUpdates.forEach(
+          update ->
+              this.dueUpdatesByContext
+                  .computeIfAbsent(
+                      update.getEntityKey().getContextualKey(), unused -> new ArrayDeque<>())
+                  .add(update));
     }
+    this.flushDueUpdates();
+  }
 
-    private void addNewUpdate(
-        EntityKey newEntityKey, UpsertCondition condition, Duration maximumDelay) {
-      if (nonNull(updateExecutionTimer) && updateExecutionTimer.isDisposed()) {
-        throw new IllegalStateException("Attempting to add new update after execution");
+  private void flushDueUpdates() {
+    List<List<PendingEntityUpdate>> batches = new ArrayList<>();
+    synchronized (this.dueUpdatesByContext) {
+      while (!this.dueUpdatesByContext.isEmpty()
+          && this.inFlightBatchCount < this.maxInFlightBatches) {
+        Iterator<Map.Entry<ContextualKey<Void>, Deque<PendingEntityUpdate>>> iterator =
+            this.dueUpdatesByContext.entrySet().iterator();
+        Map.Entry<ContextualKey<Void>, Deque<PendingEntityUpdate>> entry = iterator.next();
+        Deque<PendingEntityUpdate> updates = entry.getValue();
+        List<PendingEntityUpdate> batch = new ArrayList<>();
+        while (batch.size() < this.maxBatchSize && !updates.isEmpty()) {
+          batch.add(updates.poll());
+        }
+        iterator.remove();
+        if (!updates.isEmpty()) {
+          // Moved behind the other contexts, so that they get their turn
+          this.dueUpdatesByContext.put(entry.getKey(), updates);
+        }
+        this.inFlightBatchCount++;
+        batches.add(batch);
       }
+    }
+    batches.forEach(this::sendBatch);
+  }
+
+  private void sendBatch(List<PendingEntityUpdate> batch) {
+    Instant now = this.clock.instant();
+    batch.forEach(
+        update -> {
+          Duration lag = Duration.between(update.getDeadline(), now);
+          this.flushLagTimer.record(lag.isNegative() ? Duration.ZERO : lag);
+        });
+    this.batchSizeSummary.record(batch.size());
 
+    Completable upsert =
+        this.batchUpsertSupported ? this.upsertBatch(batch) : this.upsertEachUpdate(batch);
+    upsert
+        .doFinally(this::onBatchCompleted)
+        .subscribe(() -> {}, error -> log.error("Error upserting entities", error));
+  }
+
+  private Completable upsertBatch(List<PendingEntityUpdate> batch) {
+    MergeAndUpsertEntitiesRequest request =
+        MergeAndUpsertEntitiesRequest.newBuilder()
+            .addAllRequests(
+                batch.stream()
+                    .map(
+                        update ->
+                            MergeAndUpsertEntityRequest.newBuilder()
+                                .setEntity(update.getEntityKey().getInputEntity())
+                                .setUpsertCondition(update.getCondition())
+                                .build())
+                    .collect(Collectors.toList()))
+            .build();
+    return batch
+        .get(0)
+        .getEntityKey()
+        .getExecutionContext()
+        .<MergeAndUpsertEntitiesResponse>stream(
+            streamObserver -> this.entityDataClient.mergeAndUpsertEntities(request, streamObserver))
+        .singleOrError()
+        .map(response -> this.cacheUpsertedEntities(batch, response))
+        .onErrorReturn(
+            error -> {
+              if (Status.fromThrowable(error).getCode() == Code.UNIMPLEMENTED) {
+                log.info("Batch upserts are not supported by the server, upserting one by one");
+                this.batchUpsertSupported = false;
+              } else {
+                log.warn("Error upserting {} entities, upserting one by one", batch.size(), error);
+              }
+              return batch;
+            })
+        .flatMapCompletable(this::upsertEachUpdate);
+  }
+
+  /** @return the updates of the batch which failed */
+  private List<PendingEntityUpdate> cacheUpsertedEntities(
+      List<PendingEntityUpdate> batch, MergeAndUpsertEntitiesResponse response) {
+    List<PendingEntityUpdate> failedUpdates = new ArrayList<>();
+    for (int i = 0; i < batch.size(); i++) {
+      if (i < response.getResultsCount() && response.getResults(i).hasEntity()) {
+        this.cache.put(
+            batch.get(i).getEntityKey(), Single.just(response.getResults(i).getEntity()));
+      } else {
+        failedUpdates.add(batch.get(i));
+      }
+    }
+    if (!failedUpdates.isEmpty()) {
+      log.warn(
+          "Error upserting {} entities of a batch, upserting them again", failedUpdates.size());
+    }
+    return failedUpdates;
+  }
+
+  private Completable upsertEachUpdate(List<PendingEntityUpdate> updates) {
+    return Completable.mergeDelayError(
+        updates.stream()
+            .map(
+                update ->
+                    this.createOrUpdateEntity(update.getEntityKey(), update.getCondition())
+                        .ignoreElement())
+            .collect(Collectors.toList()));
+  }
+
+  private void onBatchCompleted() {
+    synchronized (this.dueUpdatesByContext) {
+      this.inFlightBatchCount--;
+    }
+    this.flushDueUpdates();
+  }
+
+  private static class PendingEntityUpdate {
+    // The key of the first update, under which the pending update is held
+    private final EntityKey mapKey;
+    private EntityKey entityKey;
+    private UpsertCondition condition;
+    private long deadlineTick = Long.MAX_VALUE;
+    private Instant deadline;
+
+    private PendingEntityUpdate(EntityKey mapKey) {
+      this.mapKey = mapKey;
+    }
+
+    /** @return true if the deadline of the update moved earlier, and is to be scheduled again */
+    private boolean addNewUpdate(
+        EntityKey newEntityKey, UpsertCondition condition, long deadlineTick, Instant deadline) {
       this.entityKey =
-          Optional.ofNullable(this.entityKey)
-              .map(existingKey -> existingKey.mergeOtherEntity(newEntityKey.getInputEntity()))
-              .orElse(newEntityKey);
+          this.entityKey == null
+              ? newEntityKey
+              : this.entityKey.mergeOtherEntity(newEntityKey.getInputEntity());
       this.condition = condition;
-      Instant newDeadline = EntityDataCachingClient.this.clock.instant().plus(maximumDelay);
-      if (isNull(currentDeadline) || this.currentDeadline.isAfter(newDeadline)) {
-        this.currentDeadline = newDeadline;
-        if (nonNull(updateExecutionTimer)) {
-          updateExecutionTimer.dispose();
-        }
-
-        this.updateExecutionTimer =
-            Completable.timer(maximumDelay.toNanos(), TimeUnit.NANOSECONDS)
-                .subscribe(this::executeUpdate);
+      if (deadlineTick >= this.deadlineTick) {
+        return false;
       }
+      this.deadlineTick = deadlineTick;
+      this.deadline = deadline;
+      return true;
+    }
+
+    private EntityKey getMapKey() {
+      return this.mapKey;
+    }
+
+    private EntityKey getEntityKey() {
+      return this.entityKey;
+    }
+
+    private UpsertCondition getCondition() {
+      return this.condition;
+    }
+
+    private long getDeadlineTick() {
+      return this.deadlineTick;
+    }
+
+    private Instant getDeadline() {
+      return this.deadline;
     }
   }
 }
@@ -71,6 +71,8 @@ public interface EntityDataClient {
     private final Channel channel;
     private int maxCacheContexts = 1000;
     private Duration cacheExpiration = Duration.of(15, ChronoUnit.MINUTES);
+    private int eventualUpsertBatchSize = 100;
+    private int maxInFlightEventualUpserts = 4;
     private CallCredentials callCredentials =
         RequestContextClientCallCredsProviderFactory.getClientCallCredsProvider().get();
 
@@ -84,7 +86,9 @@ public interface EntityDataClient {
           this.channel,
           this.callCredentials,
           this.maxCacheContexts,
-          this.cacheExpiration);
+          this.cacheExpiration,
+          this.eventualUpsertBatchSize,
+          this.maxInFlightEventualUpserts);
     }
 
     /**
@@ -110,6 +114,29 @@ public interface EntityDataClient {
       return this;
     }
 
+    /**
+     * Limits the number of eventual upserts sent together in a single request. Defaults to 100.
+     *
+     * @param eventualUpsertBatchSize
+     * @return
+     */
+    public Builder withEventualUpsertBatchSize(int eventualUpsertBatchSize) {
+      this.eventualUpsertBatchSize = eventualUpsertBatchSize;
+      return this;
+    }
+
+    /**
+     * Limits the number of eventual upsert requests in flight at any one time. Due upserts wait for
+     * a request to complete beyond that. Defaults to 4.
+     *
+     * @param maxInFlightEventualUpserts
+     * @return
+     */
+    public Builder withMaximumInFlightEventualUpserts(int maxInFlightEventualUpserts) {
+      this.maxInFlightEventualUpserts = maxInFlightEventualUpserts;
+      return this;
+    }
+
     /**
      * Use the provided call credentials for propagating context. Defaults to the value provided by
      * {@link RequestContextClientCallCredsProviderFactory}
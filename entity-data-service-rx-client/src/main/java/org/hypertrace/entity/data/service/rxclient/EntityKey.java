@@ -38,6 +38,10 @@ class EntityKey {
     return GrpcRxExecutionContext.forContext(requestContext);
   }
 
+  ContextualKey<Void> getContextualKey() {
+    return contextualKey;
+  }
+
   public Entity getInputEntity() {
     return inputEntity;
   }
@@ -0,0 +1,78 @@
+package org.hypertrace.entity.data.service.rxclient;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * A hashed timing wheel, which holds values until their deadline tick in the bucket of that tick,
+ * so that scheduling a value and finding the due ones cost the same however many values are held.
+ * Values are scheduled from any thread, and only handed to the buckets by the thread advancing the
+ * wheel. Deadlines further than a revolution of the wheel stay in their bucket until the revolution
+ * of their tick.
+ */
+class TimingWheel<T> {
+  private final long tickNanos;
+  private final List<Queue<Timeout<T>>> buckets;
+  private final Queue<Timeout<T>> scheduledTimeouts = new ConcurrentLinkedQueue<>();
+  private volatile long currentTick;
+
+  TimingWheel(Duration tickDuration, int bucketCount) {
+    this.tickNanos = tickDuration.toNanos();
+    this.buckets = new ArrayList<>(bucketCount);
+    for (int i = 0; i < bucketCount; i++) {
+      this.buckets.add(new ArrayDeque<>());
+    }
+  }
+
+  /**
+   * @return the tick of the given delay from now, rounded down to whole ticks so that values are
+   *     not due after their delay, but at least the next tick
+   */
+  long getDeadlineTick(Duration delay) {
+    return this.currentTick + Math.max(1, delay.toNanos() / this.tickNanos);
+  }
+
+  void schedule(T value, long deadlineTick) {
+    this.scheduledTimeouts.add(new Timeout<>(value, deadlineTick));
+  }
+
+  /** Moves the wheel to its next tick, handing the values due by then to the given consumer */
+  void advance(BiConsumer<T, Long> dueValueConsumer) {
+    long tick = this.currentTick + 1;
+    for (Timeout<T> timeout = this.scheduledTimeouts.poll();
+        timeout != null;
+        timeout = this.scheduledTimeouts.poll()) {
+      this.getBucket(Math.max(tick, timeout.deadlineTick)).add(timeout);
+    }
+
+    Iterator<Timeout<T>> iterator = this.getBucket(tick).iterator();
+    while (iterator.hasNext()) {
+      Timeout<T> timeout = iterator.next();
+      if (timeout.deadlineTick <= tick) {
+        iterator.remove();
+        dueValueConsumer.accept(timeout.value, timeout.deadlineTick);
+      }
+    }
+    this.currentTick = tick;
+  }
+
+  private Queue<Timeout<T>> getBucket(long tick) {
+    return this.buckets.get((int) (tick % this.buckets.size()));
+  }
+
+  private static class Timeout<T> {
+    private final T value;
+    private final long deadlineTick;
+
+    private Timeout(T value, long deadlineTick) {
+      this.value = value;
+      this.deadlineTick = deadlineTick;
+    }
+  }
+}
@@ -4,12 +4,14 @@ import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 
 import io.grpc.ManagedChannel;
 import io.grpc.Server;
+import io.grpc.Status;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.stub.StreamObserver;
@@ -20,11 +22,15 @@ import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import org.hypertrace.core.grpcutils.context.RequestContext;
 import org.hypertrace.entity.data.service.v1.AttributeValue;
 import org.hypertrace.entity.data.service.v1.Entity;
 import org.hypertrace.entity.data.service.v1.EntityDataServiceGrpc.EntityDataServiceImplBase;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntitiesRequest;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntitiesResponse;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntitiesResponse.MergeAndUpsertEntityResult;
 import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityRequest;
 import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityRequest.UpsertCondition;
 import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityResponse;
@@ -56,6 +62,7 @@ class EntityDataCachingClientTest {
   ManagedChannel grpcChannel;
   List<Entity> possibleResponseEntities;
   Optional<Throwable> responseError;
+  Set<String> failedEntityIds;
   TestScheduler testScheduler;
 
   @BeforeEach
@@ -71,7 +78,9 @@ class EntityDataCachingClientTest {
     this.dataClient = EntityDataClient.builder(this.grpcChannel).build();
     this.possibleResponseEntities = List.of(this.defaultResponseEntity);
     this.responseError = Optional.empty();
-    doAnswer(
+    this.failedEntityIds = Set.of();
+    lenient()
+        .doAnswer(
             invocation -> {
               StreamObserver<MergeAndUpsertEntityResponse> observer =
                   invocation.getArgument(1, StreamObserver.class);
@@ -82,13 +91,7 @@ class EntityDataCachingClientTest {
                   () -> {
                     observer.onNext(
                         MergeAndUpsertEntityResponse.newBuilder()
-                            .setEntity(
-                                this.possibleResponseEntities.stream()
-                                    .filter(
-                                        entity ->
-                                            entity.getEntityId().equals(inputEntity.getEntityId()))
-                                    .findFirst()
-                                    .orElse(inputEntity))
+                            .setEntity(this.findResponseEntity(inputEntity))
                             .build());
                     observer.onCompleted();
                   });
@@ -96,6 +99,38 @@ class EntityDataCachingClientTest {
             })
         .when(this.mockDataService)
         .mergeAndUpsertEntity(any(), any());
+    lenient()
+        .doAnswer(
+            invocation -> {
+              StreamObserver<MergeAndUpsertEntitiesResponse> observer =
+                  invocation.getArgument(1, StreamObserver.class);
+              MergeAndUpsertEntitiesRequest request =
+                  invocation.getArgument(0, MergeAndUpsertEntitiesRequest.class);
+              responseError.ifPresentOrElse(
+                  observer::onError,
+                  () -> {
+                    MergeAndUpsertEntitiesResponse.Builder response =
+                        MergeAndUpsertEntitiesResponse.newBuilder();
+                    request
+                        .getRequestsList()
+                        .forEach(
+                            entityRequest ->
+                                response.addResults(
+                                    this.failedEntityIds.contains(
+                                            entityRequest.getEntity().getEntityId())
+                                        ? MergeAndUpsertEntityResult.newBuilder()
+                                            .setError("failed")
+                                        : MergeAndUpsertEntityResult.newBuilder()
+                                            .setEntity(
+                                                this.findResponseEntity(
+                                                    entityRequest.getEntity()))));
+                    observer.onNext(response.build());
+                    observer.onCompleted();
+                  });
+              return null;
+            })
+        .when(this.mockDataService)
+        .mergeAndUpsertEntities(any(), any());
     this.testScheduler = new TestScheduler();
     RxJavaPlugins.setComputationSchedulerHandler(ignored -> testScheduler);
   }
@@ -176,24 +211,133 @@ class EntityDataCachingClientTest {
 
     testScheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS);
 
+    verify(this.mockDataService, times(1))
+        .mergeAndUpsertEntities(
+            eq(
+                MergeAndUpsertEntitiesRequest.newBuilder()
+                    .addRequests(
+                        MergeAndUpsertEntityRequest.newBuilder()
+                            .setEntity(
+                                Entity.newBuilder()
+                                    .setEntityId(thirdEntity.getEntityId())
+                                    .setEntityType(thirdEntity.getEntityType())
+                                    .setEntityName(thirdEntity.getEntityName())
+                                    .putAttributes("key1", createAttribute("value1-1"))
+                                    .putAttributes("key2", createAttribute("value2-2"))
+                                    .putAttributes("key3", createAttribute("value3-3"))
+                                    .build())
+                            .setUpsertCondition(UpsertCondition.getDefaultInstance()))
+                    .build()),
+            any());
+  }
+
+  @Test
+  void createOrUpdateEventuallyBatchesDueUpdates() {
+    this.possibleResponseEntities = Collections.emptyList();
+    Entity firstEntity = this.defaultResponseEntity.toBuilder().setEntityId("id-1").build();
+    Entity secondEntity = this.defaultResponseEntity.toBuilder().setEntityId("id-2").build();
+
+    this.dataClient.createOrUpdateEntityEventually(
+        REQUEST_CONTEXT, firstEntity, UpsertCondition.getDefaultInstance(), Duration.ofMillis(100));
+    this.dataClient.createOrUpdateEntityEventually(
+        REQUEST_CONTEXT,
+        secondEntity,
+        UpsertCondition.getDefaultInstance(),
+        Duration.ofMillis(100));
+
+    testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    verify(this.mockDataService, times(1))
+        .mergeAndUpsertEntities(
+            eq(
+                MergeAndUpsertEntitiesRequest.newBuilder()
+                    .addRequests(
+                        MergeAndUpsertEntityRequest.newBuilder()
+                            .setEntity(firstEntity)
+                            .setUpsertCondition(UpsertCondition.getDefaultInstance()))
+                    .addRequests(
+                        MergeAndUpsertEntityRequest.newBuilder()
+                            .setEntity(secondEntity)
+                            .setUpsertCondition(UpsertCondition.getDefaultInstance()))
+                    .build()),
+            any());
+  }
+
+  @Test
+  void createOrUpdateEventuallyUpsertsFailedUpdatesOfBatchOneByOne() {
+    this.possibleResponseEntities = Collections.emptyList();
+    this.failedEntityIds = Set.of("id-2");
+    Entity firstEntity = this.defaultResponseEntity.toBuilder().setEntityId("id-1").build();
+    Entity secondEntity = this.defaultResponseEntity.toBuilder().setEntityId("id-2").build();
+
+    this.dataClient.createOrUpdateEntityEventually(
+        REQUEST_CONTEXT, firstEntity, UpsertCondition.getDefaultInstance(), Duration.ofMillis(100));
+    this.dataClient.createOrUpdateEntityEventually(
+        REQUEST_CONTEXT,
+        secondEntity,
+        UpsertCondition.getDefaultInstance(),
+        Duration.ofMillis(100));
+
+    testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    verify(this.mockDataService, times(1)).mergeAndUpsertEntities(any(), any());
     verify(this.mockDataService, times(1))
         .mergeAndUpsertEntity(
             eq(
                 MergeAndUpsertEntityRequest.newBuilder()
-                    .setEntity(
-                        Entity.newBuilder()
-                            .setEntityId(thirdEntity.getEntityId())
-                            .setEntityType(thirdEntity.getEntityType())
-                            .setEntityName(thirdEntity.getEntityName())
-                            .putAttributes("key1", createAttribute("value1-1"))
-                            .putAttributes("key2", createAttribute("value2-2"))
-                            .putAttributes("key3", createAttribute("value3-3"))
-                            .build())
+                    .setEntity(secondEntity)
                     .setUpsertCondition(UpsertCondition.getDefaultInstance())
                     .build()),
             any());
   }
 
+  @Test
+  void createOrUpdateEventuallyUpsertsOneByOneIfServerDoesNotSupportBatches() {
+    this.possibleResponseEntities = Collections.emptyList();
+    doAnswer(
+            invocation -> {
+              invocation
+                  .getArgument(1, StreamObserver.class)
+                  .onError(Status.UNIMPLEMENTED.asRuntimeException());
+              return null;
+            })
+        .when(this.mockDataService)
+        .mergeAndUpsertEntities(any(), any());
+    Entity firstEntity = this.defaultResponseEntity.toBuilder().setEntityId("id-1").build();
+    Entity secondEntity = this.defaultResponseEntity.toBuilder().setEntityId("id-2").build();
+
+    this.dataClient.createOrUpdateEntityEventually(
+        REQUEST_CONTEXT, firstEntity, UpsertCondition.getDefaultInstance(), Duration.ofMillis(100));
+    testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+    // Ticks again once the update is pending, after having stopped without pending updates
+    testScheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+    this.dataClient.createOrUpdateEntityEventually(
+        REQUEST_CONTEXT,
+        secondEntity,
+        UpsertCondition.getDefaultInstance(),
+        Duration.ofMillis(100));
+    testScheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+
+    // Batches are no longer sent once the server turned out not to support them
+    verify(this.mockDataService, times(1)).mergeAndUpsertEntities(any(), any());
+    verify(this.mockDataService, times(2)).mergeAndUpsertEntity(any(), any());
+    verify(this.mockDataService, times(1))
+        .mergeAndUpsertEntity(
+            eq(
+                MergeAndUpsertEntityRequest.newBuilder()
+                    .setEntity(secondEntity)
+                    .setUpsertCondition(UpsertCondition.getDefaultInstance())
+                    .build()),
+            any());
+  }
+
+  private Entity findResponseEntity(Entity inputEntity) {
+    return this.possibleResponseEntities.stream()
+        .filter(entity -> entity.getEntityId().equals(inputEntity.getEntityId()))
+        .findFirst()
+        .orElse(inputEntity);
+  }
+
   private AttributeValue createAttribute(String value) {
     return AttributeValue.newBuilder().setValue(Value.newBuilder().setString(value)).build();
   }
@@ -0,0 +1,69 @@
+package org.hypertrace.entity.attribute.translator;
+
+import static org.hypertrace.entity.attribute.translator.EntityAttributeMapping.ENTITY_ATTRIBUTE_DOC_PREFIX;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeSource;
+
+/**
+ * Immutable view of the attribute metadata of a tenant, indexed by attribute id. Attributes which
+ * are not sourced from EDS are remembered as well, so that looking them up does not fall back to
+ * the attribute service.
+ */
+@EqualsAndHashCode
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+class AttributeMetadataSnapshot {
+  private static final Entry NON_EDS_ENTRY = new Entry(null, null);
+
+  private final Map<String, Entry> entriesById;
+
+  static AttributeMetadataSnapshot from(final Collection<AttributeMetadata> attributeMetadata) {
+    final Map<String, Entry> entriesById = new HashMap<>(attributeMetadata.size());
+    for (final AttributeMetadata metadata : attributeMetadata) {
+      entriesById.put(metadata.getId(), toEntry(metadata));
+    }
+    return new AttributeMetadataSnapshot(Map.copyOf(entriesById));
+  }
+
+  /**
+   * @return empty if the attribute is unknown to this snapshot, an entry without identifier and
+   *     kind if the attribute is not sourced from EDS
+   */
+  Optional<Entry> find(final String attributeId) {
+    return Optional.ofNullable(entriesById.get(attributeId));
+  }
+
+  private static Entry toEntry(final AttributeMetadata metadata) {
+    if (!metadata.getSourcesList().contains(AttributeSource.EDS)) {
+      return NON_EDS_ENTRY;
+    }
+
+    return new Entry(
+        new AttributeMetadataIdentifier(
+            metadata.getScopeString(), ENTITY_ATTRIBUTE_DOC_PREFIX + metadata.getKey()),
+        metadata.getValueKind());
+  }
+
+  @Value
+  static class Entry {
+    AttributeMetadataIdentifier identifier;
+    AttributeKind attributeKind;
+
+    Optional<AttributeMetadataIdentifier> getOptionalIdentifier() {
+      return Optional.ofNullable(identifier);
+    }
+
+    Optional<AttributeKind> getOptionalAttributeKind() {
+      return Optional.ofNullable(attributeKind);
+    }
+  }
+}
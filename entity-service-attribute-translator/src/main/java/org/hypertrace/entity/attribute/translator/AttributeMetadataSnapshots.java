@@ -0,0 +1,162 @@
+package org.hypertrace.entity.attribute.translator;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.hypertrace.core.attribute.service.cachingclient.CachingAttributeClient;
+import org.hypertrace.core.grpcutils.context.RequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds an {@link AttributeMetadataSnapshot} per tenant. The snapshot of a tenant is loaded in the
+ * background on the first lookup for the tenant, and then reloaded at a fixed interval, so that
+ * lookups never wait on the attribute service. Until its first snapshot is available, lookups for
+ * a tenant are expected to fall back to the attribute client.
+ *
+ * <p>The snapshots are reloaded with the request context of the latest lookup of the tenant, and
+ * the snapshot of a tenant which has not been looked up for longer than the inactive tenant expiry
+ * is dropped.
+ */
+class AttributeMetadataSnapshots {
+  private static final Logger LOG = LoggerFactory.getLogger(AttributeMetadataSnapshots.class);
+
+  private final CachingAttributeClient attributeClient;
+  private final Duration inactiveTenantExpiry;
+  private final Clock clock;
+  private final Map<String, TenantSnapshot> snapshotsByTenantId = new ConcurrentHashMap<>();
+  private final Set<String> loadingTenantIds = ConcurrentHashMap.newKeySet();
+  private final List<Consumer<String>> changeListeners = new CopyOnWriteArrayList<>();
+
+  AttributeMetadataSnapshots(
+      final CachingAttributeClient attributeClient,
+      final Duration refreshInterval,
+      final Duration inactiveTenantExpiry) {
+    this(
+        attributeClient,
+        refreshInterval,
+        inactiveTenantExpiry,
+        createRefreshExecutor(),
+        Clock.systemUTC());
+  }
+
+  AttributeMetadataSnapshots(
+      final CachingAttributeClient attributeClient,
+      final Duration refreshInterval,
+      final Duration inactiveTenantExpiry,
+      final ScheduledExecutorService refreshExecutor,
+      final Clock clock) {
+    this.attributeClient = attributeClient;
+    this.inactiveTenantExpiry = inactiveTenantExpiry;
+    this.clock = clock;
+    refreshExecutor.scheduleWithFixedDelay(
+        this::refreshAll,
+        refreshInterval.toMillis(),
+        refreshInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
+
+  /** @return null if no snapshot is available yet for the tenant of the request */
+  AttributeMetadataSnapshot get(final RequestContext requestContext) {
+    final String tenantId = requestContext.getTenantId().orElse(null);
+    if (tenantId == null) {
+      return null;
+    }
+
+    final TenantSnapshot tenantSnapshot =
+        snapshotsByTenantId.computeIfAbsent(tenantId, unused -> new TenantSnapshot(requestContext));
+    tenantSnapshot.requestContext = requestContext;
+    tenantSnapshot.lastAccessMillis = clock.millis();
+    final AttributeMetadataSnapshot snapshot = tenantSnapshot.snapshot;
+    if (snapshot == null) {
+      load(tenantId, tenantSnapshot);
+    }
+    return snapshot;
+  }
+
+  /** The listener is invoked with the tenant id whenever the snapshot of a tenant changes */
+  void addChangeListener(final Consumer<String> listener) {
+    changeListeners.add(listener);
+  }
+
+  void refreshAll() {
+    final long expiredAccessMillis = clock.millis() - inactiveTenantExpiry.toMillis();
+    final Iterator<Entry<String, TenantSnapshot>> iterator =
+        snapshotsByTenantId.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Entry<String, TenantSnapshot> entry = iterator.next();
+      if (entry.getValue().lastAccessMillis < expiredAccessMillis) {
+        LOG.debug("Dropping the attribute metadata snapshot of inactive tenant {}", entry.getKey());
+        iterator.remove();
+      } else {
+        load(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private void load(final String tenantId, final TenantSnapshot tenantSnapshot) {
+    if (!loadingTenantIds.add(tenantId)) {
+      return;
+    }
+
+    try {
+      // The credentials of the latest request of the tenant are used to load its snapshot
+      final RequestContext requestContext = tenantSnapshot.requestContext;
+      requestContext
+          .call(attributeClient::getAll)
+          .doFinally(() -> loadingTenantIds.remove(tenantId))
+          .subscribe(
+              attributeMetadata ->
+                  update(
+                      tenantId, tenantSnapshot, AttributeMetadataSnapshot.from(attributeMetadata)),
+              error ->
+                  LOG.warn("Unable to load the attribute metadata of tenant {}", tenantId, error));
+    } catch (final RuntimeException e) {
+      loadingTenantIds.remove(tenantId);
+      LOG.warn("Unable to load the attribute metadata of tenant {}", tenantId, e);
+    }
+  }
+
+  private void update(
+      final String tenantId,
+      final TenantSnapshot tenantSnapshot,
+      final AttributeMetadataSnapshot snapshot) {
+    final AttributeMetadataSnapshot previous = tenantSnapshot.snapshot;
+    tenantSnapshot.snapshot = snapshot;
+    if (!Objects.equals(previous, snapshot)) {
+      changeListeners.forEach(listener -> listener.accept(tenantId));
+    }
+  }
+
+  private static ScheduledExecutorService createRefreshExecutor() {
+    return Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+          final Thread thread = new Thread(runnable, "attribute-metadata-snapshot-refresh");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  private class TenantSnapshot {
+    private volatile RequestContext requestContext;
+    private volatile long lastAccessMillis;
+    // null until the first load of the snapshot completes
+    private volatile AttributeMetadataSnapshot snapshot;
+
+    private TenantSnapshot(final RequestContext requestContext) {
+      this.requestContext = requestContext;
+      this.lastAccessMillis = clock.millis();
+    }
+  }
+}
@@ -2,15 +2,25 @@ package org.hypertrace.entity.attribute.translator;
 
 import static org.hypertrace.entity.attribute.translator.EntityAttributeMapping.ENTITY_ATTRIBUTE_DOC_PREFIX;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.MapDifference;
+import com.google.common.collect.MapDifference.ValueDifference;
 import com.google.common.collect.Maps;
 import com.typesafe.config.Config;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.hypertrace.core.grpcutils.context.RequestContext;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
 import org.hypertrace.entity.data.service.v1.Entity;
 import org.hypertrace.entity.query.service.v1.AttributeUpdateOperation;
 import org.hypertrace.entity.query.service.v1.ColumnIdentifier;
@@ -26,6 +36,9 @@ public class EntityAttributeChangeEvaluator {
   private final Set<String> allowedEntityTypes;
   private final List<String> changeNotificationSkipAttributeList;
   private final EntityAttributeMapping entityAttributeMapping;
+  // The names of the skipped attributes of each entity type, as resolved for each tenant
+  private final Cache<String, Map<String, Set<String>>> skippedAttributeNamesByTenantId =
+      CacheBuilder.newBuilder().maximumSize(10000).expireAfterWrite(15, TimeUnit.MINUTES).build();
 
   public EntityAttributeChangeEvaluator(
       Config appConfig, EntityAttributeMapping entityAttributeMapping) {
@@ -36,6 +49,8 @@ public class EntityAttributeChangeEvaluator {
                 appConfig.getStringList(ENTITY_SERVICE_CHANGE_ENABLED_ENTITY_TYPES_CONFIG))
             : Set.of(ALL_ENTITY_TYPES);
     this.entityAttributeMapping = entityAttributeMapping;
+    this.entityAttributeMapping.addAttributeMetadataChangeListener(
+        this.skippedAttributeNamesByTenantId::invalidate);
   }
 
   public boolean shouldSendNotification(
@@ -45,19 +60,33 @@ public class EntityAttributeChangeEvaluator {
       return false;
     }
 
-    Entity.Builder prevEntityBuilder = prevEntity.toBuilder();
-    Entity.Builder currEntityBuilder = currEntity.toBuilder();
     log.debug("PrevEntity: {}", prevEntity);
     log.debug("CurrEntity: {}", currEntity);
-    this.changeNotificationSkipAttributeList.forEach(
-        attributeId ->
-            removeAttributeFromEntity(
-                requestContext, attributeId, entityType, prevEntityBuilder, currEntityBuilder));
-
-    return !Maps.difference(
-            prevEntityBuilder.build().getAttributesMap(),
-            currEntityBuilder.build().getAttributesMap())
-        .areEqual();
+    Set<String> skippedAttributeNames =
+        this.getSkippedAttributeNamesByEntityType(requestContext)
+            .getOrDefault(entityType, Collections.emptySet());
+    return hasChangedAttribute(
+        prevEntity.getAttributesMap(), currEntity.getAttributesMap(), skippedAttributeNames);
+  }
+
+  /**
+   * @return the changes of all the attributes of the entity, if a notification is to be sent for
+   *     them. That is, if the type of the entity is allowed, and an attribute other than the
+   *     skipped attributes changed
+   */
+  public Optional<EntityAttributeChanges> evaluateAttributeChanges(
+      RequestContext requestContext, Entity prevEntity, Entity currEntity) {
+    if (!this.shouldSendNotification(requestContext, prevEntity, currEntity)) {
+      return Optional.empty();
+    }
+
+    MapDifference<String, AttributeValue> difference =
+        Maps.difference(prevEntity.getAttributesMap(), currEntity.getAttributesMap());
+    return Optional.of(
+        new EntityAttributeChanges(
+            difference.entriesOnlyOnRight(),
+            Maps.transformValues(difference.entriesDiffering(), ValueDifference::rightValue),
+            difference.entriesOnlyOnLeft().keySet()));
   }
 
   public boolean shouldSendNotification(
@@ -100,27 +129,61 @@ public class EntityAttributeChangeEvaluator {
     return !validUpdateOperations.isEmpty();
   }
 
-  private void removeAttributeFromEntity(
-      RequestContext requestContext,
-      String attributeId,
-      String entityType,
-      Entity.Builder prevEntityBuilder,
-      Entity.Builder currEntityBuilder) {
-    Optional<AttributeMetadataIdentifier> metadataIdentifier =
-        this.entityAttributeMapping.getAttributeMetadataByAttributeId(requestContext, attributeId);
-
-    metadataIdentifier.ifPresent(
-        metadata -> {
-          if (metadata.getScope().equals(entityType)) {
-            String docStorePath = metadata.getDocStorePath();
-            String attributeName = removePrefix(docStorePath, ENTITY_ATTRIBUTE_DOC_PREFIX);
-            prevEntityBuilder.removeAttributes(attributeName);
-            currEntityBuilder.removeAttributes(attributeName);
-          }
-        });
+  // Compares the attribute maps in place, stopping at the first attribute which is not skipped
+  private static boolean hasChangedAttribute(
+      Map<String, AttributeValue> prevAttributes,
+      Map<String, AttributeValue> currAttributes,
+      Set<String> skippedAttributeNames) {
+    for (Map.Entry<String, AttributeValue> entry : currAttributes.entrySet()) {
+      if (!skippedAttributeNames.contains(entry.getKey())
+          && !entry.getValue().equals(prevAttributes.get(entry.getKey()))) {
+        return true;
+      }
+    }
+    for (String attributeName : prevAttributes.keySet()) {
+      if (!skippedAttributeNames.contains(attributeName)
+          && !currAttributes.containsKey(attributeName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Map<String, Set<String>> getSkippedAttributeNamesByEntityType(
+      RequestContext requestContext) {
+    if (this.changeNotificationSkipAttributeList.isEmpty()) {
+      return Collections.emptyMap();
+    }
+
+    Optional<String> tenantId = requestContext.getTenantId();
+    try {
+      if (tenantId.isEmpty()) {
+        return this.resolveSkippedAttributeNames(requestContext);
+      }
+      // The resolutions which fail are not cached, so that they are retried by the next change
+      return this.skippedAttributeNamesByTenantId.get(
+          tenantId.get(), () -> this.resolveSkippedAttributeNames(requestContext));
+    } catch (ExecutionException | RuntimeException e) {
+      log.warn("Unable to resolve the attributes skipped for change notifications", e);
+      return Collections.emptyMap();
+    }
+  }
+
+  private Map<String, Set<String>> resolveSkippedAttributeNames(RequestContext requestContext) {
+    Map<String, Set<String>> skippedAttributeNamesByEntityType = new HashMap<>();
+    for (String attributeId : this.changeNotificationSkipAttributeList) {
+      this.entityAttributeMapping
+          .resolveAttributeMetadataByAttributeId(requestContext, attributeId)
+          .ifPresent(
+              metadata ->
+                  skippedAttributeNamesByEntityType
+                      .computeIfAbsent(metadata.getScope(), unused -> new HashSet<>())
+                      .add(removePrefix(metadata.getDocStorePath(), ENTITY_ATTRIBUTE_DOC_PREFIX)));
+    }
+    return skippedAttributeNamesByEntityType;
   }
 
-  private String removePrefix(String str, final String prefix) {
+  private static String removePrefix(String str, final String prefix) {
     if (str != null && prefix != null && str.startsWith(prefix)) {
       return str.substring(prefix.length());
     }
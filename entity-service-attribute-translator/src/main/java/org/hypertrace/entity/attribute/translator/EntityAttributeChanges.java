@@ -0,0 +1,15 @@
+package org.hypertrace.entity.attribute.translator;
+
+import java.util.Map;
+import java.util.Set;
+import lombok.Value;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+
+/** The attributes added, changed and removed by an update of an entity */
+@Value
+public class EntityAttributeChanges {
+  Map<String, AttributeValue> addedAttributes;
+  // The latest values of the changed attributes
+  Map<String, AttributeValue> changedAttributes;
+  Set<String> removedAttributeKeys;
+}
@@ -14,9 +14,11 @@ import static org.hypertrace.core.attribute.service.v1.AttributeKind.TYPE_STRING
 import static org.hypertrace.core.attribute.service.v1.AttributeKind.TYPE_TIMESTAMP;
 
 import com.typesafe.config.Config;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import org.hypertrace.core.attribute.service.cachingclient.CachingAttributeClient;
 import org.hypertrace.core.attribute.service.v1.AttributeKind;
 import org.hypertrace.core.attribute.service.v1.AttributeSource;
@@ -29,6 +31,13 @@ public class EntityAttributeMapping {
   private static final String ATTRIBUTE_MAP_CONFIG_PATH = "entity.service.attributeMap";
   private static final String ATTRIBUTE_SERVICE_HOST = "attribute.service.config.host";
   private static final String ATTRIBUTE_SERVICE_PORT = "attribute.service.config.port";
+  private static final String ATTRIBUTE_SNAPSHOT_REFRESH_INTERVAL =
+      "attribute.service.config.snapshot.refresh.interval";
+  private static final Duration DEFAULT_ATTRIBUTE_SNAPSHOT_REFRESH_INTERVAL = Duration.ofMinutes(1);
+  private static final String ATTRIBUTE_SNAPSHOT_INACTIVE_TENANT_EXPIRY =
+      "attribute.service.config.snapshot.inactive.tenant.expiry";
+  private static final Duration DEFAULT_ATTRIBUTE_SNAPSHOT_INACTIVE_TENANT_EXPIRY =
+      Duration.ofHours(1);
   public static final String ENTITY_ATTRIBUTE_DOC_PREFIX = "attributes.";
   public static final String SUB_DOC_PATH = "subDocPath";
   private static final String SCOPE_PATH = "scope";
@@ -43,6 +52,8 @@ public class EntityAttributeMapping {
   private final CachingAttributeClient attributeClient;
   private final Map<String, AttributeMetadataIdentifier> explicitAttributeIdByAttributeMetadata;
   private final Map<String, String> idAttributeMap;
+  // null when the lookups always go through the attribute client
+  private final AttributeMetadataSnapshots attributeMetadataSnapshots;
 
   public EntityAttributeMapping(Config config, GrpcChannelRegistry channelRegistry) {
     this(
@@ -51,6 +62,24 @@ public class EntityAttributeMapping {
                     config.getString(ATTRIBUTE_SERVICE_HOST),
                     config.getInt(ATTRIBUTE_SERVICE_PORT)))
             .build(),
+        config.hasPath(ATTRIBUTE_SNAPSHOT_REFRESH_INTERVAL)
+            ? config.getDuration(ATTRIBUTE_SNAPSHOT_REFRESH_INTERVAL)
+            : DEFAULT_ATTRIBUTE_SNAPSHOT_REFRESH_INTERVAL,
+        config.hasPath(ATTRIBUTE_SNAPSHOT_INACTIVE_TENANT_EXPIRY)
+            ? config.getDuration(ATTRIBUTE_SNAPSHOT_INACTIVE_TENANT_EXPIRY)
+            : DEFAULT_ATTRIBUTE_SNAPSHOT_INACTIVE_TENANT_EXPIRY,
+        config);
+  }
+
+  private EntityAttributeMapping(
+      CachingAttributeClient attributeClient,
+      Duration snapshotRefreshInterval,
+      Duration snapshotInactiveTenantExpiry,
+      Config config) {
+    this(
+        attributeClient,
+        new AttributeMetadataSnapshots(
+            attributeClient, snapshotRefreshInterval, snapshotInactiveTenantExpiry),
         config.getConfigList(ATTRIBUTE_MAP_CONFIG_PATH).stream()
             .collect(
                 toUnmodifiableMap(
@@ -68,7 +97,16 @@ public class EntityAttributeMapping {
       CachingAttributeClient attributeClient,
       Map<String, AttributeMetadataIdentifier> attributeIdByAttributeMetadata,
       Map<String, String> idAttributeMap) {
+    this(attributeClient, null, attributeIdByAttributeMetadata, idAttributeMap);
+  }
+
+  EntityAttributeMapping(
+      CachingAttributeClient attributeClient,
+      AttributeMetadataSnapshots attributeMetadataSnapshots,
+      Map<String, AttributeMetadataIdentifier> attributeIdByAttributeMetadata,
+      Map<String, String> idAttributeMap) {
     this.attributeClient = attributeClient;
+    this.attributeMetadataSnapshots = attributeMetadataSnapshots;
     this.idAttributeMap = idAttributeMap;
     this.explicitAttributeIdByAttributeMetadata = attributeIdByAttributeMetadata;
   }
@@ -93,12 +131,28 @@ public class EntityAttributeMapping {
         .or(() -> this.calculateAttributeMetadataFromAttributeId(requestContext, attributeId));
   }
 
+  /**
+   * Same as {@link #getAttributeMetadataByAttributeId}, except that a failure to look the attribute
+   * up is thrown rather than taken for a missing attribute, e.g. so that it is not cached.
+   */
+  public Optional<AttributeMetadataIdentifier> resolveAttributeMetadataByAttributeId(
+      RequestContext requestContext, String attributeId) {
+    return Optional.ofNullable(this.explicitAttributeIdByAttributeMetadata.get(attributeId))
+        .or(() -> this.lookUpAttributeMetadata(requestContext, attributeId));
+  }
+
   public Optional<String> getIdentifierAttributeId(String entityType) {
     return Optional.ofNullable(this.idAttributeMap.get(entityType));
   }
 
   public Optional<AttributeKind> getAttributeKind(
       final RequestContext requestContext, final String attributeId) {
+    final Optional<AttributeMetadataSnapshot.Entry> snapshotEntry =
+        findInSnapshot(requestContext, attributeId);
+    if (snapshotEntry.isPresent()) {
+      return snapshotEntry.get().getOptionalAttributeKind();
+    }
+
     return requestContext.call(
         () ->
             this.attributeClient
@@ -138,8 +192,44 @@ public class EntityAttributeMapping {
     return MAP_ATTRIBUTE_KINDS.contains(attributeKind);
   }
 
+  /**
+   * Registers a listener invoked with the id of a tenant whenever the attribute metadata snapshot
+   * of the tenant changes, e.g. to drop anything derived from the previous metadata.
+   */
+  public void addAttributeMetadataChangeListener(Consumer<String> tenantIdConsumer) {
+    if (this.attributeMetadataSnapshots != null) {
+      this.attributeMetadataSnapshots.addChangeListener(tenantIdConsumer);
+    }
+  }
+
+  private Optional<AttributeMetadataSnapshot.Entry> findInSnapshot(
+      RequestContext requestContext, String attributeId) {
+    if (this.attributeMetadataSnapshots == null) {
+      return Optional.empty();
+    }
+
+    final AttributeMetadataSnapshot snapshot = this.attributeMetadataSnapshots.get(requestContext);
+    // Attributes created after the snapshot got loaded are looked up through the attribute client
+    return snapshot == null ? Optional.empty() : snapshot.find(attributeId);
+  }
+
   private Optional<AttributeMetadataIdentifier> calculateAttributeMetadataFromAttributeId(
       RequestContext requestContext, String attributeId) {
+    try {
+      return this.lookUpAttributeMetadata(requestContext, attributeId);
+    } catch (RuntimeException e) {
+      return Optional.empty();
+    }
+  }
+
+  private Optional<AttributeMetadataIdentifier> lookUpAttributeMetadata(
+      RequestContext requestContext, String attributeId) {
+    final Optional<AttributeMetadataSnapshot.Entry> snapshotEntry =
+        findInSnapshot(requestContext, attributeId);
+    if (snapshotEntry.isPresent()) {
+      return snapshotEntry.get().getOptionalIdentifier();
+    }
+
     return requestContext.call(
         () ->
             this.attributeClient
@@ -151,7 +241,6 @@ public class EntityAttributeMapping {
                             metadata.getScopeString(),
                             ENTITY_ATTRIBUTE_DOC_PREFIX + metadata.getKey()))
                 .map(Optional::of)
-                .onErrorComplete()
                 .defaultIfEmpty(Optional.empty())
                 .blockingGet());
   }
@@ -0,0 +1,213 @@
+package org.hypertrace.entity.attribute.translator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.reactivex.rxjava3.core.Single;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.attribute.service.cachingclient.CachingAttributeClient;
+import org.hypertrace.core.attribute.service.v1.AttributeKind;
+import org.hypertrace.core.attribute.service.v1.AttributeMetadata;
+import org.hypertrace.core.attribute.service.v1.AttributeSource;
+import org.hypertrace.core.grpcutils.context.RequestContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class AttributeMetadataSnapshotsTest {
+  private static final RequestContext REQUEST_CONTEXT = RequestContext.forTenantId("tenant-1");
+  private static final AttributeMetadata SERVICE_NAME =
+      AttributeMetadata.newBuilder()
+          .setId("SERVICE.name")
+          .setKey("name")
+          .setScopeString("SERVICE")
+          .setValueKind(AttributeKind.TYPE_STRING)
+          .addSources(AttributeSource.EDS)
+          .build();
+  private static final AttributeMetadata SERVICE_LABELS =
+      AttributeMetadata.newBuilder()
+          .setId("SERVICE.labels")
+          .setKey("labels")
+          .setScopeString("SERVICE")
+          .setValueKind(AttributeKind.TYPE_STRING_ARRAY)
+          .addSources(AttributeSource.EDS)
+          .build();
+  private static final AttributeMetadata SERVICE_DURATION =
+      AttributeMetadata.newBuilder()
+          .setId("SERVICE.duration")
+          .setKey("duration")
+          .setScopeString("SERVICE")
+          .setValueKind(AttributeKind.TYPE_INT64)
+          .addSources(AttributeSource.QS)
+          .build();
+
+  private CachingAttributeClient attributeClient;
+  private ScheduledExecutorService refreshExecutor;
+  private Clock clock;
+  private AttributeMetadataSnapshots attributeMetadataSnapshots;
+  private EntityAttributeMapping attributeMapping;
+
+  @BeforeEach
+  void setUp() {
+    attributeClient = mock(CachingAttributeClient.class);
+    refreshExecutor = mock(ScheduledExecutorService.class);
+    clock = mock(Clock.class);
+    when(clock.millis()).thenReturn(0L);
+    when(attributeClient.getAll())
+        .thenReturn(Single.just(List.of(SERVICE_NAME, SERVICE_LABELS, SERVICE_DURATION)));
+    when(attributeClient.get("SERVICE.name")).thenReturn(Single.just(SERVICE_NAME));
+    when(attributeClient.get("SERVICE.labels")).thenReturn(Single.just(SERVICE_LABELS));
+
+    attributeMetadataSnapshots =
+        new AttributeMetadataSnapshots(
+            attributeClient, Duration.ofMinutes(1), Duration.ofHours(1), refreshExecutor, clock);
+    attributeMapping =
+        new EntityAttributeMapping(
+            attributeClient,
+            attributeMetadataSnapshots,
+            Collections.emptyMap(),
+            Collections.emptyMap());
+  }
+
+  @Test
+  void testLooksUpAttributesInSnapshotOnceLoaded() {
+    // The first lookup of the tenant triggers the load of its snapshot
+    assertEquals(
+        Optional.of("attributes.name"),
+        attributeMapping.getDocStorePathByAttributeId(REQUEST_CONTEXT, "SERVICE.name"));
+    verify(attributeClient, times(1)).get("SERVICE.name");
+
+    assertEquals(
+        Optional.of("attributes.name"),
+        attributeMapping.getDocStorePathByAttributeId(REQUEST_CONTEXT, "SERVICE.name"));
+    assertEquals(
+        Optional.of(new AttributeMetadataIdentifier("SERVICE", "attributes.labels")),
+        attributeMapping.getAttributeMetadataByAttributeId(REQUEST_CONTEXT, "SERVICE.labels"));
+    assertTrue(attributeMapping.isArray(REQUEST_CONTEXT, "SERVICE.labels"));
+    assertTrue(attributeMapping.isPrimitive(REQUEST_CONTEXT, "SERVICE.name"));
+    assertFalse(attributeMapping.isMap(REQUEST_CONTEXT, "SERVICE.name"));
+
+    // Non EDS attributes are resolved from the snapshot as well
+    assertEquals(
+        Optional.empty(),
+        attributeMapping.getDocStorePathByAttributeId(REQUEST_CONTEXT, "SERVICE.duration"));
+    assertEquals(
+        Optional.empty(), attributeMapping.getAttributeKind(REQUEST_CONTEXT, "SERVICE.duration"));
+
+    verify(attributeClient, times(1)).get("SERVICE.name");
+    verify(attributeClient, never()).get("SERVICE.labels");
+    verify(attributeClient, never()).get("SERVICE.duration");
+    verify(attributeClient, times(1)).getAll();
+  }
+
+  @Test
+  void testFallsBackToAttributeClientForUnknownAttributes() {
+    final AttributeMetadata serviceType =
+        SERVICE_NAME.toBuilder().setId("SERVICE.type").setKey("type").build();
+    when(attributeClient.get("SERVICE.type")).thenReturn(Single.just(serviceType));
+
+    attributeMapping.getAttributeKind(REQUEST_CONTEXT, "SERVICE.name");
+
+    assertEquals(
+        Optional.of("attributes.type"),
+        attributeMapping.getDocStorePathByAttributeId(REQUEST_CONTEXT, "SERVICE.type"));
+    verify(attributeClient).get("SERVICE.type");
+  }
+
+  @Test
+  void testRefreshNotifiesListenersOfChangedSnapshots() {
+    final ArgumentCaptor<Runnable> refreshCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(refreshExecutor)
+        .scheduleWithFixedDelay(
+            refreshCaptor.capture(), anyLong(), anyLong(), eq(TimeUnit.MILLISECONDS));
+    final List<String> changedTenantIds = new ArrayList<>();
+    attributeMapping.addAttributeMetadataChangeListener(changedTenantIds::add);
+
+    attributeMapping.isArray(REQUEST_CONTEXT, "SERVICE.labels");
+    assertEquals(List.of("tenant-1"), changedTenantIds);
+
+    // Unchanged metadata
+    refreshCaptor.getValue().run();
+    assertEquals(List.of("tenant-1"), changedTenantIds);
+
+    when(attributeClient.getAll())
+        .thenReturn(
+            Single.just(
+                List.of(
+                    SERVICE_NAME,
+                    SERVICE_LABELS.toBuilder().setValueKind(AttributeKind.TYPE_STRING).build())));
+    refreshCaptor.getValue().run();
+    assertEquals(List.of("tenant-1", "tenant-1"), changedTenantIds);
+    assertFalse(attributeMapping.isArray(REQUEST_CONTEXT, "SERVICE.labels"));
+  }
+
+  @Test
+  void testKeepsPreviousSnapshotWhenRefreshFails() {
+    final ArgumentCaptor<Runnable> refreshCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(refreshExecutor)
+        .scheduleWithFixedDelay(refreshCaptor.capture(), anyLong(), anyLong(), any());
+
+    attributeMapping.isArray(REQUEST_CONTEXT, "SERVICE.name");
+    when(attributeClient.getAll()).thenReturn(Single.error(new RuntimeException()));
+    refreshCaptor.getValue().run();
+
+    assertTrue(attributeMapping.isArray(REQUEST_CONTEXT, "SERVICE.labels"));
+    verify(attributeClient, never()).get("SERVICE.labels");
+  }
+
+  @Test
+  void testRefreshesWithRequestContextOfLatestLookup() throws Exception {
+    final ArgumentCaptor<Runnable> refreshCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(refreshExecutor)
+        .scheduleWithFixedDelay(refreshCaptor.capture(), anyLong(), anyLong(), any());
+    final RequestContext latestRequestContext = mock(RequestContext.class);
+    when(latestRequestContext.getTenantId()).thenReturn(Optional.of("tenant-1"));
+    when(latestRequestContext.call(any()))
+        .thenAnswer(invocation -> invocation.<Callable<?>>getArgument(0).call());
+
+    attributeMapping.isArray(REQUEST_CONTEXT, "SERVICE.labels");
+    assertNotNull(attributeMetadataSnapshots.get(latestRequestContext));
+    verify(latestRequestContext, never()).call(any());
+
+    refreshCaptor.getValue().run();
+    verify(latestRequestContext, times(1)).call(any());
+    verify(attributeClient, times(2)).getAll();
+  }
+
+  @Test
+  void testDropsSnapshotsOfInactiveTenants() {
+    final ArgumentCaptor<Runnable> refreshCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(refreshExecutor)
+        .scheduleWithFixedDelay(refreshCaptor.capture(), anyLong(), anyLong(), any());
+
+    assertNull(attributeMetadataSnapshots.get(REQUEST_CONTEXT));
+    assertNotNull(attributeMetadataSnapshots.get(REQUEST_CONTEXT));
+
+    when(clock.millis()).thenReturn(Duration.ofHours(1).plusMillis(1).toMillis());
+    refreshCaptor.getValue().run();
+    verify(attributeClient, times(1)).getAll();
+
+    // The snapshot of the tenant is loaded again once looked up
+    assertNull(attributeMetadataSnapshots.get(REQUEST_CONTEXT));
+    verify(attributeClient, times(2)).getAll();
+  }
+}
@@ -3,6 +3,8 @@ package org.hypertrace.entity.attribute.translator;
 import static org.hypertrace.entity.attribute.translator.EntityAttributeMapping.ENTITY_ATTRIBUTE_DOC_PREFIX;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.typesafe.config.Config;
@@ -10,6 +12,7 @@ import com.typesafe.config.ConfigFactory;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import org.hypertrace.core.grpcutils.context.RequestContext;
 import org.hypertrace.entity.data.service.v1.AttributeValue;
 import org.hypertrace.entity.data.service.v1.Entity;
@@ -21,6 +24,8 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -31,6 +36,7 @@ public class EntityAttributeChangeEvaluatorTest {
   private static final String TEST_ENTITY_TYPE = "test-entity-type";
   private EntityAttributeChangeEvaluator entityAttributeChangeEvaluator;
   @Mock EntityAttributeMapping entityAttributeMapping;
+  @Captor ArgumentCaptor<Consumer<String>> listenerCaptor;
 
   @BeforeEach
   void setup() {
@@ -47,7 +53,7 @@ public class EntityAttributeChangeEvaluatorTest {
   @Test
   void testShouldSendNotification_entities() {
     // attributes differ
-    when(this.entityAttributeMapping.getAttributeMetadataByAttributeId(
+    when(this.entityAttributeMapping.resolveAttributeMetadataByAttributeId(
             any(), eq(TEST_ENTITY_TYPE + ".skip_attribute")))
         .thenReturn(
             Optional.of(
@@ -96,6 +102,74 @@ public class EntityAttributeChangeEvaluatorTest {
             requestContext, prevEntity, updatedEntity));
   }
 
+  @Test
+  void testShouldSendNotification_resolvesSkippedAttributesOncePerTenant() {
+    when(this.entityAttributeMapping.resolveAttributeMetadataByAttributeId(
+            any(), eq(TEST_ENTITY_TYPE + ".skip_attribute")))
+        .thenReturn(
+            Optional.of(
+                new AttributeMetadataIdentifier(
+                    TEST_ENTITY_TYPE, ENTITY_ATTRIBUTE_DOC_PREFIX + "skip_attribute")));
+    verify(this.entityAttributeMapping)
+        .addAttributeMetadataChangeListener(this.listenerCaptor.capture());
+    Entity prevEntity = Entity.newBuilder().setEntityType(TEST_ENTITY_TYPE).build();
+    Entity updatedEntity =
+        prevEntity.toBuilder()
+            .putAttributes(
+                "skip_attribute",
+                AttributeValue.newBuilder()
+                    .setValue(Value.newBuilder().setString("skip_value").build())
+                    .build())
+            .build();
+
+    Assertions.assertFalse(
+        entityAttributeChangeEvaluator.shouldSendNotification(
+            requestContext, prevEntity, updatedEntity));
+    Assertions.assertFalse(
+        entityAttributeChangeEvaluator.shouldSendNotification(
+            requestContext, updatedEntity, prevEntity));
+    verify(this.entityAttributeMapping, times(1))
+        .resolveAttributeMetadataByAttributeId(any(), eq(TEST_ENTITY_TYPE + ".skip_attribute"));
+
+    // Resolved again once the attribute metadata of the tenant changes
+    this.listenerCaptor.getValue().accept("tenantId");
+    Assertions.assertFalse(
+        entityAttributeChangeEvaluator.shouldSendNotification(
+            requestContext, prevEntity, updatedEntity));
+    verify(this.entityAttributeMapping, times(2))
+        .resolveAttributeMetadataByAttributeId(any(), eq(TEST_ENTITY_TYPE + ".skip_attribute"));
+  }
+
+  @Test
+  void testShouldSendNotification_doesNotCacheFailedResolutionOfSkippedAttributes() {
+    when(this.entityAttributeMapping.resolveAttributeMetadataByAttributeId(
+            any(), eq(TEST_ENTITY_TYPE + ".skip_attribute")))
+        .thenThrow(new RuntimeException("unavailable"))
+        .thenReturn(
+            Optional.of(
+                new AttributeMetadataIdentifier(
+                    TEST_ENTITY_TYPE, ENTITY_ATTRIBUTE_DOC_PREFIX + "skip_attribute")));
+    Entity prevEntity = Entity.newBuilder().setEntityType(TEST_ENTITY_TYPE).build();
+    Entity updatedEntity =
+        prevEntity.toBuilder()
+            .putAttributes(
+                "skip_attribute",
+                AttributeValue.newBuilder()
+                    .setValue(Value.newBuilder().setString("skip_value").build())
+                    .build())
+            .build();
+
+    // Nothing is skipped while the skipped attributes cannot be resolved
+    Assertions.assertTrue(
+        entityAttributeChangeEvaluator.shouldSendNotification(
+            requestContext, prevEntity, updatedEntity));
+    Assertions.assertFalse(
+        entityAttributeChangeEvaluator.shouldSendNotification(
+            requestContext, prevEntity, updatedEntity));
+    verify(this.entityAttributeMapping, times(2))
+        .resolveAttributeMetadataByAttributeId(any(), eq(TEST_ENTITY_TYPE + ".skip_attribute"));
+  }
+
   @Test
   void testShouldSendNotification_updateOp() {
     Assertions.assertTrue(
@@ -0,0 +1,53 @@
+package org.hypertrace.entity.change.event.util;
+
+import org.hypertrace.entity.change.event.v1.EntityDelta;
+import org.hypertrace.entity.change.event.v1.EntityUpdateEvent;
+import org.hypertrace.entity.data.service.v1.Entity;
+
+/**
+ * Reads the entity of an {@link EntityUpdateEvent}, which is either carried in full by the event
+ * or, in the compact format, described by the changes of its attributes. A compact event is a
+ * partial update, not a replacement of the entity: it leaves out the changes of the attributes
+ * which do not trigger change events, and the fields other than the ids, the name and the
+ * identifying attributes, like the created time. The entity it is applied to can thus differ from
+ * the stored one, and should be fetched again where that matters.
+ */
+public class EntityUpdateEventDecoder {
+
+  private EntityUpdateEventDecoder() {}
+
+  /** @return true if the event carries only the changes of the entity */
+  public static boolean isDelta(EntityUpdateEvent updateEvent) {
+    return updateEvent.hasLatestEntityDelta();
+  }
+
+  /**
+   * @param updateEvent the update event of the entity
+   * @param previousEntity the entity before the update, as known to the consumer. Only used when
+   *     the event carries the changes of the entity
+   * @return the entity after the update, only partially updated if the event carries the changes
+   *     of the entity
+   */
+  public static Entity getLatestEntity(EntityUpdateEvent updateEvent, Entity previousEntity) {
+    if (!isDelta(updateEvent)) {
+      return updateEvent.getLatestEntity();
+    }
+    return applyDelta(previousEntity, updateEvent.getLatestEntityDelta());
+  }
+
+  /** @return the entity with the attribute changes and the identifying fields of the delta */
+  public static Entity applyDelta(Entity entity, EntityDelta delta) {
+    Entity.Builder builder =
+        entity.toBuilder()
+            .setTenantId(delta.getTenantId())
+            .setEntityId(delta.getEntityId())
+            .setEntityType(delta.getEntityType())
+            .setEntityName(delta.getEntityName())
+            .clearIdentifyingAttributes()
+            .putAllIdentifyingAttributes(delta.getIdentifyingAttributesMap())
+            .putAllAttributes(delta.getAddedAttributesMap())
+            .putAllAttributes(delta.getChangedAttributesMap());
+    delta.getRemovedAttributeKeysList().forEach(builder::removeAttributes);
+    return builder.build();
+  }
+}
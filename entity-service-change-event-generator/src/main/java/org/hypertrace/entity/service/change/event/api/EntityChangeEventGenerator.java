@@ -26,8 +26,23 @@ public interface EntityChangeEventGenerator {
    * @param existingEntities list of existing entities
    * @param updatedEntities list of updated entities
    */
-  void sendChangeNotification(
+  default void sendChangeNotification(
       RequestContext requestContext,
       Collection<Entity> existingEntities,
-      Collection<Entity> updatedEntities);
+      Collection<Entity> updatedEntities) {
+    this.sendChangeNotification(
+        requestContext, EntityChangeSet.of(existingEntities, updatedEntities));
+  }
+
+  /**
+   * Send change notification for the created, deleted or updated entities of an already evaluated
+   * change set
+   *
+   * @param requestContext requestContext
+   * @param changeSet the changes of the entities
+   */
+  void sendChangeNotification(RequestContext requestContext, EntityChangeSet changeSet);
+
+  /** Publishes the pending change notifications, if any, before the service shuts down */
+  default void close() {}
 }
@@ -0,0 +1,82 @@
+package org.hypertrace.entity.service.change.event.api;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import org.hypertrace.entity.data.service.v1.Entity;
+
+/**
+ * The entities created, updated and deleted by a write, evaluated once per write so that the
+ * metrics and the change notifications of the write share it. Entities are matched by their ids,
+ * and a matched entity is updated if it differs from the existing one. The memoized hash codes of
+ * the entities are compared first, so that the entities are only compared field by field when they
+ * are likely equal.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class EntityChangeSet {
+  private static final EntityChangeSet EMPTY =
+      new EntityChangeSet(
+          Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+
+  List<Entity> createdEntities;
+  List<EntityUpdate> updatedEntities;
+  List<Entity> deletedEntities;
+
+  /**
+   * The entities present only in the updated entities are considered to be created, the ones
+   * present only in the existing entities are considered to be deleted, and the ones present in
+   * both are considered to be updated if they differ.
+   */
+  public static EntityChangeSet of(
+      Collection<Entity> existingEntities, Collection<Entity> updatedEntities) {
+    if (existingEntities.isEmpty() && updatedEntities.isEmpty()) {
+      return EMPTY;
+    }
+
+    Map<String, Entity> existingEntitiesById = new LinkedHashMap<>(mapCapacity(existingEntities));
+    existingEntities.forEach(entity -> existingEntitiesById.put(entity.getEntityId(), entity));
+
+    List<Entity> createdEntities = new ArrayList<>();
+    List<EntityUpdate> entityUpdates = new ArrayList<>();
+    Map<String, Entity> updatedEntitiesById = new LinkedHashMap<>(mapCapacity(updatedEntities));
+    updatedEntities.forEach(entity -> updatedEntitiesById.put(entity.getEntityId(), entity));
+    for (Entity updatedEntity : updatedEntitiesById.values()) {
+      Entity existingEntity = existingEntitiesById.remove(updatedEntity.getEntityId());
+      if (existingEntity == null) {
+        createdEntities.add(updatedEntity);
+      } else if (!isSame(existingEntity, updatedEntity)) {
+        entityUpdates.add(new EntityUpdate(existingEntity, updatedEntity));
+      }
+    }
+
+    return new EntityChangeSet(
+        createdEntities, entityUpdates, new ArrayList<>(existingEntitiesById.values()));
+  }
+
+  public boolean isEmpty() {
+    return createdEntities.isEmpty() && updatedEntities.isEmpty() && deletedEntities.isEmpty();
+  }
+
+  private static boolean isSame(Entity existingEntity, Entity updatedEntity) {
+    return existingEntity == updatedEntity
+        || (existingEntity.hashCode() == updatedEntity.hashCode()
+            && existingEntity.equals(updatedEntity));
+  }
+
+  private static int mapCapacity(Collection<Entity> entities) {
+    return (int) (entities.size() / 0.75f) + 1;
+  }
+
+  @Value
+  public static class EntityUpdate {
+    Entity existingEntity;
+    Entity updatedEntity;
+  }
+}
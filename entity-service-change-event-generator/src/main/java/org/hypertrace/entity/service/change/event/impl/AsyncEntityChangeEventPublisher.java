@@ -0,0 +1,223 @@
+package org.hypertrace.entity.service.change.event.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.hypertrace.core.eventstore.EventProducer;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
+
+/**
+ * Publishes the change events from background threads, so that the write RPCs do not wait on the
+ * event store. Events are queued in bounded partitions by the key of their entity, and each
+ * partition is sent by a single thread in batches of the queued events, which keeps the events of
+ * an entity in order. When a partition is full, publishing waits up to the enqueue timeout for
+ * space and then drops the event.
+ */
+@Slf4j
+class AsyncEntityChangeEventPublisher implements EntityChangeEventPublisher {
+  private static final String PUBLISHER_CONFIG = "entity.service.config.change.events.publisher";
+  private static final String ASYNC_CONFIG = "async";
+  private static final String PARTITIONS_CONFIG = "partitions";
+  private static final String QUEUE_SIZE_CONFIG = "queue.size";
+  private static final String BATCH_SIZE_CONFIG = "batch.size";
+  private static final String ENQUEUE_TIMEOUT_CONFIG = "enqueue.timeout";
+  private static final String CLOSE_TIMEOUT_CONFIG = "close.timeout";
+  private static final int DEFAULT_PARTITIONS = 2;
+  private static final int DEFAULT_QUEUE_SIZE = 10000;
+  private static final int DEFAULT_BATCH_SIZE = 500;
+  private static final Duration DEFAULT_ENQUEUE_TIMEOUT = Duration.ofMillis(100);
+  private static final Duration DEFAULT_CLOSE_TIMEOUT = Duration.ofSeconds(10);
+  private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+  private static final String QUEUE_DEPTH_GAUGE = "entity.change.events.queue.depth";
+  private static final String PUBLISH_LATENCY_TIMER = "entity.change.events.publish.latency";
+  private static final String DROPPED_EVENTS_COUNTER = "entity.change.events.dropped";
+  private static final String PARTITION_TAG = "partition";
+
+  private static final AtomicInteger publisherCount = new AtomicInteger();
+
+  private final EventProducer<EntityChangeEventKey, EntityChangeEventValue> producer;
+  private final List<BlockingQueue<PendingEvent>> partitions;
+  private final int batchSize;
+  private final long enqueueTimeoutNanos;
+  private final Duration closeTimeout;
+  private final ExecutorService executor;
+  private final Timer publishLatencyTimer;
+  private final Counter droppedEventsCounter;
+  private volatile boolean closed;
+
+  @VisibleForTesting
+  AsyncEntityChangeEventPublisher(
+      EventProducer<EntityChangeEventKey, EntityChangeEventValue> producer,
+      int partitionCount,
+      int queueSize,
+      int batchSize,
+      Duration enqueueTimeout,
+      Duration closeTimeout) {
+    this.producer = producer;
+    this.batchSize = batchSize;
+    this.enqueueTimeoutNanos = enqueueTimeout.toNanos();
+    this.closeTimeout = closeTimeout;
+    this.publishLatencyTimer =
+        Timer.builder(PUBLISH_LATENCY_TIMER).register(PlatformMetricsRegistry.getMeterRegistry());
+    this.droppedEventsCounter =
+        PlatformMetricsRegistry.registerCounter(DROPPED_EVENTS_COUNTER, Map.of());
+
+    String threadNamePrefix = "entity-change-event-publisher-" + publisherCount.getAndIncrement();
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor =
+        Executors.newFixedThreadPool(
+            partitionCount,
+            runnable -> {
+              Thread thread =
+                  new Thread(runnable, threadNamePrefix + "-" + threadCount.getAndIncrement());
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.partitions = new ArrayList<>(partitionCount);
+    for (int i = 0; i < partitionCount; i++) {
+      BlockingQueue<PendingEvent> queue = new ArrayBlockingQueue<>(queueSize);
+      Gauge.builder(QUEUE_DEPTH_GAUGE, queue, BlockingQueue::size)
+          .tag(PARTITION_TAG, String.valueOf(i))
+          .register(PlatformMetricsRegistry.getMeterRegistry());
+      this.partitions.add(queue);
+      this.executor.execute(() -> this.publishQueuedEvents(queue));
+    }
+  }
+
+  /**
+   * @return the asynchronous publisher unless it is disabled in the config, in which case the
+   *     events are sent to the producer on the calling thread
+   */
+  static EntityChangeEventPublisher create(
+      Config appConfig, EventProducer<EntityChangeEventKey, EntityChangeEventValue> producer) {
+    Config config =
+        appConfig.hasPath(PUBLISHER_CONFIG)
+            ? appConfig.getConfig(PUBLISHER_CONFIG)
+            : ConfigFactory.empty();
+    if (config.hasPath(ASYNC_CONFIG) && !config.getBoolean(ASYNC_CONFIG)) {
+      return producer::send;
+    }
+
+    return new AsyncEntityChangeEventPublisher(
+        producer,
+        config.hasPath(PARTITIONS_CONFIG) ? config.getInt(PARTITIONS_CONFIG) : DEFAULT_PARTITIONS,
+        config.hasPath(QUEUE_SIZE_CONFIG) ? config.getInt(QUEUE_SIZE_CONFIG) : DEFAULT_QUEUE_SIZE,
+        config.hasPath(BATCH_SIZE_CONFIG) ? config.getInt(BATCH_SIZE_CONFIG) : DEFAULT_BATCH_SIZE,
+        config.hasPath(ENQUEUE_TIMEOUT_CONFIG)
+            ? config.getDuration(ENQUEUE_TIMEOUT_CONFIG)
+            : DEFAULT_ENQUEUE_TIMEOUT,
+        config.hasPath(CLOSE_TIMEOUT_CONFIG)
+            ? config.getDuration(CLOSE_TIMEOUT_CONFIG)
+            : DEFAULT_CLOSE_TIMEOUT);
+  }
+
+  @Override
+  public void publish(EntityChangeEventKey key, EntityChangeEventValue value) {
+    if (this.closed) {
+      this.drop(key, "the publisher is closed");
+      return;
+    }
+
+    BlockingQueue<PendingEvent> queue =
+        this.partitions.get(Math.floorMod(key.hashCode(), this.partitions.size()));
+    PendingEvent event = new PendingEvent(key, value, System.nanoTime());
+    boolean queued;
+    try {
+      queued = queue.offer(event, this.enqueueTimeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      queued = false;
+    }
+    if (!queued) {
+      this.drop(key, "the publish queue is full");
+    }
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    this.executor.shutdown();
+    try {
+      if (!this.executor.awaitTermination(this.closeTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+        log.warn(
+            "Unable to publish {} change events before closing",
+            this.partitions.stream().mapToInt(BlockingQueue::size).sum());
+        this.executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      this.executor.shutdownNow();
+    }
+  }
+
+  private void publishQueuedEvents(BlockingQueue<PendingEvent> queue) {
+    List<PendingEvent> batch = new ArrayList<>(this.batchSize);
+    // Once closed, the remaining events are published before the thread exits
+    while (!this.closed || !queue.isEmpty()) {
+      try {
+        PendingEvent first = queue.poll(POLL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, this.batchSize - 1);
+        this.send(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void send(List<PendingEvent> batch) {
+    for (PendingEvent event : batch) {
+      try {
+        this.producer.send(event.getKey(), event.getValue());
+        this.publishLatencyTimer.record(
+            System.nanoTime() - event.getQueuedNanos(), TimeUnit.NANOSECONDS);
+      } catch (Exception ex) {
+        log.warn(
+            "Unable to send change event for entity with id {} for tenant {}",
+            event.getKey().getEntityId(),
+            event.getKey().getTenantId(),
+            ex);
+      }
+    }
+  }
+
+  private void drop(EntityChangeEventKey key, String reason) {
+    this.droppedEventsCounter.increment();
+    log.warn(
+        "Dropping change event for entity with id {} for tenant {} as {}",
+        key.getEntityId(),
+        key.getTenantId(),
+        reason);
+  }
+
+  @Value
+  private static class PendingEvent {
+    EntityChangeEventKey key;
+    EntityChangeEventValue value;
+    long queuedNanos;
+  }
+}
@@ -0,0 +1,278 @@
+package org.hypertrace.entity.service.change.event.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.Striped;
+import com.typesafe.config.Config;
+import io.micrometer.core.instrument.Counter;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
+import org.hypertrace.entity.change.event.v1.EntityDelta;
+import org.hypertrace.entity.change.event.v1.EntityUpdateEvent;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+
+/**
+ * Holds back the update events of an entity for the coalescing window of its type, and merges the
+ * updates of the entity received within the window into a single update event, from the earliest
+ * previous entity to the latest entity. Any other event of the entity first publishes its pending
+ * update, so that the events of an entity stay in order. The events of entity types without a
+ * window are published right away.
+ */
+@Slf4j
+class CoalescingEntityChangeEventPublisher implements EntityChangeEventPublisher {
+  private static final String COALESCING_CONFIG = "entity.service.config.change.events.coalescing";
+  private static final String DEFAULT_WINDOW_CONFIG = "default.window";
+  private static final String ENTITY_TYPE_WINDOWS_CONFIG = "windows";
+  private static final String COALESCED_EVENTS_COUNTER = "entity.change.events.coalesced";
+  private static final String ENTITY_TYPE_TAG = "entityType";
+  private static final int ENTITY_LOCK_STRIPES = 64;
+
+  private final EntityChangeEventPublisher publisher;
+  private final Duration defaultWindow;
+  private final Map<String, Duration> windowsByEntityType;
+  private final ScheduledExecutorService flushExecutor;
+  private final Map<EntityChangeEventKey, PendingUpdate> pendingUpdates = new ConcurrentHashMap<>();
+  private final Striped<Lock> entityLocks = Striped.lock(ENTITY_LOCK_STRIPES);
+  private final Map<String, Counter> coalescedEventsCounters = new ConcurrentHashMap<>();
+  private final AtomicLong pendingUpdateSequence = new AtomicLong();
+
+  @VisibleForTesting
+  CoalescingEntityChangeEventPublisher(
+      EntityChangeEventPublisher publisher,
+      Duration defaultWindow,
+      Map<String, Duration> windowsByEntityType,
+      ScheduledExecutorService flushExecutor) {
+    this.publisher = publisher;
+    this.defaultWindow = defaultWindow;
+    this.windowsByEntityType = windowsByEntityType;
+    this.flushExecutor = flushExecutor;
+  }
+
+  /**
+   * @return the publisher coalescing the update events before publishing them to the given
+   *     publisher, or the given publisher itself if no coalescing window is configured
+   */
+  static EntityChangeEventPublisher create(Config appConfig, EntityChangeEventPublisher publisher) {
+    if (!appConfig.hasPath(COALESCING_CONFIG)) {
+      return publisher;
+    }
+
+    Config config = appConfig.getConfig(COALESCING_CONFIG);
+    Duration defaultWindow =
+        config.hasPath(DEFAULT_WINDOW_CONFIG)
+            ? config.getDuration(DEFAULT_WINDOW_CONFIG)
+            : Duration.ZERO;
+    Map<String, Duration> windowsByEntityType = new HashMap<>();
+    if (config.hasPath(ENTITY_TYPE_WINDOWS_CONFIG)) {
+      Config windowsConfig = config.getConfig(ENTITY_TYPE_WINDOWS_CONFIG);
+      windowsConfig
+          .root()
+          .keySet()
+          .forEach(
+              entityType ->
+                  windowsByEntityType.put(entityType, windowsConfig.getDuration(entityType)));
+    }
+    if (defaultWindow.isZero()
+        && windowsByEntityType.values().stream().allMatch(Duration::isZero)) {
+      return publisher;
+    }
+
+    return new CoalescingEntityChangeEventPublisher(
+        publisher,
+        defaultWindow,
+        windowsByEntityType,
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "entity-change-event-coalescing");
+              thread.setDaemon(true);
+              return thread;
+            }));
+  }
+
+  @Override
+  public void publish(EntityChangeEventKey key, EntityChangeEventValue value) {
+    Duration window =
+        this.windowsByEntityType.getOrDefault(key.getEntityType(), this.defaultWindow);
+    PendingUpdate pendingUpdate;
+    // The events of an entity are published under the lock of the entity, so that concurrent
+    // events of the entity stay in order, but outside of the map so that no bin of it is blocked
+    Lock lock = this.entityLocks.get(key);
+    lock.lock();
+    try {
+      PendingUpdate existing = this.pendingUpdates.get(key);
+      if (!value.hasUpdateEvent() || window.isZero()) {
+        if (existing != null) {
+          this.publisher.publish(key, existing.getValue());
+          this.pendingUpdates.remove(key);
+        }
+        this.publisher.publish(key, value);
+        return;
+      }
+
+      if (existing != null) {
+        EntityChangeEventValue mergedValue = merge(existing.getValue(), value);
+        if (mergedValue != null) {
+          this.pendingUpdates.put(key, new PendingUpdate(existing.getSequence(), mergedValue));
+          this.getCoalescedEventsCounter(key.getEntityType()).increment();
+          return;
+        }
+        this.publisher.publish(key, existing.getValue());
+      }
+      pendingUpdate = new PendingUpdate(this.pendingUpdateSequence.incrementAndGet(), value);
+      this.pendingUpdates.put(key, pendingUpdate);
+    } finally {
+      lock.unlock();
+    }
+
+    try {
+      this.flushExecutor.schedule(
+          () -> this.flush(key, pendingUpdate.getSequence()),
+          window.toMillis(),
+          TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // Closed, so the update is no longer held back
+      this.flush(key, pendingUpdate.getSequence());
+    }
+  }
+
+  @Override
+  public void close() {
+    this.flushExecutor.shutdownNow();
+    this.pendingUpdates.keySet().forEach(this::flush);
+    this.publisher.close();
+  }
+
+  private void flush(EntityChangeEventKey key) {
+    Lock lock = this.entityLocks.get(key);
+    lock.lock();
+    try {
+      PendingUpdate pendingUpdate = this.pendingUpdates.remove(key);
+      if (pendingUpdate != null) {
+        this.publisher.publish(key, pendingUpdate.getValue());
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void flush(EntityChangeEventKey key, long sequence) {
+    Lock lock = this.entityLocks.get(key);
+    lock.lock();
+    try {
+      PendingUpdate pendingUpdate = this.pendingUpdates.get(key);
+      if (pendingUpdate == null || pendingUpdate.getSequence() != sequence) {
+        return;
+      }
+      this.pendingUpdates.remove(key);
+      this.publisher.publish(key, pendingUpdate.getValue());
+    } catch (Exception ex) {
+      log.warn(
+          "Unable to publish update event for entity with id {} for tenant {}",
+          key.getEntityId(),
+          key.getTenantId(),
+          ex);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** @return null if the update events cannot be merged */
+  @VisibleForTesting
+  static EntityChangeEventValue merge(
+      EntityChangeEventValue pendingValue, EntityChangeEventValue value) {
+    EntityUpdateEvent pendingEvent = pendingValue.getUpdateEvent();
+    EntityUpdateEvent event = value.getUpdateEvent();
+    EntityUpdateEvent mergedEvent;
+    if (pendingEvent.hasLatestEntityDelta() && event.hasLatestEntityDelta()) {
+      mergedEvent =
+          EntityUpdateEvent.newBuilder()
+              .setLatestEntityDelta(
+                  mergeDeltas(pendingEvent.getLatestEntityDelta(), event.getLatestEntityDelta()))
+              .build();
+    } else if (!pendingEvent.hasLatestEntityDelta() && !event.hasLatestEntityDelta()) {
+      mergedEvent =
+          EntityUpdateEvent.newBuilder()
+              .setPreviousEntity(pendingEvent.getPreviousEntity())
+              .setLatestEntity(event.getLatestEntity())
+              .build();
+    } else {
+      return null;
+    }
+    return value.toBuilder().setUpdateEvent(mergedEvent).build();
+  }
+
+  private static EntityDelta mergeDeltas(EntityDelta pendingDelta, EntityDelta delta) {
+    Map<String, AttributeValue> addedAttributes =
+        new HashMap<>(pendingDelta.getAddedAttributesMap());
+    Map<String, AttributeValue> changedAttributes =
+        new HashMap<>(pendingDelta.getChangedAttributesMap());
+    Set<String> removedAttributeKeys =
+        new LinkedHashSet<>(pendingDelta.getRemovedAttributeKeysList());
+
+    delta
+        .getAddedAttributesMap()
+        .forEach(
+            (key, value) -> {
+              // Removed and added back, so it changed compared to the earliest previous entity
+              if (removedAttributeKeys.remove(key)) {
+                changedAttributes.put(key, value);
+              } else {
+                addedAttributes.put(key, value);
+              }
+            });
+    delta
+        .getChangedAttributesMap()
+        .forEach(
+            (key, value) -> {
+              if (addedAttributes.containsKey(key)) {
+                addedAttributes.put(key, value);
+              } else {
+                changedAttributes.put(key, value);
+              }
+            });
+    for (String key : delta.getRemovedAttributeKeysList()) {
+      // Attributes added and removed within the window were never seen by the consumers
+      if (addedAttributes.remove(key) == null) {
+        changedAttributes.remove(key);
+        removedAttributeKeys.add(key);
+      }
+    }
+
+    return delta.toBuilder()
+        .clearAddedAttributes()
+        .putAllAddedAttributes(addedAttributes)
+        .clearChangedAttributes()
+        .putAllChangedAttributes(changedAttributes)
+        .clearRemovedAttributeKeys()
+        .addAllRemovedAttributeKeys(removedAttributeKeys)
+        .build();
+  }
+
+  private Counter getCoalescedEventsCounter(String entityType) {
+    return this.coalescedEventsCounters.computeIfAbsent(
+        entityType,
+        unused ->
+            PlatformMetricsRegistry.registerCounter(
+                COALESCED_EVENTS_COUNTER, Map.of(ENTITY_TYPE_TAG, entityType)));
+  }
+
+  @Value
+  private static class PendingUpdate {
+    long sequence;
+    EntityChangeEventValue value;
+  }
+}
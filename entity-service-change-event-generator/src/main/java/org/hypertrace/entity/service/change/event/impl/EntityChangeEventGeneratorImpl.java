@@ -4,6 +4,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.typesafe.config.Config;
 import java.time.Clock;
 import java.util.Collection;
+import java.util.Optional;
 import lombok.extern.slf4j.Slf4j;
 import org.hypertrace.core.eventstore.EventProducer;
 import org.hypertrace.core.eventstore.EventProducerConfig;
@@ -11,15 +12,18 @@ import org.hypertrace.core.eventstore.EventStore;
 import org.hypertrace.core.eventstore.EventStoreProvider;
 import org.hypertrace.core.grpcutils.context.RequestContext;
 import org.hypertrace.entity.attribute.translator.EntityAttributeChangeEvaluator;
+import org.hypertrace.entity.attribute.translator.EntityAttributeChanges;
 import org.hypertrace.entity.attribute.translator.EntityAttributeMapping;
 import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
 import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
 import org.hypertrace.entity.change.event.v1.EntityChangeEventValue.Builder;
 import org.hypertrace.entity.change.event.v1.EntityCreateEvent;
 import org.hypertrace.entity.change.event.v1.EntityDeleteEvent;
+import org.hypertrace.entity.change.event.v1.EntityDelta;
 import org.hypertrace.entity.change.event.v1.EntityUpdateEvent;
 import org.hypertrace.entity.data.service.v1.Entity;
 import org.hypertrace.entity.service.change.event.api.EntityChangeEventGenerator;
+import org.hypertrace.entity.service.change.event.api.EntityChangeSet;
 import org.hypertrace.entity.service.change.event.util.KeyUtil;
 
 /** The interface Entity change event generator. */
@@ -31,25 +35,17 @@ public class EntityChangeEventGeneratorImpl implements EntityChangeEventGenerato
   private static final String ENTITY_CHANGE_EVENTS_TOPIC = "entity-change-events";
   private static final String ENTITY_CHANGE_EVENTS_PRODUCER_CONFIG =
       "entity.change.events.producer";
+  private static final String DELTA_UPDATE_EVENTS_CONFIG =
+      "entity.service.config.change.events.delta.update.events";
 
-  private final EventProducer<EntityChangeEventKey, EntityChangeEventValue>
-      entityChangeEventProducer;
+  private final EntityChangeEventPublisher entityChangeEventPublisher;
   private final EntityAttributeChangeEvaluator entityAttributeChangeEvaluator;
   private final Clock clock;
+  private final boolean deltaUpdateEvents;
 
   EntityChangeEventGeneratorImpl(
       Config appConfig, EntityAttributeMapping entityAttributeMapping, Clock clock) {
-    Config config = appConfig.getConfig(EVENT_STORE);
-    this.clock = clock;
-    String storeType = config.getString(EVENT_STORE_TYPE_CONFIG);
-    EventStore eventStore = EventStoreProvider.getEventStore(storeType, config);
-    entityChangeEventProducer =
-        eventStore.createProducer(
-            ENTITY_CHANGE_EVENTS_TOPIC,
-            new EventProducerConfig(
-                storeType, config.getConfig(ENTITY_CHANGE_EVENTS_PRODUCER_CONFIG)));
-    this.entityAttributeChangeEvaluator =
-        new EntityAttributeChangeEvaluator(appConfig, entityAttributeMapping);
+    this(appConfig, createPublisher(appConfig), entityAttributeMapping, clock);
   }
 
   @VisibleForTesting
@@ -58,10 +54,37 @@ public class EntityChangeEventGeneratorImpl implements EntityChangeEventGenerato
       EventProducer<EntityChangeEventKey, EntityChangeEventValue> entityChangeEventProducer,
       EntityAttributeMapping entityAttributeMapping,
       Clock clock) {
+    this(appConfig, entityChangeEventProducer::send, entityAttributeMapping, clock);
+  }
+
+  private EntityChangeEventGeneratorImpl(
+      Config appConfig,
+      EntityChangeEventPublisher entityChangeEventPublisher,
+      EntityAttributeMapping entityAttributeMapping,
+      Clock clock) {
     this.clock = clock;
-    this.entityChangeEventProducer = entityChangeEventProducer;
+    this.entityChangeEventPublisher = entityChangeEventPublisher;
     this.entityAttributeChangeEvaluator =
         new EntityAttributeChangeEvaluator(appConfig, entityAttributeMapping);
+    this.deltaUpdateEvents =
+        appConfig.hasPath(DELTA_UPDATE_EVENTS_CONFIG)
+            && appConfig.getBoolean(DELTA_UPDATE_EVENTS_CONFIG);
+  }
+
+  private static EntityChangeEventPublisher createPublisher(Config appConfig) {
+    Config config = appConfig.getConfig(EVENT_STORE);
+    String storeType = config.getString(EVENT_STORE_TYPE_CONFIG);
+    EventStore eventStore = EventStoreProvider.getEventStore(storeType, config);
+    EventProducer<EntityChangeEventKey, EntityChangeEventValue> entityChangeEventProducer =
+        eventStore.createProducer(
+            ENTITY_CHANGE_EVENTS_TOPIC,
+            new EventProducerConfig(
+                storeType, config.getConfig(ENTITY_CHANGE_EVENTS_PRODUCER_CONFIG)));
+    EntityChangeEventPublisher producerPublisher =
+        OutboxEntityChangeEventPublisher.isEnabled(appConfig)
+            ? OutboxEntityChangeEventPublisher.create(appConfig, entityChangeEventProducer)
+            : AsyncEntityChangeEventPublisher.create(appConfig, entityChangeEventProducer);
+    return CoalescingEntityChangeEventPublisher.create(appConfig, producerPublisher);
   }
 
   @Override
@@ -70,32 +93,28 @@ public class EntityChangeEventGeneratorImpl implements EntityChangeEventGenerato
   }
 
   @Override
-  public void sendChangeNotification(
-      RequestContext requestContext,
-      Collection<Entity> existingEntities,
-      Collection<Entity> updatedEntities) {
-    ChangeResult changeResult =
-        EntityChangeEvaluator.evaluateChange(existingEntities, updatedEntities);
-    changeResult
-        .getCreatedEntity()
-        .forEach(
-            entry -> {
-              sendCreateNotification(requestContext, entry);
-            });
+  public void sendChangeNotification(RequestContext requestContext, EntityChangeSet changeSet) {
+    changeSet
+        .getCreatedEntities()
+        .forEach(createdEntity -> sendCreateNotification(requestContext, createdEntity));
 
-    changeResult
-        .getExistingToUpdatedEntitiesMap()
+    changeSet
+        .getUpdatedEntities()
         .forEach(
-            (existingEntity, updatedEntity) -> {
-              sendUpdateNotificationIfRequired(requestContext, existingEntity, updatedEntity);
-            });
+            entityUpdate ->
+                sendUpdateNotificationIfRequired(
+                    requestContext,
+                    entityUpdate.getExistingEntity(),
+                    entityUpdate.getUpdatedEntity()));
+
+    changeSet
+        .getDeletedEntities()
+        .forEach(deletedEntity -> sendDeleteNotification(requestContext, deletedEntity));
+  }
 
-    changeResult
-        .getDeletedEntity()
-        .forEach(
-            entry -> {
-              sendDeleteNotification(requestContext, entry);
-            });
+  @Override
+  public void close() {
+    this.entityChangeEventPublisher.close();
   }
 
   private void sendCreateNotification(RequestContext requestContext, Entity createdEntity) {
@@ -105,7 +124,7 @@ public class EntityChangeEventGeneratorImpl implements EntityChangeEventGenerato
           EntityCreateEvent.newBuilder().setCreatedEntity(createdEntity).build());
       builder.setEventTimeMillis(clock.millis());
       populateUserDetails(requestContext, builder);
-      entityChangeEventProducer.send(getEntityChangeEventKey(createdEntity), builder.build());
+      entityChangeEventPublisher.publish(getEntityChangeEventKey(createdEntity), builder.build());
     } catch (Exception ex) {
       log.warn(
           "Unable to send create event for entity with id {} for tenant {}",
@@ -118,20 +137,32 @@ public class EntityChangeEventGeneratorImpl implements EntityChangeEventGenerato
   private void sendUpdateNotificationIfRequired(
       RequestContext requestContext, Entity prevEntity, Entity currEntity) {
     try {
-      if (!this.entityAttributeChangeEvaluator.shouldSendNotification(
-          requestContext, prevEntity, currEntity)) {
-        return;
-      }
-
       Builder builder = EntityChangeEventValue.newBuilder();
-      builder.setUpdateEvent(
-          EntityUpdateEvent.newBuilder()
-              .setPreviousEntity(prevEntity)
-              .setLatestEntity(currEntity)
-              .build());
+      if (this.deltaUpdateEvents) {
+        Optional<EntityAttributeChanges> attributeChanges =
+            this.entityAttributeChangeEvaluator.evaluateAttributeChanges(
+                requestContext, prevEntity, currEntity);
+        if (attributeChanges.isEmpty()) {
+          return;
+        }
+        builder.setUpdateEvent(
+            EntityUpdateEvent.newBuilder()
+                .setLatestEntityDelta(buildEntityDelta(currEntity, attributeChanges.get()))
+                .build());
+      } else {
+        if (!this.entityAttributeChangeEvaluator.shouldSendNotification(
+            requestContext, prevEntity, currEntity)) {
+          return;
+        }
+        builder.setUpdateEvent(
+            EntityUpdateEvent.newBuilder()
+                .setPreviousEntity(prevEntity)
+                .setLatestEntity(currEntity)
+                .build());
+      }
       builder.setEventTimeMillis(clock.millis());
       populateUserDetails(requestContext, builder);
-      entityChangeEventProducer.send(getEntityChangeEventKey(currEntity), builder.build());
+      entityChangeEventPublisher.publish(getEntityChangeEventKey(currEntity), builder.build());
     } catch (Exception ex) {
       log.warn(
           "Unable to send update event for entity with id {} for tenant {}",
@@ -141,6 +172,19 @@ public class EntityChangeEventGeneratorImpl implements EntityChangeEventGenerato
     }
   }
 
+  private EntityDelta buildEntityDelta(Entity currEntity, EntityAttributeChanges attributeChanges) {
+    return EntityDelta.newBuilder()
+        .setTenantId(currEntity.getTenantId())
+        .setEntityId(currEntity.getEntityId())
+        .setEntityType(currEntity.getEntityType())
+        .setEntityName(currEntity.getEntityName())
+        .putAllIdentifyingAttributes(currEntity.getIdentifyingAttributesMap())
+        .putAllAddedAttributes(attributeChanges.getAddedAttributes())
+        .putAllChangedAttributes(attributeChanges.getChangedAttributes())
+        .addAllRemovedAttributeKeys(attributeChanges.getRemovedAttributeKeys())
+        .build();
+  }
+
   private void sendDeleteNotification(RequestContext requestContext, Entity deletedEntity) {
     try {
       Builder builder = EntityChangeEventValue.newBuilder();
@@ -148,7 +192,7 @@ public class EntityChangeEventGeneratorImpl implements EntityChangeEventGenerato
           EntityDeleteEvent.newBuilder().setDeletedEntity(deletedEntity).build());
       builder.setEventTimeMillis(clock.millis());
       populateUserDetails(requestContext, builder);
-      entityChangeEventProducer.send(getEntityChangeEventKey(deletedEntity), builder.build());
+      entityChangeEventPublisher.publish(getEntityChangeEventKey(deletedEntity), builder.build());
     } catch (Exception ex) {
       log.warn(
           "Unable to send delete event for entity with id {} for tenant {}",
@@ -0,0 +1,14 @@
+package org.hypertrace.entity.service.change.event.impl;
+
+import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
+
+/** Publishes the change events built by {@link EntityChangeEventGeneratorImpl} */
+@FunctionalInterface
+interface EntityChangeEventPublisher {
+
+  void publish(EntityChangeEventKey key, EntityChangeEventValue value);
+
+  /** Publishes the pending events, if any, and releases the resources of the publisher */
+  default void close() {}
+}
@@ -4,6 +4,7 @@ import java.util.Collection;
 import org.hypertrace.core.grpcutils.context.RequestContext;
 import org.hypertrace.entity.data.service.v1.Entity;
 import org.hypertrace.entity.service.change.event.api.EntityChangeEventGenerator;
+import org.hypertrace.entity.service.change.event.api.EntityChangeSet;
 
 /** No-op implementation of Entity change event generator interface. */
 public class NoopEntityChangeEventGenerator implements EntityChangeEventGenerator {
@@ -22,4 +23,9 @@ public class NoopEntityChangeEventGenerator implements EntityChangeEventGenerato
       Collection<Entity> updatedEntities) {
     // No-op
   }
+
+  @Override
+  public void sendChangeNotification(RequestContext requestContext, EntityChangeSet changeSet) {
+    // No-op
+  }
 }
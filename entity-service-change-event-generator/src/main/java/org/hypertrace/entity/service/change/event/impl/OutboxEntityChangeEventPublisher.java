@@ -0,0 +1,455 @@
+package org.hypertrace.entity.service.change.event.impl;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.typesafe.config.Config;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.hypertrace.core.eventstore.EventProducer;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
+
+/**
+ * Appends the change events to a local log of memory-mapped segment files, so that the write RPCs
+ * neither wait on the event store nor lose the events it fails to accept. A background thread sends
+ * the logged events to the producer in order, retrying the events which fail to be sent, and
+ * checkpoints its position in the log after every batch. As the producer sends asynchronously, it
+ * is flushed before each checkpoint, so that only the events it has sent are checkpointed. Segments
+ * are deleted once all their events are sent, and the events logged but not sent before a restart
+ * are sent after it.
+ *
+ * <p>Each record of a segment is made of its length, the checksum of its key and value, the length
+ * of its key, its key and its value. The length is written last, so that the sending thread only
+ * ever reads complete records, and a record torn by a crash marks the end of its segment.
+ */
+@Slf4j
+class OutboxEntityChangeEventPublisher implements EntityChangeEventPublisher {
+  private static final String PUBLISHER_CONFIG = "entity.service.config.change.events.publisher";
+  private static final String OUTBOX_CONFIG = "outbox";
+  private static final String ENABLED_CONFIG = "enabled";
+  private static final String DIRECTORY_CONFIG = "directory";
+  private static final String SEGMENT_SIZE_CONFIG = "segment.size";
+  private static final String BATCH_SIZE_CONFIG = "batch.size";
+  private static final String POLL_INTERVAL_CONFIG = "poll.interval";
+  private static final String RETRY_INTERVAL_CONFIG = "retry.interval";
+  private static final String CLOSE_TIMEOUT_CONFIG = "close.timeout";
+  private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+  private static final int DEFAULT_BATCH_SIZE = 500;
+  private static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMillis(100);
+  private static final Duration DEFAULT_RETRY_INTERVAL = Duration.ofSeconds(1);
+  private static final Duration DEFAULT_CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+  private static final String SEGMENT_FILE_SUFFIX = ".log";
+  private static final String CHECKPOINT_FILE = "checkpoint";
+  private static final String CHECKPOINT_TEMP_FILE = "checkpoint.tmp";
+  // The record length, the checksum and the key length
+  private static final int RECORD_HEADER_SIZE = 3 * Integer.BYTES;
+
+  private static final String OUTBOX_SEGMENTS_GAUGE = "entity.change.events.outbox.segments";
+  private static final String DROPPED_EVENTS_COUNTER = "entity.change.events.dropped";
+
+  private final EventProducer<EntityChangeEventKey, EntityChangeEventValue> producer;
+  private final Path directory;
+  private final int segmentSize;
+  private final int batchSize;
+  private final long pollIntervalNanos;
+  private final long retryIntervalNanos;
+  private final Duration closeTimeout;
+  private final Counter droppedEventsCounter;
+  private final Thread sender;
+
+  // Guarded by this
+  private long writeSegmentId;
+  private FileChannel writeChannel;
+  private MappedByteBuffer writeBuffer;
+  private volatile LogPosition writePosition;
+
+  // Only accessed by the sending thread, but for the gauge
+  private volatile long readSegmentId;
+  private ByteBuffer readBuffer;
+  private int readPosition;
+
+  private volatile boolean closed;
+  private volatile long closeDeadlineNanos;
+
+  @VisibleForTesting
+  OutboxEntityChangeEventPublisher(
+      EventProducer<EntityChangeEventKey, EntityChangeEventValue> producer,
+      Path directory,
+      int segmentSize,
+      int batchSize,
+      Duration pollInterval,
+      Duration retryInterval,
+      Duration closeTimeout)
+      throws IOException {
+    this.producer = producer;
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.batchSize = batchSize;
+    this.pollIntervalNanos = pollInterval.toNanos();
+    this.retryIntervalNanos = retryInterval.toNanos();
+    this.closeTimeout = closeTimeout;
+    this.droppedEventsCounter =
+        PlatformMetricsRegistry.registerCounter(DROPPED_EVENTS_COUNTER, Map.of());
+
+    Files.createDirectories(directory);
+    List<Long> segmentIds = this.listSegmentIds();
+    LogPosition checkpoint = this.readCheckpoint();
+    // The events logged before a restart are left in their segments, and new ones are appended to
+    // a new segment, so that records torn by a crash are never overwritten
+    long lastSegmentId =
+        segmentIds.isEmpty()
+            ? checkpoint.getSegmentId()
+            : Math.max(checkpoint.getSegmentId(), segmentIds.get(segmentIds.size() - 1));
+    this.openWriteSegment(lastSegmentId + 1, segmentSize);
+
+    LogPosition readPosition = this.writePosition;
+    for (long segmentId : segmentIds) {
+      if (segmentId < checkpoint.getSegmentId()) {
+        Files.deleteIfExists(this.getSegmentPath(segmentId));
+      } else if (readPosition == this.writePosition) {
+        readPosition =
+            segmentId == checkpoint.getSegmentId() ? checkpoint : new LogPosition(segmentId, 0);
+      }
+    }
+    this.openReadSegment(readPosition);
+
+    Gauge.builder(
+            OUTBOX_SEGMENTS_GAUGE,
+            this,
+            publisher -> publisher.writePosition.getSegmentId() - publisher.readSegmentId + 1)
+        .register(PlatformMetricsRegistry.getMeterRegistry());
+    this.sender = new Thread(this::sendLoggedEvents, "entity-change-event-outbox");
+    this.sender.setDaemon(true);
+    this.sender.start();
+  }
+
+  static boolean isEnabled(Config appConfig) {
+    String enabledPath = String.join(".", PUBLISHER_CONFIG, OUTBOX_CONFIG, ENABLED_CONFIG);
+    return appConfig.hasPath(enabledPath) && appConfig.getBoolean(enabledPath);
+  }
+
+  static EntityChangeEventPublisher create(
+      Config appConfig, EventProducer<EntityChangeEventKey, EntityChangeEventValue> producer) {
+    Config publisherConfig = appConfig.getConfig(PUBLISHER_CONFIG);
+    Config config = publisherConfig.getConfig(OUTBOX_CONFIG);
+    try {
+      return new OutboxEntityChangeEventPublisher(
+          producer,
+          Paths.get(config.getString(DIRECTORY_CONFIG)),
+          config.hasPath(SEGMENT_SIZE_CONFIG)
+              ? Math.toIntExact(config.getBytes(SEGMENT_SIZE_CONFIG))
+              : DEFAULT_SEGMENT_SIZE,
+          publisherConfig.hasPath(BATCH_SIZE_CONFIG)
+              ? publisherConfig.getInt(BATCH_SIZE_CONFIG)
+              : DEFAULT_BATCH_SIZE,
+          config.hasPath(POLL_INTERVAL_CONFIG)
+              ? config.getDuration(POLL_INTERVAL_CONFIG)
+              : DEFAULT_POLL_INTERVAL,
+          config.hasPath(RETRY_INTERVAL_CONFIG)
+              ? config.getDuration(RETRY_INTERVAL_CONFIG)
+              : DEFAULT_RETRY_INTERVAL,
+          publisherConfig.hasPath(CLOSE_TIMEOUT_CONFIG)
+              ? publisherConfig.getDuration(CLOSE_TIMEOUT_CONFIG)
+              : DEFAULT_CLOSE_TIMEOUT);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to open the change events outbox", e);
+    }
+  }
+
+  @Override
+  public void publish(EntityChangeEventKey key, EntityChangeEventValue value) {
+    byte[] keyBytes = key.toByteArray();
+    byte[] valueBytes = value.toByteArray();
+    int recordSize = RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+    int checksum = checksum(keyBytes, valueBytes);
+
+    synchronized (this) {
+      if (this.closed) {
+        this.drop(key, "the publisher is closed");
+        return;
+      }
+      try {
+        if (this.writeBuffer.remaining() < recordSize) {
+          this.writeBuffer.force();
+          this.writeChannel.close();
+          this.openWriteSegment(this.writeSegmentId + 1, Math.max(this.segmentSize, recordSize));
+        }
+      } catch (IOException e) {
+        log.error("Unable to roll the change events outbox segment", e);
+        this.drop(key, "the outbox segment could not be rolled");
+        return;
+      }
+      int position = this.writeBuffer.position();
+      this.writeBuffer.position(position + Integer.BYTES);
+      this.writeBuffer.putInt(checksum).putInt(keyBytes.length).put(keyBytes).put(valueBytes);
+      this.writeBuffer.putInt(position, recordSize);
+      this.writePosition = new LogPosition(this.writeSegmentId, this.writeBuffer.position());
+    }
+    LockSupport.unpark(this.sender);
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (this.closed) {
+        return;
+      }
+      this.closeDeadlineNanos = System.nanoTime() + this.closeTimeout.toNanos();
+      this.closed = true;
+      this.writeBuffer.force();
+    }
+    LockSupport.unpark(this.sender);
+    try {
+      this.sender.join(this.closeTimeout.toMillis() + TimeUnit.SECONDS.toMillis(1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      this.writeChannel.close();
+    } catch (IOException e) {
+      log.warn("Unable to close the change events outbox segment", e);
+    }
+  }
+
+  private void sendLoggedEvents() {
+    while (!this.isCloseTimedOut()) {
+      LogPosition writePosition = this.writePosition;
+      boolean atWritePosition =
+          this.readSegmentId == writePosition.getSegmentId()
+              && this.readPosition >= writePosition.getPosition();
+      if (atWritePosition) {
+        if (this.closed) {
+          return;
+        }
+        LockSupport.parkNanos(this.pollIntervalNanos);
+        continue;
+      }
+
+      try {
+        int sentCount = this.sendBatch(writePosition);
+        if (sentCount > 0) {
+          if (!this.flushAndWriteCheckpoint()) {
+            break;
+          }
+        } else if (this.isCloseTimedOut()) {
+          // The unsent events are left in the outbox for the next start
+          break;
+        } else if (this.readSegmentId < writePosition.getSegmentId()) {
+          this.moveToNextSegment(writePosition);
+        } else {
+          LockSupport.parkNanos(this.pollIntervalNanos);
+        }
+      } catch (IOException e) {
+        log.error("Unable to read the change events outbox", e);
+        LockSupport.parkNanos(this.retryIntervalNanos);
+      }
+    }
+    if (this.readSegmentId != this.writePosition.getSegmentId()
+        || this.readPosition < this.writePosition.getPosition()) {
+      log.warn("Unable to send all the change events of the outbox before closing");
+    }
+  }
+
+  /** @return the number of records read from the segment, which are sent or skipped */
+  private int sendBatch(LogPosition writePosition) {
+    int limit =
+        this.readSegmentId == writePosition.getSegmentId()
+            ? writePosition.getPosition()
+            : this.readBuffer.capacity();
+    int readCount = 0;
+    while (readCount < this.batchSize && limit - this.readPosition >= RECORD_HEADER_SIZE) {
+      int recordSize = this.readBuffer.getInt(this.readPosition);
+      if (recordSize < RECORD_HEADER_SIZE || recordSize > limit - this.readPosition) {
+        // The end of the segment, or a record torn by a crash
+        break;
+      }
+      ByteBuffer record = this.readBuffer.duplicate();
+      record.limit(this.readPosition + recordSize).position(this.readPosition + Integer.BYTES);
+      int checksum = record.getInt();
+      byte[] keyBytes = new byte[record.getInt()];
+      record.get(keyBytes);
+      byte[] valueBytes = new byte[record.remaining()];
+      record.get(valueBytes);
+      if (checksum != checksum(keyBytes, valueBytes)) {
+        break;
+      }
+
+      if (!this.send(keyBytes, valueBytes)) {
+        break;
+      }
+      this.readPosition += recordSize;
+      readCount++;
+    }
+    return readCount;
+  }
+
+  private boolean send(byte[] keyBytes, byte[] valueBytes) {
+    EntityChangeEventKey key;
+    EntityChangeEventValue value;
+    try {
+      key = EntityChangeEventKey.parseFrom(keyBytes);
+      value = EntityChangeEventValue.parseFrom(valueBytes);
+    } catch (InvalidProtocolBufferException e) {
+      log.error("Skipping unreadable change event of the outbox", e);
+      return true;
+    }
+
+    while (true) {
+      try {
+        this.producer.send(key, value);
+        return true;
+      } catch (Exception ex) {
+        log.warn(
+            "Unable to send change event for entity with id {} for tenant {}, retrying",
+            key.getEntityId(),
+            key.getTenantId(),
+            ex);
+      }
+      if (this.isCloseTimedOut()) {
+        return false;
+      }
+      LockSupport.parkNanos(this.retryIntervalNanos);
+    }
+  }
+
+  /**
+   * @return whether the checkpoint is written, which it is not if the close times out before the
+   *     producer could be flushed
+   */
+  private boolean flushAndWriteCheckpoint() throws IOException {
+    while (true) {
+      try {
+        this.producer.flush();
+        break;
+      } catch (Exception ex) {
+        log.warn("Unable to flush the change events producer, retrying", ex);
+      }
+      if (this.isCloseTimedOut()) {
+        return false;
+      }
+      LockSupport.parkNanos(this.retryIntervalNanos);
+    }
+    this.writeCheckpoint();
+    return true;
+  }
+
+  private void moveToNextSegment(LogPosition writePosition) throws IOException {
+    long segmentId = this.readSegmentId;
+    long nextSegmentId = segmentId + 1;
+    while (nextSegmentId < writePosition.getSegmentId()
+        && !Files.exists(this.getSegmentPath(nextSegmentId))) {
+      nextSegmentId++;
+    }
+    this.openReadSegment(new LogPosition(nextSegmentId, 0));
+    if (this.flushAndWriteCheckpoint()) {
+      Files.deleteIfExists(this.getSegmentPath(segmentId));
+    }
+  }
+
+  private void openWriteSegment(long segmentId, int size) throws IOException {
+    this.writeChannel =
+        FileChannel.open(
+            this.getSegmentPath(segmentId),
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    this.writeBuffer = this.writeChannel.map(MapMode.READ_WRITE, 0, size);
+    this.writeSegmentId = segmentId;
+    this.writePosition = new LogPosition(segmentId, 0);
+  }
+
+  private void openReadSegment(LogPosition position) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(this.getSegmentPath(position.getSegmentId()), StandardOpenOption.READ)) {
+      this.readBuffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+    this.readSegmentId = position.getSegmentId();
+    this.readPosition = position.getPosition();
+  }
+
+  private List<Long> listSegmentIds() throws IOException {
+    try (Stream<Path> paths = Files.list(this.directory)) {
+      return paths
+          .map(path -> path.getFileName().toString())
+          .filter(fileName -> fileName.endsWith(SEGMENT_FILE_SUFFIX))
+          .map(fileName -> fileName.substring(0, fileName.length() - SEGMENT_FILE_SUFFIX.length()))
+          .map(Long::parseLong)
+          .sorted()
+          .collect(Collectors.toUnmodifiableList());
+    }
+  }
+
+  private LogPosition readCheckpoint() throws IOException {
+    Path path = this.directory.resolve(CHECKPOINT_FILE);
+    if (!Files.exists(path)) {
+      return new LogPosition(0, 0);
+    }
+    String[] checkpoint = Files.readString(path, StandardCharsets.UTF_8).trim().split(":");
+    return new LogPosition(Long.parseLong(checkpoint[0]), Integer.parseInt(checkpoint[1]));
+  }
+
+  private void writeCheckpoint() throws IOException {
+    Path tempPath = this.directory.resolve(CHECKPOINT_TEMP_FILE);
+    Files.writeString(
+        tempPath, this.readSegmentId + ":" + this.readPosition, StandardCharsets.UTF_8);
+    Files.move(
+        tempPath,
+        this.directory.resolve(CHECKPOINT_FILE),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private Path getSegmentPath(long segmentId) {
+    return this.directory.resolve(String.format("%020d%s", segmentId, SEGMENT_FILE_SUFFIX));
+  }
+
+  private boolean isCloseTimedOut() {
+    return this.closed && System.nanoTime() - this.closeDeadlineNanos > 0;
+  }
+
+  private void drop(EntityChangeEventKey key, String reason) {
+    this.droppedEventsCounter.increment();
+    log.warn(
+        "Dropping change event for entity with id {} for tenant {} as {}",
+        key.getEntityId(),
+        key.getTenantId(),
+        reason);
+  }
+
+  private static int checksum(byte[] keyBytes, byte[] valueBytes) {
+    CRC32 crc = new CRC32();
+    crc.update(keyBytes);
+    crc.update(valueBytes);
+    return (int) crc.getValue();
+  }
+
+  @Value
+  private static class LogPosition {
+    long segmentId;
+    int position;
+  }
+}
@@ -0,0 +1,53 @@
+package org.hypertrace.entity.service.change.event.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.entity.data.service.v1.Value;
+import org.hypertrace.entity.service.change.event.api.EntityChangeSet.EntityUpdate;
+import org.junit.jupiter.api.Test;
+
+class EntityChangeSetTest {
+
+  @Test
+  void evaluatesCreatedUpdatedAndDeletedEntities() {
+    Entity unchanged = buildEntity("entity-1", "value");
+    Entity existing = buildEntity("entity-2", "value");
+    Entity updated = buildEntity("entity-2", "other-value");
+    Entity deleted = buildEntity("entity-3", "value");
+    Entity created = buildEntity("entity-4", "value");
+
+    EntityChangeSet changeSet =
+        EntityChangeSet.of(
+            List.of(unchanged, existing, deleted),
+            List.of(created, unchanged.toBuilder().build(), updated));
+
+    assertEquals(List.of(created), changeSet.getCreatedEntities());
+    assertEquals(List.of(new EntityUpdate(existing, updated)), changeSet.getUpdatedEntities());
+    assertEquals(List.of(deleted), changeSet.getDeletedEntities());
+  }
+
+  @Test
+  void isEmptyWithoutChanges() {
+    Entity entity = buildEntity("entity-1", "value");
+
+    assertTrue(EntityChangeSet.of(List.of(), List.of()).isEmpty());
+    assertTrue(EntityChangeSet.of(List.of(entity), List.of(entity.toBuilder().build())).isEmpty());
+  }
+
+  private static Entity buildEntity(String entityId, String attributeValue) {
+    return Entity.newBuilder()
+        .setTenantId("tenant-1")
+        .setEntityType("SERVICE")
+        .setEntityId(entityId)
+        .putAttributes(
+            "attribute",
+            AttributeValue.newBuilder()
+                .setValue(Value.newBuilder().setString(attributeValue))
+                .build())
+        .build();
+  }
+}
@@ -0,0 +1,104 @@
+package org.hypertrace.entity.service.change.event.impl;
+
+import static org.hypertrace.entity.service.change.event.impl.ChangeEventTestUtils.buildKey;
+import static org.hypertrace.entity.service.change.event.impl.ChangeEventTestUtils.buildValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.eventstore.EventProducer;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
+import org.junit.jupiter.api.Test;
+
+class AsyncEntityChangeEventPublisherTest {
+
+  @SuppressWarnings("unchecked")
+  private final EventProducer<EntityChangeEventKey, EntityChangeEventValue> eventProducer =
+      mock(EventProducer.class);
+
+  @Test
+  void publishesEventsOfEachEntityInOrder() {
+    Map<EntityChangeEventKey, List<Long>> sentEventTimesByKey = new ConcurrentHashMap<>();
+    doAnswer(
+            invocation -> {
+              EntityChangeEventKey key = invocation.getArgument(0);
+              EntityChangeEventValue value = invocation.getArgument(1);
+              sentEventTimesByKey
+                  .computeIfAbsent(key, unused -> Collections.synchronizedList(new ArrayList<>()))
+                  .add(value.getEventTimeMillis());
+              return null;
+            })
+        .when(eventProducer)
+        .send(any(), any());
+    AsyncEntityChangeEventPublisher publisher =
+        new AsyncEntityChangeEventPublisher(
+            eventProducer, 4, 1000, 16, Duration.ofSeconds(1), Duration.ofSeconds(10));
+
+    List<Long> expectedEventTimes = new ArrayList<>();
+    for (long eventTime = 0; eventTime < 100; eventTime++) {
+      for (int entity = 0; entity < 10; entity++) {
+        publisher.publish(buildKey("entity-" + entity), buildValue(eventTime));
+      }
+      expectedEventTimes.add(eventTime);
+    }
+    publisher.close();
+
+    assertEquals(10, sentEventTimesByKey.size());
+    sentEventTimesByKey.values().forEach(times -> assertEquals(expectedEventTimes, times));
+  }
+
+  @Test
+  void dropsEventsWhenQueueIsFull() throws InterruptedException {
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              sending.countDown();
+              release.await();
+              return null;
+            })
+        .when(eventProducer)
+        .send(eq(buildKey("entity-1")), any());
+    AsyncEntityChangeEventPublisher publisher =
+        new AsyncEntityChangeEventPublisher(
+            eventProducer, 1, 1, 16, Duration.ZERO, Duration.ofSeconds(10));
+
+    publisher.publish(buildKey("entity-1"), buildValue(1));
+    assertTrue(sending.await(10, TimeUnit.SECONDS));
+    // One event fits in the queue while the first one is being sent
+    publisher.publish(buildKey("entity-2"), buildValue(2));
+    publisher.publish(buildKey("entity-3"), buildValue(3));
+    release.countDown();
+    publisher.close();
+
+    verify(eventProducer).send(buildKey("entity-1"), buildValue(1));
+    verify(eventProducer).send(buildKey("entity-2"), buildValue(2));
+    verify(eventProducer, never()).send(eq(buildKey("entity-3")), any());
+  }
+
+  @Test
+  void dropsEventsOnceClosed() {
+    AsyncEntityChangeEventPublisher publisher =
+        new AsyncEntityChangeEventPublisher(
+            eventProducer, 1, 10, 16, Duration.ZERO, Duration.ofSeconds(10));
+    publisher.close();
+
+    publisher.publish(buildKey("entity-1"), buildValue(1));
+
+    verify(eventProducer, never()).send(any(), any());
+  }
+}
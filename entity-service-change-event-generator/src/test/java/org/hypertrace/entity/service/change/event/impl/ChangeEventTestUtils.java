@@ -0,0 +1,19 @@
+package org.hypertrace.entity.service.change.event.impl;
+
+import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
+
+class ChangeEventTestUtils {
+
+  static EntityChangeEventKey buildKey(String entityId) {
+    return EntityChangeEventKey.newBuilder()
+        .setTenantId("tenant-1")
+        .setEntityType("SERVICE")
+        .setEntityId(entityId)
+        .build();
+  }
+
+  static EntityChangeEventValue buildValue(long eventTimeMillis) {
+    return EntityChangeEventValue.newBuilder().setEventTimeMillis(eventTimeMillis).build();
+  }
+}
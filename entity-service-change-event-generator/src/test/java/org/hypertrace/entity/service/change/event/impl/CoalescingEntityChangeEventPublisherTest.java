@@ -0,0 +1,211 @@
+package org.hypertrace.entity.service.change.event.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.typesafe.config.ConfigFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
+import org.hypertrace.entity.change.event.v1.EntityDeleteEvent;
+import org.hypertrace.entity.change.event.v1.EntityDelta;
+import org.hypertrace.entity.change.event.v1.EntityUpdateEvent;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.entity.data.service.v1.Value;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+class CoalescingEntityChangeEventPublisherTest {
+
+  private final EntityChangeEventPublisher downstreamPublisher =
+      mock(EntityChangeEventPublisher.class);
+
+  @Test
+  void mergesUpdatesWithinWindow() {
+    CoalescingEntityChangeEventPublisher publisher = buildPublisher(Duration.ofHours(1));
+    Entity first = buildEntity("value-1");
+    Entity second = buildEntity("value-2");
+    Entity third = buildEntity("value-3");
+
+    publisher.publish(buildKey("API"), buildUpdateValue(first, second, 1));
+    publisher.publish(buildKey("API"), buildUpdateValue(second, third, 2));
+    verify(downstreamPublisher, never()).publish(any(), any());
+    publisher.close();
+
+    verify(downstreamPublisher).publish(buildKey("API"), buildUpdateValue(first, third, 2));
+    verify(downstreamPublisher).close();
+  }
+
+  @Test
+  void publishesPendingUpdateBeforeOtherEvents() {
+    CoalescingEntityChangeEventPublisher publisher = buildPublisher(Duration.ofHours(1));
+    EntityChangeEventValue updateValue =
+        buildUpdateValue(buildEntity("value-1"), buildEntity("value-2"), 1);
+    EntityChangeEventValue deleteValue =
+        EntityChangeEventValue.newBuilder()
+            .setDeleteEvent(
+                EntityDeleteEvent.newBuilder().setDeletedEntity(buildEntity("value-2")))
+            .build();
+
+    publisher.publish(buildKey("API"), updateValue);
+    publisher.publish(buildKey("API"), deleteValue);
+
+    InOrder inOrder = inOrder(downstreamPublisher);
+    inOrder.verify(downstreamPublisher).publish(buildKey("API"), updateValue);
+    inOrder.verify(downstreamPublisher).publish(buildKey("API"), deleteValue);
+    publisher.close();
+  }
+
+  @Test
+  void publishesEventsReceivedWhileFlushingAfterTheFlushedUpdate() throws Exception {
+    CountDownLatch flushStarted = new CountDownLatch(1);
+    List<EntityChangeEventValue> publishedValues = new CopyOnWriteArrayList<>();
+    EntityChangeEventPublisher slowPublisher =
+        (key, value) -> {
+          if (value.hasUpdateEvent()) {
+            flushStarted.countDown();
+            Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+          }
+          publishedValues.add(value);
+        };
+    CoalescingEntityChangeEventPublisher publisher =
+        new CoalescingEntityChangeEventPublisher(
+            slowPublisher,
+            Duration.ZERO,
+            Map.of("API", Duration.ofMillis(1)),
+            Executors.newSingleThreadScheduledExecutor());
+    EntityChangeEventValue updateValue =
+        buildUpdateValue(buildEntity("value-1"), buildEntity("value-2"), 1);
+    EntityChangeEventValue deleteValue =
+        EntityChangeEventValue.newBuilder()
+            .setDeleteEvent(
+                EntityDeleteEvent.newBuilder().setDeletedEntity(buildEntity("value-2")))
+            .build();
+
+    publisher.publish(buildKey("API"), updateValue);
+    flushStarted.await();
+    publisher.publish(buildKey("API"), deleteValue);
+
+    assertEquals(List.of(updateValue, deleteValue), publishedValues);
+    publisher.close();
+  }
+
+  @Test
+  void publishesUpdatesOfEntityTypesWithoutWindowRightAway() {
+    CoalescingEntityChangeEventPublisher publisher = buildPublisher(Duration.ofHours(1));
+    EntityChangeEventValue updateValue =
+        buildUpdateValue(buildEntity("value-1"), buildEntity("value-2"), 1);
+
+    publisher.publish(buildKey("SERVICE"), updateValue);
+
+    verify(downstreamPublisher).publish(buildKey("SERVICE"), updateValue);
+    publisher.close();
+  }
+
+  @Test
+  void publishesUpdatesReceivedOnceClosedRightAway() {
+    CoalescingEntityChangeEventPublisher publisher = buildPublisher(Duration.ofHours(1));
+    EntityChangeEventValue updateValue =
+        buildUpdateValue(buildEntity("value-1"), buildEntity("value-2"), 1);
+    publisher.close();
+
+    publisher.publish(buildKey("API"), updateValue);
+
+    verify(downstreamPublisher).publish(buildKey("API"), updateValue);
+  }
+
+  @Test
+  void mergesDeltas() {
+    EntityDelta first =
+        EntityDelta.newBuilder()
+            .putAddedAttributes("added", buildAttributeValue("value-1"))
+            .putChangedAttributes("changed", buildAttributeValue("value-1"))
+            .addRemovedAttributeKeys("removed")
+            .build();
+    EntityDelta second =
+        EntityDelta.newBuilder()
+            .putChangedAttributes("added", buildAttributeValue("value-2"))
+            .putAddedAttributes("removed", buildAttributeValue("value-2"))
+            .addRemovedAttributeKeys("changed")
+            .build();
+
+    EntityDelta merged =
+        CoalescingEntityChangeEventPublisher.merge(buildDeltaValue(first), buildDeltaValue(second))
+            .getUpdateEvent()
+            .getLatestEntityDelta();
+
+    assertEquals(Map.of("added", buildAttributeValue("value-2")), merged.getAddedAttributesMap());
+    assertEquals(
+        Map.of("removed", buildAttributeValue("value-2")), merged.getChangedAttributesMap());
+    assertEquals(List.of("changed"), merged.getRemovedAttributeKeysList());
+  }
+
+  @Test
+  void returnsPublisherWithoutCoalescingWindows() {
+    assertSame(
+        downstreamPublisher,
+        CoalescingEntityChangeEventPublisher.create(
+            ConfigFactory.parseMap(
+                Map.of("entity.service.config.change.events.coalescing.default.window", "0s")),
+            downstreamPublisher));
+  }
+
+  private CoalescingEntityChangeEventPublisher buildPublisher(Duration apiWindow) {
+    return new CoalescingEntityChangeEventPublisher(
+        downstreamPublisher,
+        Duration.ZERO,
+        Map.of("API", apiWindow),
+        Executors.newSingleThreadScheduledExecutor());
+  }
+
+  private static EntityChangeEventKey buildKey(String entityType) {
+    return EntityChangeEventKey.newBuilder()
+        .setTenantId("tenant-1")
+        .setEntityType(entityType)
+        .setEntityId("entity-1")
+        .build();
+  }
+
+  private static EntityChangeEventValue buildUpdateValue(
+      Entity previousEntity, Entity latestEntity, long eventTimeMillis) {
+    return EntityChangeEventValue.newBuilder()
+        .setUpdateEvent(
+            EntityUpdateEvent.newBuilder()
+                .setPreviousEntity(previousEntity)
+                .setLatestEntity(latestEntity))
+        .setEventTimeMillis(eventTimeMillis)
+        .build();
+  }
+
+  private static EntityChangeEventValue buildDeltaValue(EntityDelta delta) {
+    return EntityChangeEventValue.newBuilder()
+        .setUpdateEvent(EntityUpdateEvent.newBuilder().setLatestEntityDelta(delta))
+        .build();
+  }
+
+  private static Entity buildEntity(String attributeValue) {
+    return Entity.newBuilder()
+        .setTenantId("tenant-1")
+        .setEntityType("API")
+        .setEntityId("entity-1")
+        .putAttributes("attribute", buildAttributeValue(attributeValue))
+        .build();
+  }
+
+  private static AttributeValue buildAttributeValue(String value) {
+    return AttributeValue.newBuilder().setValue(Value.newBuilder().setString(value)).build();
+  }
+}
@@ -1,6 +1,8 @@
 package org.hypertrace.entity.service.change.event.impl;
 
 import static org.hypertrace.entity.attribute.translator.EntityAttributeMapping.ENTITY_ATTRIBUTE_DOC_PREFIX;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.inOrder;
@@ -19,6 +21,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -26,10 +29,12 @@ import org.hypertrace.core.eventstore.EventProducer;
 import org.hypertrace.core.grpcutils.context.RequestContext;
 import org.hypertrace.entity.attribute.translator.AttributeMetadataIdentifier;
 import org.hypertrace.entity.attribute.translator.EntityAttributeMapping;
+import org.hypertrace.entity.change.event.util.EntityUpdateEventDecoder;
 import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
 import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
 import org.hypertrace.entity.change.event.v1.EntityCreateEvent;
 import org.hypertrace.entity.change.event.v1.EntityDeleteEvent;
+import org.hypertrace.entity.change.event.v1.EntityDelta;
 import org.hypertrace.entity.change.event.v1.EntityUpdateEvent;
 import org.hypertrace.entity.data.service.v1.AttributeValue;
 import org.hypertrace.entity.data.service.v1.Entity;
@@ -38,6 +43,7 @@ import org.hypertrace.entity.service.change.event.util.KeyUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -165,7 +171,7 @@ class EntityChangeEventGeneratorImplTest {
 
   @Test
   void sendChangeNotification_withNewAddedAttributes() {
-    when(this.entityAttributeMapping.getAttributeMetadataByAttributeId(
+    when(this.entityAttributeMapping.resolveAttributeMetadataByAttributeId(
             any(), eq(TEST_ENTITY_TYPE + ".skip_attribute")))
         .thenReturn(
             Optional.of(
@@ -209,7 +215,7 @@ class EntityChangeEventGeneratorImplTest {
 
   @Test
   void sendChangeNotification_withDeletedAttributes() {
-    when(this.entityAttributeMapping.getAttributeMetadataByAttributeId(
+    when(this.entityAttributeMapping.resolveAttributeMetadataByAttributeId(
             any(), eq(TEST_ENTITY_TYPE + ".skip_attribute")))
         .thenReturn(
             Optional.of(
@@ -247,13 +253,13 @@ class EntityChangeEventGeneratorImplTest {
 
   @Test
   void sendChangeNotification_withOnlySkipAttributes() {
-    when(this.entityAttributeMapping.getAttributeMetadataByAttributeId(
+    when(this.entityAttributeMapping.resolveAttributeMetadataByAttributeId(
             any(), eq(TEST_ENTITY_TYPE + ".skip_attribute")))
         .thenReturn(
             Optional.of(
                 new AttributeMetadataIdentifier(
                     TEST_ENTITY_TYPE, ENTITY_ATTRIBUTE_DOC_PREFIX + "skip_attribute")));
-    when(this.entityAttributeMapping.getAttributeMetadataByAttributeId(
+    when(this.entityAttributeMapping.resolveAttributeMetadataByAttributeId(
             any(), eq(TEST_ENTITY_TYPE + ".skip_attribute_1")))
         .thenReturn(
             Optional.of(
@@ -361,6 +367,64 @@ class EntityChangeEventGeneratorImplTest {
                 .build());
   }
 
+  @Test
+  void sendChangeNotification_withDeltaUpdateEvents() {
+    Config config =
+        ConfigFactory.parseMap(
+            Map.of(
+                "entity.service.change.skip.attributes",
+                List.of(),
+                "entity.service.config.change.events.delta.update.events",
+                true));
+    changeEventGenerator =
+        new EntityChangeEventGeneratorImpl(
+            config, eventProducer, entityAttributeMapping, mockClock);
+    Entity prevEntity =
+        createEntities(
+                1,
+                Map.of(
+                    "removed_key",
+                    AttributeValue.newBuilder()
+                        .setValue(Value.newBuilder().setString("value"))
+                        .build(),
+                    "changed_key",
+                    AttributeValue.newBuilder()
+                        .setValue(Value.newBuilder().setString("value"))
+                        .build(),
+                    "unchanged_key",
+                    AttributeValue.newBuilder()
+                        .setValue(Value.newBuilder().setString("value"))
+                        .build()))
+            .get(0);
+    Entity updatedEntity =
+        prevEntity.toBuilder()
+            .removeAttributes("removed_key")
+            .putAttributes(
+                "changed_key",
+                AttributeValue.newBuilder()
+                    .setValue(Value.newBuilder().setString("value1"))
+                    .build())
+            .putAttributes(
+                "added_key",
+                AttributeValue.newBuilder().setValue(Value.newBuilder().setLong(1)).build())
+            .build();
+
+    changeEventGenerator.sendChangeNotification(
+        requestContext, List.of(prevEntity), List.of(updatedEntity));
+
+    ArgumentCaptor<EntityChangeEventValue> valueCaptor =
+        ArgumentCaptor.forClass(EntityChangeEventValue.class);
+    verify(eventProducer).send(eq(KeyUtil.getKey(updatedEntity)), valueCaptor.capture());
+    EntityUpdateEvent updateEvent = valueCaptor.getValue().getUpdateEvent();
+    EntityDelta delta = updateEvent.getLatestEntityDelta();
+    assertFalse(updateEvent.hasPreviousEntity());
+    assertFalse(updateEvent.hasLatestEntity());
+    assertEquals(Set.of("added_key"), delta.getAddedAttributesMap().keySet());
+    assertEquals(Set.of("changed_key"), delta.getChangedAttributesMap().keySet());
+    assertEquals(List.of("removed_key"), delta.getRemovedAttributeKeysList());
+    assertEquals(updatedEntity, EntityUpdateEventDecoder.getLatestEntity(updateEvent, prevEntity));
+  }
+
   private List<Entity> createEntities(int count) {
     return createEntities(count, new HashMap<>());
   }
@@ -0,0 +1,129 @@
+package org.hypertrace.entity.service.change.event.impl;
+
+import static org.hypertrace.entity.service.change.event.impl.ChangeEventTestUtils.buildKey;
+import static org.hypertrace.entity.service.change.event.impl.ChangeEventTestUtils.buildValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.hypertrace.core.eventstore.EventProducer;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
+import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutboxEntityChangeEventPublisherTest {
+
+  @TempDir Path directory;
+
+  @Test
+  void sendsLoggedEventsInOrderAndDeletesSentSegments() throws IOException {
+    List<Long> sentEventTimes = Collections.synchronizedList(new ArrayList<>());
+    EventProducer<EntityChangeEventKey, EntityChangeEventValue> eventProducer =
+        buildEventProducer(sentEventTimes);
+    // Small segments, so that the events span several segments
+    OutboxEntityChangeEventPublisher publisher = buildPublisher(eventProducer);
+
+    List<Long> expectedEventTimes = new ArrayList<>();
+    for (long eventTime = 0; eventTime < 100; eventTime++) {
+      publisher.publish(buildKey("entity-" + eventTime % 10), buildValue(eventTime));
+      expectedEventTimes.add(eventTime);
+    }
+    publisher.close();
+
+    assertEquals(expectedEventTimes, sentEventTimes);
+    assertEquals(1, listSegmentFiles().size());
+  }
+
+  @Test
+  void sendsUnsentEventsAfterRestart() throws IOException {
+    @SuppressWarnings("unchecked")
+    EventProducer<EntityChangeEventKey, EntityChangeEventValue> failingEventProducer =
+        mock(EventProducer.class);
+    doThrow(new RuntimeException("unavailable")).when(failingEventProducer).send(any(), any());
+    OutboxEntityChangeEventPublisher publisher = buildPublisher(failingEventProducer);
+    for (long eventTime = 0; eventTime < 10; eventTime++) {
+      publisher.publish(buildKey("entity-1"), buildValue(eventTime));
+    }
+    publisher.close();
+
+    List<Long> sentEventTimes = Collections.synchronizedList(new ArrayList<>());
+    OutboxEntityChangeEventPublisher restartedPublisher =
+        buildPublisher(buildEventProducer(sentEventTimes));
+    restartedPublisher.publish(buildKey("entity-1"), buildValue(10));
+    restartedPublisher.close();
+
+    assertEquals(List.of(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L), sentEventTimes);
+  }
+
+  @Test
+  void sendsEventsAgainAfterRestartIfProducerFailsToFlush() throws IOException {
+    List<Long> unflushedEventTimes = Collections.synchronizedList(new ArrayList<>());
+    EventProducer<EntityChangeEventKey, EntityChangeEventValue> unflushedEventProducer =
+        buildEventProducer(unflushedEventTimes);
+    doThrow(new RuntimeException("unavailable")).when(unflushedEventProducer).flush();
+    OutboxEntityChangeEventPublisher publisher = buildPublisher(unflushedEventProducer);
+    for (long eventTime = 0; eventTime < 3; eventTime++) {
+      publisher.publish(buildKey("entity-1"), buildValue(eventTime));
+    }
+    publisher.close();
+
+    List<Long> sentEventTimes = Collections.synchronizedList(new ArrayList<>());
+    OutboxEntityChangeEventPublisher restartedPublisher =
+        buildPublisher(buildEventProducer(sentEventTimes));
+    restartedPublisher.close();
+
+    // The events handed to the producer are not checkpointed until flushed
+    assertFalse(unflushedEventTimes.isEmpty());
+    assertEquals(List.of(0L, 1L, 2L), sentEventTimes);
+  }
+
+  private OutboxEntityChangeEventPublisher buildPublisher(
+      EventProducer<EntityChangeEventKey, EntityChangeEventValue> eventProducer)
+      throws IOException {
+    return new OutboxEntityChangeEventPublisher(
+        eventProducer,
+        directory,
+        256,
+        16,
+        Duration.ofMillis(10),
+        Duration.ofMillis(10),
+        Duration.ofMillis(500));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static EventProducer<EntityChangeEventKey, EntityChangeEventValue> buildEventProducer(
+      List<Long> sentEventTimes) {
+    EventProducer<EntityChangeEventKey, EntityChangeEventValue> eventProducer =
+        mock(EventProducer.class);
+    doAnswer(
+            invocation -> {
+              EntityChangeEventValue value = invocation.getArgument(1);
+              sentEventTimes.add(value.getEventTimeMillis());
+              return null;
+            })
+        .when(eventProducer)
+        .send(any(), any());
+    return eventProducer;
+  }
+
+  private List<Path> listSegmentFiles() throws IOException {
+    try (Stream<Path> paths = Files.list(directory)) {
+      return paths
+          .filter(path -> path.getFileName().toString().endsWith(".log"))
+          .collect(Collectors.toList());
+    }
+  }
+}
@@ -1,20 +1,27 @@
 package org.hypertrace.entity.data.service.client;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import javax.annotation.Nonnull;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.entity.change.event.util.EntityUpdateEventDecoder;
 import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
 import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
+import org.hypertrace.entity.change.event.v1.EntityUpdateEvent;
 import org.hypertrace.entity.data.service.client.exception.NotFoundException;
 import org.hypertrace.entity.data.service.v1.ByIdRequest;
 import org.hypertrace.entity.data.service.v1.ByTypeAndIdentifyingAttributes;
@@ -25,6 +32,7 @@ import org.hypertrace.entity.data.service.v1.EntityRelationship;
 import org.hypertrace.entity.data.service.v1.EntityRelationships;
 import org.hypertrace.entity.data.service.v1.Query;
 import org.hypertrace.entity.service.client.config.EntityServiceClientCacheConfig;
+import org.hypertrace.entity.service.util.DigestingUUIDGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,9 +40,14 @@ public class EdsCacheClient implements EdsClient {
 
   private static final Logger LOG = LoggerFactory.getLogger(EdsCacheClient.class);
   private final EntityDataServiceClient client;
+  private final boolean entityIdsLocalResolution;
   private LoadingCache<EdsCacheKey, EnrichedEntity> enrichedEntityCache;
   private LoadingCache<EdsCacheKey, Entity> entityCache;
   private LoadingCache<EdsTypeAndIdAttributesCacheKey, String> entityIdsCache;
+  // The keys found missing, so that looking them up again does not call the service until expiry
+  private Cache<EdsCacheKey, Boolean> missingEnrichedEntityKeys;
+  private Cache<EdsCacheKey, Boolean> missingEntityKeys;
+  private Cache<EdsTypeAndIdAttributesCacheKey, Boolean> missingEntityIdsKeys;
 
   public EdsCacheClient(
       EntityDataServiceClient client, EntityServiceClientCacheConfig cacheConfig) {
@@ -46,6 +59,7 @@ public class EdsCacheClient implements EdsClient {
       EntityServiceClientCacheConfig cacheConfig,
       Executor cacheLoaderExecutor) {
     this.client = client;
+    this.entityIdsLocalResolution = cacheConfig.isEntityIdsLocalResolution();
     initCache(cacheConfig, cacheLoaderExecutor);
   }
 
@@ -118,6 +132,13 @@ public class EdsCacheClient implements EdsClient {
                       }
                     },
                     executor));
+    this.missingEnrichedEntityKeys =
+        buildMissingKeysCache(cacheConfig, cacheConfig.getEnrichedEntityMaxCacheSize());
+    this.missingEntityKeys =
+        buildMissingKeysCache(cacheConfig, cacheConfig.getEntityMaxCacheSize());
+    this.missingEntityIdsKeys =
+        buildMissingKeysCache(cacheConfig, cacheConfig.getEntityIdsMaxCacheSize());
+
     PlatformMetricsRegistry.registerCache(
         this.getClass().getName() + ".enrichedEntityCache",
         enrichedEntityCache,
@@ -128,9 +149,22 @@ public class EdsCacheClient implements EdsClient {
         this.getClass().getName() + ".entityIdsCache", entityIdsCache, Collections.emptyMap());
   }
 
+  private static <K> Cache<K, Boolean> buildMissingKeysCache(
+      EntityServiceClientCacheConfig cacheConfig, long maxCacheSize) {
+    // A zero expiry retains no entries, which disables the negative caching
+    return CacheBuilder.newBuilder()
+        .expireAfterWrite(cacheConfig.getNegativeCacheExpiryMs(), TimeUnit.MILLISECONDS)
+        .maximumSize(maxCacheSize)
+        .build();
+  }
+
   @Override
   public Entity upsert(Entity entity) {
-    return client.upsert(entity);
+    Entity upsertedEntity = client.upsert(entity);
+    if (upsertedEntity != null) {
+      forgetMissingKeys(upsertedEntity.getTenantId(), upsertedEntity);
+    }
+    return upsertedEntity;
   }
 
   @Override
@@ -141,10 +175,26 @@ public class EdsCacheClient implements EdsClient {
   @Override
   public Entity getByTypeAndIdentifyingAttributes(
       String tenantId, ByTypeAndIdentifyingAttributes byIdentifyingAttributes) {
+    if (entityIdsLocalResolution) {
+      // The service derives the id the same way, and looks the entity up by its id and type
+      String entityId =
+          DigestingUUIDGenerator.generateUUID(
+              byIdentifyingAttributes.getIdentifyingAttributesMap(),
+              tenantId,
+              byIdentifyingAttributes.getEntityType());
+      return getById(
+          tenantId,
+          ByIdRequest.newBuilder()
+              .setEntityType(byIdentifyingAttributes.getEntityType())
+              .setEntityId(entityId)
+              .build());
+    }
+
     EdsTypeAndIdAttributesCacheKey key =
         new EdsTypeAndIdAttributesCacheKey(tenantId, byIdentifyingAttributes);
     try {
-      return getById(tenantId, entityIdsCache.get(key));
+      String entityId = get(entityIdsCache, missingEntityIdsKeys, key);
+      return entityId == null ? null : getById(tenantId, entityId);
     } catch (ExecutionException e) {
       LOG.debug(
           "Failed to fetch entity of tenantId: {}, entityId: {}",
@@ -168,7 +218,7 @@ public class EdsCacheClient implements EdsClient {
   public Entity getById(String tenantId, String entityId) {
     EdsCacheKey key = new EdsCacheKey(tenantId, entityId);
     try {
-      return entityCache.get(key);
+      return get(entityCache, missingEntityKeys, key);
     } catch (ExecutionException e) {
       LOG.debug("Failed to fetch entity of tenantId: {}, entityId: {}", key.tenantId, key.entityId);
       return null;
@@ -180,13 +230,22 @@ public class EdsCacheClient implements EdsClient {
     EdsCacheKey key =
         new EdsCacheKey(tenantId, byIdRequest.getEntityId(), byIdRequest.getEntityType());
     try {
-      return entityCache.get(key);
+      return get(entityCache, missingEntityKeys, key);
     } catch (ExecutionException e) {
       LOG.debug("Failed to fetch entity of tenantId: {}, entityId: {}", key.tenantId, key.entityId);
       return null;
     }
   }
 
+  /**
+   * Gets the entities with the given ids from the cache, and the ones not cached with a single
+   * call. The ids of the entities not found are remembered as missing.
+   */
+  @Override
+  public Map<String, Entity> getByIds(String tenantId, Collection<String> entityIds) {
+    return getAll(entityCache, missingEntityKeys, tenantId, entityIds, client::getByIds);
+  }
+
   @Override
   public List<Entity> query(String tenantId, Query query) {
     return client.query(tenantId, query);
@@ -202,7 +261,7 @@ public class EdsCacheClient implements EdsClient {
   public EnrichedEntity getEnrichedEntityById(String tenantId, String entityId) {
     EdsCacheKey edsCacheKey = new EdsCacheKey(tenantId, entityId);
     try {
-      return enrichedEntityCache.get(edsCacheKey);
+      return get(enrichedEntityCache, missingEnrichedEntityKeys, edsCacheKey);
     } catch (ExecutionException e) {
       LOG.debug(
           "Failed to fetch enriched entity of tenantId: {}, entityId: {}",
@@ -212,6 +271,21 @@ public class EdsCacheClient implements EdsClient {
     }
   }
 
+  /**
+   * Gets the enriched entities with the given ids from the cache, and the ones not cached with a
+   * single call. The ids of the enriched entities not found are remembered as missing.
+   */
+  @Override
+  public Map<String, EnrichedEntity> getEnrichedEntitiesByIds(
+      String tenantId, Collection<String> entityIds) {
+    return getAll(
+        enrichedEntityCache,
+        missingEnrichedEntityKeys,
+        tenantId,
+        entityIds,
+        client::getEnrichedEntitiesByIds);
+  }
+
   @Override
   public EnrichedEntity upsertEnrichedEntity(EnrichedEntity enrichedEntity) {
     return client.upsertEnrichedEntity(enrichedEntity);
@@ -233,11 +307,13 @@ public class EdsCacheClient implements EdsClient {
 
     switch (entityChangeEventValue.getEventCase()) {
       case CREATE_EVENT:
-        // ignore create events, don't populate caches if not necessary
+        // don't populate caches if not necessary, only forget the entity was missing
+        forgetMissingKeys(
+            entityChangeEventKey.getTenantId(),
+            entityChangeEventValue.getCreateEvent().getCreatedEntity());
         break;
       case UPDATE_EVENT:
-        updateCacheValues(
-            entityChangeEventKey, entityChangeEventValue.getUpdateEvent().getLatestEntity());
+        updateCacheValues(entityChangeEventKey, entityChangeEventValue.getUpdateEvent());
         break;
       case DELETE_EVENT:
         invalidateCacheEntries(
@@ -250,6 +326,97 @@ public class EdsCacheClient implements EdsClient {
     }
   }
 
+  /**
+   * @return the cached values of the given entity ids, along with the ones loaded at once for the
+   *     ids which are neither cached nor known to be missing. The ids still not found by the loader
+   *     are remembered as missing
+   */
+  private static <V> Map<String, V> getAll(
+      LoadingCache<EdsCacheKey, V> cache,
+      Cache<EdsCacheKey, Boolean> missingKeys,
+      String tenantId,
+      Collection<String> entityIds,
+      BiFunction<String, Collection<String>, Map<String, V>> loader) {
+    Map<String, V> valuesById = new HashMap<>();
+    Set<String> uncachedEntityIds = new LinkedHashSet<>();
+    for (String entityId : entityIds) {
+      EdsCacheKey key = new EdsCacheKey(tenantId, entityId);
+      V value = cache.getIfPresent(key);
+      if (value != null) {
+        valuesById.put(entityId, value);
+      } else if (missingKeys.getIfPresent(key) == null) {
+        uncachedEntityIds.add(entityId);
+      }
+    }
+    if (uncachedEntityIds.isEmpty()) {
+      return valuesById;
+    }
+
+    loader
+        .apply(tenantId, uncachedEntityIds)
+        .forEach(
+            (entityId, value) -> {
+              cache.put(new EdsCacheKey(tenantId, entityId), value);
+              valuesById.put(entityId, value);
+            });
+    for (String entityId : uncachedEntityIds) {
+      if (!valuesById.containsKey(entityId)) {
+        missingKeys.put(new EdsCacheKey(tenantId, entityId), Boolean.TRUE);
+      }
+    }
+    return valuesById;
+  }
+
+  /**
+   * @return the value of the key in the cache, loading it if need be, or null if the key is known
+   *     to be missing
+   */
+  private static <K, V> V get(LoadingCache<K, V> cache, Cache<K, Boolean> missingKeys, K key)
+      throws ExecutionException {
+    if (missingKeys.getIfPresent(key) != null) {
+      return null;
+    }
+    try {
+      return cache.get(key);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof NotFoundException) {
+        missingKeys.put(key, Boolean.TRUE);
+      }
+      throw e;
+    }
+  }
+
+  private void forgetMissingKeys(String tenantId, Entity entity) {
+    EdsCacheKey key = new EdsCacheKey(tenantId, entity.getEntityId());
+    missingEntityKeys.invalidate(key);
+    missingEntityKeys.invalidate(
+        new EdsCacheKey(tenantId, entity.getEntityId(), entity.getEntityType()));
+    missingEnrichedEntityKeys.invalidate(key);
+    missingEntityIdsKeys.invalidate(getIdsCacheKey(tenantId, entity));
+  }
+
+  private void updateCacheValues(
+      EntityChangeEventKey entityChangeEventKey, EntityUpdateEvent updateEvent) {
+    if (!EntityUpdateEventDecoder.isDelta(updateEvent)) {
+      forgetMissingKeys(entityChangeEventKey.getTenantId(), updateEvent.getLatestEntity());
+      updateCacheValues(entityChangeEventKey, updateEvent.getLatestEntity());
+      return;
+    }
+
+    // Compact events are partial updates, which leave out some of the changes of the entity, so
+    // the cached entities are fetched again rather than updated. Their ids are carried in full.
+    Entity identifiedEntity =
+        EntityUpdateEventDecoder.applyDelta(
+            Entity.getDefaultInstance(), updateEvent.getLatestEntityDelta());
+    forgetMissingKeys(entityChangeEventKey.getTenantId(), identifiedEntity);
+    getEntityCacheKeys(entityChangeEventKey).forEach(entityCache::invalidate);
+    EdsTypeAndIdAttributesCacheKey idsCacheKey =
+        getIdsCacheKey(entityChangeEventKey, identifiedEntity);
+    if (entityIdsCache.asMap().containsKey(idsCacheKey)) {
+      entityIdsCache.put(idsCacheKey, identifiedEntity.getEntityId());
+    }
+  }
+
   private void updateCacheValues(EntityChangeEventKey entityChangeEventKey, Entity entity) {
     getEntityCacheKeys(entityChangeEventKey)
         .forEach(
@@ -291,8 +458,12 @@ public class EdsCacheClient implements EdsClient {
 
   private EdsTypeAndIdAttributesCacheKey getIdsCacheKey(
       EntityChangeEventKey entityChangeEventKey, Entity entity) {
+    return getIdsCacheKey(entityChangeEventKey.getTenantId(), entity);
+  }
+
+  private EdsTypeAndIdAttributesCacheKey getIdsCacheKey(String tenantId, Entity entity) {
     return new EdsTypeAndIdAttributesCacheKey(
-        entityChangeEventKey.getTenantId(),
+        tenantId,
         ByTypeAndIdentifyingAttributes.newBuilder()
             .setEntityType(entity.getEntityType())
             .putAllIdentifyingAttributes(entity.getIdentifyingAttributesMap())
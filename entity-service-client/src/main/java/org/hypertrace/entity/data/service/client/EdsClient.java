@@ -1,9 +1,14 @@
 package org.hypertrace.entity.data.service.client;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.hypertrace.entity.data.service.v1.ByIdRequest;
 import org.hypertrace.entity.data.service.v1.ByTypeAndIdentifyingAttributes;
 import org.hypertrace.entity.data.service.v1.EnrichedEntities;
@@ -31,6 +36,21 @@ public interface EdsClient {
 
   Entity getById(String tenantId, ByIdRequest byIdRequest);
 
+  /**
+   * Gets the entities with the given ids with a single query.
+   *
+   * @return the entities found, by their ids
+   */
+  default Map<String, Entity> getByIds(String tenantId, Collection<String> entityIds) {
+    if (entityIds.isEmpty()) {
+      // A query without entity ids would match all the entities
+      return Collections.emptyMap();
+    }
+    return this.query(tenantId, Query.newBuilder().addAllEntityId(entityIds).build()).stream()
+        .collect(
+            Collectors.toMap(Entity::getEntityId, Function.identity(), (first, second) -> second));
+  }
+
   List<Entity> query(String tenantId, Query query);
 
   /**
@@ -46,6 +66,23 @@ public interface EdsClient {
 
   EnrichedEntity getEnrichedEntityById(String tenantId, String entityId);
 
+  /**
+   * Gets the enriched entities with the given ids, one at a time unless overridden.
+   *
+   * @return the enriched entities found, by their ids
+   */
+  default Map<String, EnrichedEntity> getEnrichedEntitiesByIds(
+      String tenantId, Collection<String> entityIds) {
+    Map<String, EnrichedEntity> enrichedEntitiesById = new HashMap<>();
+    for (String entityId : entityIds) {
+      EnrichedEntity enrichedEntity = this.getEnrichedEntityById(tenantId, entityId);
+      if (enrichedEntity != null) {
+        enrichedEntitiesById.put(entityId, enrichedEntity);
+      }
+    }
+    return enrichedEntitiesById;
+  }
+
   EnrichedEntity upsertEnrichedEntity(EnrichedEntity enrichedEntity);
 
   void upsertEnrichedEntities(String tenantId, EnrichedEntities enrichedEntities);
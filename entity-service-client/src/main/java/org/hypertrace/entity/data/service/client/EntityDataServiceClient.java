@@ -4,18 +4,23 @@ import static org.hypertrace.entity.service.constants.EntityConstants.attributeM
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Streams;
 import io.grpc.Channel;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.hypertrace.core.grpcutils.client.GrpcClientRequestContextUtil;
 import org.hypertrace.core.grpcutils.client.RequestContextClientCallCredsProviderFactory;
 import org.hypertrace.entity.data.service.v1.AttributeFilter;
 import org.hypertrace.entity.data.service.v1.AttributeValue;
 import org.hypertrace.entity.data.service.v1.ByIdRequest;
+import org.hypertrace.entity.data.service.v1.ByIdsRequest;
 import org.hypertrace.entity.data.service.v1.ByTypeAndIdentifyingAttributes;
 import org.hypertrace.entity.data.service.v1.EnrichedEntities;
 import org.hypertrace.entity.data.service.v1.EnrichedEntity;
@@ -128,6 +133,22 @@ public class EntityDataServiceClient implements EdsClient {
     return entity.equals(Entity.getDefaultInstance()) ? null : entity;
   }
 
+  /** Gets the entities with the given ids with a single call, fetched in bulk by the service. */
+  @Override
+  public Map<String, Entity> getByIds(String tenantId, Collection<String> entityIds) {
+    if (entityIds.isEmpty()) {
+      return Map.of();
+    }
+    ByIdsRequest request = buildByIdsRequest(entityIds);
+    return execute(
+        tenantId,
+        () ->
+            Streams.stream(blockingStub.getByIds(request))
+                .collect(
+                    Collectors.toMap(
+                        Entity::getEntityId, Function.identity(), (first, second) -> second)));
+  }
+
   @VisibleForTesting
   public List<Entity> query(String tenantId, Query query) {
     return execute(tenantId, () -> Lists.newArrayList(blockingStub.query(query)));
@@ -214,4 +235,29 @@ public class EntityDataServiceClient implements EdsClient {
     // Handle this here, so that callers can just do a null check
     return entity.equals(EnrichedEntity.getDefaultInstance()) ? null : entity;
   }
+
+  /** Gets the enriched entities with the given ids with a single call. */
+  @Override
+  public Map<String, EnrichedEntity> getEnrichedEntitiesByIds(
+      String tenantId, Collection<String> entityIds) {
+    if (entityIds.isEmpty()) {
+      return Map.of();
+    }
+    ByIdsRequest request = buildByIdsRequest(entityIds);
+    return execute(
+        tenantId,
+        () ->
+            Streams.stream(blockingStub.getEnrichedEntitiesByIds(request))
+                .collect(
+                    Collectors.toMap(
+                        EnrichedEntity::getEntityId,
+                        Function.identity(),
+                        (first, second) -> second)));
+  }
+
+  private static ByIdsRequest buildByIdsRequest(Collection<String> entityIds) {
+    ByIdsRequest.Builder builder = ByIdsRequest.newBuilder();
+    entityIds.forEach(entityId -> builder.addRequestsBuilder().setEntityId(entityId));
+    return builder.build();
+  }
 }
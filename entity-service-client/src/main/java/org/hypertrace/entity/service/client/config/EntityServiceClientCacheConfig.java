@@ -6,13 +6,21 @@ import com.typesafe.config.Config;
  * Config class for cache config for different entity related caches at EntityService clients e.g
  * entity.service.config = { cache = { entity.cache.expiry.ms = 30000 entity.max.cache.size = 1000
  * enriched.entity.cache.expiry.ms = 40000 enriched.entity.max.cache.size = 2000
- * entity.ids.cache.expiry.ms = 50000 entity.ids.max.cache.size = 3000 } }
+ * entity.ids.cache.expiry.ms = 50000 entity.ids.max.cache.size = 3000
+ * negative.cache.expiry.ms = 10000 entity.ids.local.resolution = true } }
+ *
+ * <p>The negative cache expiry is how long the entities found missing are remembered as such,
+ * which is disabled by default. With the local resolution of entity ids, the ids of the entities
+ * looked up by their identifying attributes are derived by the client like the service does,
+ * instead of being looked up in the entity ids cache.
  */
 public class EntityServiceClientCacheConfig {
 
   public static long DEFAULT_CACHE_REFRESH_MS = 240000L;
   public static long DEFAULT_CACHE_EXPIRY_MS = 300000L;
   public static long DEFAULT_MAX_CACHE_SIZE = 1000L;
+  public static long DEFAULT_NEGATIVE_CACHE_EXPIRY_MS = 0L;
+  public static boolean DEFAULT_ENTITY_IDS_LOCAL_RESOLUTION = false;
 
   private static final String ENTITY_CACHE_REFRESH_MS = "entity.cache.refresh.ms";
   private static final String ENTITY_CACHE_EXPIRY_MS = "entity.cache.expiry.ms";
@@ -25,6 +33,9 @@ public class EntityServiceClientCacheConfig {
   private static final String ENTITY_IDS_CACHE_REFRESH_MS = "entity.ids.cache.refresh.ms";
   private static final String ENTITY_IDS_CACHE_EXPIRY_MS = "entity.ids.cache.expiry.ms";
   private static final String ENTITY_IDS_MAX_CACHE_SIZE = "entity.ids.max.cache.size";
+  private static final String ENTITY_IDS_LOCAL_RESOLUTION = "entity.ids.local.resolution";
+
+  private static final String NEGATIVE_CACHE_EXPIRY_MS = "negative.cache.expiry.ms";
 
   public static final EntityServiceClientCacheConfig DEFAULT = new EntityServiceClientCacheConfig();
 
@@ -37,6 +48,8 @@ public class EntityServiceClientCacheConfig {
   private final long entityIdsCacheRefreshMs;
   private final long entityIdsCacheExpiryMs;
   private final long entityIdsMaxCacheSize;
+  private final long negativeCacheExpiryMs;
+  private final boolean entityIdsLocalResolution;
 
   public EntityServiceClientCacheConfig(Config clientCacheConfig) {
     entityCacheRefreshMs =
@@ -77,6 +90,15 @@ public class EntityServiceClientCacheConfig {
         clientCacheConfig.hasPath(ENTITY_IDS_MAX_CACHE_SIZE)
             ? clientCacheConfig.getLong(ENTITY_IDS_MAX_CACHE_SIZE)
             : DEFAULT_MAX_CACHE_SIZE;
+
+    negativeCacheExpiryMs =
+        clientCacheConfig.hasPath(NEGATIVE_CACHE_EXPIRY_MS)
+            ? clientCacheConfig.getLong(NEGATIVE_CACHE_EXPIRY_MS)
+            : DEFAULT_NEGATIVE_CACHE_EXPIRY_MS;
+    entityIdsLocalResolution =
+        clientCacheConfig.hasPath(ENTITY_IDS_LOCAL_RESOLUTION)
+            ? clientCacheConfig.getBoolean(ENTITY_IDS_LOCAL_RESOLUTION)
+            : DEFAULT_ENTITY_IDS_LOCAL_RESOLUTION;
   }
 
   public EntityServiceClientCacheConfig() {
@@ -89,6 +111,8 @@ public class EntityServiceClientCacheConfig {
     entityIdsCacheRefreshMs = DEFAULT_CACHE_REFRESH_MS;
     entityIdsCacheExpiryMs = DEFAULT_CACHE_EXPIRY_MS;
     entityIdsMaxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+    negativeCacheExpiryMs = DEFAULT_NEGATIVE_CACHE_EXPIRY_MS;
+    entityIdsLocalResolution = DEFAULT_ENTITY_IDS_LOCAL_RESOLUTION;
   }
 
   public long getEnrichedEntityCacheRefreshMs() {
@@ -126,4 +150,12 @@ public class EntityServiceClientCacheConfig {
   public long getEntityIdsMaxCacheSize() {
     return entityIdsMaxCacheSize;
   }
+
+  public long getNegativeCacheExpiryMs() {
+    return negativeCacheExpiryMs;
+  }
+
+  public boolean isEntityIdsLocalResolution() {
+    return entityIdsLocalResolution;
+  }
 }
@@ -9,12 +9,16 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.typesafe.config.ConfigFactory;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.hypertrace.entity.change.event.v1.EntityChangeEventKey;
 import org.hypertrace.entity.change.event.v1.EntityChangeEventValue;
 import org.hypertrace.entity.change.event.v1.EntityCreateEvent;
 import org.hypertrace.entity.change.event.v1.EntityDeleteEvent;
+import org.hypertrace.entity.change.event.v1.EntityDelta;
 import org.hypertrace.entity.change.event.v1.EntityUpdateEvent;
 import org.hypertrace.entity.data.service.v1.AttributeValue;
 import org.hypertrace.entity.data.service.v1.ByIdRequest;
@@ -23,6 +27,7 @@ import org.hypertrace.entity.data.service.v1.EnrichedEntity;
 import org.hypertrace.entity.data.service.v1.Entity;
 import org.hypertrace.entity.data.service.v1.Value;
 import org.hypertrace.entity.service.client.config.EntityServiceClientCacheConfig;
+import org.hypertrace.entity.service.util.DigestingUUIDGenerator;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -81,6 +86,38 @@ public class EdsCacheClientTest {
     verify(entityDataServiceClient, never()).getById("tenant", "entity-12345");
   }
 
+  @Test
+  void testGetByTypeAndIdentifyingAttributesWithLocalResolution() {
+    String tenantId = "tenant";
+    Entity entity = getEntity(tenantId, "entity-12345");
+    edsCacheClient =
+        new EdsCacheClient(
+            entityDataServiceClient,
+            new EntityServiceClientCacheConfig(
+                ConfigFactory.parseMap(Map.of("entity.ids.local.resolution", true))));
+    when(entityDataServiceClient.getById(anyString(), any(ByIdRequest.class))).thenReturn(entity);
+
+    ByTypeAndIdentifyingAttributes attributes =
+        ByTypeAndIdentifyingAttributes.newBuilder()
+            .setEntityType("API")
+            .putAllIdentifyingAttributes(entity.getIdentifyingAttributesMap())
+            .build();
+
+    assertEquals(entity, edsCacheClient.getByTypeAndIdentifyingAttributes(tenantId, attributes));
+    assertEquals(entity, edsCacheClient.getByTypeAndIdentifyingAttributes(tenantId, attributes));
+
+    verify(entityDataServiceClient, never()).getByTypeAndIdentifyingAttributes(anyString(), any());
+    verify(entityDataServiceClient, times(1))
+        .getById(
+            tenantId,
+            ByIdRequest.newBuilder()
+                .setEntityType("API")
+                .setEntityId(
+                    DigestingUUIDGenerator.generateUUID(
+                        entity.getIdentifyingAttributesMap(), tenantId, "API"))
+                .build());
+  }
+
   @Test
   public void testGetByTypeAndIdentifyingForNull() {
     String tenantId = "tenant";
@@ -268,6 +305,59 @@ public class EdsCacheClientTest {
         .getById(tenantId, ByIdRequest.newBuilder().setEntityId(entityId).build());
   }
 
+  @Test
+  void testUpdateBasedOnDeltaUpdateChangeEvent() {
+    String tenantId = "tenant";
+    String entityId = "entityId";
+
+    Entity originalEntity =
+        getEntity(tenantId, entityId).toBuilder()
+            .putAttributes("status", getStringAttributeValue("active"))
+            .putAttributes("owner", getStringAttributeValue("team-a"))
+            .build();
+    Entity updatedEntity =
+        originalEntity.toBuilder()
+            .putAttributes("status", getStringAttributeValue("inactive"))
+            .removeAttributes("owner")
+            .build();
+    when(entityDataServiceClient.getById(anyString(), any(ByIdRequest.class)))
+        .thenReturn(originalEntity, updatedEntity);
+
+    // seed cache
+    edsCacheClient.getById(tenantId, entityId);
+
+    EntityChangeEventKey key =
+        EntityChangeEventKey.newBuilder()
+            .setTenantId(tenantId)
+            .setEntityType("API")
+            .setEntityId(entityId)
+            .build();
+    EntityChangeEventValue value =
+        EntityChangeEventValue.newBuilder()
+            .setUpdateEvent(
+                EntityUpdateEvent.newBuilder()
+                    .setLatestEntityDelta(
+                        EntityDelta.newBuilder()
+                            .setTenantId(tenantId)
+                            .setEntityId(entityId)
+                            .setEntityType("API")
+                            .setEntityName(originalEntity.getEntityName())
+                            .putAllIdentifyingAttributes(
+                                originalEntity.getIdentifyingAttributesMap())
+                            .putChangedAttributes("status", getStringAttributeValue("inactive"))
+                            .addRemovedAttributeKeys("owner")
+                            .build())
+                    .build())
+            .build();
+
+    // expectation: the cached entity is fetched again, as the delta is only a partial update
+    edsCacheClient.updateBasedOnChangeEvent(key, value);
+    Entity returnedEntity = edsCacheClient.getById(tenantId, entityId);
+    assertEquals(updatedEntity, returnedEntity);
+    verify(entityDataServiceClient, times(2))
+        .getById(tenantId, ByIdRequest.newBuilder().setEntityId(entityId).build());
+  }
+
   @Test
   void testUpdateBasedOnDeleteChangeEvent() {
     String tenantId = "tenant";
@@ -307,6 +397,86 @@ public class EdsCacheClientTest {
         .getById(tenantId, ByIdRequest.newBuilder().setEntityId(entityId).build());
   }
 
+  @Test
+  void testGetByIdForNullWithNegativeCaching() {
+    String tenantId = "tenant";
+    String entityId = "entityId";
+    edsCacheClient = new EdsCacheClient(entityDataServiceClient, buildNegativeCachingConfig());
+    when(entityDataServiceClient.getById(anyString(), any(ByIdRequest.class))).thenReturn(null);
+
+    Assertions.assertNull(edsCacheClient.getById(tenantId, entityId));
+    Assertions.assertNull(edsCacheClient.getById(tenantId, entityId));
+    verify(entityDataServiceClient, times(1))
+        .getById(tenantId, ByIdRequest.newBuilder().setEntityId(entityId).build());
+
+    // a create event makes the entity looked up again
+    edsCacheClient.updateBasedOnChangeEvent(
+        EntityChangeEventKey.newBuilder()
+            .setTenantId(tenantId)
+            .setEntityType("API")
+            .setEntityId(entityId)
+            .build(),
+        EntityChangeEventValue.newBuilder()
+            .setCreateEvent(
+                EntityCreateEvent.newBuilder().setCreatedEntity(getEntity(tenantId, entityId)))
+            .build());
+    when(entityDataServiceClient.getById(anyString(), any(ByIdRequest.class)))
+        .thenReturn(getEntity(tenantId, entityId));
+
+    assertEquals(getEntity(tenantId, entityId), edsCacheClient.getById(tenantId, entityId));
+    verify(entityDataServiceClient, times(2))
+        .getById(tenantId, ByIdRequest.newBuilder().setEntityId(entityId).build());
+  }
+
+  @Test
+  void testGetByIds() {
+    String tenantId = "tenant";
+    edsCacheClient = new EdsCacheClient(entityDataServiceClient, buildNegativeCachingConfig());
+    when(entityDataServiceClient.getById(anyString(), any(ByIdRequest.class)))
+        .thenReturn(getEntity(tenantId, "entity-1"));
+    when(entityDataServiceClient.getByIds(tenantId, Set.of("entity-2", "entity-3")))
+        .thenReturn(Map.of("entity-2", getEntity(tenantId, "entity-2")));
+
+    // seed cache
+    edsCacheClient.getById(tenantId, "entity-1");
+
+    assertEquals(
+        Map.of(
+            "entity-1", getEntity(tenantId, "entity-1"),
+            "entity-2", getEntity(tenantId, "entity-2")),
+        edsCacheClient.getByIds(tenantId, List.of("entity-1", "entity-2", "entity-3")));
+    // the loaded entities are cached, and the missing ones remembered
+    assertEquals(
+        Map.of(
+            "entity-1", getEntity(tenantId, "entity-1"),
+            "entity-2", getEntity(tenantId, "entity-2")),
+        edsCacheClient.getByIds(tenantId, List.of("entity-1", "entity-2", "entity-3")));
+    verify(entityDataServiceClient, times(1)).getByIds(anyString(), any());
+  }
+
+  @Test
+  void testGetEnrichedEntitiesByIds() {
+    String tenantId = "tenant";
+    EnrichedEntity enrichedEntity =
+        EnrichedEntity.newBuilder().setEntityId("enriched-1").setEntityType("API").build();
+    when(entityDataServiceClient.getEnrichedEntitiesByIds(
+            tenantId, Set.of("enriched-1", "enriched-2")))
+        .thenReturn(Map.of("enriched-1", enrichedEntity));
+
+    assertEquals(
+        Map.of("enriched-1", enrichedEntity),
+        edsCacheClient.getEnrichedEntitiesByIds(tenantId, List.of("enriched-1", "enriched-2")));
+    // the loaded enriched entity is cached for the single lookups too
+    assertEquals(enrichedEntity, edsCacheClient.getEnrichedEntityById(tenantId, "enriched-1"));
+    verify(entityDataServiceClient, times(1)).getEnrichedEntitiesByIds(anyString(), any());
+    verify(entityDataServiceClient, never()).getEnrichedEntityById(anyString(), anyString());
+  }
+
+  private EntityServiceClientCacheConfig buildNegativeCachingConfig() {
+    return new EntityServiceClientCacheConfig(
+        ConfigFactory.parseMap(Map.of("negative.cache.expiry.ms", 60000)));
+  }
+
   private Entity getEntity(String tenantId, String entityId) {
     return getEntity(tenantId, entityId, "GET /products");
   }
@@ -330,4 +500,8 @@ public class EdsCacheClientTest {
         .putAllIdentifyingAttributes(identifyingAttributesMap)
         .build();
   }
+
+  private AttributeValue getStringAttributeValue(String value) {
+    return AttributeValue.newBuilder().setValue(Value.newBuilder().setString(value)).build();
+  }
 }
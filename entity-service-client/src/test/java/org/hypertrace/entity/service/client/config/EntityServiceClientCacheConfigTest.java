@@ -24,6 +24,7 @@ public class EntityServiceClientCacheConfigTest {
     cacheConfigMap.put("enriched.entity.max.cache.size", 20000);
     cacheConfigMap.put("entity.ids.cache.expiry.ms", 7000);
     cacheConfigMap.put("entity.ids.max.cache.size", 30000);
+    cacheConfigMap.put("negative.cache.expiry.ms", 8000);
     map.put("cache", cacheConfigMap);
 
     entityServiceClientConfigMap.put("entity.service.config", map);
@@ -37,6 +38,7 @@ public class EntityServiceClientCacheConfigTest {
     Assertions.assertEquals(20000, cacheConfig.getEnrichedEntityMaxCacheSize());
     Assertions.assertEquals(7000, cacheConfig.getEntityIdsCacheExpiryMs());
     Assertions.assertEquals(30000, cacheConfig.getEntityIdsMaxCacheSize());
+    Assertions.assertEquals(8000, cacheConfig.getNegativeCacheExpiryMs());
   }
 
   @Test
@@ -56,5 +58,7 @@ public class EntityServiceClientCacheConfigTest {
     Assertions.assertEquals(1000, cacheConfig.getEnrichedEntityMaxCacheSize());
     Assertions.assertEquals(300000L, cacheConfig.getEntityIdsCacheExpiryMs());
     Assertions.assertEquals(1000, cacheConfig.getEntityIdsMaxCacheSize());
+    Assertions.assertEquals(0, cacheConfig.getNegativeCacheExpiryMs());
+    Assertions.assertFalse(cacheConfig.isEntityIdsLocalResolution());
   }
 }
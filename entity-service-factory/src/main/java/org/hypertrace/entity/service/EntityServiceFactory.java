@@ -1,9 +1,10 @@
 package org.hypertrace.entity.service;
 
 import static java.util.Objects.isNull;
+import static org.hypertrace.entity.service.constants.EntityCollectionConstants.ENRICHED_ENTITIES_COLLECTION;
+import static org.hypertrace.entity.service.constants.EntityCollectionConstants.RAW_ENTITIES_COLLECTION;
 
 import com.typesafe.config.Config;
-import io.grpc.Channel;
 import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
 import java.time.Clock;
 import java.util.List;
@@ -15,13 +16,16 @@ import org.hypertrace.core.serviceframework.grpc.GrpcPlatformService;
 import org.hypertrace.core.serviceframework.grpc.GrpcPlatformServiceFactory;
 import org.hypertrace.core.serviceframework.grpc.GrpcServiceContainerEnvironment;
 import org.hypertrace.entity.attribute.translator.EntityAttributeMapping;
+import org.hypertrace.entity.data.service.EntityCache;
 import org.hypertrace.entity.data.service.EntityDataServiceImpl;
+import org.hypertrace.entity.data.service.EntityUpsertCombiner;
 import org.hypertrace.entity.metric.EntityCounterMetricSender;
 import org.hypertrace.entity.metric.EntityMetricsReporter;
 import org.hypertrace.entity.query.service.EntityQueryServiceImpl;
 import org.hypertrace.entity.service.change.event.api.EntityChangeEventGenerator;
 import org.hypertrace.entity.service.change.event.impl.EntityChangeEventGeneratorFactory;
 import org.hypertrace.entity.type.service.v2.EntityTypeServiceImpl;
+import org.hypertrace.entity.type.service.v2.LocalEntityTypeRegistry;
 
 public class EntityServiceFactory implements GrpcPlatformServiceFactory {
 
@@ -48,23 +52,33 @@ public class EntityServiceFactory implements GrpcPlatformServiceFactory {
     EntityChangeEventGenerator entityChangeEventGenerator =
         EntityChangeEventGeneratorFactory.getInstance()
             .createEntityChangeEventGenerator(config, entityAttributeMapping, Clock.systemUTC());
-    Channel localChannel =
-        grpcServiceContainerEnvironment
-            .getChannelRegistry()
-            .forName(grpcServiceContainerEnvironment.getInProcessChannelName());
+    grpcServiceContainerEnvironment
+        .getLifecycle()
+        .shutdownComplete()
+        .thenRun(entityChangeEventGenerator::close);
+    LocalEntityTypeRegistry entityTypeRegistry = new LocalEntityTypeRegistry(datastore);
     EntityCounterMetricSender entityCounterMetricSender = new EntityCounterMetricSender();
+    // Shared by both services, so that the entity updates of either invalidate it
+    EntityCache entitiesCache = EntityCache.forCollection(config, RAW_ENTITIES_COLLECTION);
     return Stream.of(
             new org.hypertrace.entity.type.service.EntityTypeServiceImpl(datastore),
-            new EntityTypeServiceImpl(datastore),
+            new EntityTypeServiceImpl(datastore, entityTypeRegistry),
             new EntityDataServiceImpl(
-                datastore, localChannel, entityChangeEventGenerator, entityCounterMetricSender),
+                datastore,
+                entityTypeRegistry,
+                entityChangeEventGenerator,
+                entityCounterMetricSender,
+                entitiesCache,
+                EntityCache.forCollection(config, ENRICHED_ENTITIES_COLLECTION),
+                EntityUpsertCombiner.forCollection(config, datastore, RAW_ENTITIES_COLLECTION)),
             new EntityQueryServiceImpl(
                 datastore,
                 config,
                 entityAttributeMapping,
                 entityChangeEventGenerator,
                 entityCounterMetricSender,
-                localChannel))
+                entityTypeRegistry,
+                entitiesCache))
         .map(GrpcPlatformService::new)
         .collect(Collectors.toUnmodifiableList());
   }
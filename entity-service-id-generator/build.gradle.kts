@@ -0,0 +1,19 @@
+plugins {
+  `java-library`
+  jacoco
+  id("org.hypertrace.publish-plugin")
+  id("org.hypertrace.jacoco-report-plugin")
+}
+
+dependencies {
+  api(project(":entity-service-api"))
+
+  implementation("com.github.f4b6a3:uuid-creator:3.5.0")
+  implementation("com.google.guava:guava:32.1.2-jre")
+
+  testImplementation("org.junit.jupiter:junit-jupiter:5.7.1")
+}
+
+tasks.test {
+  useJUnitPlatform()
+}
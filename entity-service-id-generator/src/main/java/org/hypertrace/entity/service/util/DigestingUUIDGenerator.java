@@ -0,0 +1,429 @@
+package org.hypertrace.entity.service.util;
+
+import com.google.protobuf.ByteString;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+import org.hypertrace.entity.data.service.v1.Value;
+
+/**
+ * Generates the same UUIDs as {@link UUIDGenerator}, without building the string form of the
+ * attributes first. The bytes of that string form are written as they are produced into a reused
+ * buffer, which is then hashed by a reused {@link MessageDigest}. The string form is that of the
+ * sorted map of {@link UUIDGenerator#transform(Map)}, in which values are rendered in the protobuf
+ * text format.
+ */
+public class DigestingUUIDGenerator {
+  private static final ThreadLocal<Encoder> ENCODER = ThreadLocal.withInitial(Encoder::new);
+  private static final String CUSTOMER_ID_KEY = "customerId";
+  private static final String ENTITY_TYPE_KEY = "entityType";
+
+  /** Same as {@link UUIDGenerator#generateUUID(Map)} */
+  public static String generateUUID(Map<String, AttributeValue> attributes) {
+    if (attributes.isEmpty()) {
+      return UUID.randomUUID().toString();
+    }
+    return ENCODER.get().generate(attributes, null, null).toString();
+  }
+
+  /**
+   * Same as {@link UUIDGenerator#generateUUID(Map)} of the attributes, with the customer id and the
+   * entity type added as string attributes, as done for the ids of entities. Clients use it to
+   * derive the ids of the entities from their identifying attributes without asking the service.
+   */
+  public static String generateUUID(
+      Map<String, AttributeValue> attributes, String customerId, String entityType) {
+    return ENCODER.get().generate(attributes, customerId, entityType).toString();
+  }
+
+  private static final class Encoder {
+    private static final byte[] NAMESPACE_BYTES = toBytes(UUIDGenerator.NAMESPACE_UUID);
+    private static final byte[] NULL = ascii("null");
+
+    private final MessageDigest digest;
+    private final byte[] hash = new byte[20];
+    private byte[] buffer = new byte[512];
+    private int length;
+    // Stack of the keys of the maps being written, and of the values of the lists being sorted
+    private String[] keys = new String[16];
+    private int keyCount;
+    private Value[] values = new Value[16];
+
+    private Encoder() {
+      try {
+        this.digest = MessageDigest.getInstance("SHA-1");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    UUID generate(
+        Map<String, AttributeValue> attributes, String customerId, String entityType) {
+      this.length = 0;
+      this.keyCount = 0;
+      try {
+        this.writeMap(attributes, customerId, entityType);
+        this.digest.reset();
+        this.digest.update(NAMESPACE_BYTES);
+        this.digest.update(this.buffer, 0, this.length);
+        this.digest.digest(this.hash, 0, this.hash.length);
+      } catch (DigestException e) {
+        throw new IllegalStateException(e);
+      } finally {
+        Arrays.fill(this.keys, 0, this.keyCount, null);
+        this.keyCount = 0;
+      }
+
+      long msb = toLong(this.hash, 0);
+      long lsb = toLong(this.hash, 8);
+      msb = (msb & 0xffffffffffff0fffL) | UUIDGenerator.VERSION_BITS;
+      lsb = (lsb & 0x3fffffffffffffffL) | 0x8000000000000000L;
+      return new UUID(msb, lsb);
+    }
+
+    // Written like the toString() of a TreeMap
+    private void writeMap(
+        Map<String, AttributeValue> attributes, String customerId, String entityType) {
+      int start = this.keyCount;
+      for (String key : attributes.keySet()) {
+        if (customerId != null && (CUSTOMER_ID_KEY.equals(key) || ENTITY_TYPE_KEY.equals(key))) {
+          continue;
+        }
+        this.pushKey(key);
+      }
+      if (customerId != null) {
+        this.pushKey(CUSTOMER_ID_KEY);
+        this.pushKey(ENTITY_TYPE_KEY);
+      }
+      int end = this.keyCount;
+      Arrays.sort(this.keys, start, end);
+
+      this.writeByte('{');
+      for (int i = start; i < end; i++) {
+        if (i > start) {
+          this.writeByte(',');
+          this.writeByte(' ');
+        }
+        String key = this.keys[i];
+        this.writeUtf8(key);
+        this.writeByte('=');
+        if (customerId != null && CUSTOMER_ID_KEY.equals(key)) {
+          this.writeStringValue(customerId);
+        } else if (customerId != null && ENTITY_TYPE_KEY.equals(key)) {
+          this.writeStringValue(entityType);
+        } else {
+          this.writeAttributeValue(attributes.get(key));
+        }
+      }
+      this.writeByte('}');
+
+      Arrays.fill(this.keys, start, end, null);
+      this.keyCount = start;
+    }
+
+    private void writeAttributeValue(AttributeValue attributeValue) {
+      switch (attributeValue.getTypeCase()) {
+        case VALUE:
+          this.writeValue(attributeValue.getValue());
+          break;
+        case VALUE_LIST:
+          this.writeList(attributeValue.getValueList().getValuesList());
+          break;
+        case VALUE_MAP:
+          this.writeMap(attributeValue.getValueMap().getValuesMap(), null, null);
+          break;
+        default:
+          this.writeUtf8(attributeValue.toString());
+      }
+    }
+
+    // Written like the toString() of the sorted list of values of UUIDGenerator
+    private void writeList(List<AttributeValue> attributeValues) {
+      if (attributeValues.isEmpty()) {
+        this.writeBytes(NULL);
+        return;
+      }
+      switch (attributeValues.get(0).getTypeCase()) {
+        case VALUE:
+          break;
+        case VALUE_LIST:
+          throw new IllegalArgumentException(
+              "List of Lists is not supported in identifying attributes of an Entity");
+        case VALUE_MAP:
+          throw new IllegalArgumentException(
+              "List of Maps is not supported in identifying attributes of an Entity");
+        default:
+          this.writeBytes(NULL);
+          return;
+      }
+
+      int count = attributeValues.size();
+      if (this.values.length < count) {
+        this.values = new Value[Math.max(count, this.values.length * 2)];
+      }
+      for (int i = 0; i < count; i++) {
+        this.values[i] = attributeValues.get(i).getValue();
+      }
+      try {
+        Arrays.sort(this.values, 0, count, UUIDGenerator.ATTRIBUTE_LIST_COMPARATOR);
+        this.writeByte('[');
+        for (int i = 0; i < count; i++) {
+          if (i > 0) {
+            this.writeByte(',');
+            this.writeByte(' ');
+          }
+          this.writeValue(this.values[i]);
+        }
+        this.writeByte(']');
+      } finally {
+        Arrays.fill(this.values, 0, count, null);
+      }
+    }
+
+    // Written like the protobuf text format of the value, which its toString() returns
+    private void writeValue(Value value) {
+      if (value.getUnknownFields().getSerializedSize() != 0) {
+        this.writeUtf8(value.toString());
+        return;
+      }
+
+      switch (value.getTypeCase()) {
+        case STRING:
+          this.writeStringValue(value.getString());
+          return;
+        case BOOLEAN:
+          this.writeAscii("boolean: ");
+          this.writeAscii(value.getBoolean() ? "true" : "false");
+          break;
+        case INT:
+          this.writeAscii("int: ");
+          this.writeLong(value.getInt());
+          break;
+        case LONG:
+          this.writeAscii("long: ");
+          this.writeLong(value.getLong());
+          break;
+        case FLOAT:
+          this.writeAscii("float: ");
+          this.writeAscii(Float.toString(value.getFloat()));
+          break;
+        case DOUBLE:
+          this.writeAscii("double: ");
+          this.writeAscii(Double.toString(value.getDouble()));
+          break;
+        case BYTES:
+          this.writeAscii("bytes: \"");
+          this.writeEscaped(value.getBytes());
+          this.writeByte('"');
+          break;
+        case TIMESTAMP:
+          this.writeAscii("timestamp: ");
+          this.writeLong(value.getTimestamp());
+          break;
+        case TYPE_NOT_SET:
+          return;
+        default:
+          this.writeUtf8(value.toString());
+          return;
+      }
+      this.writeByte('\n');
+    }
+
+    private void writeStringValue(String value) {
+      this.writeAscii("string: \"");
+      this.writeEscaped(value);
+      this.writeAscii("\"\n");
+    }
+
+    private void pushKey(String key) {
+      if (this.keyCount == this.keys.length) {
+        this.keys = Arrays.copyOf(this.keys, this.keys.length * 2);
+      }
+      this.keys[this.keyCount++] = key;
+    }
+
+    private void writeLong(long value) {
+      if (value == Long.MIN_VALUE) {
+        this.writeAscii(Long.toString(value));
+        return;
+      }
+      if (value < 0) {
+        this.writeByte('-');
+        value = -value;
+      }
+      this.ensureCapacity(19);
+      int digits = 1;
+      for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+        digits++;
+      }
+      for (int i = this.length + digits - 1; i >= this.length; i--) {
+        this.buffer[i] = (byte) ('0' + value % 10);
+        value /= 10;
+      }
+      this.length += digits;
+    }
+
+    // Same as TextFormat, which escapes the UTF-8 bytes of strings
+    private void writeEscaped(String value) {
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          this.writeEscaped((byte) c);
+        } else if (c < 0x800) {
+          this.writeEscaped((byte) (0xc0 | (c >>> 6)));
+          this.writeEscaped((byte) (0x80 | (c & 0x3f)));
+        } else if (!Character.isSurrogate(c)) {
+          this.writeEscaped((byte) (0xe0 | (c >>> 12)));
+          this.writeEscaped((byte) (0x80 | ((c >>> 6) & 0x3f)));
+          this.writeEscaped((byte) (0x80 | (c & 0x3f)));
+        } else if (Character.isHighSurrogate(c)
+            && i + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          this.writeEscaped((byte) (0xf0 | (codePoint >>> 18)));
+          this.writeEscaped((byte) (0x80 | ((codePoint >>> 12) & 0x3f)));
+          this.writeEscaped((byte) (0x80 | ((codePoint >>> 6) & 0x3f)));
+          this.writeEscaped((byte) (0x80 | (codePoint & 0x3f)));
+        } else {
+          // Unpaired surrogates are replaced when encoding to UTF-8
+          this.writeEscaped((byte) '?');
+        }
+      }
+    }
+
+    private void writeEscaped(ByteString value) {
+      for (int i = 0; i < value.size(); i++) {
+        this.writeEscaped(value.byteAt(i));
+      }
+    }
+
+    private void writeEscaped(byte b) {
+      switch (b) {
+        case 0x07:
+          this.writeEscape('a');
+          break;
+        case '\b':
+          this.writeEscape('b');
+          break;
+        case '\f':
+          this.writeEscape('f');
+          break;
+        case '\n':
+          this.writeEscape('n');
+          break;
+        case '\r':
+          this.writeEscape('r');
+          break;
+        case '\t':
+          this.writeEscape('t');
+          break;
+        case 0x0b:
+          this.writeEscape('v');
+          break;
+        case '\\':
+          this.writeEscape('\\');
+          break;
+        case '\'':
+          this.writeEscape('\'');
+          break;
+        case '"':
+          this.writeEscape('"');
+          break;
+        default:
+          if (b >= 0x20 && b <= 0x7e) {
+            this.writeByte(b);
+          } else {
+            this.ensureCapacity(4);
+            this.buffer[this.length++] = '\\';
+            this.buffer[this.length++] = (byte) ('0' + ((b >>> 6) & 3));
+            this.buffer[this.length++] = (byte) ('0' + ((b >>> 3) & 7));
+            this.buffer[this.length++] = (byte) ('0' + (b & 7));
+          }
+      }
+    }
+
+    private void writeEscape(char c) {
+      this.writeByte('\\');
+      this.writeByte(c);
+    }
+
+    // Keys are not escaped, the UTF-8 encoding of the whole string is hashed
+    private void writeUtf8(String value) {
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c < 0x80) {
+          this.writeByte(c);
+        } else if (c < 0x800) {
+          this.writeByte(0xc0 | (c >>> 6));
+          this.writeByte(0x80 | (c & 0x3f));
+        } else if (!Character.isSurrogate(c)) {
+          this.writeByte(0xe0 | (c >>> 12));
+          this.writeByte(0x80 | ((c >>> 6) & 0x3f));
+          this.writeByte(0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c)
+            && i + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(i + 1))) {
+          int codePoint = Character.toCodePoint(c, value.charAt(++i));
+          this.writeByte(0xf0 | (codePoint >>> 18));
+          this.writeByte(0x80 | ((codePoint >>> 12) & 0x3f));
+          this.writeByte(0x80 | ((codePoint >>> 6) & 0x3f));
+          this.writeByte(0x80 | (codePoint & 0x3f));
+        } else {
+          this.writeByte('?');
+        }
+      }
+    }
+
+    private void writeAscii(String value) {
+      this.ensureCapacity(value.length());
+      for (int i = 0; i < value.length(); i++) {
+        this.buffer[this.length++] = (byte) value.charAt(i);
+      }
+    }
+
+    private void writeBytes(byte[] bytes) {
+      this.ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, this.buffer, this.length, bytes.length);
+      this.length += bytes.length;
+    }
+
+    private void writeByte(int b) {
+      this.ensureCapacity(1);
+      this.buffer[this.length++] = (byte) b;
+    }
+
+    private void ensureCapacity(int extraLength) {
+      if (this.length + extraLength > this.buffer.length) {
+        this.buffer =
+            Arrays.copyOf(this.buffer, Math.max(this.length + extraLength, this.buffer.length * 2));
+      }
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+      long value = 0;
+      for (int i = offset; i < offset + 8; i++) {
+        value = (value << 8) | (bytes[i] & 0xff);
+      }
+      return value;
+    }
+
+    private static byte[] toBytes(UUID uuid) {
+      byte[] bytes = new byte[16];
+      for (int i = 0; i < 8; i++) {
+        bytes[i] = (byte) (uuid.getMostSignificantBits() >>> (56 - 8 * i));
+        bytes[8 + i] = (byte) (uuid.getLeastSignificantBits() >>> (56 - 8 * i));
+      }
+      return bytes;
+    }
+
+    private static byte[] ascii(String value) {
+      return value.getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+}
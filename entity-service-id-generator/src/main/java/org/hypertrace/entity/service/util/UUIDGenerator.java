@@ -20,11 +20,12 @@ public class UUIDGenerator {
 
   // A randomly generated UUID required for the UUID(type 5) generation
   // TODO: Need to see if this should be dynamically generated based on the Tenant ID
-  private static final UUID NAMESPACE_UUID =
-      UUID.fromString("5088c92d-5e9c-43f4-a35b-2589474d5642");
+  static final UUID NAMESPACE_UUID = UUID.fromString("5088c92d-5e9c-43f4-a35b-2589474d5642");
 
   // version bits for UUID 3
-  private static final long VERSION_BITS = 3 << 12;
+  static final long VERSION_BITS = 3 << 12;
+
+  static final Comparator<Value> ATTRIBUTE_LIST_COMPARATOR = new AttributeListComparator();
 
   /**
    * <b>IMPORTANT: This is to be used only by the Entity Service.</b> This ID generation is bound to
@@ -83,7 +84,7 @@ public class UUIDGenerator {
       case VALUE:
         return attributeValueList.stream()
             .map(AttributeValue::getValue)
-            .sorted(new AttributeListComparator())
+            .sorted(ATTRIBUTE_LIST_COMPARATOR)
             .collect(Collectors.toList());
       case VALUE_LIST:
         throw new IllegalArgumentException(
@@ -0,0 +1,299 @@
+package org.hypertrace.entity.service.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+import org.hypertrace.entity.data.service.v1.AttributeValueList;
+import org.hypertrace.entity.data.service.v1.AttributeValueMap;
+import org.hypertrace.entity.data.service.v1.Value;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/** Checks that {@link DigestingUUIDGenerator} generates the same UUIDs as {@link UUIDGenerator} */
+class DigestingUUIDGeneratorTest {
+
+  @Test
+  void testMatchesKnownUUID() {
+    Map<String, AttributeValue> attributes =
+        Map.of("key1", stringValue("value1"), "key2", stringValue("value2"));
+
+    assertEquals(
+        "37d8199a-3e56-30d9-9404-917c157d1c95", DigestingUUIDGenerator.generateUUID(attributes));
+  }
+
+  @ParameterizedTest
+  @MethodSource("goldenVectors")
+  void testMatchesGoldenVectors(
+      String expectedUUID,
+      String customerId,
+      String entityType,
+      Map<String, AttributeValue> attributes) {
+    assertEquals(expectedUUID, generateLegacyEntityUUID(attributes, customerId, entityType));
+    assertEquals(
+        expectedUUID, DigestingUUIDGenerator.generateUUID(attributes, customerId, entityType));
+  }
+
+  @Test
+  void testMatchesLegacyGeneratorForRandomAttributes() {
+    Random random = new Random(42);
+    for (int i = 0; i < 2000; i++) {
+      Map<String, AttributeValue> attributes = randomMap(random, 2);
+      if (attributes.isEmpty()) {
+        continue;
+      }
+
+      assertEquals(
+          UUIDGenerator.generateUUID(attributes),
+          DigestingUUIDGenerator.generateUUID(attributes),
+          attributes::toString);
+      assertEquals(
+          generateLegacyEntityUUID(attributes, "tenant-" + i, "SERVICE"),
+          DigestingUUIDGenerator.generateUUID(attributes, "tenant-" + i, "SERVICE"),
+          attributes::toString);
+    }
+  }
+
+  @Test
+  void testMatchesLegacyGeneratorForUnusualValues() {
+    List<Value> values =
+        List.of(
+            Value.getDefaultInstance(),
+            Value.newBuilder().setString("").build(),
+            Value.newBuilder().setString("\u0007\b\f\n\r\t\u000b\\'\"\u0000\u007f").build(),
+            Value.newBuilder().setString("\ud83d\ude00 \ud83d \ude00").build(),
+            Value.newBuilder().setInt(Integer.MIN_VALUE).build(),
+            Value.newBuilder().setLong(Long.MIN_VALUE).build(),
+            Value.newBuilder().setLong(Long.MAX_VALUE).build(),
+            Value.newBuilder().setTimestamp(-1).build(),
+            Value.newBuilder().setFloat(Float.NaN).build(),
+            Value.newBuilder().setFloat(-0.0f).build(),
+            Value.newBuilder().setDouble(Double.NEGATIVE_INFINITY).build(),
+            Value.newBuilder().setDouble(1e-300).build(),
+            Value.newBuilder().setBoolean(false).build(),
+            Value.newBuilder().setBytes(ByteString.EMPTY).build(),
+            Value.newBuilder()
+                .setCustom(
+                    Any.newBuilder()
+                        .setTypeUrl("type.googleapis.com/Log")
+                        .setValue(ByteString.copyFromUtf8("log")))
+                .build());
+
+    for (Value value : values) {
+      Map<String, AttributeValue> attributes =
+          Map.of(
+              "value",
+              AttributeValue.newBuilder().setValue(value).build(),
+              "list",
+              AttributeValue.newBuilder()
+                  .setValueList(
+                      AttributeValueList.newBuilder()
+                          .addValues(AttributeValue.newBuilder().setValue(value)))
+                  .build(),
+              "unset",
+              AttributeValue.getDefaultInstance(),
+              "emptyMap",
+              AttributeValue.newBuilder()
+                  .setValueMap(AttributeValueMap.getDefaultInstance())
+                  .build());
+
+      assertEquals(
+          UUIDGenerator.generateUUID(attributes),
+          DigestingUUIDGenerator.generateUUID(attributes),
+          value::toString);
+    }
+  }
+
+  @Test
+  void testRejectsUnsupportedListsLikeLegacyGenerator() {
+    AttributeValue listOfLists =
+        AttributeValue.newBuilder()
+            .setValueList(
+                AttributeValueList.newBuilder()
+                    .addValues(
+                        AttributeValue.newBuilder()
+                            .setValueList(
+                                AttributeValueList.newBuilder().addValues(stringValue("abc")))))
+            .build();
+    AttributeValue heterogeneousList =
+        AttributeValue.newBuilder()
+            .setValueList(
+                AttributeValueList.newBuilder()
+                    .addValues(stringValue("abc"))
+                    .addValues(
+                        AttributeValue.newBuilder().setValue(Value.newBuilder().setLong(1))))
+            .build();
+
+    for (AttributeValue attributeValue : List.of(listOfLists, heterogeneousList)) {
+      Map<String, AttributeValue> attributes = Map.of("listKey", attributeValue);
+      assertThrows(
+          IllegalArgumentException.class, () -> UUIDGenerator.generateUUID(attributes));
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> DigestingUUIDGenerator.generateUUID(attributes));
+    }
+  }
+
+  private static Stream<Arguments> goldenVectors() {
+    return Stream.of(
+        Arguments.of(
+            "0952c72f-213f-388f-8515-53aa38a99bb2",
+            "tenant-1",
+            "SERVICE",
+            Map.of("name", stringValue("frontend"))),
+        Arguments.of(
+            "caf394d3-28a7-30c9-98b2-0cd6f05d71d6",
+            "tenant-1",
+            "SERVICE",
+            Map.of(
+                "port",
+                AttributeValue.newBuilder().setValue(Value.newBuilder().setInt(8080)).build(),
+                "count",
+                AttributeValue.newBuilder().setValue(Value.newBuilder().setLong(-42)).build(),
+                "enabled",
+                AttributeValue.newBuilder().setValue(Value.newBuilder().setBoolean(true)).build(),
+                "ts",
+                AttributeValue.newBuilder()
+                    .setValue(Value.newBuilder().setTimestamp(1700000000000L))
+                    .build())),
+        Arguments.of(
+            "f33c024c-58f2-36c9-88f1-6eec14a4c5a5",
+            "tenant-1",
+            "API",
+            Map.of("path", stringValue("a\"b\\c\n\u00e9'"))),
+        Arguments.of(
+            "ccd523ff-2860-344f-9922-897695502247",
+            "tenant-1",
+            "API",
+            Map.of(
+                "labels",
+                AttributeValue.newBuilder()
+                    .setValueList(
+                        AttributeValueList.newBuilder()
+                            .addValues(stringValue("b"))
+                            .addValues(stringValue("a")))
+                    .build(),
+                "tags",
+                AttributeValue.newBuilder()
+                    .setValueList(AttributeValueList.getDefaultInstance())
+                    .build())),
+        Arguments.of(
+            "7cd01ca6-1e5e-325a-8db7-e0cb32aa081b",
+            "tenant-1",
+            "API",
+            Map.of(
+                "props",
+                AttributeValue.newBuilder()
+                    .setValueMap(
+                        AttributeValueMap.newBuilder()
+                            .putValues("z", stringValue("1"))
+                            .putValues(
+                                "a",
+                                AttributeValue.newBuilder()
+                                    .setValue(Value.newBuilder().setLong(2))
+                                    .build()))
+                    .build())),
+        Arguments.of(
+            "a366539b-7e94-397c-851d-df994610e45a",
+            "tenant-1",
+            "API",
+            Map.of("\u043a\u043b\u044e\u0447", stringValue("v"))),
+        Arguments.of(
+            "088f6898-b5d0-30f5-b26a-0a31d9c70e5d",
+            "tenant-1",
+            "API",
+            Map.of(
+                "raw",
+                AttributeValue.newBuilder()
+                    .setValue(
+                        Value.newBuilder()
+                            .setBytes(ByteString.copyFrom(new byte[] {0, 'A', (byte) 0xff})))
+                    .build())),
+        Arguments.of(
+            "46bc6703-9089-30af-ad0f-99e7a2ec4c23",
+            "tenant-2",
+            "BACKEND",
+            Map.of("customerId", stringValue("x"))));
+  }
+
+  // The id generation of entities before DigestingUUIDGenerator
+  private static String generateLegacyEntityUUID(
+      Map<String, AttributeValue> attributes, String customerId, String entityType) {
+    Map<String, AttributeValue> map = new HashMap<>(attributes);
+    map.put("customerId", stringValue(customerId));
+    map.put("entityType", stringValue(entityType));
+    return UUIDGenerator.generateUUID(map);
+  }
+
+  private static Map<String, AttributeValue> randomMap(Random random, int depth) {
+    Map<String, AttributeValue> map = new HashMap<>();
+    int size = random.nextInt(5);
+    for (int i = 0; i < size; i++) {
+      map.put(randomString(random), randomAttributeValue(random, depth));
+    }
+    return map;
+  }
+
+  private static AttributeValue randomAttributeValue(Random random, int depth) {
+    switch (random.nextInt(depth > 0 ? 3 : 2)) {
+      case 0:
+        return AttributeValue.newBuilder().setValue(randomValue(random, random.nextInt(8))).build();
+      case 1:
+        AttributeValueList.Builder list = AttributeValueList.newBuilder();
+        int type = random.nextInt(8);
+        for (int i = random.nextInt(4); i > 0; i--) {
+          list.addValues(AttributeValue.newBuilder().setValue(randomValue(random, type)));
+        }
+        return AttributeValue.newBuilder().setValueList(list).build();
+      default:
+        return AttributeValue.newBuilder()
+            .setValueMap(AttributeValueMap.newBuilder().putAllValues(randomMap(random, depth - 1)))
+            .build();
+    }
+  }
+
+  private static Value randomValue(Random random, int type) {
+    switch (type) {
+      case 0:
+        return Value.newBuilder().setString(randomString(random)).build();
+      case 1:
+        return Value.newBuilder().setBoolean(random.nextBoolean()).build();
+      case 2:
+        return Value.newBuilder().setInt(random.nextInt()).build();
+      case 3:
+        return Value.newBuilder().setLong(random.nextLong()).build();
+      case 4:
+        return Value.newBuilder().setFloat(random.nextFloat() * 1000).build();
+      case 5:
+        return Value.newBuilder().setDouble(random.nextGaussian() * 1e10).build();
+      case 6:
+        byte[] bytes = new byte[random.nextInt(6)];
+        random.nextBytes(bytes);
+        return Value.newBuilder().setBytes(ByteString.copyFrom(bytes)).build();
+      default:
+        return Value.newBuilder().setTimestamp(random.nextLong()).build();
+    }
+  }
+
+  private static String randomString(Random random) {
+    String alphabet = "abcXYZ09 _.-\"'\\\n\t\u00e9\u20ac\ud83d\ude00\u0001";
+    StringBuilder builder = new StringBuilder();
+    for (int i = random.nextInt(8); i > 0; i--) {
+      builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return builder.toString();
+  }
+
+  private static AttributeValue stringValue(String value) {
+    return AttributeValue.newBuilder().setValue(Value.newBuilder().setString(value)).build();
+  }
+}
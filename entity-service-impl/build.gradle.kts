@@ -2,11 +2,13 @@ plugins {
   `java-library`
   jacoco
   id("org.hypertrace.jacoco-report-plugin")
+  id("me.champeau.jmh") version "0.7.2"
 }
 
 dependencies {
   api(project(":entity-service-api"))
   api(project(":entity-service-attribute-translator"))
+  api(project(":entity-service-id-generator"))
   api("org.hypertrace.core.serviceframework:service-framework-spi:0.1.71")
 
   annotationProcessor("org.projectlombok:lombok:1.18.30")
@@ -24,7 +26,6 @@ dependencies {
   implementation(project(":entity-service-change-event-generator"))
 
   implementation("com.google.protobuf:protobuf-java-util:3.21.12")
-  implementation("com.github.f4b6a3:uuid-creator:3.5.0")
   implementation("io.reactivex.rxjava3:rxjava:3.0.11")
   implementation("com.google.guava:guava:32.1.2-jre")
 
@@ -40,3 +41,7 @@ dependencies {
 tasks.test {
   useJUnitPlatform()
 }
+
+jmh {
+  includeTests.set(false)
+}
@@ -0,0 +1,87 @@
+package org.hypertrace.entity.data.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+import org.hypertrace.entity.data.service.v1.AttributeValueList;
+import org.hypertrace.entity.data.service.v1.Value;
+import org.hypertrace.entity.service.util.UUIDGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares generating entity ids from the string of the identifying attributes ({@code legacy})
+ * with streaming the attributes into the digest ({@code digesting}). Both produce the same ids.
+ * Run with {@code ./gradlew :entity-service-impl:jmh} and {@code -prof gc} in the jmh arguments to
+ * also see the allocations per id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityIdGeneratorBenchmark {
+  private static final String TENANT_ID = "tenant-1";
+  private static final String ENTITY_TYPE = "SERVICE";
+
+  @Param({"1", "4", "16"})
+  private int attributeCount;
+
+  private Map<String, AttributeValue> attributes;
+  private EntityIdGenerator entityIdGenerator;
+
+  @Setup
+  public void setUp() {
+    attributes = new HashMap<>();
+    for (int i = 0; i < attributeCount; i++) {
+      attributes.put("attribute_" + i, buildAttributeValue(i));
+    }
+    entityIdGenerator = new EntityIdGenerator();
+  }
+
+  @Benchmark
+  public String legacy() {
+    Map<String, AttributeValue> map = new HashMap<>(attributes);
+    map.put("customerId", stringValue(TENANT_ID));
+    map.put("entityType", stringValue(ENTITY_TYPE));
+    return UUIDGenerator.generateUUID(map);
+  }
+
+  @Benchmark
+  public String digesting() {
+    return entityIdGenerator.generateEntityId(TENANT_ID, ENTITY_TYPE, attributes);
+  }
+
+  private static AttributeValue buildAttributeValue(int index) {
+    switch (index % 3) {
+      case 0:
+        return stringValue("service-name-" + index);
+      case 1:
+        return AttributeValue.newBuilder()
+            .setValue(Value.newBuilder().setLong(1700000000000L + index))
+            .build();
+      default:
+        return AttributeValue.newBuilder()
+            .setValueList(
+                AttributeValueList.newBuilder()
+                    .addValues(stringValue("label-b-" + index))
+                    .addValues(stringValue("label-a-" + index)))
+            .build();
+    }
+  }
+
+  private static AttributeValue stringValue(String value) {
+    return AttributeValue.newBuilder().setValue(Value.newBuilder().setString(value)).build();
+  }
+}
@@ -0,0 +1,169 @@
+package org.hypertrace.entity.fetcher;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.hypertrace.core.documentstore.BulkUpdateResult;
+import org.hypertrace.core.documentstore.CloseableIterator;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.core.documentstore.JSONDocument;
+import org.hypertrace.core.documentstore.Key;
+import org.hypertrace.core.documentstore.SingleValueKey;
+import org.hypertrace.core.documentstore.model.subdoc.SubDocument;
+import org.hypertrace.core.documentstore.model.subdoc.SubDocumentUpdate;
+import org.hypertrace.core.documentstore.model.subdoc.SubDocumentValue;
+import org.hypertrace.core.documentstore.model.subdoc.UpdateOperator;
+import org.hypertrace.entity.data.service.DocumentParser;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares updating entities and getting their before and after images by reading them back
+ * ({@code readBack}) with getting the after images from the update itself ({@code
+ * returnUpdated}). The docstore is simulated with a fixed latency per call, and the number of
+ * docstore calls is reported as the {@code roundTrips} counter. Run with {@code ./gradlew
+ * :entity-service-impl:jmh}.
+ *
+ * <p>Both strategies still read the before images separately, so {@code returnUpdated} saves one
+ * of three round trips. It only applies when all the entities get the same updates: bulk updates
+ * with distinct updates per entity, the usual case, keep the three round trips of {@code
+ * readBack}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityUpdateRoundTripBenchmark {
+  private static final String TENANT_ID = "tenant-1";
+  private static final String ENTITY_TYPE = "SERVICE";
+  private static final String SUB_DOC_PATH = "attributes.status";
+
+  @Param({"1", "100"})
+  private int entityCount;
+
+  @Param({"200"})
+  private long roundTripMicros;
+
+  private List<String> entityIds;
+  private List<Document> documents;
+  private Map<Key, Map<String, Document>> subDocumentsByKey;
+  private List<SubDocumentUpdate> updates;
+  private RoundTripCounters activeCounters;
+  private EntityFetcher entityFetcher;
+  private org.hypertrace.core.documentstore.Collection entitiesCollection;
+
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class RoundTripCounters {
+    public long roundTrips;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      roundTrips = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    final Document status = new JSONDocument("{\"value\": {\"string\": \"ACTIVE\"}}");
+    entityIds = new ArrayList<>(entityCount);
+    documents = new ArrayList<>(entityCount);
+    subDocumentsByKey = new HashMap<>();
+    for (int i = 0; i < entityCount; i++) {
+      final String entityId = "entity-" + i;
+      entityIds.add(entityId);
+      documents.add(
+          new JSONDocument(
+              "{\"tenantId\": \"tenant-1\", \"entityId\": \""
+                  + entityId
+                  + "\", \"entityType\": \"SERVICE\", \"entityName\": \"service-"
+                  + i
+                  + "\", \"attributes\": {\"status\": {\"value\": {\"string\": \"ACTIVE\"}}}}"));
+      subDocumentsByKey.put(new SingleValueKey(TENANT_ID, entityId), Map.of(SUB_DOC_PATH, status));
+    }
+    updates =
+        List.of(
+            SubDocumentUpdate.builder()
+                .subDocument(SubDocument.builder().path(SUB_DOC_PATH).build())
+                .operator(UpdateOperator.SET)
+                .subDocumentValue(SubDocumentValue.of(status))
+                .build());
+
+    entitiesCollection = simulatedCollection();
+    entityFetcher = new EntityFetcher(entitiesCollection, new DocumentParser(), true);
+  }
+
+  @Benchmark
+  public List<Entity> readBack(final RoundTripCounters counters) throws Exception {
+    activeCounters = counters;
+    entityFetcher.getEntitiesByEntityIds(TENANT_ID, entityIds);
+    entitiesCollection.bulkUpdateSubDocs(subDocumentsByKey);
+    return entityFetcher.getEntitiesByEntityIds(TENANT_ID, entityIds);
+  }
+
+  @Benchmark
+  public List<Entity> returnUpdated(final RoundTripCounters counters) throws Exception {
+    activeCounters = counters;
+    entityFetcher.getEntitiesByEntityIds(TENANT_ID, entityIds);
+    return entityFetcher.updateEntitiesByEntityIds(TENANT_ID, ENTITY_TYPE, entityIds, updates);
+  }
+
+  private org.hypertrace.core.documentstore.Collection simulatedCollection() {
+    return (org.hypertrace.core.documentstore.Collection)
+        Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[] {org.hypertrace.core.documentstore.Collection.class},
+            (proxy, method, args) -> {
+              activeCounters.roundTrips++;
+              LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+              switch (method.getName()) {
+                case "search":
+                case "bulkUpdate":
+                  return iteratorOf(documents);
+                case "bulkUpdateSubDocs":
+                  return new BulkUpdateResult(entityCount);
+                default:
+                  throw new UnsupportedOperationException(method.getName());
+              }
+            });
+  }
+
+  private static CloseableIterator<Document> iteratorOf(final Collection<Document> documents) {
+    final Iterator<Document> iterator = documents.iterator();
+    return new CloseableIterator<>() {
+      @Override
+      public void close() {}
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public Document next() {
+        return iterator.next();
+      }
+    };
+  }
+}
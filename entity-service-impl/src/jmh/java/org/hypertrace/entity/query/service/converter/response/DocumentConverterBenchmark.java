@@ -0,0 +1,112 @@
+package org.hypertrace.entity.query.service.converter.response;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.core.documentstore.JSONDocument;
+import org.hypertrace.entity.query.service.converter.ConversionException;
+import org.hypertrace.entity.query.service.converter.accessor.AccessorModule;
+import org.hypertrace.entity.query.service.v1.ColumnMetadata;
+import org.hypertrace.entity.query.service.v1.ResultSetMetadata;
+import org.hypertrace.entity.query.service.v1.Row;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the tree based {@link DocumentConverterImpl} with the {@link
+ * StreamingDocumentConverter} for a wide entity document of which only a few columns are selected.
+ * Run with {@code ./gradlew :entity-service-impl:jmh}, adding {@code -prof gc} to the JMH
+ * arguments to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentConverterBenchmark {
+  @Param({"10", "100"})
+  private int attributeCount;
+
+  @Param({"2", "8"})
+  private int selectedColumnCount;
+
+  private Document document;
+  private ResultSetMetadata resultSetMetadata;
+  private DocumentConverter treeDocumentConverter;
+  private DocumentConverter streamingDocumentConverter;
+
+  @Setup
+  public void setUp() throws IOException {
+    final Injector injector = Guice.createInjector(new AccessorModule(), new ResponseModule());
+    treeDocumentConverter = injector.getInstance(DocumentConverterImpl.class);
+    streamingDocumentConverter = injector.getInstance(StreamingDocumentConverter.class);
+
+    document = new JSONDocument(buildDocumentJson(attributeCount));
+
+    final ResultSetMetadata.Builder metadataBuilder =
+        ResultSetMetadata.newBuilder()
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("entityId"));
+    for (int i = 1; i < selectedColumnCount; i++) {
+      final String columnName = "attributes.attribute_" + i * 7 % attributeCount;
+      metadataBuilder.addColumnMetadata(ColumnMetadata.newBuilder().setColumnName(columnName));
+    }
+    resultSetMetadata = metadataBuilder.build();
+  }
+
+  @Benchmark
+  public Row treeConverter() throws ConversionException {
+    return treeDocumentConverter.convertToRow(document, resultSetMetadata);
+  }
+
+  @Benchmark
+  public Row streamingConverter() throws ConversionException {
+    return streamingDocumentConverter.convertToRow(document, resultSetMetadata);
+  }
+
+  private static String buildDocumentJson(final int attributeCount) {
+    final StringBuilder builder =
+        new StringBuilder(
+            "{\"tenantId\": \"tenant-1\", \"entityId\": \"0215f3f6-55eb-4d95-a116-60f2962528ef\","
+                + " \"entityType\": \"SERVICE\", \"entityName\": \"frontend\", \"attributes\": {");
+
+    for (int i = 0; i < attributeCount; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+
+      builder.append("\"attribute_").append(i).append("\": ");
+      switch (i % 3) {
+        case 0:
+          builder.append("{\"value\": {\"string\": \"value-").append(i).append("\"}}");
+          break;
+        case 1:
+          builder
+              .append("{\"valueList\": {\"values\": [{\"value\": {\"long\": ")
+              .append(i)
+              .append("}}, {\"value\": {\"long\": ")
+              .append(i + 1)
+              .append("}}]}}");
+          break;
+        default:
+          builder
+              .append("{\"valueMap\": {\"values\": {\"key\": {\"value\": {\"string\": \"value-")
+              .append(i)
+              .append("\"}}}}}");
+      }
+    }
+
+    return builder.append("}}").toString();
+  }
+}
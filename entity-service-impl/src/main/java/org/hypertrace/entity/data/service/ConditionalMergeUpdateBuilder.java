@@ -0,0 +1,203 @@
+package org.hypertrace.entity.data.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.Value;
+import org.hypertrace.core.documentstore.Key;
+import org.hypertrace.core.documentstore.expression.impl.ConstantExpression;
+import org.hypertrace.core.documentstore.expression.impl.IdentifierExpression;
+import org.hypertrace.core.documentstore.expression.impl.LogicalExpression;
+import org.hypertrace.core.documentstore.expression.impl.RelationalExpression;
+import org.hypertrace.core.documentstore.expression.operators.RelationalOperator;
+import org.hypertrace.core.documentstore.expression.type.FilterTypeExpression;
+import org.hypertrace.core.documentstore.model.subdoc.SubDocument;
+import org.hypertrace.core.documentstore.model.subdoc.SubDocumentUpdate;
+import org.hypertrace.core.documentstore.model.subdoc.SubDocumentValue;
+import org.hypertrace.core.documentstore.model.subdoc.UpdateOperator;
+import org.hypertrace.core.documentstore.query.Filter;
+import org.hypertrace.core.documentstore.query.Query;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityRequest.UpsertCondition;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityRequest.UpsertCondition.Predicate;
+import org.hypertrace.entity.service.constants.EntityServiceConstants;
+import org.hypertrace.entity.service.util.DocStoreConverter;
+
+/**
+ * Translates a merge and upsert of an entity into a single docstore update of the existing entity
+ * document, so that the upsert condition is checked and the entity merged by the docstore
+ * atomically. The updates mirror {@link Entity.Builder#mergeFrom(Entity)}: the received attributes
+ * replace the existing ones of the same key, and the other existing attributes are kept.
+ */
+class ConditionalMergeUpdateBuilder {
+  private static final String ATTRIBUTES_PATH = "attributes";
+  private static final String IDENTIFYING_ATTRIBUTES_PATH = "identifyingAttributes";
+  private static final String VALUE_PATH = "value";
+
+  /**
+   * @return empty if the upsert condition or the entity cannot be expressed as a docstore update,
+   *     in which case the entity has to be merged in memory instead
+   */
+  Optional<ConditionalMergeUpdate> build(
+      String tenantId, Key docKey, Entity entity, UpsertCondition upsertCondition)
+      throws IOException {
+    List<FilterTypeExpression> filters = new ArrayList<>();
+    filters.add(
+        RelationalExpression.of(
+            IdentifierExpression.of(EntityServiceConstants.TENANT_ID),
+            RelationalOperator.EQ,
+            ConstantExpression.of(tenantId)));
+    filters.add(
+        RelationalExpression.of(
+            IdentifierExpression.of(EntityServiceConstants.ID),
+            RelationalOperator.EQ,
+            ConstantExpression.of(docKey.toString())));
+    if (upsertCondition.hasPropertyPredicate()) {
+      Optional<FilterTypeExpression> conditionFilter =
+          this.buildConditionFilter(upsertCondition.getPropertyPredicate());
+      if (conditionFilter.isEmpty()) {
+        return Optional.empty();
+      }
+      filters.add(conditionFilter.get());
+    }
+
+    Optional<List<SubDocumentUpdate>> updates = this.buildMergeUpdates(entity);
+    if (updates.isEmpty()) {
+      return Optional.empty();
+    }
+
+    Query query =
+        Query.builder()
+            .setFilter(Filter.builder().expression(LogicalExpression.and(filters)).build())
+            .build();
+    return Optional.of(new ConditionalMergeUpdate(query, updates.get()));
+  }
+
+  private Optional<FilterTypeExpression> buildConditionFilter(Predicate predicate) {
+    Optional<RelationalOperator> operator = this.toRelationalOperator(predicate);
+    AttributeValue attributeValue = predicate.getValue();
+    if (operator.isEmpty()
+        || !attributeValue.hasValue()
+        || !isSubDocumentKey(predicate.getAttributeKey())) {
+      return Optional.empty();
+    }
+
+    String valuePath =
+        String.join(".", ATTRIBUTES_PATH, predicate.getAttributeKey(), VALUE_PATH) + ".";
+    org.hypertrace.entity.data.service.v1.Value value = attributeValue.getValue();
+    switch (value.getTypeCase()) {
+      case STRING:
+        return Optional.of(
+            RelationalExpression.of(
+                IdentifierExpression.of(valuePath + "string"),
+                operator.get(),
+                ConstantExpression.of(value.getString())));
+      case BOOLEAN:
+        return Optional.of(
+            RelationalExpression.of(
+                IdentifierExpression.of(valuePath + "boolean"),
+                operator.get(),
+                ConstantExpression.of(value.getBoolean())));
+      case INT:
+        return Optional.of(
+            RelationalExpression.of(
+                IdentifierExpression.of(valuePath + "int"),
+                operator.get(),
+                ConstantExpression.of(value.getInt())));
+      case LONG:
+        return Optional.of(
+            RelationalExpression.of(
+                IdentifierExpression.of(valuePath + "long"),
+                operator.get(),
+                ConstantExpression.of(value.getLong())));
+      case DOUBLE:
+        return Optional.of(
+            RelationalExpression.of(
+                IdentifierExpression.of(valuePath + "double"),
+                operator.get(),
+                ConstantExpression.of(value.getDouble())));
+      default:
+        // Floats, bytes and timestamps are not stored in a form which compares like their values
+        return Optional.empty();
+    }
+  }
+
+  private Optional<RelationalOperator> toRelationalOperator(Predicate predicate) {
+    switch (predicate.getOperator()) {
+      case PREDICATE_OPERATOR_EQUALS:
+        return Optional.of(RelationalOperator.EQ);
+      case PREDICATE_OPERATOR_NOT_EQUALS:
+        return Optional.of(RelationalOperator.NEQ);
+      case PREDICATE_OPERATOR_GREATER_THAN:
+        return Optional.of(RelationalOperator.GT);
+      case PREDICATE_OPERATOR_LESS_THAN:
+        return Optional.of(RelationalOperator.LT);
+      default:
+        return Optional.empty();
+    }
+  }
+
+  private Optional<List<SubDocumentUpdate>> buildMergeUpdates(Entity entity) throws IOException {
+    List<SubDocumentUpdate> updates = new ArrayList<>();
+    if (!entity.getEntityType().isEmpty()) {
+      updates.add(
+          buildSetUpdate(
+              EntityServiceConstants.ENTITY_TYPE, SubDocumentValue.of(entity.getEntityType())));
+    }
+    if (!entity.getEntityName().isEmpty()) {
+      updates.add(
+          buildSetUpdate(
+              EntityServiceConstants.ENTITY_NAME, SubDocumentValue.of(entity.getEntityName())));
+    }
+    if (entity.getCreatedTime() != 0) {
+      updates.add(
+          buildSetUpdate(
+              EntityServiceConstants.ENTITY_CREATED_TIME,
+              SubDocumentValue.of(entity.getCreatedTime())));
+    }
+
+    for (Map.Entry<String, AttributeValue> entry :
+        entity.getIdentifyingAttributesMap().entrySet()) {
+      if (!isSubDocumentKey(entry.getKey())) {
+        return Optional.empty();
+      }
+      updates.add(
+          buildSetUpdate(
+              IDENTIFYING_ATTRIBUTES_PATH + "." + entry.getKey(),
+              SubDocumentValue.of(DocStoreConverter.transform(entry.getValue()))));
+    }
+    for (Map.Entry<String, AttributeValue> entry : entity.getAttributesMap().entrySet()) {
+      if (!isSubDocumentKey(entry.getKey())) {
+        return Optional.empty();
+      }
+      updates.add(
+          buildSetUpdate(
+              ATTRIBUTES_PATH + "." + entry.getKey(),
+              SubDocumentValue.of(DocStoreConverter.transform(entry.getValue()))));
+    }
+
+    return Optional.of(updates);
+  }
+
+  private static SubDocumentUpdate buildSetUpdate(String path, SubDocumentValue value) {
+    return SubDocumentUpdate.builder()
+        .subDocument(SubDocument.builder().path(path).build())
+        .operator(UpdateOperator.SET)
+        .subDocumentValue(value)
+        .build();
+  }
+
+  // Keys with dots would be updated as nested documents rather than as a single map entry
+  private static boolean isSubDocumentKey(String key) {
+    return !key.isEmpty() && key.indexOf('.') < 0;
+  }
+
+  @Value
+  static class ConditionalMergeUpdate {
+    Query query;
+    List<SubDocumentUpdate> updates;
+  }
+}
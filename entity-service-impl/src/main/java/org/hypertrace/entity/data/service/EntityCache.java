@@ -0,0 +1,179 @@
+package org.hypertrace.entity.data.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.protobuf.Message;
+import com.typesafe.config.Config;
+import io.micrometer.core.instrument.Counter;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.hypertrace.core.documentstore.Key;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * A read-through cache of the entities of a docstore collection, by their doc keys, bounded by the
+ * serialized size of the cached entities. Entries are invalidated by the writes of this instance
+ * only, so entries of entities written through other instances stay stale until they expire.
+ *
+ * <p>Reads which overlap an invalidation of their key don't populate the cache, so that an entity
+ * read before a write can't be cached after the write has invalidated it. Populating the cache and
+ * invalidating it are serialized for that purpose. The invalidations are counted by stripes of
+ * keys, so that the writes of other entities seldom keep a read from being cached.
+ */
+public class EntityCache {
+  private static final String CONFIG_PATH_PREFIX = "entity.service.config.entity.cache.";
+  private static final String ENABLED_CONFIG = "enabled";
+  private static final String MAX_BYTES_CONFIG = "max.bytes";
+  private static final String EXPIRY_CONFIG = "expiry";
+  private static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  private static final Duration DEFAULT_EXPIRY = Duration.ofSeconds(30);
+  // Accounts for the cache entry and key besides the serialized entity
+  private static final int ENTRY_OVERHEAD_BYTES = 128;
+  private static final int INVALIDATION_STRIPES = 1024;
+
+  private static final String HITS_COUNTER = "entity.cache.hits";
+  private static final String MISSES_COUNTER = "entity.cache.misses";
+  private static final String EVICTIONS_COUNTER = "entity.cache.evictions";
+  private static final String COLLECTION_TAG = "collection";
+
+  private static final EntityCache DISABLED = new EntityCache();
+
+  // Keyed by the doc ids, as the key classes of the same doc id need not be equal
+  private final Cache<String, Message> cache;
+  // Both only changed along with the invalidated entries, while holding the lock
+  private final AtomicLongArray invalidationCounts = new AtomicLongArray(INVALIDATION_STRIPES);
+  private final AtomicLong invalidateAllCount = new AtomicLong();
+  private final Object invalidationLock = new Object();
+  private final Counter hitCounter;
+  private final Counter missCounter;
+
+  private EntityCache() {
+    this.cache = null;
+    this.hitCounter = null;
+    this.missCounter = null;
+  }
+
+  EntityCache(String collectionName, long maxBytes, Duration expiry) {
+    Map<String, String> tags = Map.of(COLLECTION_TAG, collectionName);
+    this.hitCounter = PlatformMetricsRegistry.registerCounter(HITS_COUNTER, tags);
+    this.missCounter = PlatformMetricsRegistry.registerCounter(MISSES_COUNTER, tags);
+    Counter evictionCounter = PlatformMetricsRegistry.registerCounter(EVICTIONS_COUNTER, tags);
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .<String, Message>weigher(
+                (key, entity) -> entity.getSerializedSize() + ENTRY_OVERHEAD_BYTES)
+            .expireAfterWrite(expiry)
+            .removalListener(
+                notification -> {
+                  if (notification.getCause() == RemovalCause.SIZE) {
+                    evictionCounter.increment();
+                  }
+                })
+            .build();
+  }
+
+  /**
+   * Builds the cache of the given collection from {@code
+   * entity.service.config.entity.cache.<collection>}, which is disabled unless configured so.
+   */
+  public static EntityCache forCollection(Config config, String collectionName) {
+    String configPath = CONFIG_PATH_PREFIX + collectionName;
+    if (!config.hasPath(configPath)) {
+      return disabled();
+    }
+
+    Config cacheConfig = config.getConfig(configPath);
+    if (!cacheConfig.hasPath(ENABLED_CONFIG) || !cacheConfig.getBoolean(ENABLED_CONFIG)) {
+      return disabled();
+    }
+    return new EntityCache(
+        collectionName,
+        cacheConfig.hasPath(MAX_BYTES_CONFIG)
+            ? cacheConfig.getBytes(MAX_BYTES_CONFIG)
+            : DEFAULT_MAX_BYTES,
+        cacheConfig.hasPath(EXPIRY_CONFIG)
+            ? cacheConfig.getDuration(EXPIRY_CONFIG)
+            : DEFAULT_EXPIRY);
+  }
+
+  public static EntityCache disabled() {
+    return DISABLED;
+  }
+
+  /**
+   * @return the cached entity of the key, else the entity of the loader, which is cached if found
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends Message> Optional<T> get(Key key, Loader<T> loader) throws IOException {
+    if (this.cache == null) {
+      return loader.load();
+    }
+
+    String docId = key.toString();
+    T cachedEntity = (T) this.cache.getIfPresent(docId);
+    if (cachedEntity != null) {
+      this.hitCounter.increment();
+      return Optional.of(cachedEntity);
+    }
+
+    this.missCounter.increment();
+    int stripe = getStripe(docId);
+    long invalidationCountBeforeLoad = this.invalidationCounts.get(stripe);
+    long invalidateAllCountBeforeLoad = this.invalidateAllCount.get();
+    Optional<T> entity = loader.load();
+    if (entity.isPresent()) {
+      synchronized (this.invalidationLock) {
+        if (this.invalidationCounts.get(stripe) == invalidationCountBeforeLoad
+            && this.invalidateAllCount.get() == invalidateAllCountBeforeLoad) {
+          this.cache.put(docId, entity.get());
+        }
+      }
+    }
+    return entity;
+  }
+
+  /** Invalidates the entities of the keys, to be called once they have been written */
+  public void invalidate(Iterable<? extends Key> keys) {
+    if (this.cache == null) {
+      return;
+    }
+    synchronized (this.invalidationLock) {
+      for (Key key : keys) {
+        String docId = key.toString();
+        this.invalidationCounts.incrementAndGet(getStripe(docId));
+        this.cache.invalidate(docId);
+      }
+    }
+  }
+
+  public void invalidate(Key key) {
+    this.invalidate(List.of(key));
+  }
+
+  /** Invalidates all the entities, when the written keys are not known */
+  public void invalidateAll() {
+    if (this.cache == null) {
+      return;
+    }
+    synchronized (this.invalidationLock) {
+      this.invalidateAllCount.incrementAndGet();
+      this.cache.invalidateAll();
+    }
+  }
+
+  private static int getStripe(String docId) {
+    return Math.floorMod(docId.hashCode(), INVALIDATION_STRIPES);
+  }
+
+  @FunctionalInterface
+  public interface Loader<T> {
+    Optional<T> load() throws IOException;
+  }
+}
@@ -1,10 +1,12 @@
 package org.hypertrace.entity.data.service;
 
 import static java.util.Objects.isNull;
+import static org.hypertrace.core.documentstore.model.options.ReturnDocumentType.AFTER_UPDATE;
 import static org.hypertrace.entity.service.constants.EntityCollectionConstants.ENRICHED_ENTITIES_COLLECTION;
 import static org.hypertrace.entity.service.constants.EntityCollectionConstants.ENTITY_RELATIONSHIPS_COLLECTION;
 import static org.hypertrace.entity.service.constants.EntityCollectionConstants.RAW_ENTITIES_COLLECTION;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Streams;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.GeneratedMessageV3;
@@ -20,6 +22,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.hypertrace.core.documentstore.CloseableIterator;
@@ -29,8 +32,11 @@ import org.hypertrace.core.documentstore.Document;
 import org.hypertrace.core.documentstore.Filter;
 import org.hypertrace.core.documentstore.JSONDocument;
 import org.hypertrace.core.documentstore.Key;
+import org.hypertrace.core.documentstore.model.options.UpdateOptions;
 import org.hypertrace.core.grpcutils.context.RequestContext;
+import org.hypertrace.entity.data.service.ConditionalMergeUpdateBuilder.ConditionalMergeUpdate;
 import org.hypertrace.entity.data.service.v1.ByIdRequest;
+import org.hypertrace.entity.data.service.v1.ByIdsRequest;
 import org.hypertrace.entity.data.service.v1.ByTypeAndIdentifyingAttributes;
 import org.hypertrace.entity.data.service.v1.Empty;
 import org.hypertrace.entity.data.service.v1.EnrichedEntities;
@@ -41,19 +47,24 @@ import org.hypertrace.entity.data.service.v1.Entity.Builder;
 import org.hypertrace.entity.data.service.v1.EntityDataServiceGrpc.EntityDataServiceImplBase;
 import org.hypertrace.entity.data.service.v1.EntityRelationship;
 import org.hypertrace.entity.data.service.v1.EntityRelationships;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntitiesRequest;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntitiesResponse;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntitiesResponse.MergeAndUpsertEntityResult;
 import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityRequest;
 import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityResponse;
 import org.hypertrace.entity.data.service.v1.Query;
 import org.hypertrace.entity.data.service.v1.RelationshipsQuery;
 import org.hypertrace.entity.fetcher.EntityFetcher;
 import org.hypertrace.entity.metric.EntityCounterMetricSender;
+import org.hypertrace.entity.metric.ResponseStreamMetricSender;
 import org.hypertrace.entity.service.change.event.api.EntityChangeEventGenerator;
+import org.hypertrace.entity.service.change.event.api.EntityChangeSet;
 import org.hypertrace.entity.service.constants.EntityServiceConstants;
 import org.hypertrace.entity.service.exception.InvalidRequestException;
 import org.hypertrace.entity.service.util.DocStoreConverter;
 import org.hypertrace.entity.service.util.DocStoreJsonFormat;
 import org.hypertrace.entity.service.util.StringUtils;
-import org.hypertrace.entity.type.service.rxclient.EntityTypeClient;
+import org.hypertrace.entity.type.service.v2.EntityTypeRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,33 +76,82 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
   private static final Logger LOG = LoggerFactory.getLogger(EntityDataServiceImpl.class);
   private static final DocumentParser PARSER = new DocumentParser();
   private static final DocStoreJsonFormat.Printer PRINTER = DocStoreJsonFormat.printer();
+  private static final String QUERY_METHOD_NAME = "query";
+  // Limits the size of the IN filter of each docstore query of a multi-get
+  private static final int MAX_IDS_PER_QUERY = 1000;
 
   private final Collection entitiesCollection;
   private final Collection relationshipsCollection;
   private final Collection enrichedEntitiesCollection;
   private final EntityNormalizer entityNormalizer;
   private final UpsertConditionMatcher upsertConditionMatcher = new UpsertConditionMatcher();
+  private final ConditionalMergeUpdateBuilder conditionalMergeUpdateBuilder =
+      new ConditionalMergeUpdateBuilder();
   private final EntityIdGenerator entityIdGenerator;
   private final EntityChangeEventGenerator entityChangeEventGenerator;
   private final EntityFetcher entityFetcher;
+  private final EntityCache entitiesCache;
+  private final EntityCache enrichedEntitiesCache;
+  private final EntityUpsertCombiner entitiesUpsertCombiner;
   private final EntityCounterMetricSender entityCounterMetricSender;
+  private final ResponseStreamMetricSender responseStreamMetricSender =
+      new ResponseStreamMetricSender();
 
   public EntityDataServiceImpl(
       Datastore datastore,
       Channel entityTypeChannel,
       EntityChangeEventGenerator entityChangeEventGenerator,
       EntityCounterMetricSender entityCounterMetricSender) {
+    this(
+        datastore,
+        EntityTypeRegistry.fromChannel(entityTypeChannel),
+        entityChangeEventGenerator,
+        entityCounterMetricSender);
+  }
+
+  public EntityDataServiceImpl(
+      Datastore datastore,
+      EntityTypeRegistry entityTypeRegistry,
+      EntityChangeEventGenerator entityChangeEventGenerator,
+      EntityCounterMetricSender entityCounterMetricSender) {
+    this(
+        datastore,
+        entityTypeRegistry,
+        entityChangeEventGenerator,
+        entityCounterMetricSender,
+        EntityCache.disabled(),
+        EntityCache.disabled(),
+        EntityUpsertCombiner.disabled());
+  }
+
+  /**
+   * @param entitiesCache the cache of the entities, to be shared with the other services writing
+   *     them, so that their writes invalidate it
+   * @param enrichedEntitiesCache the cache of the enriched entities
+   * @param entitiesUpsertCombiner the combiner of the upserts of existing entities into bulk
+   *     upserts, which answer with the entity as written rather than as stored
+   */
+  public EntityDataServiceImpl(
+      Datastore datastore,
+      EntityTypeRegistry entityTypeRegistry,
+      EntityChangeEventGenerator entityChangeEventGenerator,
+      EntityCounterMetricSender entityCounterMetricSender,
+      EntityCache entitiesCache,
+      EntityCache enrichedEntitiesCache,
+      EntityUpsertCombiner entitiesUpsertCombiner) {
     this.entitiesCollection = datastore.getCollection(RAW_ENTITIES_COLLECTION);
     this.relationshipsCollection = datastore.getCollection(ENTITY_RELATIONSHIPS_COLLECTION);
     this.enrichedEntitiesCollection = datastore.getCollection(ENRICHED_ENTITIES_COLLECTION);
 
     this.entityIdGenerator = new EntityIdGenerator();
-    EntityTypeClient entityTypeClient = EntityTypeClient.builder(entityTypeChannel).build();
     IdentifyingAttributeCache identifyingAttributeCache = new IdentifyingAttributeCache(datastore);
     this.entityNormalizer =
-        new EntityNormalizer(entityTypeClient, this.entityIdGenerator, identifyingAttributeCache);
+        new EntityNormalizer(entityTypeRegistry, this.entityIdGenerator, identifyingAttributeCache);
     this.entityChangeEventGenerator = entityChangeEventGenerator;
     this.entityFetcher = new EntityFetcher(this.entitiesCollection, PARSER);
+    this.entitiesCache = entitiesCache;
+    this.enrichedEntitiesCache = enrichedEntitiesCache;
+    this.entitiesUpsertCombiner = entitiesUpsertCombiner;
     this.entityCounterMetricSender = entityCounterMetricSender;
   }
 
@@ -118,6 +178,27 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
       java.util.Collection<Entity> existingEntityCollection =
           getExistingEntities(tenantId, List.of(normalizedEntity));
       String entityType = normalizedEntity.getEntityType();
+      EntityChangeSet changeSet =
+          EntityChangeSet.of(existingEntityCollection, List.of(normalizedEntity));
+      Optional<Entity> existingEntity = existingEntityCollection.stream().findFirst();
+      if (this.entitiesUpsertCombiner.isEnabled() && existingEntity.isPresent()) {
+        // Responds once the batch of the upsert is written, without holding the request thread
+        this.upsertCombinedEntity(tenantId, normalizedEntity, existingEntity.get())
+            .whenComplete(
+                (upsertedEntity, throwable) -> {
+                  if (throwable != null) {
+                    LOG.warn("Failed to upsert: {}", request, throwable);
+                    responseObserver.onError(
+                        new RuntimeException("Could not create entity.", throwable.getCause()));
+                    return;
+                  }
+                  responseObserver.onNext(upsertedEntity);
+                  responseObserver.onCompleted();
+                  this.sendUpsertNotifications(requestContext, entityType, changeSet);
+                });
+        return;
+      }
+
       upsertEntity(
           tenantId,
           normalizedEntity.getEntityId(),
@@ -126,11 +207,7 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
           Entity.newBuilder(),
           entitiesCollection,
           responseObserver);
-
-      this.entityCounterMetricSender.sendEntitiesMetrics(
-          requestContext, entityType, existingEntityCollection, List.of(normalizedEntity));
-      entityChangeEventGenerator.sendChangeNotification(
-          requestContext, existingEntityCollection, List.of(normalizedEntity));
+      this.sendUpsertNotifications(requestContext, entityType, changeSet);
 
     } catch (Throwable throwable) {
       LOG.warn("Failed to upsert: {}", request, throwable);
@@ -158,10 +235,9 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
       List<Entity> existingEntities = getExistingEntities(tenantId, entities.values());
       upsertEntities(entities, entitiesCollection, responseObserver);
 
-      this.entityCounterMetricSender.sendEntitiesMetrics(
-          requestContext, existingEntities, new ArrayList<>(entities.values()));
-      this.entityChangeEventGenerator.sendChangeNotification(
-          requestContext, existingEntities, new ArrayList<>(entities.values()));
+      EntityChangeSet changeSet = EntityChangeSet.of(existingEntities, entities.values());
+      this.entityCounterMetricSender.sendEntitiesMetrics(requestContext, changeSet);
+      this.entityChangeEventGenerator.sendChangeNotification(requestContext, changeSet);
     } catch (Throwable throwable) {
       LOG.warn("Failed to upsert: {}", request, throwable);
       responseObserver.onError(throwable);
@@ -200,15 +276,16 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
                 .map(builder -> builder.setTenantId(tenantId))
                 .map(Builder::build)
                 .collect(Collectors.toList());
+      } finally {
+        this.entitiesCache.invalidate(documentMap.keySet());
       }
 
       existingEntities.forEach(responseObserver::onNext);
       responseObserver.onCompleted();
 
-      this.entityCounterMetricSender.sendEntitiesMetrics(
-          requestContext, existingEntities, updatedEntities);
-      this.entityChangeEventGenerator.sendChangeNotification(
-          requestContext, existingEntities, updatedEntities);
+      EntityChangeSet changeSet = EntityChangeSet.of(existingEntities, updatedEntities);
+      this.entityCounterMetricSender.sendEntitiesMetrics(requestContext, changeSet);
+      this.entityChangeEventGenerator.sendChangeNotification(requestContext, changeSet);
     } catch (IOException e) {
       LOG.error("Failed to bulk upsert entities", e);
       responseObserver.onError(e);
@@ -245,6 +322,19 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
         responseObserver);
   }
 
+  /**
+   * Get the Entities with the given EntityIds and EntityTypes, fetching them with as few docstore
+   * queries as possible. Entities which are not found are left out of the response.
+   *
+   * @param request IDs of the entities, each of which constitutes the EntityType and EntityID
+   * @param responseObserver Observer to be notified on about the Entities get request
+   */
+  @Override
+  public void getByIds(ByIdsRequest request, StreamObserver<Entity> responseObserver) {
+    searchByIdsAndStreamResponses(
+        request, entitiesCollection, Entity.newBuilder(), responseObserver);
+  }
+
   /**
    * Get an Entity by the EntityType and its identifying attributes
    *
@@ -310,7 +400,9 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
           this.entityFetcher.getEntitiesByEntityIds(tenantId, List.of(key.toString())).stream()
               .findFirst();
 
-      if (entitiesCollection.delete(key)) {
+      boolean deleted = entitiesCollection.delete(key);
+      this.entitiesCache.invalidate(key);
+      if (deleted) {
         responseObserver.onNext(Empty.newBuilder().build());
         responseObserver.onCompleted();
         existingEntity.ifPresent(
@@ -348,18 +440,20 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
     }
 
     try {
-      this.entityFetcher
-          .query(DocStoreConverter.transform(tenantId.get(), request, Collections.emptyList()))
-          .forEach(responseObserver::onNext);
+      // The entities are streamed as they are read, and the stream reports its own outcome
+      this.entityFetcher.stream(
+          DocStoreConverter.transform(tenantId.get(), request, Collections.emptyList()),
+          responseObserver,
+          this.responseStreamMetricSender,
+          QUERY_METHOD_NAME);
     } catch (final Exception e) {
       LOG.error("Unknown error occurred", e);
+      this.responseStreamMetricSender.sendFailed(QUERY_METHOD_NAME);
       responseObserver.onError(
           Status.INTERNAL
               .withDescription("Unknown error occurred")
               .asRuntimeException(requestContext.buildTrailers()));
     }
-
-    responseObserver.onCompleted();
   }
 
   @Override
@@ -549,6 +643,13 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
         responseObserver);
   }
 
+  @Override
+  public void getEnrichedEntitiesByIds(
+      ByIdsRequest request, StreamObserver<EnrichedEntity> responseObserver) {
+    searchByIdsAndStreamResponses(
+        request, enrichedEntitiesCollection, EnrichedEntity.newBuilder(), responseObserver);
+  }
+
   @Override
   public void getEnrichedEntityByTypeAndIdentifyingProps(
       ByTypeAndIdentifyingAttributes request, StreamObserver<EnrichedEntity> responseObserver) {
@@ -590,45 +691,9 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
     }
 
     try {
-      Entity receivedEntity = this.entityNormalizer.normalize(tenantId, request.getEntity());
-      Optional<Entity> existingEntity =
-          getExistingEntity(tenantId, receivedEntity.getEntityType(), receivedEntity.getEntityId());
-
-      boolean rejectUpsertForConditionMismatch =
-          existingEntity
-              .map(
-                  entity ->
-                      !this.upsertConditionMatcher.matches(entity, request.getUpsertCondition()))
-              .orElse(false);
-
-      if (rejectUpsertForConditionMismatch) {
-        // There's an existing entity and the update doesn't meet the condition, return existing
-        responseObserver.onNext(
-            MergeAndUpsertEntityResponse.newBuilder().setEntity(existingEntity.get()).build());
-        responseObserver.onCompleted();
-      } else {
-        // There's either a new entity or a valid update to upsert
-        Entity entityToUpsert =
-            existingEntity
-                .map(Entity::toBuilder)
-                .map(Entity.Builder::clearCreatedTime)
-                .map(builder -> builder.mergeFrom(receivedEntity))
-                .map(Builder::build)
-                .orElse(receivedEntity);
-        Entity upsertedEntity = this.upsertEntity(tenantId, entityToUpsert);
-        responseObserver.onNext(
-            MergeAndUpsertEntityResponse.newBuilder().setEntity(upsertedEntity).build());
-        responseObserver.onCompleted();
-        List<Entity> existingEntities =
-            existingEntity.map(List::of).orElse(Collections.emptyList());
-        this.entityCounterMetricSender.sendEntitiesMetrics(
-            requestContext,
-            request.getEntity().getEntityType(),
-            existingEntities,
-            List.of(upsertedEntity));
-        entityChangeEventGenerator.sendChangeNotification(
-            requestContext, existingEntities, List.of(upsertedEntity));
-      }
+      Entity entity = this.mergeAndUpsert(requestContext, tenantId, request);
+      responseObserver.onNext(MergeAndUpsertEntityResponse.newBuilder().setEntity(entity).build());
+      responseObserver.onCompleted();
     } catch (final Exception e) {
       LOG.error("Unknown error occurred", e);
       responseObserver.onError(
@@ -636,6 +701,136 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
     }
   }
 
+  /**
+   * Merges and upserts each of the entities of the request like {@link
+   * #mergeAndUpsertEntity(MergeAndUpsertEntityRequest, StreamObserver)}, responding with the result
+   * of each request in the order of the requests. A failed request is reported in its result, and
+   * does not fail the others.
+   */
+  @Override
+  public void mergeAndUpsertEntities(
+      MergeAndUpsertEntitiesRequest request,
+      StreamObserver<MergeAndUpsertEntitiesResponse> responseObserver) {
+    RequestContext requestContext = RequestContext.CURRENT.get();
+    String tenantId = requestContext.getTenantId().orElse(null);
+    if (tenantId == null) {
+      responseObserver.onError(new ServiceException("Tenant id is missing in the request."));
+      return;
+    }
+
+    MergeAndUpsertEntitiesResponse.Builder responseBuilder =
+        MergeAndUpsertEntitiesResponse.newBuilder();
+    for (MergeAndUpsertEntityRequest entityRequest : request.getRequestsList()) {
+      try {
+        responseBuilder.addResults(
+            MergeAndUpsertEntityResult.newBuilder()
+                .setEntity(this.mergeAndUpsert(requestContext, tenantId, entityRequest)));
+      } catch (final Exception e) {
+        LOG.error("Unknown error occurred", e);
+        responseBuilder.addResults(
+            MergeAndUpsertEntityResult.newBuilder().setError("Unknown error occurred"));
+      }
+    }
+    responseObserver.onNext(responseBuilder.build());
+    responseObserver.onCompleted();
+  }
+
+  /**
+   * @return the upserted entity, or the existing entity if it doesn't meet the upsert condition
+   */
+  private Entity mergeAndUpsert(
+      RequestContext requestContext, String tenantId, MergeAndUpsertEntityRequest request)
+      throws IOException {
+    Entity receivedEntity = this.entityNormalizer.normalize(tenantId, request.getEntity());
+    Optional<Entity> existingEntity =
+        getExistingEntity(tenantId, receivedEntity.getEntityType(), receivedEntity.getEntityId());
+
+    boolean rejectUpsertForConditionMismatch =
+        existingEntity
+            .map(
+                entity ->
+                    !this.upsertConditionMatcher.matches(entity, request.getUpsertCondition()))
+            .orElse(false);
+
+    if (rejectUpsertForConditionMismatch) {
+      // There's an existing entity and the update doesn't meet the condition, return existing
+      return existingEntity.get();
+    }
+
+    if (existingEntity.isPresent()) {
+      Optional<ConditionalMergeUpdate> mergeUpdate =
+          this.conditionalMergeUpdateBuilder.build(
+              tenantId,
+              this.entityNormalizer.getEntityDocKey(tenantId, receivedEntity),
+              receivedEntity,
+              request.getUpsertCondition());
+      if (mergeUpdate.isPresent()) {
+        try {
+          Optional<Entity> mergedEntity =
+              this.mergeExistingEntity(tenantId, receivedEntity, mergeUpdate.get());
+          if (mergedEntity.isEmpty()) {
+            // The entity has changed since it was read, and no longer meets the condition
+            return getExistingEntity(
+                    tenantId, receivedEntity.getEntityType(), receivedEntity.getEntityId())
+                .orElse(existingEntity.get());
+          }
+          this.sendMergeAndUpsertNotifications(
+              requestContext, request, existingEntity, mergedEntity.get());
+          return mergedEntity.get();
+        } catch (UnsupportedOperationException e) {
+          LOG.debug("Conditional updates are not supported by the docstore, merging in memory", e);
+        }
+      }
+    }
+
+    // There's either a new entity or a valid update which has to be merged in memory
+    Entity entityToUpsert =
+        existingEntity
+            .map(Entity::toBuilder)
+            .map(Entity.Builder::clearCreatedTime)
+            .map(builder -> builder.mergeFrom(receivedEntity))
+            .map(Builder::build)
+            .orElse(receivedEntity);
+    Entity upsertedEntity = this.upsertEntity(tenantId, entityToUpsert);
+    this.sendMergeAndUpsertNotifications(requestContext, request, existingEntity, upsertedEntity);
+    return upsertedEntity;
+  }
+
+  /**
+   * Merges the received entity into the existing one with a single conditional docstore update,
+   * which checks the upsert condition against the stored entity atomically.
+   *
+   * @return the entity as stored after the merge, or empty if it no longer meets the condition
+   * @throws UnsupportedOperationException if the docstore does not support conditional updates
+   */
+  private Optional<Entity> mergeExistingEntity(
+      String tenantId, Entity receivedEntity, ConditionalMergeUpdate mergeUpdate)
+      throws IOException {
+    Key key = this.entityNormalizer.getEntityDocKey(tenantId, receivedEntity);
+    try {
+      return entitiesCollection
+          .update(
+              mergeUpdate.getQuery(),
+              mergeUpdate.getUpdates(),
+              UpdateOptions.builder().returnDocumentType(AFTER_UPDATE).build())
+          .flatMap(this::entityFromDocument);
+    } finally {
+      this.entitiesCache.invalidate(key);
+    }
+  }
+
+  private void sendMergeAndUpsertNotifications(
+      RequestContext requestContext,
+      MergeAndUpsertEntityRequest request,
+      Optional<Entity> existingEntity,
+      Entity upsertedEntity) {
+    List<Entity> existingEntities = existingEntity.map(List::of).orElse(Collections.emptyList());
+    EntityChangeSet changeSet = EntityChangeSet.of(existingEntities, List.of(upsertedEntity));
+    this.entityCounterMetricSender.sendEntitiesMetrics(
+        requestContext, request.getEntity().getEntityType(), changeSet);
+    entityChangeEventGenerator.sendChangeNotification(requestContext, changeSet);
+  }
+
   private void validate(ByIdRequest request) throws InvalidRequestException {
     if (StringUtils.isEmpty(request.getEntityId())) {
       LOG.info("{}. Invalid get request:{}", request, ErrorMessages.ENTITY_ID_EMPTY);
@@ -671,23 +866,55 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
       StreamObserver<T> responseObserver) {
     try {
       Document document = convertEntityToDocument(entity);
-      collection.upsertAndReturn(
-          this.entityNormalizer.getEntityDocKey(tenantId, entityType, entityId), document);
-      searchByIdAndStreamSingleResponse(
-          tenantId, entityId, entityType, collection, builder, responseObserver);
+      Key key = this.entityNormalizer.getEntityDocKey(tenantId, entityType, entityId);
+      Document result = collection.upsertAndReturn(key, document);
+      this.getCache(collection).invalidate(key);
+      // The upsert returns the document as it is after the write, no need to read it again
+      Optional<T> upsertedEntity =
+          PARSER
+              .<T>parseOrLog(result, builder)
+              .map(parsedEntity -> this.<T>populateTenantId(parsedEntity, tenantId));
+      if (upsertedEntity.isEmpty()) {
+        responseObserver.onError(new RuntimeException("Could not parse the upserted entity."));
+        return;
+      }
+      responseObserver.onNext(upsertedEntity.get());
+      responseObserver.onCompleted();
     } catch (IOException e) {
       responseObserver.onError(new RuntimeException("Could not create entity.", e));
     }
   }
 
   private Entity upsertEntity(String tenantId, Entity entity) throws IOException {
-    Document document = convertEntityToDocument(entity);
-    Document result =
-        entitiesCollection.upsertAndReturn(
-            this.entityNormalizer.getEntityDocKey(tenantId, entity), document);
+    Key key = this.entityNormalizer.getEntityDocKey(tenantId, entity);
+    Document result = entitiesCollection.upsertAndReturn(key, convertEntityToDocument(entity));
+    this.entitiesCache.invalidate(key);
     return this.entityFromDocument(result).orElseThrow();
   }
 
+  /**
+   * Upserts the existing entity along with the concurrent upserts. Bulk upserts don't return the
+   * written documents, so the entity is returned as written, with the created time of the existing
+   * entity. Any field of the stored entity left out of the upsert is not reflected.
+   *
+   * @return the future of the upserted entity, failed with the cause of the failure if any
+   */
+  private CompletableFuture<Entity> upsertCombinedEntity(
+      String tenantId, Entity entity, Entity existingEntity) throws IOException {
+    Key key = this.entityNormalizer.getEntityDocKey(tenantId, entity);
+    return this.entitiesUpsertCombiner
+        .upsert(key, convertEntityToDocument(entity))
+        .whenComplete((unused, throwable) -> this.entitiesCache.invalidate(key))
+        .thenApply(
+            unused -> entity.toBuilder().setCreatedTime(existingEntity.getCreatedTime()).build());
+  }
+
+  private void sendUpsertNotifications(
+      RequestContext requestContext, String entityType, EntityChangeSet changeSet) {
+    this.entityCounterMetricSender.sendEntitiesMetrics(requestContext, entityType, changeSet);
+    entityChangeEventGenerator.sendChangeNotification(requestContext, changeSet);
+  }
+
   private <T extends GeneratedMessageV3> void upsertEntities(
       Map<Key, T> map, Collection collection, StreamObserver<Empty> responseObserver) {
     try {
@@ -696,7 +923,12 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
         entities.put(entry.getKey(), convertEntityToDocument(entry.getValue()));
       }
 
-      boolean status = collection.bulkUpsert(entities);
+      boolean status;
+      try {
+        status = collection.bulkUpsert(entities);
+      } finally {
+        this.getCache(collection).invalidate(entities.keySet());
+      }
       if (status) {
         responseObserver.onNext(Empty.newBuilder().build());
         responseObserver.onCompleted();
@@ -738,55 +970,180 @@ public class EntityDataServiceImpl extends EntityDataServiceImplBase {
       Collection collection,
       Message.Builder builder,
       StreamObserver<T> responseObserver) {
+    Key docKey = this.entityNormalizer.getEntityDocKey(tenantId, entityType, entityId);
+    Optional<T> entity;
+    try {
+      entity =
+          this.getCache(collection)
+              .get(
+                  docKey,
+                  () -> {
+                    List<T> entities = searchById(tenantId, docKey, collection, builder);
+                    if (entities.size() > 1) {
+                      throw new IllegalStateException("Multiple entities with same id are found.");
+                    }
+                    return entities.stream().findFirst();
+                  });
+    } catch (final IOException e) {
+      final String message =
+          String.format(
+              "Unable to search for tenant: %s, entityType: %s, entityId: %s",
+              tenantId, entityType, entityId);
+      LOG.warn(message, e);
+      responseObserver.onError(Status.INTERNAL.withDescription(message).asRuntimeException());
+      return;
+    } catch (final IllegalStateException e) {
+      responseObserver.onError(e);
+      return;
+    }
+
+    // When there is no result, we should return the default instance, which is a way
+    // of saying it's null.
+    // TODO : Not convinced with the default instance
+    responseObserver.onNext(entity.orElseGet(() -> (T) builder.build()));
+    responseObserver.onCompleted();
+  }
+
+  private <T extends Message> List<T> searchById(
+      String tenantId, Key docKey, Collection collection, Message.Builder builder)
+      throws IOException {
     org.hypertrace.core.documentstore.Query query = new org.hypertrace.core.documentstore.Query();
-    String docId = this.entityNormalizer.getEntityDocKey(tenantId, entityType, entityId).toString();
-    query.setFilter(new Filter(Filter.Op.EQ, EntityServiceConstants.ID, docId));
+    query.setFilter(new Filter(Filter.Op.EQ, EntityServiceConstants.ID, docKey.toString()));
 
     List<T> entities = new ArrayList<>();
     try (final CloseableIterator<Document> result = collection.search(query)) {
       while (result.hasNext()) {
         PARSER
             .<T>parseOrLog(result.next(), builder.clone())
-            .map(
-                entity -> {
-                  // Populate the tenant id field with the tenant id that's received for backward
-                  // compatibility.
-                  Descriptors.FieldDescriptor fieldDescriptor =
-                      entity.getDescriptorForType().findFieldByName("tenant_id");
-                  if (fieldDescriptor != null) {
-                    return (T) entity.toBuilder().setField(fieldDescriptor, tenantId).build();
-                  }
-                  return entity;
-                })
+            .map(entity -> this.<T>populateTenantId(entity, tenantId))
             .ifPresent(entities::add);
       }
+    }
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("Docstore query has returned the result: {}", entities);
+    }
+    return entities;
+  }
+
+  private EntityCache getCache(Collection collection) {
+    if (collection == this.entitiesCollection) {
+      return this.entitiesCache;
+    }
+    if (collection == this.enrichedEntitiesCollection) {
+      return this.enrichedEntitiesCache;
+    }
+    return EntityCache.disabled();
+  }
+
+  private <T extends Message> void searchByIdsAndStreamResponses(
+      ByIdsRequest request,
+      Collection collection,
+      Message.Builder builder,
+      StreamObserver<T> responseObserver) {
+    try {
+      for (ByIdRequest byIdRequest : request.getRequestsList()) {
+        validate(byIdRequest);
+      }
+    } catch (InvalidRequestException e) {
+      responseObserver.onError(e);
+      return;
+    }
+
+    Optional<String> tenantId = RequestContext.CURRENT.get().getTenantId();
+    if (tenantId.isEmpty()) {
+      responseObserver.onError(new ServiceException("Tenant id is missing in the request."));
+      return;
+    }
+
+    // Without an entity type, the doc key of an entity is unknown, as that of a v2 type entity
+    // holds its type too. Those are looked up by their entity ids instead.
+    List<String> docIds =
+        request.getRequestsList().stream()
+            .filter(byIdRequest -> !byIdRequest.getEntityType().isEmpty())
+            .map(
+                byIdRequest ->
+                    this.entityNormalizer
+                        .getEntityDocKey(
+                            tenantId.get(), byIdRequest.getEntityType(), byIdRequest.getEntityId())
+                        .toString())
+            .distinct()
+            .collect(Collectors.toList());
+    List<String> untypedEntityIds =
+        request.getRequestsList().stream()
+            .filter(byIdRequest -> byIdRequest.getEntityType().isEmpty())
+            .map(ByIdRequest::getEntityId)
+            .distinct()
+            .collect(Collectors.toList());
+
+    try {
+      for (List<String> docIdsChunk : Lists.partition(docIds, MAX_IDS_PER_QUERY)) {
+        searchByIdsChunk(
+            tenantId.get(),
+            EntityServiceConstants.ID,
+            docIdsChunk,
+            collection,
+            builder,
+            responseObserver);
+      }
+      for (List<String> entityIdsChunk : Lists.partition(untypedEntityIds, MAX_IDS_PER_QUERY)) {
+        searchByIdsChunk(
+            tenantId.get(),
+            EntityServiceConstants.ENTITY_ID,
+            entityIdsChunk,
+            collection,
+            builder,
+            responseObserver);
+      }
     } catch (final IOException e) {
       final String message =
           String.format(
-              "Unable to search for tenant: %s, entityType: %s, entityId: %s",
-              tenantId, entityType, entityId);
+              "Unable to search for tenant: %s, %d entity ids",
+              tenantId.get(), request.getRequestsCount());
       LOG.warn(message, e);
       responseObserver.onError(Status.INTERNAL.withDescription(message).asRuntimeException());
       return;
     }
+    responseObserver.onCompleted();
+  }
 
-    if (LOG.isDebugEnabled()) {
-      LOG.debug("Docstore query has returned the result: {}", entities);
+  private <T extends Message> void searchByIdsChunk(
+      String tenantId,
+      String idFieldName,
+      List<String> ids,
+      Collection collection,
+      Message.Builder builder,
+      StreamObserver<T> responseObserver)
+      throws IOException {
+    org.hypertrace.core.documentstore.Query query = new org.hypertrace.core.documentstore.Query();
+    query.setFilter(
+        new Filter(
+            Filter.Op.AND,
+            null,
+            null,
+            new Filter(Filter.Op.EQ, EntityServiceConstants.TENANT_ID, tenantId),
+            new Filter(Filter.Op.IN, idFieldName, ids)));
+    try (final CloseableIterator<Document> result = collection.search(query)) {
+      while (result.hasNext()) {
+        PARSER
+            .<T>parseOrLog(result.next(), builder.clone())
+            .map(entity -> this.<T>populateTenantId(entity, tenantId))
+            .ifPresent(responseObserver::onNext);
+      }
     }
+  }
 
-    if (entities.size() == 1) {
-      responseObserver.onNext(entities.get(0));
-      responseObserver.onCompleted();
-    } else if (entities.size() > 1) {
-      responseObserver.onError(
-          new IllegalStateException("Multiple entities with same id are found."));
-    } else {
-      // When there is no result, we should return the default instance, which is a way
-      // of saying it's null.
-      // TODO : Not convinced with the default instance
-      responseObserver.onNext((T) builder.build());
-      responseObserver.onCompleted();
+  /**
+   * Populates the tenant id field with the tenant id that's received, for backward compatibility.
+   */
+  @SuppressWarnings("unchecked")
+  private <T extends Message> T populateTenantId(T entity, String tenantId) {
+    Descriptors.FieldDescriptor fieldDescriptor =
+        entity.getDescriptorForType().findFieldByName("tenant_id");
+    if (fieldDescriptor != null) {
+      return (T) entity.toBuilder().setField(fieldDescriptor, tenantId).build();
     }
+    return entity;
   }
 
   private List<Entity> getExistingEntities(String tenantId, java.util.Collection<Entity> entities)
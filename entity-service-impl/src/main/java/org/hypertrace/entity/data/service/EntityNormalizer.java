@@ -2,8 +2,6 @@ package org.hypertrace.entity.data.service;
 
 import static java.util.function.Predicate.not;
 
-import io.grpc.Status;
-import io.reactivex.rxjava3.core.Single;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -14,10 +12,11 @@ import org.hypertrace.entity.data.service.v1.Entity;
 import org.hypertrace.entity.service.util.StringUtils;
 import org.hypertrace.entity.type.service.rxclient.EntityTypeClient;
 import org.hypertrace.entity.type.service.v1.AttributeType;
+import org.hypertrace.entity.type.service.v2.EntityTypeRegistry;
 
 public class EntityNormalizer {
 
-  private final EntityTypeClient entityTypeV2Client;
+  private final EntityTypeRegistry entityTypeV2Registry;
   private final EntityIdGenerator idGenerator;
   private final IdentifyingAttributeCache identifyingAttributeCache;
 
@@ -25,7 +24,14 @@ public class EntityNormalizer {
       EntityTypeClient entityTypeClient,
       EntityIdGenerator idGenerator,
       IdentifyingAttributeCache identifyingAttributeCache) {
-    this.entityTypeV2Client = entityTypeClient;
+    this(EntityTypeRegistry.fromClient(entityTypeClient), idGenerator, identifyingAttributeCache);
+  }
+
+  public EntityNormalizer(
+      EntityTypeRegistry entityTypeRegistry,
+      EntityIdGenerator idGenerator,
+      IdentifyingAttributeCache identifyingAttributeCache) {
+    this.entityTypeV2Registry = entityTypeRegistry;
     this.idGenerator = idGenerator;
     this.identifyingAttributeCache = identifyingAttributeCache;
   }
@@ -45,7 +51,7 @@ public class EntityNormalizer {
     // clear created time, since document-store directly adds the created time field for the entity
     receivedEntity = Entity.newBuilder(receivedEntity).clearCreatedTime().build();
 
-    if (this.requiresIdentifyingAttributes(receivedEntity)) {
+    if (this.requiresIdentifyingAttributes(tenantId, receivedEntity)) {
       return this.normalizeEntityByIdentifyingAttributes(tenantId, receivedEntity);
     }
     return this.normalizeEntityWithProvidedId(tenantId, receivedEntity);
@@ -61,7 +67,7 @@ public class EntityNormalizer {
   }
 
   public Key getEntityDocKey(String tenantId, String entityType, String entityId) {
-    if (!entityType.isEmpty() && this.isV2Type(entityType)) {
+    if (!entityType.isEmpty() && this.entityTypeV2Registry.isV2Type(tenantId, entityType)) {
       return new EntityV2TypeDocKey(tenantId, entityType, entityId);
     }
     return new SingleValueKey(tenantId, entityId);
@@ -95,20 +101,8 @@ public class EntityNormalizer {
         .build();
   }
 
-  private boolean requiresIdentifyingAttributes(Entity entity) {
-    return !this.isV2Type(entity.getEntityType());
-  }
-
-  private boolean isV2Type(String entityType) {
-    return this.entityTypeV2Client
-        .get(entityType)
-        .map(unused -> true)
-        .onErrorResumeNext(
-            throwable ->
-                Status.NOT_FOUND.getCode().equals(Status.fromThrowable(throwable).getCode())
-                    ? Single.just(false)
-                    : Single.error(throwable))
-        .blockingGet();
+  private boolean requiresIdentifyingAttributes(String tenantId, Entity entity) {
+    return !this.entityTypeV2Registry.isV2Type(tenantId, entity.getEntityType());
   }
 
   private void verifyMatchingIdentifyingAttributes(String tenantId, Entity request) {
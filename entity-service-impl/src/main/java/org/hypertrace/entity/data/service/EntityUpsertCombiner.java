@@ -0,0 +1,246 @@
+package org.hypertrace.entity.data.service;
+
+import com.typesafe.config.Config;
+import io.micrometer.core.instrument.DistributionSummary;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.hypertrace.core.documentstore.Collection;
+import org.hypertrace.core.documentstore.Datastore;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.core.documentstore.Key;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * Combines the single document upserts of concurrent requests into bulk upserts of a collection.
+ *
+ * <p>The first upsert finding no open batch opens one, which other upserts join for up to the max
+ * delay, or until the batch is full. The whole batch is then written with one bulk upsert on the
+ * threads of the combiner, so that no request thread waits for the batch. Each upsert gets a future
+ * completed once its batch is written. A batch holds a single document per key, so an upsert of a
+ * key already in the open batch closes it early and opens the next one. A batch is only written
+ * once the earlier batches sharing any of its keys are, so that the writes of a key stay in order.
+ */
+public class EntityUpsertCombiner {
+  private static final String CONFIG_PATH_PREFIX = "entity.service.config.upsert.combining.";
+  private static final String ENABLED_CONFIG = "enabled";
+  private static final String MAX_BATCH_SIZE_CONFIG = "max.batch.size";
+  private static final String MAX_DELAY_CONFIG = "max.delay";
+  private static final String WRITE_THREADS_CONFIG = "write.threads";
+  private static final int DEFAULT_MAX_BATCH_SIZE = 50;
+  private static final Duration DEFAULT_MAX_DELAY = Duration.ofNanos(500_000);
+  private static final int DEFAULT_WRITE_THREADS = 4;
+
+  private static final String BATCH_SIZE_METRIC = "entity.upsert.combining.batch.size";
+  private static final String COLLECTION_TAG = "collection";
+
+  private static final EntityUpsertCombiner DISABLED = new EntityUpsertCombiner();
+
+  private final Collection collection;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+  private final DistributionSummary batchSizeSummary;
+  private final ScheduledExecutorService writeExecutor;
+  private final ReentrantLock lock = new ReentrantLock();
+  // Guarded by the lock, as are the latest batches of the doc ids not written yet
+  private Batch openBatch;
+  private final Map<String, Batch> unwrittenBatchesByDocId = new HashMap<>();
+
+  private EntityUpsertCombiner() {
+    this.collection = null;
+    this.maxBatchSize = 1;
+    this.maxDelayNanos = 0;
+    this.batchSizeSummary = null;
+    this.writeExecutor = null;
+  }
+
+  EntityUpsertCombiner(
+      Collection collection,
+      String collectionName,
+      int maxBatchSize,
+      Duration maxDelay,
+      ScheduledExecutorService writeExecutor) {
+    this.collection = collection;
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelayNanos = maxDelay.toNanos();
+    this.writeExecutor = writeExecutor;
+    this.batchSizeSummary =
+        DistributionSummary.builder(BATCH_SIZE_METRIC)
+            .tag(COLLECTION_TAG, collectionName)
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(PlatformMetricsRegistry.getMeterRegistry());
+  }
+
+  /**
+   * Builds the combiner of the given collection from {@code
+   * entity.service.config.upsert.combining.<collection>}, which is disabled unless configured so.
+   */
+  public static EntityUpsertCombiner forCollection(
+      Config config, Datastore datastore, String collectionName) {
+    String configPath = CONFIG_PATH_PREFIX + collectionName;
+    if (!config.hasPath(configPath)) {
+      return disabled();
+    }
+
+    Config combinerConfig = config.getConfig(configPath);
+    if (!combinerConfig.hasPath(ENABLED_CONFIG) || !combinerConfig.getBoolean(ENABLED_CONFIG)) {
+      return disabled();
+    }
+    int writeThreads =
+        combinerConfig.hasPath(WRITE_THREADS_CONFIG)
+            ? combinerConfig.getInt(WRITE_THREADS_CONFIG)
+            : DEFAULT_WRITE_THREADS;
+    return new EntityUpsertCombiner(
+        datastore.getCollection(collectionName),
+        collectionName,
+        combinerConfig.hasPath(MAX_BATCH_SIZE_CONFIG)
+            ? combinerConfig.getInt(MAX_BATCH_SIZE_CONFIG)
+            : DEFAULT_MAX_BATCH_SIZE,
+        combinerConfig.hasPath(MAX_DELAY_CONFIG)
+            ? combinerConfig.getDuration(MAX_DELAY_CONFIG)
+            : DEFAULT_MAX_DELAY,
+        Executors.newScheduledThreadPool(
+            writeThreads,
+            runnable -> {
+              Thread thread = new Thread(runnable, "entity-upsert-combining-" + collectionName);
+              thread.setDaemon(true);
+              return thread;
+            }));
+  }
+
+  public static EntityUpsertCombiner disabled() {
+    return DISABLED;
+  }
+
+  public boolean isEnabled() {
+    return this.collection != null;
+  }
+
+  /**
+   * Upserts the document along with those of the concurrent upserts
+   *
+   * @return the future completed once the document is written, or failed with an {@link
+   *     IOException} if its batch could not be written
+   */
+  public CompletableFuture<Void> upsert(Key key, Document document) {
+    if (!this.isEnabled()) {
+      throw new IllegalStateException("Upsert combining is disabled");
+    }
+
+    List<Batch> closedBatches = new ArrayList<>(2);
+    Batch batch;
+    boolean opened = false;
+    this.lock.lock();
+    try {
+      if (this.openBatch != null && this.openBatch.docIds.contains(key.toString())) {
+        closedBatches.add(this.close(this.openBatch));
+      }
+      if (this.openBatch == null) {
+        this.openBatch = new Batch();
+        opened = true;
+      }
+      batch = this.openBatch;
+      batch.docIds.add(key.toString());
+      batch.documents.put(key, document);
+      Batch previousBatch = this.unwrittenBatchesByDocId.put(key.toString(), batch);
+      if (previousBatch != null) {
+        batch.previousBatches.add(previousBatch);
+      }
+      if (batch.documents.size() >= this.maxBatchSize) {
+        closedBatches.add(this.close(batch));
+      }
+    } finally {
+      this.lock.unlock();
+    }
+
+    // A batch is written by whoever closes it, the max delay closing the ones which don't fill up
+    if (opened && !closedBatches.contains(batch)) {
+      this.writeExecutor.schedule(
+          () -> this.closeAndWrite(batch), this.maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+    closedBatches.forEach(this::write);
+    return batch.written;
+  }
+
+  private void closeAndWrite(Batch batch) {
+    this.lock.lock();
+    try {
+      if (batch.closed) {
+        return;
+      }
+      this.close(batch);
+    } finally {
+      this.lock.unlock();
+    }
+    this.write(batch);
+  }
+
+  // Called with the lock held
+  private Batch close(Batch batch) {
+    batch.closed = true;
+    if (this.openBatch == batch) {
+      this.openBatch = null;
+    }
+    return batch;
+  }
+
+  private void write(Batch batch) {
+    // Written whether the previous batches succeeded or not, as their writes are over either way
+    CompletableFuture.allOf(
+            batch.previousBatches.stream()
+                .map(previousBatch -> previousBatch.written)
+                .toArray(CompletableFuture[]::new))
+        .whenCompleteAsync((unused, throwable) -> this.bulkUpsert(batch), this.writeExecutor);
+  }
+
+  private void bulkUpsert(Batch batch) {
+    batch.previousBatches.clear();
+    this.batchSizeSummary.record(batch.documents.size());
+    IOException failure = null;
+    try {
+      if (!this.collection.bulkUpsert(batch.documents)) {
+        failure =
+            new IOException(
+                String.format("Failed to upsert a batch of %d documents", batch.documents.size()));
+      }
+    } catch (Exception e) {
+      failure =
+          e instanceof IOException
+              ? (IOException) e
+              : new IOException("Failed to upsert the batch", e);
+    }
+
+    // Only once written, so that the later batches of the same keys wait for the write
+    this.lock.lock();
+    try {
+      batch.docIds.forEach(docId -> this.unwrittenBatchesByDocId.remove(docId, batch));
+    } finally {
+      this.lock.unlock();
+    }
+    if (failure == null) {
+      batch.written.complete(null);
+    } else {
+      batch.written.completeExceptionally(failure);
+    }
+  }
+
+  private static class Batch {
+    // By the doc ids, as the key classes of the same doc id need not be equal
+    private final Set<String> docIds = new HashSet<>();
+    private final Map<Key, Document> documents = new LinkedHashMap<>();
+    private final Set<Batch> previousBatches = new HashSet<>();
+    private final CompletableFuture<Void> written = new CompletableFuture<>();
+    private boolean closed = false;
+  }
+}
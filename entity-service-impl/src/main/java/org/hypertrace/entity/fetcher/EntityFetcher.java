@@ -1,8 +1,11 @@
 package org.hypertrace.entity.fetcher;
 
 import static java.util.stream.Collectors.toUnmodifiableList;
+import static org.hypertrace.core.documentstore.model.options.ReturnDocumentType.AFTER_UPDATE;
 
 import com.google.common.collect.Streams;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
@@ -13,20 +16,46 @@ import org.hypertrace.core.documentstore.Document;
 import org.hypertrace.core.documentstore.Filter;
 import org.hypertrace.core.documentstore.Filter.Op;
 import org.hypertrace.core.documentstore.Query;
+import org.hypertrace.core.documentstore.expression.impl.ConstantExpression;
+import org.hypertrace.core.documentstore.expression.impl.IdentifierExpression;
+import org.hypertrace.core.documentstore.expression.impl.LogicalExpression;
+import org.hypertrace.core.documentstore.expression.impl.RelationalExpression;
+import org.hypertrace.core.documentstore.expression.operators.RelationalOperator;
+import org.hypertrace.core.documentstore.model.options.UpdateOptions;
+import org.hypertrace.core.documentstore.model.subdoc.SubDocumentUpdate;
 import org.hypertrace.entity.data.service.DocumentParser;
 import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.entity.metric.ResponseStreamMetricSender;
 import org.hypertrace.entity.service.constants.EntityServiceConstants;
 
 public class EntityFetcher {
 
   private final DocumentParser parser;
   private final org.hypertrace.core.documentstore.Collection entitiesCollection;
+  private final boolean updatesReturnDocuments;
 
   public EntityFetcher(
       org.hypertrace.core.documentstore.Collection entitiesCollection,
       DocumentParser documentParser) {
+    this(entitiesCollection, documentParser, false);
+  }
+
+  /**
+   * @param updatesReturnDocuments whether the bulk updates of the collection can return the updated
+   *     documents
+   */
+  public EntityFetcher(
+      org.hypertrace.core.documentstore.Collection entitiesCollection,
+      DocumentParser documentParser,
+      boolean updatesReturnDocuments) {
     this.entitiesCollection = entitiesCollection;
     this.parser = documentParser;
+    this.updatesReturnDocuments = updatesReturnDocuments;
+  }
+
+  /** @return whether {@link #updateEntitiesByEntityIds} can be used with the collection */
+  public boolean canReturnUpdatedEntities() {
+    return this.updatesReturnDocuments;
   }
 
   public List<Entity> getEntitiesByDocIds(String tenantId, Collection<String> docIds)
@@ -57,6 +86,30 @@ public class EntityFetcher {
     }
   }
 
+  /**
+   * Streams the entities matching the query to the response observer, parsing each one as the
+   * docstore cursor advances instead of collecting the result first. When the observer is a
+   * {@link ServerCallStreamObserver}, the cursor only advances while the call is ready to send. The
+   * response is completed (or failed) by the time the stream ends, and its outcome is counted by
+   * the given metric sender under the given method name.
+   *
+   * @throws IOException if the query could not be started, in which case nothing has been sent
+   */
+  public void stream(
+      org.hypertrace.core.documentstore.Query query,
+      StreamObserver<Entity> responseObserver,
+      ResponseStreamMetricSender responseStreamMetricSender,
+      String methodName)
+      throws IOException {
+    new EntityStreamer(
+            this.entitiesCollection.search(query),
+            this.parser,
+            responseObserver,
+            responseStreamMetricSender,
+            methodName)
+        .start();
+  }
+
   public List<Entity> query(org.hypertrace.core.documentstore.query.Query query)
       throws IOException {
     try (final CloseableIterator<Document> iterator = this.entitiesCollection.aggregate(query)) {
@@ -69,6 +122,53 @@ public class EntityFetcher {
     }
   }
 
+  /**
+   * Applies the updates to the entities of the given type and ids, and returns the entities as they
+   * are after the update, with a single docstore call. The type is part of the filter as the ids of
+   * v2 entities are only unique within their type. Only to be used if {@link
+   * #canReturnUpdatedEntities()}.
+   */
+  public List<Entity> updateEntitiesByEntityIds(
+      String tenantId,
+      String entityType,
+      Collection<String> entityIds,
+      Collection<SubDocumentUpdate> updates)
+      throws IOException {
+    if (entityIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    final org.hypertrace.core.documentstore.query.Query query =
+        org.hypertrace.core.documentstore.query.Query.builder()
+            .setFilter(
+                org.hypertrace.core.documentstore.query.Filter.builder()
+                    .expression(
+                        LogicalExpression.and(
+                            List.of(
+                                RelationalExpression.of(
+                                    IdentifierExpression.of(EntityServiceConstants.TENANT_ID),
+                                    RelationalOperator.EQ,
+                                    ConstantExpression.of(tenantId)),
+                                RelationalExpression.of(
+                                    IdentifierExpression.of(EntityServiceConstants.ENTITY_TYPE),
+                                    RelationalOperator.EQ,
+                                    ConstantExpression.of(entityType)),
+                                RelationalExpression.of(
+                                    IdentifierExpression.of(EntityServiceConstants.ENTITY_ID),
+                                    RelationalOperator.IN,
+                                    ConstantExpression.ofStrings(List.copyOf(entityIds))))))
+                    .build())
+            .build();
+    try (final CloseableIterator<Document> iterator =
+        this.entitiesCollection.bulkUpdate(
+            query, updates, UpdateOptions.builder().returnDocumentType(AFTER_UPDATE).build())) {
+      return Streams.stream(iterator)
+          .map(this::entityFromDocument)
+          .flatMap(Optional::stream)
+          .collect(toUnmodifiableList());
+    }
+  }
+
   private org.hypertrace.core.documentstore.Query buildExistingEntitiesByDocIdQuery(
       String tenantId, Collection<String> docIds) {
     Query query = new Query();
@@ -0,0 +1,66 @@
+package org.hypertrace.entity.fetcher;
+
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import org.hypertrace.core.documentstore.CloseableIterator;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.core.grpcutils.context.RequestContext;
+import org.hypertrace.entity.data.service.DocumentParser;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.entity.metric.ResponseStreamMetricSender;
+import org.hypertrace.entity.service.util.DocumentStreamer;
+
+/**
+ * Streams the entities of a document iterator, parsing each document only when it is about to be
+ * sent, so that the entities held on the server do not grow with the size of the result.
+ */
+class EntityStreamer extends DocumentStreamer<Entity> {
+  private final DocumentParser parser;
+  private final Metadata errorTrailers;
+
+  EntityStreamer(
+      final CloseableIterator<Document> documentIterator,
+      final DocumentParser parser,
+      final StreamObserver<Entity> responseObserver,
+      final ResponseStreamMetricSender responseStreamMetricSender,
+      final String methodName) {
+    super(documentIterator, responseObserver, responseStreamMetricSender, methodName);
+    this.parser = parser;
+    final RequestContext requestContext = RequestContext.CURRENT.get();
+    this.errorTrailers = requestContext == null ? null : requestContext.buildTrailers();
+  }
+
+  @Override
+  protected void streamNext() {
+    // Documents which fail to parse are skipped, and the next one is tried
+    while (documentIterator.hasNext()) {
+      if (stopIfCancelled()) {
+        return;
+      }
+
+      final Document document = documentIterator.next();
+      final boolean parsed =
+          parser
+              .parseOrLog(document, Entity.newBuilder())
+              .map(
+                  entity -> {
+                    responseObserver.onNext(entity);
+                    return true;
+                  })
+              .orElse(false);
+      if (parsed) {
+        return;
+      }
+    }
+
+    complete();
+  }
+
+  @Override
+  protected Throwable buildStreamingError(final Exception e) {
+    return Status.INTERNAL
+        .withDescription("Unknown error occurred")
+        .asRuntimeException(errorTrailers);
+  }
+}
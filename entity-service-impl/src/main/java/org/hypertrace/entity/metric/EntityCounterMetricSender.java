@@ -9,8 +9,7 @@ import lombok.Value;
 import org.hypertrace.core.grpcutils.context.RequestContext;
 import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
 import org.hypertrace.entity.data.service.v1.Entity;
-import org.hypertrace.entity.service.change.event.impl.ChangeResult;
-import org.hypertrace.entity.service.change.event.impl.EntityChangeEvaluator;
+import org.hypertrace.entity.service.change.event.api.EntityChangeSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,45 +29,37 @@ public class EntityCounterMetricSender {
     this.getDeleteCounter(requestContext, entityType).increment(entities.size());
   }
 
-  public void sendEntitiesMetrics(
-      RequestContext requestContext,
-      Collection<Entity> existingEntities,
-      Collection<Entity> updatedEntities) {
-    ChangeResult changeResult =
-        EntityChangeEvaluator.evaluateChange(existingEntities, updatedEntities);
-    changeResult.getCreatedEntity().stream()
-        .collect(Collectors.groupingBy(Entity::getEntityType))
+  public void sendEntitiesMetrics(RequestContext requestContext, EntityChangeSet changeSet) {
+    changeSet.getCreatedEntities().stream()
+        .collect(Collectors.groupingBy(Entity::getEntityType, Collectors.counting()))
         .forEach(
-            (entityType, entities) -> {
-              this.getCreateCounter(requestContext, entityType).increment(entities.size());
+            (entityType, count) -> {
+              this.getCreateCounter(requestContext, entityType).increment(count);
             });
-    changeResult.getDeletedEntity().stream()
-        .collect(Collectors.groupingBy(Entity::getEntityType))
+    changeSet.getDeletedEntities().stream()
+        .collect(Collectors.groupingBy(Entity::getEntityType, Collectors.counting()))
         .forEach(
-            (entityType, entities) -> {
-              this.getDeleteCounter(requestContext, entityType).increment(entities.size());
+            (entityType, count) -> {
+              this.getDeleteCounter(requestContext, entityType).increment(count);
             });
-    changeResult
-        .getExistingToUpdatedEntitiesMap()
+    changeSet
+        .getUpdatedEntities()
         .forEach(
-            (existingEntity, updatedEntity) -> {
-              this.getUpdateCounter(requestContext, existingEntity.getEntityType()).increment();
+            entityUpdate -> {
+              this.getUpdateCounter(
+                      requestContext, entityUpdate.getExistingEntity().getEntityType())
+                  .increment();
             });
   }
 
   public void sendEntitiesMetrics(
-      RequestContext requestContext,
-      String entityType,
-      Collection<Entity> existingEntities,
-      Collection<Entity> updatedEntities) {
-    ChangeResult changeResult =
-        EntityChangeEvaluator.evaluateChange(existingEntities, updatedEntities);
+      RequestContext requestContext, String entityType, EntityChangeSet changeSet) {
     this.getCreateCounter(requestContext, entityType)
-        .increment(changeResult.getCreatedEntity().size());
+        .increment(changeSet.getCreatedEntities().size());
     this.getUpdateCounter(requestContext, entityType)
-        .increment(changeResult.getExistingToUpdatedEntitiesMap().size());
+        .increment(changeSet.getUpdatedEntities().size());
     this.getDeleteCounter(requestContext, entityType)
-        .increment(changeResult.getDeletedEntity().size());
+        .increment(changeSet.getDeletedEntities().size());
   }
 
   private Counter getCreateCounter(RequestContext requestContext, String entityType) {
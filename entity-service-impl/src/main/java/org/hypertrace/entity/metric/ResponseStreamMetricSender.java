@@ -0,0 +1,56 @@
+package org.hypertrace.entity.metric;
+
+import io.micrometer.core.instrument.Counter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Value;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+
+/**
+ * Counts how the streamed responses of the query RPCs end, so that the docstore work saved by
+ * abandoning the streams of cancelled (or timed out) calls can be measured.
+ */
+public class ResponseStreamMetricSender {
+  private static final String RESPONSE_STREAMS_COUNTER = "response.streams.counter";
+  private static final String METHOD_TAG = "method";
+  private static final String OUTCOME_TAG = "outcome";
+  private static final Map<StreamMetricIdentifier, Counter> methodToOutcomeCounter =
+      new ConcurrentHashMap<>();
+
+  public void sendCompleted(String method) {
+    this.getCounter(new StreamMetricIdentifier(method, Outcome.COMPLETED)).increment();
+  }
+
+  public void sendCancelled(String method) {
+    this.getCounter(new StreamMetricIdentifier(method, Outcome.CANCELLED)).increment();
+  }
+
+  public void sendFailed(String method) {
+    this.getCounter(new StreamMetricIdentifier(method, Outcome.FAILED)).increment();
+  }
+
+  private Counter getCounter(StreamMetricIdentifier streamMetricIdentifier) {
+    return methodToOutcomeCounter.computeIfAbsent(
+        streamMetricIdentifier,
+        metricIdentifier ->
+            PlatformMetricsRegistry.registerCounter(
+                RESPONSE_STREAMS_COUNTER,
+                Map.of(
+                    METHOD_TAG,
+                    metricIdentifier.getMethod(),
+                    OUTCOME_TAG,
+                    metricIdentifier.getOutcome().name().toLowerCase())));
+  }
+
+  private enum Outcome {
+    COMPLETED,
+    CANCELLED,
+    FAILED
+  }
+
+  @Value
+  private static class StreamMetricIdentifier {
+    String method;
+    Outcome outcome;
+  }
+}
@@ -48,13 +48,17 @@ import org.hypertrace.core.documentstore.expression.impl.IdentifierExpression;
 import org.hypertrace.core.documentstore.expression.impl.LogicalExpression;
 import org.hypertrace.core.documentstore.expression.impl.RelationalExpression;
 import org.hypertrace.core.documentstore.model.options.UpdateOptions;
+import org.hypertrace.core.documentstore.model.subdoc.SubDocument;
 import org.hypertrace.core.documentstore.model.subdoc.SubDocumentUpdate;
+import org.hypertrace.core.documentstore.model.subdoc.SubDocumentValue;
+import org.hypertrace.core.documentstore.model.subdoc.UpdateOperator;
 import org.hypertrace.core.documentstore.query.Filter;
 import org.hypertrace.core.documentstore.query.Selection;
 import org.hypertrace.core.grpcutils.context.RequestContext;
 import org.hypertrace.entity.attribute.translator.EntityAttributeChangeEvaluator;
 import org.hypertrace.entity.attribute.translator.EntityAttributeMapping;
 import org.hypertrace.entity.data.service.DocumentParser;
+import org.hypertrace.entity.data.service.EntityCache;
 import org.hypertrace.entity.data.service.EntityIdGenerator;
 import org.hypertrace.entity.data.service.EntityNormalizer;
 import org.hypertrace.entity.data.service.IdentifyingAttributeCache;
@@ -63,10 +67,12 @@ import org.hypertrace.entity.data.service.v1.AttributeValueList;
 import org.hypertrace.entity.data.service.v1.Entity;
 import org.hypertrace.entity.fetcher.EntityFetcher;
 import org.hypertrace.entity.metric.EntityCounterMetricSender;
+import org.hypertrace.entity.metric.ResponseStreamMetricSender;
 import org.hypertrace.entity.query.service.converter.AliasProvider;
 import org.hypertrace.entity.query.service.converter.ConversionException;
 import org.hypertrace.entity.query.service.converter.Converter;
 import org.hypertrace.entity.query.service.converter.ConverterModule;
+import org.hypertrace.entity.query.service.converter.QueryPlanCache;
 import org.hypertrace.entity.query.service.converter.response.DocumentConverter;
 import org.hypertrace.entity.query.service.v1.AttributeUpdateOperation;
 import org.hypertrace.entity.query.service.v1.BulkEntityArrayAttributeUpdateRequest;
@@ -97,12 +103,14 @@ import org.hypertrace.entity.query.service.v1.UpdateSummary;
 import org.hypertrace.entity.query.service.v1.UpdatedEntity;
 import org.hypertrace.entity.query.service.v1.Value;
 import org.hypertrace.entity.service.change.event.api.EntityChangeEventGenerator;
+import org.hypertrace.entity.service.change.event.api.EntityChangeSet;
 import org.hypertrace.entity.service.constants.EntityServiceConstants;
 import org.hypertrace.entity.service.util.DocStoreConverter;
 import org.hypertrace.entity.service.util.DocStoreJsonFormat;
 import org.hypertrace.entity.service.util.DocStoreJsonFormat.Printer;
 import org.hypertrace.entity.service.util.StringUtils;
 import org.hypertrace.entity.type.service.rxclient.EntityTypeClient;
+import org.hypertrace.entity.type.service.v2.EntityTypeRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -111,12 +119,14 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
   private static final Logger LOG = LoggerFactory.getLogger(EntityQueryServiceImpl.class);
   private static final Printer PRINTER = DocStoreJsonFormat.printer().includingDefaultValueFields();
   private static final DocumentParser DOCUMENT_PARSER = new DocumentParser();
-  private static final String CHUNK_SIZE_CONFIG = "entity.query.service.response.chunk.size";
   private static final String ENTITY_IDS_DELETE_LIMIT_CONFIG = "entity.delete.limit";
   private static final String MAX_STRING_LENGTH_FOR_UPDATE_CONFIG =
       "entity.query.service.max.string.length.for.update";
+  private static final String UPDATE_RETURNS_DOCUMENTS_CONFIG =
+      "entity.query.service.update.returns.documents";
+  private static final String DATASTORE_TYPE_CONFIG =
+      "entity.service.config.document.store.dataStoreType";
 
-  private static final int DEFAULT_CHUNK_SIZE = 10_000;
   private static final String ARRAY_VALUE_PATH_SUFFIX =
       Stream.of(
               "",
@@ -130,8 +140,10 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
 
   private final Collection entitiesCollection;
   private final EntityAttributeMapping entityAttributeMapping;
-  private final int CHUNK_SIZE;
+  private final ResultSetChunkingConfig chunkingConfig;
   private final Injector injector;
+  private final Converter<EntityQueryRequest, org.hypertrace.core.documentstore.query.Query>
+      queryConverter;
   private final int maxEntitiesToDelete;
   private final EntityFetcher entityFetcher;
   private final EntityChangeEventGenerator entityChangeEventGenerator;
@@ -139,6 +151,9 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
   private final EntityCounterMetricSender entityCounterMetricSender;
   private final EntityNormalizer entityNormalizer;
   private final int maxStringLengthForUpdate;
+  private final EntityCache entityCache;
+  private final ResponseStreamMetricSender responseStreamMetricSender =
+      new ResponseStreamMetricSender();
 
   public EntityQueryServiceImpl(
       Datastore datastore,
@@ -147,6 +162,44 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
       EntityChangeEventGenerator entityChangeEventGenerator,
       EntityCounterMetricSender entityCounterMetricSender,
       Channel entityTypeChannel) {
+    this(
+        datastore,
+        config,
+        entityAttributeMapping,
+        entityChangeEventGenerator,
+        entityCounterMetricSender,
+        EntityTypeRegistry.fromChannel(entityTypeChannel));
+  }
+
+  public EntityQueryServiceImpl(
+      Datastore datastore,
+      Config config,
+      EntityAttributeMapping entityAttributeMapping,
+      EntityChangeEventGenerator entityChangeEventGenerator,
+      EntityCounterMetricSender entityCounterMetricSender,
+      EntityTypeRegistry entityTypeRegistry) {
+    this(
+        datastore,
+        config,
+        entityAttributeMapping,
+        entityChangeEventGenerator,
+        entityCounterMetricSender,
+        entityTypeRegistry,
+        EntityCache.disabled());
+  }
+
+  /**
+   * @param entityCache the cache of the entities shared with the entity data service, which the
+   *     entity updates of this service invalidate
+   */
+  public EntityQueryServiceImpl(
+      Datastore datastore,
+      Config config,
+      EntityAttributeMapping entityAttributeMapping,
+      EntityChangeEventGenerator entityChangeEventGenerator,
+      EntityCounterMetricSender entityCounterMetricSender,
+      EntityTypeRegistry entityTypeRegistry,
+      EntityCache entityCache) {
     this(
         datastore.getCollection(RAW_ENTITIES_COLLECTION),
         datastore,
@@ -154,16 +207,19 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
         entityChangeEventGenerator,
         new EntityAttributeChangeEvaluator(config, entityAttributeMapping),
         entityCounterMetricSender,
-        EntityTypeClient.builder(entityTypeChannel).build(),
-        !config.hasPathOrNull(CHUNK_SIZE_CONFIG)
-            ? DEFAULT_CHUNK_SIZE
-            : config.getInt(CHUNK_SIZE_CONFIG),
+        new EntityFetcher(
+            datastore.getCollection(RAW_ENTITIES_COLLECTION),
+            DOCUMENT_PARSER,
+            updateReturnsDocuments(config)),
+        entityTypeRegistry,
+        ResultSetChunkingConfig.fromConfig(config),
         config.hasPath(ENTITY_IDS_DELETE_LIMIT_CONFIG)
             ? config.getInt(ENTITY_IDS_DELETE_LIMIT_CONFIG)
             : 10000,
         config.hasPath(MAX_STRING_LENGTH_FOR_UPDATE_CONFIG)
             ? config.getInt(MAX_STRING_LENGTH_FOR_UPDATE_CONFIG)
-            : 5000);
+            : 5000,
+        entityCache);
   }
 
   public EntityQueryServiceImpl(
@@ -184,13 +240,38 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
         entityChangeEventGenerator,
         entityAttributeChangeEvaluator,
         entityCounterMetricSender,
-        new EntityFetcher(entitiesCollection, DOCUMENT_PARSER),
         entityTypeClient,
-        chunkSize,
+        ResultSetChunkingConfig.ofRows(chunkSize),
         maxEntitiesToDelete,
         maxStringLengthForUpdate);
   }
 
+  public EntityQueryServiceImpl(
+      Collection entitiesCollection,
+      Datastore datastore,
+      EntityAttributeMapping entityAttributeMapping,
+      EntityChangeEventGenerator entityChangeEventGenerator,
+      EntityAttributeChangeEvaluator entityAttributeChangeEvaluator,
+      EntityCounterMetricSender entityCounterMetricSender,
+      EntityTypeClient entityTypeClient,
+      ResultSetChunkingConfig chunkingConfig,
+      int maxEntitiesToDelete,
+      int maxStringLengthForUpdate) {
+    this(
+        entitiesCollection,
+        datastore,
+        entityAttributeMapping,
+        entityChangeEventGenerator,
+        entityAttributeChangeEvaluator,
+        entityCounterMetricSender,
+        new EntityFetcher(entitiesCollection, DOCUMENT_PARSER),
+        EntityTypeRegistry.fromClient(entityTypeClient),
+        chunkingConfig,
+        maxEntitiesToDelete,
+        maxStringLengthForUpdate,
+        EntityCache.disabled());
+  }
+
   EntityQueryServiceImpl(
       Collection entitiesCollection,
       Datastore datastore,
@@ -203,10 +284,47 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
       int chunkSize,
       int maxEntitiesToDelete,
       int maxStringLengthForUpdate) {
+    this(
+        entitiesCollection,
+        datastore,
+        entityAttributeMapping,
+        entityChangeEventGenerator,
+        entityAttributeChangeEvaluator,
+        entityCounterMetricSender,
+        entityFetcher,
+        EntityTypeRegistry.fromClient(entityTypeClient),
+        ResultSetChunkingConfig.ofRows(chunkSize),
+        maxEntitiesToDelete,
+        maxStringLengthForUpdate,
+        EntityCache.disabled());
+  }
+
+  EntityQueryServiceImpl(
+      Collection entitiesCollection,
+      Datastore datastore,
+      EntityAttributeMapping entityAttributeMapping,
+      EntityChangeEventGenerator entityChangeEventGenerator,
+      EntityAttributeChangeEvaluator entityAttributeChangeEvaluator,
+      EntityCounterMetricSender entityCounterMetricSender,
+      EntityFetcher entityFetcher,
+      EntityTypeRegistry entityTypeRegistry,
+      ResultSetChunkingConfig chunkingConfig,
+      int maxEntitiesToDelete,
+      int maxStringLengthForUpdate,
+      EntityCache entityCache) {
     this.entitiesCollection = entitiesCollection;
     this.entityAttributeMapping = entityAttributeMapping;
-    this.CHUNK_SIZE = chunkSize;
+    this.chunkingConfig = chunkingConfig;
     this.injector = Guice.createInjector(new ConverterModule(entityAttributeMapping));
+    this.queryConverter =
+        injector.getInstance(
+            com.google.inject.Key.get(
+                new TypeLiteral<
+                    Converter<
+                        EntityQueryRequest, org.hypertrace.core.documentstore.query.Query>>() {}));
+    // The compiled query plans embed the resolved attribute metadata
+    entityAttributeMapping.addAttributeMetadataChangeListener(
+        injector.getInstance(QueryPlanCache.class)::invalidateTenant);
     this.maxEntitiesToDelete = maxEntitiesToDelete;
     this.entityChangeEventGenerator = entityChangeEventGenerator;
     this.entityFetcher = entityFetcher;
@@ -214,8 +332,10 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
     this.entityCounterMetricSender = entityCounterMetricSender;
     IdentifyingAttributeCache identifyingAttributeCache = new IdentifyingAttributeCache(datastore);
     this.entityNormalizer =
-        new EntityNormalizer(entityTypeClient, new EntityIdGenerator(), identifyingAttributeCache);
+        new EntityNormalizer(
+            entityTypeRegistry, new EntityIdGenerator(), identifyingAttributeCache);
     this.maxStringLengthForUpdate = maxStringLengthForUpdate;
+    this.entityCache = entityCache;
   }
 
   @Override
@@ -229,69 +349,29 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
 
     final Converter<EntityQueryRequest, org.hypertrace.core.documentstore.query.Query>
         queryConverter = getQueryConverter();
-    final org.hypertrace.core.documentstore.query.Query query;
+    final ResultSetMetadata resultSetMetadata;
+    final CloseableIterator<Document> documentIterator;
 
     try {
-      query = queryConverter.convert(request, requestContext);
-      try (final CloseableIterator<Document> documentIterator =
-          entitiesCollection.aggregate(query)) {
-        streamResponse(request, responseObserver, documentIterator);
-      }
+      final org.hypertrace.core.documentstore.query.Query query =
+          queryConverter.convert(request, requestContext);
+      resultSetMetadata = this.buildMetadataForSelections(request.getSelectionList());
+      documentIterator = entitiesCollection.aggregate(query);
     } catch (Exception ex) {
       LOG.error("Error while executing entity query request ", ex);
       responseObserver.onError(new ServiceException(ex));
-    }
-  }
-
-  private void streamResponse(
-      final EntityQueryRequest request,
-      final StreamObserver<ResultSetChunk> responseObserver,
-      final CloseableIterator<Document> documentIterator)
-      throws ConversionException {
-    final DocumentConverter rowConverter = injector.getInstance(DocumentConverter.class);
-    ResultSetMetadata resultSetMetadata =
-        this.buildMetadataForSelections(request.getSelectionList());
-
-    if (!documentIterator.hasNext()) {
-      ResultSetChunk.Builder resultBuilder = ResultSetChunk.newBuilder();
-      resultBuilder.setResultSetMetadata(resultSetMetadata);
-      resultBuilder.setIsLastChunk(true);
-      resultBuilder.setChunkId(0);
-      responseObserver.onNext(resultBuilder.build());
-      responseObserver.onCompleted();
       return;
     }
 
-    boolean isNewChunk = true;
-    int chunkId = 0, rowCount = 0;
-    ResultSetChunk.Builder resultBuilder = ResultSetChunk.newBuilder();
-    while (documentIterator.hasNext()) {
-      // Set metadata for new chunk
-      if (isNewChunk) {
-        resultBuilder.setResultSetMetadata(resultSetMetadata);
-        isNewChunk = false;
-      }
-
-      try {
-        final Row row = rowConverter.convertToRow(documentIterator.next(), resultSetMetadata);
-        resultBuilder.addRow(row);
-        rowCount++;
-      } catch (final Exception e) {
-        responseObserver.onError(new ServiceException(e));
-        return;
-      }
-
-      // current chunk is complete
-      if (rowCount >= CHUNK_SIZE || !documentIterator.hasNext()) {
-        resultBuilder.setChunkId(chunkId++);
-        resultBuilder.setIsLastChunk(!documentIterator.hasNext());
-        responseObserver.onNext(resultBuilder.build());
-        resultBuilder = ResultSetChunk.newBuilder();
-        isNewChunk = true;
-        rowCount = 0;
-      }
-    }
-    responseObserver.onCompleted();
+    // The streamer owns (and closes) the document iterator from here on
+    new ResultSetChunkStreamer(
+            documentIterator,
+            injector.getInstance(DocumentConverter.class),
+            resultSetMetadata,
+            chunkingConfig,
+            responseObserver,
+            responseStreamMetricSender)
+        .start();
   }
 
   private ResultSetChunk convertDocumentsToResultSetChunk(
@@ -397,15 +477,24 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
       try {
         List<Entity> existingEntities =
             this.entityFetcher.getEntitiesByEntityIds(tenantId, entityIdsForChangeNotification);
-        entitiesCollection.bulkUpdateSubDocs(entitiesUpdateMap);
-
-        List<Entity> updatedEntities =
-            this.entityFetcher.getEntitiesByEntityIds(tenantId, entityIdsForChangeNotification);
+        List<Entity> updatedEntities;
+        if (entityIdsForChangeNotification.isEmpty()) {
+          entitiesCollection.bulkUpdateSubDocs(entitiesUpdateMap);
+          updatedEntities = emptyList();
+        } else {
+          updatedEntities =
+              updateAndFetchEntities(
+                  tenantId,
+                  request.getEntityType(),
+                  entityIdsForChangeNotification,
+                  buildSetUpdates(Map.of(subDocPath, jsonDocument)),
+                  () -> entitiesCollection.bulkUpdateSubDocs(entitiesUpdateMap));
+        }
 
+        EntityChangeSet changeSet = EntityChangeSet.of(existingEntities, updatedEntities);
         this.entityCounterMetricSender.sendEntitiesMetrics(
-            requestContext, request.getEntityType(), existingEntities, updatedEntities);
-        this.entityChangeEventGenerator.sendChangeNotification(
-            requestContext, existingEntities, updatedEntities);
+            requestContext, request.getEntityType(), changeSet);
+        this.entityChangeEventGenerator.sendChangeNotification(requestContext, changeSet);
       } catch (Exception e) {
         LOG.error(
             "Failed to update entities {}, subDocPath {}, with new doc {}.",
@@ -414,6 +503,8 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
             jsonDocument,
             e);
         throw e;
+      } finally {
+        this.entityCache.invalidate(entitiesUpdateMap.keySet());
       }
     }
   }
@@ -501,15 +592,28 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
 
       List<Entity> existingEntities =
           this.entityFetcher.getEntitiesByEntityIds(tenantId, entityIdsForChangeNotifications);
-      entitiesCollection.bulkOperationOnArrayValue(bulkArrayValueUpdateRequest);
-
-      List<Entity> updatedEntities =
-          this.entityFetcher.getEntitiesByEntityIds(tenantId, request.getEntityIdsList());
+      List<Entity> updatedEntities;
+      try {
+        if (entityIdsForChangeNotifications.isEmpty()) {
+          entitiesCollection.bulkOperationOnArrayValue(bulkArrayValueUpdateRequest);
+          updatedEntities = emptyList();
+        } else {
+          updatedEntities =
+              updateAndFetchEntities(
+                  tenantId,
+                  request.getEntityType(),
+                  entityIdsForChangeNotifications,
+                  List.of(buildArrayUpdate(bulkArrayValueUpdateRequest)),
+                  () -> entitiesCollection.bulkOperationOnArrayValue(bulkArrayValueUpdateRequest));
+        }
+      } finally {
+        this.entityCache.invalidate(keys);
+      }
 
+      EntityChangeSet changeSet = EntityChangeSet.of(existingEntities, updatedEntities);
       this.entityCounterMetricSender.sendEntitiesMetrics(
-          requestContext, request.getEntityType(), existingEntities, updatedEntities);
-      this.entityChangeEventGenerator.sendChangeNotification(
-          requestContext, existingEntities, updatedEntities);
+          requestContext, request.getEntityType(), changeSet);
+      this.entityChangeEventGenerator.sendChangeNotification(requestContext, changeSet);
 
       responseObserver.onNext(BulkEntityArrayAttributeUpdateResponse.newBuilder().build());
       responseObserver.onCompleted();
@@ -532,6 +636,78 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
     }
   }
 
+  /**
+   * Applies the same updates to all the given entities and returns them as they are after the
+   * update, so that the updated entities need not be read back separately. Docstores which cannot
+   * return the updated documents get the given update followed by a read instead.
+   */
+  private List<Entity> updateAndFetchEntities(
+      String tenantId,
+      String entityType,
+      java.util.Collection<String> entityIds,
+      List<SubDocumentUpdate> updates,
+      DocStoreUpdate fallbackUpdate)
+      throws Exception {
+    if (!this.entityFetcher.canReturnUpdatedEntities()) {
+      fallbackUpdate.run();
+      return this.entityFetcher.getEntitiesByEntityIds(tenantId, entityIds);
+    }
+    return this.entityFetcher.updateEntitiesByEntityIds(tenantId, entityType, entityIds, updates);
+  }
+
+  /**
+   * Whether bulk updates of the docstore return the updated documents, which is configured, or
+   * else assumed for the mongo docstore only.
+   */
+  private static boolean updateReturnsDocuments(Config config) {
+    if (config.hasPath(UPDATE_RETURNS_DOCUMENTS_CONFIG)) {
+      return config.getBoolean(UPDATE_RETURNS_DOCUMENTS_CONFIG);
+    }
+    return config.hasPath(DATASTORE_TYPE_CONFIG)
+        && "mongo".equalsIgnoreCase(config.getString(DATASTORE_TYPE_CONFIG));
+  }
+
+  private List<SubDocumentUpdate> buildSetUpdates(Map<String, Document> subDocuments) {
+    return subDocuments.entrySet().stream()
+        .map(
+            entry ->
+                SubDocumentUpdate.builder()
+                    .subDocument(SubDocument.builder().path(entry.getKey()).build())
+                    .operator(UpdateOperator.SET)
+                    .subDocumentValue(SubDocumentValue.of(entry.getValue()))
+                    .build())
+        .collect(toUnmodifiableList());
+  }
+
+  private SubDocumentUpdate buildArrayUpdate(BulkArrayValueUpdateRequest request) {
+    final UpdateOperator operator;
+    switch (request.getOperation()) {
+      case ADD:
+        operator = UpdateOperator.ADD_TO_LIST_IF_ABSENT;
+        break;
+      case REMOVE:
+        operator = UpdateOperator.REMOVE_ALL_FROM_LIST;
+        break;
+      case SET:
+        operator = UpdateOperator.SET;
+        break;
+      default:
+        throw new UnsupportedOperationException("Unknown operation " + request.getOperation());
+    }
+
+    return SubDocumentUpdate.builder()
+        .subDocument(SubDocument.builder().path(request.getSubDocPath()).build())
+        .operator(operator)
+        .subDocumentValue(
+            SubDocumentValue.of(request.getSubDocuments().toArray(Document[]::new)))
+        .build();
+  }
+
+  @FunctionalInterface
+  private interface DocStoreUpdate {
+    void run() throws Exception;
+  }
+
   @SneakyThrows
   private JSONDocument convertToJsonDocument(LiteralConstant literalConstant) {
     // Convert setAttribute LiteralConstant to AttributeValue. Need to be able to store an array
@@ -619,17 +795,34 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
     try {
       List<Entity> existingEntities =
           this.entityFetcher.getEntitiesByEntityIds(tenantId, entityIdsForChangeNotification);
-      entitiesCollection.bulkUpdateSubDocs(entitiesUpdateMap);
-      List<Entity> updatedEntities =
-          this.entityFetcher.getEntitiesByEntityIds(tenantId, entityIdsForChangeNotification);
+      Set<Map<String, Document>> distinctUpdates = new HashSet<>(entitiesUpdateMap.values());
+      List<Entity> updatedEntities;
+      // The updated entities can only be returned by the update itself when all the entities get
+      // the same updates
+      if (!entityIdsForChangeNotification.isEmpty()
+          && entityIdsForChangeNotification.size() == entitiesUpdateMap.size()
+          && distinctUpdates.size() == 1) {
+        updatedEntities =
+            updateAndFetchEntities(
+                tenantId,
+                entityType,
+                entityIdsForChangeNotification,
+                buildSetUpdates(distinctUpdates.iterator().next()),
+                () -> entitiesCollection.bulkUpdateSubDocs(entitiesUpdateMap));
+      } else {
+        entitiesCollection.bulkUpdateSubDocs(entitiesUpdateMap);
+        updatedEntities =
+            this.entityFetcher.getEntitiesByEntityIds(tenantId, entityIdsForChangeNotification);
+      }
 
-      this.entityCounterMetricSender.sendEntitiesMetrics(
-          requestContext, entityType, existingEntities, updatedEntities);
-      this.entityChangeEventGenerator.sendChangeNotification(
-          requestContext, existingEntities, updatedEntities);
+      EntityChangeSet changeSet = EntityChangeSet.of(existingEntities, updatedEntities);
+      this.entityCounterMetricSender.sendEntitiesMetrics(requestContext, entityType, changeSet);
+      this.entityChangeEventGenerator.sendChangeNotification(requestContext, changeSet);
     } catch (Exception e) {
       LOG.error("Failed to update entities {}", entitiesMap, e);
       throw e;
+    } finally {
+      this.entityCache.invalidate(entitiesUpdateMap.keySet());
     }
   }
 
@@ -729,6 +922,8 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
       Optional<String> tenantId = requestContext.getTenantId();
       this.entitiesCollection.delete(
           DocStoreConverter.transform(tenantId.orElseThrow(), request.getEntityType(), entityIds));
+      this.entityCache.invalidate(
+          getDocKeys(tenantId.orElseThrow(), request.getEntityType(), existingEntities));
 
       this.entityCounterMetricSender.sendEntitiesDeleteMetrics(
           requestContext, request.getEntityType(), existingEntities);
@@ -847,24 +1042,38 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
       final boolean shouldSendNotification =
           entityAttributeChangeEvaluator.shouldSendNotificationForAttributeUpdates(
               requestContext, entityType, updateOperations);
-      entitiesCollection.bulkUpdate(
-          updateFilterQuery, updates, UpdateOptions.builder().returnDocumentType(NONE).build());
+      try {
+        entitiesCollection.bulkUpdate(
+            updateFilterQuery, updates, UpdateOptions.builder().returnDocumentType(NONE).build());
+      } finally {
+        // Entities which started matching the filter after the query are left to expire
+        this.entityCache.invalidate(getDocKeys(tenantId, entityType, existingEntities));
+      }
       if (shouldSendNotification) {
         LOG.debug("Generating entity-change-event for entityType: {}", entityType);
         List<String> updatedEntityIds =
             existingEntities.stream().map(Entity::getEntityId).collect(Collectors.toList());
         List<Entity> updatedEntities =
             entityFetcher.getEntitiesByEntityIds(tenantId, updatedEntityIds);
+        EntityChangeSet changeSet = EntityChangeSet.of(existingEntities, updatedEntities);
         this.entityCounterMetricSender.sendEntitiesMetrics(
-            requestContext, request.getEntityType(), existingEntities, updatedEntities);
-        entityChangeEventGenerator.sendChangeNotification(
-            requestContext, existingEntities, updatedEntities);
+            requestContext, request.getEntityType(), changeSet);
+        entityChangeEventGenerator.sendChangeNotification(requestContext, changeSet);
       }
     }
 
     return responseBuilder.build();
   }
 
+  private List<Key> getDocKeys(
+      final String tenantId, final String entityType, final List<Entity> entities) {
+    return entities.stream()
+        .map(
+            entity ->
+                this.entityNormalizer.getEntityDocKey(tenantId, entityType, entity.getEntityId()))
+        .collect(toUnmodifiableList());
+  }
+
   private List<UpdatedEntity> buildUpdatedEntityResponse(final List<Entity> entities) {
     return entities.stream()
         .map(Entity::getEntityId)
@@ -992,14 +1201,9 @@ public class EntityQueryServiceImpl extends EntityQueryServiceImplBase {
         com.google.inject.Key.get(new TypeLiteral<Converter<List<Expression>, Selection>>() {}));
   }
 
-  @SuppressWarnings("Convert2Diamond")
   private Converter<EntityQueryRequest, org.hypertrace.core.documentstore.query.Query>
       getQueryConverter() {
-    return injector.getInstance(
-        com.google.inject.Key.get(
-            new TypeLiteral<
-                Converter<
-                    EntityQueryRequest, org.hypertrace.core.documentstore.query.Query>>() {}));
+    return queryConverter;
   }
 
   private void validateDeleteEntitiesRequest(
@@ -0,0 +1,113 @@
+package org.hypertrace.entity.query.service;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ServiceException;
+import io.grpc.stub.StreamObserver;
+import org.hypertrace.core.documentstore.CloseableIterator;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.entity.metric.ResponseStreamMetricSender;
+import org.hypertrace.entity.query.service.converter.ConversionException;
+import org.hypertrace.entity.query.service.converter.response.DocumentConverter;
+import org.hypertrace.entity.query.service.v1.ResultSetChunk;
+import org.hypertrace.entity.query.service.v1.ResultSetMetadata;
+import org.hypertrace.entity.query.service.v1.Row;
+import org.hypertrace.entity.service.util.DocumentStreamer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the documents of an iterator as {@link ResultSetChunk}s, so that at most one chunk is
+ * buffered on the server irrespective of how fast the client consumes the response.
+ *
+ * <p>The rows are grouped into chunks as per the {@link ResultSetChunkingConfig}, and the {@link
+ * ResultSetMetadata} is only sent with the first chunk.
+ */
+class ResultSetChunkStreamer extends DocumentStreamer<ResultSetChunk> {
+  private static final Logger LOG = LoggerFactory.getLogger(ResultSetChunkStreamer.class);
+  private static final String METHOD_NAME = "execute";
+
+  private final DocumentConverter documentConverter;
+  private final ResultSetMetadata resultSetMetadata;
+  private final ResultSetChunkingConfig chunkingConfig;
+
+  private int chunkId = 0;
+  // A row which did not fit into the byte budget of the previous chunk
+  private Row pendingRow;
+
+  ResultSetChunkStreamer(
+      final CloseableIterator<Document> documentIterator,
+      final DocumentConverter documentConverter,
+      final ResultSetMetadata resultSetMetadata,
+      final ResultSetChunkingConfig chunkingConfig,
+      final StreamObserver<ResultSetChunk> responseObserver,
+      final ResponseStreamMetricSender responseStreamMetricSender) {
+    super(documentIterator, responseObserver, responseStreamMetricSender, METHOD_NAME);
+    this.documentConverter = documentConverter;
+    this.resultSetMetadata = resultSetMetadata;
+    this.chunkingConfig = chunkingConfig;
+  }
+
+  @Override
+  protected void streamNext() throws ConversionException {
+    final ResultSetChunk.Builder chunkBuilder = ResultSetChunk.newBuilder();
+    if (chunkId == 0) {
+      chunkBuilder.setResultSetMetadata(resultSetMetadata);
+    }
+
+    // The metadata of the first chunk counts towards its byte budget as well
+    long chunkBytes =
+        chunkingConfig.isByteBudgetEnabled() ? chunkBuilder.build().getSerializedSize() : 0;
+    int rowCount = 0;
+    while (pendingRow != null || documentIterator.hasNext()) {
+      if (stopIfCancelled()) {
+        return;
+      }
+
+      final Row row;
+      if (pendingRow != null) {
+        row = pendingRow;
+        pendingRow = null;
+      } else {
+        row = documentConverter.convertToRow(documentIterator.next(), resultSetMetadata);
+      }
+
+      if (chunkingConfig.isByteBudgetEnabled()) {
+        final int rowBytes =
+            CodedOutputStream.computeMessageSize(ResultSetChunk.ROW_FIELD_NUMBER, row);
+        if (rowCount > 0 && chunkBytes + rowBytes > chunkingConfig.getMaxBytes()) {
+          pendingRow = row;
+          break;
+        }
+        if (rowBytes > chunkingConfig.getMaxBytes()) {
+          LOG.warn(
+              "Sending a row of {} bytes, larger than the max chunk size of {} bytes",
+              rowBytes,
+              chunkingConfig.getMaxBytes());
+        }
+        chunkBytes += rowBytes;
+      }
+
+      chunkBuilder.addRow(row);
+
+      if (++rowCount >= chunkingConfig.getMaxRows()
+          || (chunkingConfig.isByteBudgetEnabled()
+              && chunkBytes >= chunkingConfig.getTargetBytes())) {
+        break;
+      }
+    }
+
+    final boolean isLastChunk = pendingRow == null && !documentIterator.hasNext();
+    chunkBuilder.setChunkId(chunkId++);
+    chunkBuilder.setIsLastChunk(isLastChunk);
+    responseObserver.onNext(chunkBuilder.build());
+
+    if (isLastChunk) {
+      complete();
+    }
+  }
+
+  @Override
+  protected Throwable buildStreamingError(final Exception e) {
+    return new ServiceException(e);
+  }
+}
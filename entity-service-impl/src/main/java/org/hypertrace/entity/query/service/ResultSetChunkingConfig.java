@@ -0,0 +1,76 @@
+package org.hypertrace.entity.query.service;
+
+import com.typesafe.config.Config;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Decides how many rows go into each {@link
+ * org.hypertrace.entity.query.service.v1.ResultSetChunk} of an entity query response, e.g.
+ *
+ * <pre>
+ * entity.query.service.response.chunk = {
+ *   size = 10000            # maximum number of rows per chunk
+ *   target.bytes = 1048576  # a chunk is closed once its rows take up this many bytes
+ *   max.bytes = 3145728     # a row is moved to the next chunk if it would exceed this size
+ * }
+ * </pre>
+ *
+ * Byte based chunking is only enabled when {@code target.bytes} is configured. A single row larger
+ * than {@code max.bytes} is still sent, in a chunk of its own.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ResultSetChunkingConfig {
+  private static final String CHUNK_SIZE_CONFIG = "entity.query.service.response.chunk.size";
+  private static final String CHUNK_TARGET_BYTES_CONFIG =
+      "entity.query.service.response.chunk.target.bytes";
+  private static final String CHUNK_MAX_BYTES_CONFIG =
+      "entity.query.service.response.chunk.max.bytes";
+
+  static final int DEFAULT_CHUNK_SIZE = 10_000;
+  // Stays below the default 4 MiB max inbound message size of the gRPC clients
+  static final long DEFAULT_CHUNK_MAX_BYTES = 3 * 1024 * 1024;
+
+  int maxRows;
+  long targetBytes;
+  long maxBytes;
+
+  public static ResultSetChunkingConfig fromConfig(Config config) {
+    final int maxRows =
+        !config.hasPathOrNull(CHUNK_SIZE_CONFIG)
+            ? DEFAULT_CHUNK_SIZE
+            : config.getInt(CHUNK_SIZE_CONFIG);
+    if (!config.hasPath(CHUNK_TARGET_BYTES_CONFIG)) {
+      return ofRows(maxRows);
+    }
+
+    final long targetBytes = config.getBytes(CHUNK_TARGET_BYTES_CONFIG);
+    final long maxBytes =
+        config.hasPath(CHUNK_MAX_BYTES_CONFIG)
+            ? config.getBytes(CHUNK_MAX_BYTES_CONFIG)
+            : Math.max(targetBytes, DEFAULT_CHUNK_MAX_BYTES);
+    return ofBytes(maxRows, targetBytes, maxBytes);
+  }
+
+  /** Chunks limited only by their number of rows */
+  public static ResultSetChunkingConfig ofRows(int maxRows) {
+    return new ResultSetChunkingConfig(maxRows, 0, 0);
+  }
+
+  /** Chunks limited by their number of rows as well as by the serialized size of their rows */
+  public static ResultSetChunkingConfig ofBytes(int maxRows, long targetBytes, long maxBytes) {
+    if (targetBytes <= 0 || maxBytes < targetBytes) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Invalid chunk byte limits, target: %d, max: %d. Expected 0 < target <= max",
+              targetBytes, maxBytes));
+    }
+    return new ResultSetChunkingConfig(maxRows, targetBytes, maxBytes);
+  }
+
+  public boolean isByteBudgetEnabled() {
+    return targetBytes > 0;
+  }
+}
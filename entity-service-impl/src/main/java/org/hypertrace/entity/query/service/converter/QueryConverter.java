@@ -6,6 +6,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Function;
 import lombok.AllArgsConstructor;
 import org.hypertrace.core.documentstore.expression.type.FromTypeExpression;
@@ -18,6 +19,7 @@ import org.hypertrace.core.documentstore.query.Query.QueryBuilder;
 import org.hypertrace.core.documentstore.query.Selection;
 import org.hypertrace.core.documentstore.query.Sort;
 import org.hypertrace.core.grpcutils.context.RequestContext;
+import org.hypertrace.entity.query.service.converter.QueryPlanCache.QueryPlan;
 import org.hypertrace.entity.query.service.converter.aggregation.AggregationColumnProvider;
 import org.hypertrace.entity.query.service.v1.EntityQueryRequest;
 import org.hypertrace.entity.query.service.v1.Expression;
@@ -34,29 +36,23 @@ public class QueryConverter implements Converter<EntityQueryRequest, Query> {
   private final Converter<List<Expression>, Aggregation> groupByConverter;
 
   private final Converter<List<OrderByExpression>, Sort> orderByConverter;
+  private final QueryPlanCache queryPlanCache;
   private final PaginationBuilder paginationBuilder = Pagination.builder();
 
   @Override
   public Query convert(final EntityQueryRequest request, final RequestContext requestContext)
       throws ConversionException {
     final QueryBuilder builder = Query.builder();
+    final QueryPlan plan = getPlan(request, requestContext);
 
-    setFieldIfNotEmpty(
-        request.getSelectionList(), builder::setSelection, selectionConverter, requestContext);
+    setFieldIfNotNull(plan.getSelection(), builder::setSelection);
 
     final Filter filter = filterConverter.convert(request, requestContext);
     builder.setFilter(filter);
 
-    setFieldIfNotEmpty(
-        getExpressionsForFromClause(request),
-        builder::addFromClauses,
-        fromClauseConverter,
-        requestContext);
-
-    setFieldIfNotEmpty(
-        request.getGroupByList(), builder::setAggregation, groupByConverter, requestContext);
-    setFieldIfNotEmpty(
-        request.getOrderByList(), builder::setSort, orderByConverter, requestContext);
+    setFieldIfNotNull(plan.getFromClauses(), builder::addFromClauses);
+    setFieldIfNotNull(plan.getAggregation(), builder::setAggregation);
+    setFieldIfNotNull(plan.getSort(), builder::setSort);
 
     if (request.getLimit() > 0 || request.getOffset() > 0) {
       final Pagination pagination =
@@ -67,18 +63,46 @@ public class QueryConverter implements Converter<EntityQueryRequest, Query> {
     return builder.build();
   }
 
-  private <T, U> void setFieldIfNotEmpty(
+  private QueryPlan getPlan(final EntityQueryRequest request, final RequestContext requestContext)
+      throws ConversionException {
+    final Optional<String> tenantId = requestContext.getTenantId();
+    if (tenantId.isEmpty()) {
+      return compilePlan(request, requestContext);
+    }
+
+    return queryPlanCache.getOrCompile(
+        tenantId.get(), request, () -> compilePlan(request, requestContext));
+  }
+
+  private QueryPlan compilePlan(
+      final EntityQueryRequest request, final RequestContext requestContext)
+      throws ConversionException {
+    return new QueryPlan(
+        convertIfNotEmpty(request.getSelectionList(), selectionConverter, requestContext),
+        convertIfNotEmpty(
+            getExpressionsForFromClause(request), fromClauseConverter, requestContext),
+        convertIfNotEmpty(request.getGroupByList(), groupByConverter, requestContext),
+        convertIfNotEmpty(request.getOrderByList(), orderByConverter, requestContext));
+  }
+
+  private <T, U> T convertIfNotEmpty(
       final List<U> list,
-      final Function<T, QueryBuilder> setter,
       final Converter<List<U>, T> converter,
       final RequestContext requestContext)
       throws ConversionException {
     if (list.isEmpty()) {
+      return null;
+    }
+
+    return converter.convert(list, requestContext);
+  }
+
+  private <T> void setFieldIfNotNull(final T value, final Function<T, QueryBuilder> setter) {
+    if (value == null) {
       return;
     }
 
-    final T converted = converter.convert(list, requestContext);
-    setter.apply(converted);
+    setter.apply(value);
   }
 
   private List<Expression> getExpressionsForFromClause(final EntityQueryRequest request)
@@ -0,0 +1,98 @@
+package org.hypertrace.entity.query.service.converter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Singleton;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import lombok.Value;
+import org.hypertrace.core.documentstore.expression.type.FromTypeExpression;
+import org.hypertrace.core.documentstore.query.Aggregation;
+import org.hypertrace.core.documentstore.query.Selection;
+import org.hypertrace.core.documentstore.query.Sort;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.entity.query.service.v1.EntityQueryRequest;
+import org.hypertrace.entity.query.service.v1.Expression;
+import org.hypertrace.entity.query.service.v1.OrderByExpression;
+
+/**
+ * Caches, per tenant and request shape, the parts of a converted query which do not depend on the
+ * literals of the request, i.e. the selections, from clauses, aggregations and sorts along with the
+ * doc store paths and attribute kinds resolved for their columns. The filter and the pagination
+ * carry the literals and are converted for every request.
+ *
+ * <p>Since the resolved columns depend on the attribute metadata, the plans expire shortly after
+ * having been compiled and can be invalidated explicitly when the metadata of a tenant changes.
+ */
+@Singleton
+public class QueryPlanCache {
+  private static final long MAX_PLANS = 10_000;
+  private static final Duration PLAN_EXPIRY = Duration.ofMinutes(2);
+
+  private final Cache<QueryShape, QueryPlan> plans;
+
+  public QueryPlanCache() {
+    this.plans =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_PLANS)
+            .expireAfterWrite(PLAN_EXPIRY)
+            .recordStats()
+            .build();
+    PlatformMetricsRegistry.registerCache(
+        this.getClass().getName() + ".queryPlanCache", plans, Collections.emptyMap());
+  }
+
+  QueryPlan getOrCompile(
+      final String tenantId,
+      final EntityQueryRequest request,
+      final Callable<QueryPlan> planCompiler)
+      throws ConversionException {
+    final QueryShape shape =
+        new QueryShape(
+            tenantId,
+            request.getSelectionList(),
+            request.getGroupByList(),
+            request.getOrderByList());
+    try {
+      return plans.get(shape, planCompiler);
+    } catch (final ExecutionException | UncheckedExecutionException | ExecutionError e) {
+      if (e.getCause() instanceof ConversionException) {
+        throw (ConversionException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ConversionException("Unable to compile the query plan", e.getCause());
+    }
+  }
+
+  public void invalidateTenant(final String tenantId) {
+    plans.asMap().keySet().removeIf(shape -> shape.getTenantId().equals(tenantId));
+  }
+
+  public void invalidateAll() {
+    plans.invalidateAll();
+  }
+
+  @Value
+  private static class QueryShape {
+    String tenantId;
+    List<Expression> selections;
+    List<Expression> groupBys;
+    List<OrderByExpression> orderBys;
+  }
+
+  /** A null part is left out of the query */
+  @Value
+  static class QueryPlan {
+    Selection selection;
+    List<FromTypeExpression> fromClauses;
+    Aggregation aggregation;
+    Sort sort;
+  }
+}
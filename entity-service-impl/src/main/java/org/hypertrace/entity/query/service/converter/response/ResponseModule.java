@@ -11,7 +11,7 @@ public class ResponseModule extends AbstractModule {
 
   @Override
   protected void configure() {
-    bind(DocumentConverter.class).to(DocumentConverterImpl.class);
+    bind(DocumentConverter.class).to(StreamingDocumentConverter.class);
     install(new GetterModule());
   }
 
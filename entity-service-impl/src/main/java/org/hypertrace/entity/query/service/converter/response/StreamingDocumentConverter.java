@@ -0,0 +1,207 @@
+package org.hypertrace.entity.query.service.converter.response;
+
+import static org.hypertrace.entity.query.service.converter.ValueHelper.VALUE_KEY;
+import static org.hypertrace.entity.query.service.converter.ValueHelper.VALUE_LIST_KEY;
+import static org.hypertrace.entity.query.service.converter.ValueHelper.VALUE_MAP_KEY;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.entity.query.service.converter.ConversionException;
+import org.hypertrace.entity.query.service.converter.response.getter.ValueGetter;
+import org.hypertrace.entity.query.service.v1.ColumnMetadata;
+import org.hypertrace.entity.query.service.v1.ResultSetMetadata;
+import org.hypertrace.entity.query.service.v1.Row;
+import org.hypertrace.entity.query.service.v1.Value;
+
+/**
+ * Converts a document to a row by walking its JSON tokens once. Only the sub-trees of the
+ * selected columns are materialized (and handed over to the regular value getters), everything
+ * else is skipped without building a tree or a flattened value map.
+ *
+ * <p>The produced rows are identical to the ones produced by {@link DocumentConverterImpl}.
+ */
+@Singleton
+public class StreamingDocumentConverter implements DocumentConverter {
+  private static final int MAX_CACHED_COLUMN_PLANS = 1_000;
+  private static final Set<String> VALUE_WRAPPER_KEYS =
+      Set.of(VALUE_KEY, VALUE_LIST_KEY, VALUE_MAP_KEY);
+
+  private final List<ValueGetter> rootGetters;
+  private final ObjectMapper objectMapper;
+  private final LoadingCache<ResultSetMetadata, ColumnPlan> columnPlanCache =
+      CacheBuilder.newBuilder()
+          .maximumSize(MAX_CACHED_COLUMN_PLANS)
+          .build(CacheLoader.from(ColumnPlan::new));
+
+  @Inject
+  public StreamingDocumentConverter(
+      @Named("root_getters") final List<ValueGetter> rootGetters,
+      final ObjectMapper objectMapper) {
+    this.rootGetters = rootGetters;
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public Row convertToRow(final Document document, final ResultSetMetadata resultSetMetadata)
+      throws ConversionException {
+    final ColumnPlan plan = columnPlanCache.getUnchecked(resultSetMetadata);
+    final Value[] values = new Value[plan.columnCount];
+
+    try (final JsonParser parser = objectMapper.getFactory().createParser(document.toJson())) {
+      if (parser.nextToken() == JsonToken.START_OBJECT) {
+        readObject(parser, null, plan, values);
+      }
+    } catch (final IOException e) {
+      throw new ConversionException(
+          String.format("Error converting document: %s", document.toJson()), e);
+    }
+
+    return buildRow(values);
+  }
+
+  /**
+   * Reads the object the parser is currently positioned at (START_OBJECT) till its END_OBJECT.
+   *
+   * @return true if the object is a value wrapper (i.e. one of the root getters would match it,
+   *     so that it is mapped as a whole instead of being flattened)
+   */
+  private boolean readObject(
+      final JsonParser parser, final String prefix, final ColumnPlan plan, final Value[] values)
+      throws IOException, ConversionException {
+    boolean valueWrapper = false;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String name = parser.getCurrentName();
+      final JsonToken token = parser.nextToken();
+      final String key = prefix == null ? name : prefix + '.' + name;
+
+      if (token == JsonToken.START_OBJECT && VALUE_WRAPPER_KEYS.contains(name)) {
+        valueWrapper = true;
+      }
+
+      if (plan.isColumn(key)) {
+        final JsonNode node = objectMapper.readTree(parser);
+        mapNode(node, key, plan, values);
+      } else if (token == JsonToken.START_OBJECT && plan.isPrefix(key)) {
+        if (readObject(parser, key, plan, values)) {
+          // The object is mapped as a whole, hence nothing underneath it is addressable
+          plan.clearDescendants(key, values);
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+
+    return valueWrapper;
+  }
+
+  private void mapNode(
+      final JsonNode node, final String key, final ColumnPlan plan, final Value[] values)
+      throws ConversionException {
+    for (final ValueGetter getter : rootGetters) {
+      if (getter.matches(node)) {
+        plan.set(key, getter.getValue(node), values);
+        return;
+      }
+    }
+
+    if (node.isObject() && plan.isPrefix(key)) {
+      final Iterator<Entry<String, JsonNode>> fields = node.fields();
+
+      while (fields.hasNext()) {
+        final Entry<String, JsonNode> entry = fields.next();
+        mapNode(entry.getValue(), key + '.' + entry.getKey(), plan, values);
+      }
+    }
+  }
+
+  private Row buildRow(final Value[] values) {
+    final Row.Builder builder = Row.newBuilder();
+    final Value defaultValue = Value.getDefaultInstance();
+
+    for (final Value value : values) {
+      builder.addColumn(value == null ? defaultValue : value);
+    }
+
+    return builder.build();
+  }
+
+  private static final class ColumnPlan {
+    private final int columnCount;
+    private final Map<String, int[]> columnIndexes;
+    private final Map<String, int[]> descendantIndexes;
+
+    private ColumnPlan(final ResultSetMetadata resultSetMetadata) {
+      final Map<String, List<Integer>> columns = new HashMap<>();
+      final Map<String, List<Integer>> descendants = new HashMap<>();
+      final List<ColumnMetadata> columnMetadataList = resultSetMetadata.getColumnMetadataList();
+
+      for (int i = 0; i < columnMetadataList.size(); i++) {
+        final String columnName = columnMetadataList.get(i).getColumnName();
+        columns.computeIfAbsent(columnName, unused -> new ArrayList<>()).add(i);
+
+        for (int dot = columnName.indexOf('.'); dot > 0; dot = columnName.indexOf('.', dot + 1)) {
+          descendants
+              .computeIfAbsent(columnName.substring(0, dot), unused -> new ArrayList<>())
+              .add(i);
+        }
+      }
+
+      this.columnCount = columnMetadataList.size();
+      this.columnIndexes = toIndexArrays(columns);
+      this.descendantIndexes = toIndexArrays(descendants);
+    }
+
+    private boolean isColumn(final String key) {
+      return columnIndexes.containsKey(key);
+    }
+
+    private boolean isPrefix(final String key) {
+      return descendantIndexes.containsKey(key);
+    }
+
+    private void set(final String key, final Value value, final Value[] values) {
+      final int[] indexes = columnIndexes.get(key);
+
+      if (indexes != null) {
+        for (final int index : indexes) {
+          values[index] = value;
+        }
+      }
+    }
+
+    private void clearDescendants(final String prefix, final Value[] values) {
+      for (final int index : descendantIndexes.get(prefix)) {
+        values[index] = null;
+      }
+    }
+
+    private static Map<String, int[]> toIndexArrays(final Map<String, List<Integer>> map) {
+      final Map<String, int[]> result = new HashMap<>();
+
+      for (final Entry<String, List<Integer>> entry : map.entrySet()) {
+        result.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+      }
+
+      return Collections.unmodifiableMap(result);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package org.hypertrace.entity.service.util;
+
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.util.function.BooleanSupplier;
+import org.hypertrace.core.documentstore.CloseableIterator;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.entity.metric.ResponseStreamMetricSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the responses built from the documents of an iterator. When the response observer is a
+ * {@link ServerCallStreamObserver}, responses are built only while the transport is ready to accept
+ * more messages, so that the responses held on the server do not grow with the size of the result.
+ *
+ * <p>Streaming stops, and the iterator is closed, as soon as the call is cancelled by the client
+ * or its deadline passes.
+ */
+public abstract class DocumentStreamer<T> {
+  private static final Logger LOG = LoggerFactory.getLogger(DocumentStreamer.class);
+
+  protected final CloseableIterator<Document> documentIterator;
+  protected final StreamObserver<T> responseObserver;
+  private final ResponseStreamMetricSender responseStreamMetricSender;
+  private final String methodName;
+  private final Context context;
+
+  private boolean closed = false;
+
+  protected DocumentStreamer(
+      final CloseableIterator<Document> documentIterator,
+      final StreamObserver<T> responseObserver,
+      final ResponseStreamMetricSender responseStreamMetricSender,
+      final String methodName) {
+    this.documentIterator = documentIterator;
+    this.responseObserver = responseObserver;
+    this.responseStreamMetricSender = responseStreamMetricSender;
+    this.methodName = methodName;
+    this.context = Context.current();
+  }
+
+  public void start() {
+    if (responseObserver instanceof ServerCallStreamObserver) {
+      final ServerCallStreamObserver<T> serverCallStreamObserver =
+          (ServerCallStreamObserver<T>) responseObserver;
+      serverCallStreamObserver.setOnCancelHandler(this::cancel);
+      // Invoked by gRPC (serialized with the other call events) once the call is ready and
+      // every time the transport can take more data after having been saturated
+      serverCallStreamObserver.setOnReadyHandler(
+          () -> streamWhile(serverCallStreamObserver::isReady));
+    } else {
+      streamWhile(() -> true);
+    }
+  }
+
+  /** Sends the next response, and completes the stream once the documents run out */
+  protected abstract void streamNext() throws Exception;
+
+  /** @return the error to send to the response observer once streaming failed */
+  protected abstract Throwable buildStreamingError(Exception e);
+
+  /**
+   * Terminates the response stream with the cancellation status once the context of the call got
+   * cancelled, as a plain {@link StreamObserver} is not notified of the cancellation otherwise.
+   *
+   * @return true if the context of the call got cancelled, in which case streaming is stopped
+   */
+  protected boolean stopIfCancelled() {
+    if (!context.isCancelled()) {
+      return false;
+    }
+    if (cancel()) {
+      responseObserver.onError(Contexts.statusFromCancelled(context).asRuntimeException());
+    }
+    return true;
+  }
+
+  protected void complete() {
+    close();
+    responseStreamMetricSender.sendCompleted(methodName);
+    responseObserver.onCompleted();
+  }
+
+  private void streamWhile(final BooleanSupplier ready) {
+    try {
+      while (!closed && ready.getAsBoolean()) {
+        streamNext();
+      }
+    } catch (final Exception e) {
+      LOG.error("Error while streaming the response of {}", methodName, e);
+      if (close()) {
+        responseStreamMetricSender.sendFailed(methodName);
+      }
+      responseObserver.onError(buildStreamingError(e));
+    }
+  }
+
+  /** @return true if the iterator got closed by this invocation */
+  private boolean cancel() {
+    if (close()) {
+      LOG.debug("Response stream of {} cancelled, stopped fetching documents", methodName);
+      responseStreamMetricSender.sendCancelled(methodName);
+      return true;
+    }
+    return false;
+  }
+
+  /** @return true if the iterator got closed by this invocation */
+  private boolean close() {
+    if (closed) {
+      return false;
+    }
+
+    closed = true;
+    try {
+      documentIterator.close();
+    } catch (final IOException e) {
+      LOG.warn("Unable to close the document iterator", e);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,41 @@
+package org.hypertrace.entity.type.service.v2;
+
+import io.grpc.Channel;
+import io.grpc.Status;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Duration;
+import org.hypertrace.entity.type.service.rxclient.EntityTypeClient;
+
+/** Resolves which entity types are v2 entity types, as seen by a tenant. */
+public interface EntityTypeRegistry {
+
+  // Types are refreshed in the background, so lookups only wait on the first fetch of a tenant
+  Duration TYPE_REFRESH_INTERVAL = Duration.ofMinutes(5);
+
+  boolean isV2Type(String tenantId, String entityTypeName);
+
+  /** Resolves the entity types through a refreshing type client over the given channel. */
+  static EntityTypeRegistry fromChannel(Channel entityTypeChannel) {
+    return fromClient(
+        EntityTypeClient.builder(entityTypeChannel)
+            .withCacheRefreshInterval(TYPE_REFRESH_INTERVAL)
+            .build());
+  }
+
+  /**
+   * Resolves the entity types through the given client, in the context of the current request, and
+   * blocks on it for each lookup.
+   */
+  static EntityTypeRegistry fromClient(EntityTypeClient entityTypeClient) {
+    return (tenantId, entityTypeName) ->
+        entityTypeClient
+            .get(entityTypeName)
+            .map(unused -> true)
+            .onErrorResumeNext(
+                throwable ->
+                    Status.NOT_FOUND.getCode().equals(Status.fromThrowable(throwable).getCode())
+                        ? Single.just(false)
+                        : Single.error(throwable))
+            .blockingGet();
+  }
+}
@@ -29,10 +29,17 @@ public class EntityTypeServiceImpl extends EntityTypeServiceImplBase {
   private static final Logger LOGGER = LoggerFactory.getLogger(EntityTypeServiceImpl.class);
 
   private final Collection entityTypeCollection;
+  private final LocalEntityTypeRegistry entityTypeRegistry;
 
   public EntityTypeServiceImpl(Datastore datastore) {
+    this(datastore, new LocalEntityTypeRegistry(datastore));
+  }
+
+  /** The given registry is kept in sync with the entity types upserted and deleted here */
+  public EntityTypeServiceImpl(Datastore datastore, LocalEntityTypeRegistry entityTypeRegistry) {
     this.entityTypeCollection =
         datastore.getCollection(EntityCollectionConstants.ENTITY_TYPES_V2_COLLECTION);
+    this.entityTypeRegistry = entityTypeRegistry;
   }
 
   @Override
@@ -58,6 +65,7 @@ public class EntityTypeServiceImpl extends EntityTypeServiceImplBase {
           EntityTypeDocument.fromProto(tenantId.get(), request.getEntityType());
       entityTypeCollection.upsert(
           new SingleValueKey(tenantId.get(), request.getEntityType().getName()), document);
+      entityTypeRegistry.onEntityTypesChanged(tenantId.get());
 
       // Query the entity type again and return that.
       try (final CloseableIterator<Document> entityTypes =
@@ -108,6 +116,7 @@ public class EntityTypeServiceImpl extends EntityTypeServiceImplBase {
     request
         .getNameList()
         .forEach(e -> entityTypeCollection.delete(new SingleValueKey(tenantId.get(), e)));
+    entityTypeRegistry.onEntityTypesChanged(tenantId.get());
     responseObserver.onNext(DeleteEntityTypesResponse.newBuilder().build());
     responseObserver.onCompleted();
   }
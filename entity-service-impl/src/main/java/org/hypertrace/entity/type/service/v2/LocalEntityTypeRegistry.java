@@ -0,0 +1,122 @@
+package org.hypertrace.entity.type.service.v2;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Streams;
+import io.grpc.Status;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import org.hypertrace.core.documentstore.CloseableIterator;
+import org.hypertrace.core.documentstore.Datastore;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.core.documentstore.Filter;
+import org.hypertrace.core.documentstore.Filter.Op;
+import org.hypertrace.core.documentstore.Query;
+import org.hypertrace.core.serviceframework.metrics.PlatformMetricsRegistry;
+import org.hypertrace.entity.service.constants.EntityCollectionConstants;
+import org.hypertrace.entity.service.constants.EntityServiceConstants;
+import org.hypertrace.entity.service.util.TenantUtils;
+import org.hypertrace.entity.type.service.v2.model.EntityTypeDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the names of the v2 entity types of each tenant in memory, reading them straight from the
+ * entity types collection. The names of a tenant are invalidated whenever its entity types are
+ * upserted or deleted through {@link EntityTypeServiceImpl}. To pick up the changes made through
+ * other instances of the service, they are otherwise refreshed in the background, so that only the
+ * first lookup of a tenant, or one after it went unused for a while, waits for the read.
+ */
+public class LocalEntityTypeRegistry implements EntityTypeRegistry {
+  private static final Logger LOG = LoggerFactory.getLogger(LocalEntityTypeRegistry.class);
+
+  private static final Duration REFRESH_INTERVAL = Duration.ofMinutes(5);
+  private static final Duration EXPIRY = Duration.ofMinutes(15);
+
+  private final org.hypertrace.core.documentstore.Collection entityTypeCollection;
+  private final LoadingCache<String, Set<String>> typeNamesByTenantId;
+
+  public LocalEntityTypeRegistry(Datastore datastore) {
+    this(
+        datastore.getCollection(EntityCollectionConstants.ENTITY_TYPES_V2_COLLECTION),
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "entity-type-registry-refresh");
+              thread.setDaemon(true);
+              return thread;
+            }),
+        Ticker.systemTicker());
+  }
+
+  LocalEntityTypeRegistry(
+      org.hypertrace.core.documentstore.Collection entityTypeCollection,
+      Executor refreshExecutor,
+      Ticker ticker) {
+    this.entityTypeCollection = entityTypeCollection;
+    this.typeNamesByTenantId =
+        CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .refreshAfterWrite(REFRESH_INTERVAL)
+            .expireAfterAccess(EXPIRY)
+            .ticker(ticker)
+            .recordStats()
+            .build(
+                CacheLoader.asyncReloading(
+                    CacheLoader.from(this::loadTypeNames), refreshExecutor));
+    PlatformMetricsRegistry.registerCache(
+        this.getClass().getName() + ".typeNamesByTenantId",
+        typeNamesByTenantId,
+        Collections.emptyMap());
+  }
+
+  @Override
+  public boolean isV2Type(String tenantId, String entityTypeName) {
+    return this.typeNamesByTenantId.getUnchecked(tenantId).contains(entityTypeName);
+  }
+
+  void onEntityTypesChanged(String tenantId) {
+    if (TenantUtils.ROOT_TENANT_ID.equals(tenantId)) {
+      // The entity types of the root tenant are visible to all the tenants
+      this.typeNamesByTenantId.invalidateAll();
+    } else {
+      this.typeNamesByTenantId.invalidate(tenantId);
+    }
+  }
+
+  private Set<String> loadTypeNames(String tenantId) {
+    Query query = new Query();
+    query.setFilter(
+        new Filter(
+            Op.IN, EntityServiceConstants.TENANT_ID, TenantUtils.getTenantHierarchy(tenantId)));
+
+    try (final CloseableIterator<Document> iterator = entityTypeCollection.search(query)) {
+      return Streams.stream(iterator)
+          .map(this::getTypeName)
+          .flatMap(Optional::stream)
+          .collect(Collectors.toUnmodifiableSet());
+    } catch (final IOException e) {
+      throw Status.INTERNAL
+          .withDescription("Unable to fetch entity types for tenant: " + tenantId)
+          .withCause(e)
+          .asRuntimeException();
+    }
+  }
+
+  private Optional<String> getTypeName(Document document) {
+    try {
+      return Optional.ofNullable(EntityTypeDocument.fromJson(document.toJson()).getName());
+    } catch (JsonProcessingException e) {
+      LOG.warn("Failed to parse the EntityType json: {}", document.toJson(), e);
+      return Optional.empty();
+    }
+  }
+}
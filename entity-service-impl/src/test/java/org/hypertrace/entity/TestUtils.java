@@ -2,6 +2,7 @@ package org.hypertrace.entity;
 
 import java.util.Iterator;
 import org.hypertrace.core.documentstore.CloseableIterator;
+import org.hypertrace.core.documentstore.Document;
 
 public class TestUtils {
 
@@ -21,4 +22,39 @@ public class TestUtils {
       }
     };
   }
+
+  /** Keeps track of the documents consumed from the iterator, and whether it got closed */
+  public static class TrackingIterator implements CloseableIterator<Document> {
+    private final Iterator<Document> iterator;
+    private int consumed = 0;
+    private boolean closed = false;
+
+    public TrackingIterator(final Iterator<Document> iterator) {
+      this.iterator = iterator;
+    }
+
+    public int getConsumed() {
+      return consumed;
+    }
+
+    public boolean isClosed() {
+      return closed;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return iterator.hasNext();
+    }
+
+    @Override
+    public Document next() {
+      consumed++;
+      return iterator.next();
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
 }
@@ -0,0 +1,132 @@
+package org.hypertrace.entity.data.service;
+
+import static org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityRequest.UpsertCondition.Predicate.PredicateOperator.PREDICATE_OPERATOR_GREATER_THAN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.hypertrace.core.documentstore.Key;
+import org.hypertrace.core.documentstore.SingleValueKey;
+import org.hypertrace.core.documentstore.model.subdoc.SubDocumentUpdate;
+import org.hypertrace.core.documentstore.model.subdoc.UpdateOperator;
+import org.hypertrace.entity.data.service.ConditionalMergeUpdateBuilder.ConditionalMergeUpdate;
+import org.hypertrace.entity.data.service.v1.AttributeValue;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityRequest.UpsertCondition;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityRequest.UpsertCondition.Predicate;
+import org.hypertrace.entity.data.service.v1.Value;
+import org.junit.jupiter.api.Test;
+
+class ConditionalMergeUpdateBuilderTest {
+  private static final String TENANT_ID = "tenant-1";
+  private static final Key DOC_KEY = new SingleValueKey(TENANT_ID, "entity-1");
+  private static final Entity ENTITY =
+      Entity.newBuilder()
+          .setTenantId(TENANT_ID)
+          .setEntityId("entity-1")
+          .setEntityType("SERVICE")
+          .setEntityName("frontend")
+          .putIdentifyingAttributes("name", stringValue("frontend"))
+          .putAttributes("status", stringValue("ACTIVE"))
+          .putAttributes("last_seen", longValue(20))
+          .build();
+
+  private final ConditionalMergeUpdateBuilder builder = new ConditionalMergeUpdateBuilder();
+
+  @Test
+  void buildsSetUpdatesForReceivedFields() throws IOException {
+    Optional<ConditionalMergeUpdate> mergeUpdate =
+        builder.build(TENANT_ID, DOC_KEY, ENTITY, UpsertCondition.getDefaultInstance());
+
+    assertTrue(mergeUpdate.isPresent());
+    List<SubDocumentUpdate> updates = mergeUpdate.get().getUpdates();
+    assertEquals(
+        Set.of(
+            "entityType",
+            "entityName",
+            "identifyingAttributes.name",
+            "attributes.status",
+            "attributes.last_seen"),
+        updates.stream()
+            .map(update -> update.getSubDocument().getPath())
+            .collect(Collectors.toSet()));
+    assertTrue(updates.stream().allMatch(update -> update.getOperator() == UpdateOperator.SET));
+  }
+
+  @Test
+  void buildsUpdateForSupportedCondition() throws IOException {
+    assertTrue(
+        builder
+            .build(
+                TENANT_ID, DOC_KEY, ENTITY, greaterThanCondition("last_seen", longValue(10)))
+            .isPresent());
+    assertTrue(
+        builder
+            .build(
+                TENANT_ID, DOC_KEY, ENTITY, greaterThanCondition("status", stringValue("A")))
+            .isPresent());
+  }
+
+  @Test
+  void fallsBackForUnsupportedConditions() throws IOException {
+    assertEquals(
+        Optional.empty(),
+        builder.build(
+            TENANT_ID,
+            DOC_KEY,
+            ENTITY,
+            greaterThanCondition(
+                "score",
+                AttributeValue.newBuilder().setValue(Value.newBuilder().setFloat(1.5f)).build())));
+    assertEquals(
+        Optional.empty(),
+        builder.build(
+            TENANT_ID, DOC_KEY, ENTITY, greaterThanCondition("last.seen", longValue(10))));
+    assertEquals(
+        Optional.empty(),
+        builder.build(
+            TENANT_ID,
+            DOC_KEY,
+            ENTITY,
+            UpsertCondition.newBuilder()
+                .setPropertyPredicate(
+                    Predicate.newBuilder()
+                        .setAttributeKey("last_seen")
+                        .setValue(longValue(10))
+                        .build())
+                .build()));
+  }
+
+  @Test
+  void fallsBackForAttributeKeysWithDots() throws IOException {
+    assertEquals(
+        Optional.empty(),
+        builder.build(
+            TENANT_ID,
+            DOC_KEY,
+            ENTITY.toBuilder().putAttributes("http.method", stringValue("GET")).build(),
+            UpsertCondition.getDefaultInstance()));
+  }
+
+  private static UpsertCondition greaterThanCondition(String attributeKey, AttributeValue value) {
+    return UpsertCondition.newBuilder()
+        .setPropertyPredicate(
+            Predicate.newBuilder()
+                .setAttributeKey(attributeKey)
+                .setOperator(PREDICATE_OPERATOR_GREATER_THAN)
+                .setValue(value))
+        .build();
+  }
+
+  private static AttributeValue stringValue(String value) {
+    return AttributeValue.newBuilder().setValue(Value.newBuilder().setString(value)).build();
+  }
+
+  private static AttributeValue longValue(long value) {
+    return AttributeValue.newBuilder().setValue(Value.newBuilder().setLong(value)).build();
+  }
+}
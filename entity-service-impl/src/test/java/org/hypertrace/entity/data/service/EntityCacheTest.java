@@ -0,0 +1,112 @@
+package org.hypertrace.entity.data.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.typesafe.config.ConfigFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hypertrace.core.documentstore.Key;
+import org.hypertrace.core.documentstore.SingleValueKey;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EntityCacheTest {
+  private static final Key KEY = new SingleValueKey("tenant", "entity-id");
+  private static final Entity ENTITY =
+      Entity.newBuilder().setTenantId("tenant").setEntityId("entity-id").build();
+
+  private EntityCache entityCache;
+  private AtomicInteger loadCount;
+
+  @BeforeEach
+  void setUp() {
+    entityCache = new EntityCache("raw_entities", 1024 * 1024, Duration.ofMinutes(1));
+    loadCount = new AtomicInteger();
+  }
+
+  @Test
+  void testServesLoadedEntityFromCache() throws Exception {
+    assertEquals(Optional.of(ENTITY), entityCache.get(KEY, this::load));
+    assertEquals(Optional.of(ENTITY), entityCache.get(KEY, this::load));
+    assertEquals(1, loadCount.get());
+
+    entityCache.invalidate(KEY);
+    assertEquals(Optional.of(ENTITY), entityCache.get(KEY, this::load));
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  void testDoesNotCacheMissingEntity() throws Exception {
+    assertEquals(Optional.empty(), entityCache.get(KEY, Optional::empty));
+    assertEquals(Optional.of(ENTITY), entityCache.get(KEY, this::load));
+    assertEquals(1, loadCount.get());
+  }
+
+  @Test
+  void testDoesNotCacheEntityLoadedDuringInvalidation() throws Exception {
+    assertEquals(
+        Optional.of(ENTITY),
+        entityCache.get(
+            KEY,
+            () -> {
+              // A write of the entity completes while it is being read
+              entityCache.invalidate(KEY);
+              return load();
+            }));
+
+    entityCache.get(KEY, this::load);
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  void testCachesEntityLoadedDuringInvalidationOfOtherEntity() throws Exception {
+    entityCache.get(
+        KEY,
+        () -> {
+          entityCache.invalidate(new SingleValueKey("tenant", "other-entity-id"));
+          return load();
+        });
+
+    entityCache.get(KEY, this::load);
+    assertEquals(1, loadCount.get());
+  }
+
+  @Test
+  void testDoesNotCacheEntityLoadedDuringInvalidationOfAllEntities() throws Exception {
+    entityCache.get(
+        KEY,
+        () -> {
+          entityCache.invalidateAll();
+          return load();
+        });
+
+    entityCache.get(KEY, this::load);
+    assertEquals(2, loadCount.get());
+  }
+
+  @Test
+  void testDisabledCacheAlwaysLoads() throws Exception {
+    EntityCache disabledCache =
+        EntityCache.forCollection(
+            ConfigFactory.parseMap(
+                Map.of("entity.service.config.entity.cache.raw_entities.enabled", false)),
+            "raw_entities");
+    assertSame(EntityCache.disabled(), disabledCache);
+    assertSame(
+        EntityCache.disabled(),
+        EntityCache.forCollection(ConfigFactory.empty(), "enriched_entities"));
+
+    disabledCache.get(KEY, this::load);
+    disabledCache.get(KEY, this::load);
+    assertEquals(2, loadCount.get());
+  }
+
+  private Optional<Entity> load() {
+    loadCount.incrementAndGet();
+    return Optional.of(ENTITY);
+  }
+}
@@ -0,0 +1,409 @@
+package org.hypertrace.entity.data.service;
+
+import static org.hypertrace.entity.TestUtils.convertToCloseableIterator;
+import static org.hypertrace.entity.service.constants.EntityCollectionConstants.ENRICHED_ENTITIES_COLLECTION;
+import static org.hypertrace.entity.service.constants.EntityCollectionConstants.RAW_ENTITIES_COLLECTION;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.util.JsonFormat;
+import io.grpc.Context;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.hypertrace.core.documentstore.Collection;
+import org.hypertrace.core.documentstore.Datastore;
+import org.hypertrace.core.documentstore.Filter;
+import org.hypertrace.core.documentstore.JSONDocument;
+import org.hypertrace.core.documentstore.Key;
+import org.hypertrace.core.documentstore.model.options.UpdateOptions;
+import org.hypertrace.core.documentstore.query.Query;
+import org.hypertrace.core.grpcutils.context.RequestContext;
+import org.hypertrace.entity.data.service.v1.ByIdRequest;
+import org.hypertrace.entity.data.service.v1.ByIdsRequest;
+import org.hypertrace.entity.data.service.v1.EnrichedEntity;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntitiesRequest;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntitiesResponse;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntitiesResponse.MergeAndUpsertEntityResult;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityRequest;
+import org.hypertrace.entity.data.service.v1.MergeAndUpsertEntityResponse;
+import org.hypertrace.entity.metric.EntityCounterMetricSender;
+import org.hypertrace.entity.service.change.event.api.EntityChangeEventGenerator;
+import org.hypertrace.entity.service.constants.EntityServiceConstants;
+import org.hypertrace.entity.type.service.v2.EntityTypeRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class EntityDataServiceImplTest {
+  private static final String TENANT_ID = "tenant";
+
+  @Mock Datastore datastore;
+  @Mock Collection entitiesCollection;
+  @Mock Collection enrichedEntitiesCollection;
+  @Mock EntityTypeRegistry entityTypeRegistry;
+  @Mock EntityChangeEventGenerator entityChangeEventGenerator;
+  @Mock EntityCounterMetricSender entityCounterMetricSender;
+  @Mock RequestContext requestContext;
+  @Mock EntityUpsertCombiner upsertCombiner;
+
+  private EntityDataServiceImpl entityDataService;
+
+  @BeforeEach
+  void setUp() {
+    when(datastore.getCollection(anyString())).thenReturn(mock(Collection.class));
+    when(datastore.getCollection(RAW_ENTITIES_COLLECTION)).thenReturn(entitiesCollection);
+    when(datastore.getCollection(ENRICHED_ENTITIES_COLLECTION))
+        .thenReturn(enrichedEntitiesCollection);
+    when(requestContext.getTenantId()).thenReturn(Optional.of(TENANT_ID));
+    entityDataService =
+        new EntityDataServiceImpl(
+            datastore, entityTypeRegistry, entityChangeEventGenerator, entityCounterMetricSender);
+  }
+
+  @Test
+  void testUpsertReturnsUpsertedEntityWithoutReadingItAgain() throws Exception {
+    Entity entity =
+        Entity.newBuilder()
+            .setEntityType("API")
+            .setEntityId("entity-id")
+            .setEntityName("entity")
+            .build();
+    when(entityTypeRegistry.isV2Type(TENANT_ID, "API")).thenReturn(true);
+    when(entitiesCollection.search(any()))
+        .thenReturn(convertToCloseableIterator(Collections.emptyIterator()));
+    when(entitiesCollection.upsertAndReturn(any(Key.class), any()))
+        .thenReturn(new JSONDocument(JsonFormat.printer().print(entity)));
+    StreamObserver<Entity> responseObserver = mock(StreamObserver.class);
+
+    Context.current()
+        .withValue(RequestContext.CURRENT, requestContext)
+        .run(() -> entityDataService.upsert(entity, responseObserver));
+
+    ArgumentCaptor<Entity> responseCaptor = ArgumentCaptor.forClass(Entity.class);
+    verify(responseObserver).onNext(responseCaptor.capture());
+    verify(responseObserver).onCompleted();
+    assertEquals(entity.toBuilder().setTenantId(TENANT_ID).build(), responseCaptor.getValue());
+    // A single search for the existing entity, for the change notification, and the upsert
+    verify(entitiesCollection, times(1)).search(any());
+    verify(entitiesCollection, times(1)).upsertAndReturn(any(Key.class), any());
+  }
+
+  @Test
+  void testCombinedUpsertOfExistingEntityReturnsEntityWithItsCreatedTime() throws Exception {
+    Entity existingEntity = buildApiEntity("existing").toBuilder().setCreatedTime(10).build();
+    Entity entity = buildApiEntity("updated");
+    when(entityTypeRegistry.isV2Type(TENANT_ID, "API")).thenReturn(true);
+    when(entitiesCollection.search(any()))
+        .thenReturn(
+            convertToCloseableIterator(
+                List.of(new JSONDocument(JsonFormat.printer().print(existingEntity)))
+                    .iterator()));
+    when(upsertCombiner.isEnabled()).thenReturn(true);
+    when(upsertCombiner.upsert(any(Key.class), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    assertEquals(
+        entity.toBuilder().setCreatedTime(10).build(), upsertWithCombiner(entity).getValue());
+    verify(upsertCombiner, times(1)).upsert(any(Key.class), any());
+    verify(entitiesCollection, never()).upsertAndReturn(any(Key.class), any());
+  }
+
+  @Test
+  void testCombinedUpsertOfNewEntityReturnsStoredEntity() throws Exception {
+    Entity entity = buildApiEntity("new");
+    Entity storedEntity = entity.toBuilder().setCreatedTime(10).build();
+    when(entityTypeRegistry.isV2Type(TENANT_ID, "API")).thenReturn(true);
+    when(entitiesCollection.search(any()))
+        .thenReturn(convertToCloseableIterator(Collections.emptyIterator()));
+    when(upsertCombiner.isEnabled()).thenReturn(true);
+    when(entitiesCollection.upsertAndReturn(any(Key.class), any()))
+        .thenReturn(new JSONDocument(JsonFormat.printer().print(storedEntity)));
+
+    // New entities are not combined, as the created time is only known once stored
+    assertEquals(storedEntity, upsertWithCombiner(entity).getValue());
+    verify(upsertCombiner, never()).upsert(any(Key.class), any());
+  }
+
+  @Test
+  void testUpsertEnrichedEntityReturnsUpsertedEntityWithoutReadingItAgain() throws Exception {
+    EnrichedEntity enrichedEntity =
+        EnrichedEntity.newBuilder()
+            .setEntityType("API")
+            .setEntityId("entity-id")
+            .setEntityName("entity")
+            .build();
+    when(enrichedEntitiesCollection.upsertAndReturn(any(Key.class), any()))
+        .thenReturn(new JSONDocument(JsonFormat.printer().print(enrichedEntity)));
+    StreamObserver<EnrichedEntity> responseObserver = mock(StreamObserver.class);
+
+    Context.current()
+        .withValue(RequestContext.CURRENT, requestContext)
+        .run(() -> entityDataService.upsertEnrichedEntity(enrichedEntity, responseObserver));
+
+    ArgumentCaptor<EnrichedEntity> responseCaptor = ArgumentCaptor.forClass(EnrichedEntity.class);
+    verify(responseObserver).onNext(responseCaptor.capture());
+    verify(responseObserver).onCompleted();
+    assertEquals(
+        enrichedEntity.toBuilder().setTenantId(TENANT_ID).build(), responseCaptor.getValue());
+    verify(enrichedEntitiesCollection, times(1)).upsertAndReturn(any(Key.class), any());
+    verify(enrichedEntitiesCollection, never()).search(any());
+  }
+
+  @Test
+  void testMergeAndUpsertEntityInsertsNewEntityWithoutConditionalUpdate() throws Exception {
+    Entity entity = buildApiEntity("entity");
+    when(entityTypeRegistry.isV2Type(TENANT_ID, "API")).thenReturn(true);
+    when(entitiesCollection.search(any()))
+        .thenReturn(convertToCloseableIterator(Collections.emptyIterator()));
+    when(entitiesCollection.upsertAndReturn(any(Key.class), any()))
+        .thenReturn(new JSONDocument(JsonFormat.printer().print(entity)));
+
+    assertEquals(entity, mergeAndUpsertEntity(entity));
+    verify(entitiesCollection, never())
+        .update(any(Query.class), anyCollection(), any(UpdateOptions.class));
+  }
+
+  @Test
+  void testMergeAndUpsertEntityReturnsEntityStoredByConditionalUpdate() throws Exception {
+    Entity existingEntity = buildApiEntity("existing").toBuilder().setCreatedTime(10).build();
+    Entity storedEntity = buildApiEntity("received").toBuilder().setCreatedTime(10).build();
+    when(entityTypeRegistry.isV2Type(TENANT_ID, "API")).thenReturn(true);
+    when(entitiesCollection.search(any()))
+        .thenReturn(
+            convertToCloseableIterator(
+                List.of(new JSONDocument(JsonFormat.printer().print(existingEntity)))
+                    .iterator()));
+    when(entitiesCollection.update(any(Query.class), anyCollection(), any(UpdateOptions.class)))
+        .thenReturn(Optional.of(new JSONDocument(JsonFormat.printer().print(storedEntity))));
+
+    assertEquals(storedEntity, mergeAndUpsertEntity(buildApiEntity("received")));
+    verify(entitiesCollection, times(1)).search(any());
+    verify(entitiesCollection, never()).upsertAndReturn(any(Key.class), any());
+  }
+
+  @Test
+  void testMergeAndUpsertEntitiesRespondsWithResultOfEachRequestInOrder() throws Exception {
+    Entity firstEntity = buildApiEntity("first").toBuilder().setEntityId("entity-id-1").build();
+    Entity secondEntity = buildApiEntity("second").toBuilder().setEntityId("entity-id-2").build();
+    when(entityTypeRegistry.isV2Type(TENANT_ID, "API")).thenReturn(true);
+    when(entitiesCollection.search(any()))
+        .thenAnswer(invocation -> convertToCloseableIterator(Collections.emptyIterator()));
+    when(entitiesCollection.upsertAndReturn(any(Key.class), any()))
+        .thenReturn(new JSONDocument(JsonFormat.printer().print(firstEntity)))
+        .thenReturn(new JSONDocument(JsonFormat.printer().print(secondEntity)));
+
+    List<MergeAndUpsertEntityResult> results = mergeAndUpsertEntities(firstEntity, secondEntity);
+
+    assertEquals(2, results.size());
+    assertEquals(MergeAndUpsertEntityResult.ResultCase.ENTITY, results.get(0).getResultCase());
+    assertEquals(firstEntity, results.get(0).getEntity());
+    assertEquals(MergeAndUpsertEntityResult.ResultCase.ENTITY, results.get(1).getResultCase());
+    assertEquals(secondEntity, results.get(1).getEntity());
+  }
+
+  @Test
+  void testMergeAndUpsertEntitiesReportsFailedRequestWithoutFailingOthers() throws Exception {
+    Entity firstEntity = buildApiEntity("first").toBuilder().setEntityId("entity-id-1").build();
+    Entity secondEntity = buildApiEntity("second").toBuilder().setEntityId("entity-id-2").build();
+    when(entityTypeRegistry.isV2Type(TENANT_ID, "API")).thenReturn(true);
+    when(entitiesCollection.search(any()))
+        .thenAnswer(invocation -> convertToCloseableIterator(Collections.emptyIterator()));
+    when(entitiesCollection.upsertAndReturn(any(Key.class), any()))
+        .thenThrow(new IOException("Unable to upsert"))
+        .thenReturn(new JSONDocument(JsonFormat.printer().print(secondEntity)));
+
+    List<MergeAndUpsertEntityResult> results = mergeAndUpsertEntities(firstEntity, secondEntity);
+
+    assertEquals(2, results.size());
+    assertEquals(MergeAndUpsertEntityResult.ResultCase.ERROR, results.get(0).getResultCase());
+    assertEquals("Unknown error occurred", results.get(0).getError());
+    assertEquals(MergeAndUpsertEntityResult.ResultCase.ENTITY, results.get(1).getResultCase());
+    assertEquals(secondEntity, results.get(1).getEntity());
+    verify(entitiesCollection, times(2)).upsertAndReturn(any(Key.class), any());
+  }
+
+  @Test
+  void testGetByIdsChunksIdsIntoTenantScopedInQueries() throws Exception {
+    when(entityTypeRegistry.isV2Type(TENANT_ID, "API")).thenReturn(true);
+    when(entitiesCollection.search(any()))
+        .thenAnswer(invocation -> convertToCloseableIterator(Collections.emptyIterator()));
+    ByIdsRequest.Builder request = ByIdsRequest.newBuilder();
+    for (int i = 0; i < 1001; i++) {
+      request.addRequestsBuilder().setEntityType("API").setEntityId("entity-" + i);
+    }
+    StreamObserver<Entity> responseObserver = mock(StreamObserver.class);
+
+    Context.current()
+        .withValue(RequestContext.CURRENT, requestContext)
+        .run(() -> entityDataService.getByIds(request.build(), responseObserver));
+
+    ArgumentCaptor<org.hypertrace.core.documentstore.Query> queryCaptor =
+        ArgumentCaptor.forClass(org.hypertrace.core.documentstore.Query.class);
+    verify(entitiesCollection, times(2)).search(queryCaptor.capture());
+    List<org.hypertrace.core.documentstore.Query> queries = queryCaptor.getAllValues();
+    assertEquals(1000, getIdsFilter(queries.get(0), EntityServiceConstants.ID).size());
+    assertEquals(
+        List.of("tenant:API:entity-1000"),
+        getIdsFilter(queries.get(1), EntityServiceConstants.ID));
+    verify(responseObserver, never()).onNext(any());
+    verify(responseObserver).onCompleted();
+  }
+
+  @Test
+  void testGetByIdsLooksUpIdsWithoutEntityTypeByEntityId() throws Exception {
+    when(entityTypeRegistry.isV2Type(TENANT_ID, "API")).thenReturn(true);
+    when(entitiesCollection.search(any()))
+        .thenAnswer(invocation -> convertToCloseableIterator(Collections.emptyIterator()));
+    ByIdsRequest request =
+        ByIdsRequest.newBuilder()
+            .addRequests(ByIdRequest.newBuilder().setEntityType("API").setEntityId("typed"))
+            .addRequests(ByIdRequest.newBuilder().setEntityId("untyped"))
+            .build();
+    StreamObserver<Entity> responseObserver = mock(StreamObserver.class);
+
+    Context.current()
+        .withValue(RequestContext.CURRENT, requestContext)
+        .run(() -> entityDataService.getByIds(request, responseObserver));
+
+    ArgumentCaptor<org.hypertrace.core.documentstore.Query> queryCaptor =
+        ArgumentCaptor.forClass(org.hypertrace.core.documentstore.Query.class);
+    verify(entitiesCollection, times(2)).search(queryCaptor.capture());
+    List<org.hypertrace.core.documentstore.Query> queries = queryCaptor.getAllValues();
+    assertEquals(
+        List.of("tenant:API:typed"), getIdsFilter(queries.get(0), EntityServiceConstants.ID));
+    assertEquals(
+        List.of("untyped"), getIdsFilter(queries.get(1), EntityServiceConstants.ENTITY_ID));
+    verify(responseObserver).onCompleted();
+  }
+
+  @Test
+  void testGetEnrichedEntitiesByIdsStreamsOnlyEntitiesFound() throws Exception {
+    EnrichedEntity foundEntity =
+        EnrichedEntity.newBuilder()
+            .setEntityType("API")
+            .setEntityId("found")
+            .setEntityName("entity")
+            .build();
+    when(enrichedEntitiesCollection.search(any()))
+        .thenReturn(
+            convertToCloseableIterator(
+                List.of(new JSONDocument(JsonFormat.printer().print(foundEntity))).iterator()));
+    ByIdsRequest request =
+        ByIdsRequest.newBuilder()
+            .addRequests(ByIdRequest.newBuilder().setEntityType("API").setEntityId("found"))
+            .addRequests(ByIdRequest.newBuilder().setEntityType("API").setEntityId("missing"))
+            .build();
+    StreamObserver<EnrichedEntity> responseObserver = mock(StreamObserver.class);
+
+    Context.current()
+        .withValue(RequestContext.CURRENT, requestContext)
+        .run(() -> entityDataService.getEnrichedEntitiesByIds(request, responseObserver));
+
+    verify(responseObserver, times(1))
+        .onNext(foundEntity.toBuilder().setTenantId(TENANT_ID).build());
+    verify(responseObserver).onCompleted();
+    ArgumentCaptor<org.hypertrace.core.documentstore.Query> queryCaptor =
+        ArgumentCaptor.forClass(org.hypertrace.core.documentstore.Query.class);
+    verify(enrichedEntitiesCollection, times(1)).search(queryCaptor.capture());
+    assertEquals(
+        List.of("tenant:found", "tenant:missing"),
+        getIdsFilter(queryCaptor.getValue(), EntityServiceConstants.ID));
+  }
+
+  private ArgumentCaptor<Entity> upsertWithCombiner(Entity entity) {
+    EntityDataServiceImpl combiningEntityDataService =
+        new EntityDataServiceImpl(
+            datastore,
+            entityTypeRegistry,
+            entityChangeEventGenerator,
+            entityCounterMetricSender,
+            EntityCache.disabled(),
+            EntityCache.disabled(),
+            upsertCombiner);
+    StreamObserver<Entity> responseObserver = mock(StreamObserver.class);
+    Context.current()
+        .withValue(RequestContext.CURRENT, requestContext)
+        .run(() -> combiningEntityDataService.upsert(entity, responseObserver));
+
+    ArgumentCaptor<Entity> responseCaptor = ArgumentCaptor.forClass(Entity.class);
+    verify(responseObserver).onNext(responseCaptor.capture());
+    verify(responseObserver).onCompleted();
+    return responseCaptor;
+  }
+
+  private Entity mergeAndUpsertEntity(Entity entity) {
+    StreamObserver<MergeAndUpsertEntityResponse> responseObserver = mock(StreamObserver.class);
+    Context.current()
+        .withValue(RequestContext.CURRENT, requestContext)
+        .run(
+            () ->
+                entityDataService.mergeAndUpsertEntity(
+                    MergeAndUpsertEntityRequest.newBuilder().setEntity(entity).build(),
+                    responseObserver));
+
+    ArgumentCaptor<MergeAndUpsertEntityResponse> responseCaptor =
+        ArgumentCaptor.forClass(MergeAndUpsertEntityResponse.class);
+    verify(responseObserver).onNext(responseCaptor.capture());
+    verify(responseObserver).onCompleted();
+    return responseCaptor.getValue().getEntity();
+  }
+
+  private List<MergeAndUpsertEntityResult> mergeAndUpsertEntities(Entity... entities) {
+    MergeAndUpsertEntitiesRequest.Builder requestBuilder =
+        MergeAndUpsertEntitiesRequest.newBuilder();
+    for (Entity entity : entities) {
+      requestBuilder.addRequests(MergeAndUpsertEntityRequest.newBuilder().setEntity(entity));
+    }
+    StreamObserver<MergeAndUpsertEntitiesResponse> responseObserver = mock(StreamObserver.class);
+    Context.current()
+        .withValue(RequestContext.CURRENT, requestContext)
+        .run(
+            () ->
+                entityDataService.mergeAndUpsertEntities(requestBuilder.build(), responseObserver));
+
+    ArgumentCaptor<MergeAndUpsertEntitiesResponse> responseCaptor =
+        ArgumentCaptor.forClass(MergeAndUpsertEntitiesResponse.class);
+    // A failed request fails neither the others nor the call
+    verify(responseObserver).onNext(responseCaptor.capture());
+    verify(responseObserver).onCompleted();
+    verify(responseObserver, never()).onError(any());
+    return responseCaptor.getValue().getResultsList();
+  }
+
+  /** @return the ids of the IN filter on the given field, checking that it is tenant scoped */
+  private static List<?> getIdsFilter(
+      org.hypertrace.core.documentstore.Query query, String idFieldName) {
+    Filter filter = query.getFilter();
+    assertEquals(Filter.Op.AND, filter.getOp());
+    assertEquals(EntityServiceConstants.TENANT_ID, filter.getChildFilters()[0].getFieldName());
+    assertEquals(TENANT_ID, filter.getChildFilters()[0].getValue());
+    assertEquals(Filter.Op.IN, filter.getChildFilters()[1].getOp());
+    assertEquals(idFieldName, filter.getChildFilters()[1].getFieldName());
+    return (List<?>) filter.getChildFilters()[1].getValue();
+  }
+
+  private static Entity buildApiEntity(String entityName) {
+    return Entity.newBuilder()
+        .setTenantId(TENANT_ID)
+        .setEntityType("API")
+        .setEntityId("entity-id")
+        .setEntityName(entityName)
+        .build();
+  }
+}
@@ -0,0 +1,211 @@
+package org.hypertrace.entity.data.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.hypertrace.core.documentstore.Collection;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.core.documentstore.JSONDocument;
+import org.hypertrace.core.documentstore.Key;
+import org.hypertrace.core.documentstore.SingleValueKey;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class EntityUpsertCombinerTest {
+  @Mock Collection collection;
+
+  private ScheduledExecutorService writeExecutor;
+
+  @BeforeEach
+  void setUp() {
+    writeExecutor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @AfterEach
+  void tearDown() {
+    writeExecutor.shutdownNow();
+  }
+
+  @Test
+  void testCombinesUpsertsIntoOneBulkUpsert() throws Exception {
+    when(collection.bulkUpsert(any())).thenReturn(true);
+    // The batch can only get written once full
+    EntityUpsertCombiner combiner = buildCombiner(3, Duration.ofMinutes(1));
+
+    List<CompletableFuture<Void>> upserts = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      upserts.add(
+          combiner.upsert(
+              new SingleValueKey("tenant", "entity-" + i),
+              new JSONDocument("{\"entityId\": \"entity-" + i + "\"}")));
+    }
+    for (CompletableFuture<Void> upsert : upserts) {
+      upsert.get();
+    }
+
+    ArgumentCaptor<Map<Key, Document>> batchCaptor = ArgumentCaptor.forClass(Map.class);
+    verify(collection, times(1)).bulkUpsert(batchCaptor.capture());
+    assertEquals(3, batchCaptor.getValue().size());
+  }
+
+  @Test
+  void testDoesNotWaitForBatchToBeWritten() throws Exception {
+    EntityUpsertCombiner combiner = buildCombiner(10, Duration.ofMinutes(1));
+
+    CompletableFuture<Void> upsert =
+        combiner.upsert(new SingleValueKey("tenant", "entity"), new JSONDocument("{}"));
+
+    assertFalse(upsert.isDone());
+    verify(collection, never()).bulkUpsert(any());
+  }
+
+  @Test
+  void testWritesBatchAfterMaxDelay() throws Exception {
+    when(collection.bulkUpsert(any())).thenReturn(true);
+    EntityUpsertCombiner combiner = buildCombiner(10, Duration.ofMillis(1));
+
+    combiner.upsert(new SingleValueKey("tenant", "entity"), new JSONDocument("{}")).get();
+
+    ArgumentCaptor<Map<Key, Document>> batchCaptor = ArgumentCaptor.forClass(Map.class);
+    verify(collection, times(1)).bulkUpsert(batchCaptor.capture());
+    assertEquals(1, batchCaptor.getValue().size());
+  }
+
+  @Test
+  void testWritesUpsertsOfSameKeyInSeparateBatches() throws Exception {
+    when(collection.bulkUpsert(any())).thenReturn(true);
+    EntityUpsertCombiner combiner = buildCombiner(10, Duration.ofMillis(1));
+    Key key = new SingleValueKey("tenant", "entity");
+
+    CompletableFuture<Void> firstUpsert =
+        combiner.upsert(key, new JSONDocument("{\"entityName\": \"first\"}"));
+    // Closes the batch of the first upsert
+    CompletableFuture<Void> secondUpsert =
+        combiner.upsert(key, new JSONDocument("{\"entityName\": \"second\"}"));
+    firstUpsert.get();
+    secondUpsert.get();
+
+    verify(collection, times(2)).bulkUpsert(any());
+  }
+
+  @Test
+  void testWritesBatchesOfSameKeyInOrder() throws Exception {
+    assertEquals(List.of("first", "second"), writeSameKeyTwiceWithSlowFirstWrite(10));
+  }
+
+  @Test
+  void testWritesFullBatchesOfSameKeyInOrder() throws Exception {
+    assertEquals(List.of("first", "second"), writeSameKeyTwiceWithSlowFirstWrite(1));
+  }
+
+  @Test
+  void testWritesBatchesOfOtherKeysConcurrently() throws Exception {
+    CountDownLatch secondWriteDone = new CountDownLatch(1);
+    when(collection.bulkUpsert(any()))
+        .thenAnswer(
+            invocation -> {
+              Map<Key, Document> batch = invocation.getArgument(0);
+              if (batch.containsKey(new SingleValueKey("tenant", "entity-1"))) {
+                // Only returns once the batch of the other key is written meanwhile
+                return secondWriteDone.await(10, TimeUnit.SECONDS);
+              }
+              secondWriteDone.countDown();
+              return true;
+            });
+    EntityUpsertCombiner combiner =
+        new EntityUpsertCombiner(
+            collection, "raw_entities", 1, Duration.ofMinutes(1), multiThreadedWriteExecutor());
+
+    CompletableFuture<Void> firstUpsert =
+        combiner.upsert(new SingleValueKey("tenant", "entity-1"), new JSONDocument("{}"));
+    combiner.upsert(new SingleValueKey("tenant", "entity-2"), new JSONDocument("{}")).get();
+    firstUpsert.get();
+  }
+
+  /** @return the entity names in the order their writes completed */
+  private List<String> writeSameKeyTwiceWithSlowFirstWrite(int maxBatchSize) throws Exception {
+    List<String> writtenNames = new CopyOnWriteArrayList<>();
+    when(collection.bulkUpsert(any()))
+        .thenAnswer(
+            invocation -> {
+              Map<Key, Document> batch = invocation.getArgument(0);
+              String entityName =
+                  new ObjectMapper()
+                      .readTree(batch.values().iterator().next().toJson())
+                      .get("entityName")
+                      .asText();
+              if (entityName.equals("first")) {
+                Thread.sleep(100);
+              }
+              writtenNames.add(entityName);
+              return true;
+            });
+    EntityUpsertCombiner combiner =
+        new EntityUpsertCombiner(
+            collection,
+            "raw_entities",
+            maxBatchSize,
+            Duration.ofMillis(1),
+            multiThreadedWriteExecutor());
+    Key key = new SingleValueKey("tenant", "entity");
+
+    CompletableFuture<Void> firstUpsert =
+        combiner.upsert(key, new JSONDocument("{\"entityName\": \"first\"}"));
+    // Waits for the first write to start, so that both writes would overlap if not ordered
+    Thread.sleep(20);
+    CompletableFuture<Void> secondUpsert =
+        combiner.upsert(key, new JSONDocument("{\"entityName\": \"second\"}"));
+    firstUpsert.get();
+    secondUpsert.get();
+    return writtenNames;
+  }
+
+  private ScheduledExecutorService multiThreadedWriteExecutor() {
+    writeExecutor.shutdownNow();
+    writeExecutor = Executors.newScheduledThreadPool(4);
+    return writeExecutor;
+  }
+
+  @Test
+  void testFailsUpsertsOfFailedBatch() throws Exception {
+    when(collection.bulkUpsert(any())).thenReturn(false);
+    EntityUpsertCombiner combiner = buildCombiner(1, Duration.ofMinutes(1));
+
+    CompletableFuture<Void> upsert =
+        combiner.upsert(new SingleValueKey("tenant", "entity"), new JSONDocument("{}"));
+
+    ExecutionException exception = assertThrows(ExecutionException.class, upsert::get);
+    assertTrue(exception.getCause() instanceof IOException);
+  }
+
+  private EntityUpsertCombiner buildCombiner(int maxBatchSize, Duration maxDelay) {
+    return new EntityUpsertCombiner(
+        collection, "raw_entities", maxBatchSize, maxDelay, writeExecutor);
+  }
+}
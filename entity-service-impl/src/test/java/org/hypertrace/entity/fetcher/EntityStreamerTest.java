@@ -0,0 +1,131 @@
+package org.hypertrace.entity.fetcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.grpc.Context;
+import io.grpc.Context.CancellableContext;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.core.documentstore.JSONDocument;
+import org.hypertrace.entity.TestUtils.TrackingIterator;
+import org.hypertrace.entity.data.service.DocumentParser;
+import org.hypertrace.entity.data.service.v1.Entity;
+import org.hypertrace.entity.metric.ResponseStreamMetricSender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class EntityStreamerTest {
+  private TrackingIterator documentIterator;
+  private ResponseStreamMetricSender responseStreamMetricSender;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    responseStreamMetricSender = mock(ResponseStreamMetricSender.class);
+    final List<Document> documents = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      documents.add(new JSONDocument("{\"entityId\": \"entity-" + i + "\"}"));
+    }
+    documentIterator = new TrackingIterator(documents.iterator());
+  }
+
+  @Test
+  void testStreamsEverythingForPlainObserver() {
+    final StreamObserver<Entity> responseObserver = mock(StreamObserver.class);
+
+    newStreamer(responseObserver).start();
+
+    final ArgumentCaptor<Entity> entityCaptor = ArgumentCaptor.forClass(Entity.class);
+    verify(responseObserver, times(3)).onNext(entityCaptor.capture());
+    verify(responseObserver).onCompleted();
+    assertEquals(
+        List.of("entity-0", "entity-1", "entity-2"),
+        entityCaptor.getAllValues().stream()
+            .map(Entity::getEntityId)
+            .collect(Collectors.toList()));
+    assertTrue(documentIterator.isClosed());
+    verify(responseStreamMetricSender).sendCompleted("query");
+  }
+
+  @Test
+  void testStreamsOnlyWhileReady() {
+    final ServerCallStreamObserver<Entity> responseObserver = mock(ServerCallStreamObserver.class);
+    final ArgumentCaptor<Runnable> onReadyCaptor = ArgumentCaptor.forClass(Runnable.class);
+
+    newStreamer(responseObserver).start();
+
+    verify(responseObserver).setOnReadyHandler(onReadyCaptor.capture());
+    verify(responseObserver, never()).onNext(any());
+    assertEquals(0, documentIterator.getConsumed());
+
+    when(responseObserver.isReady()).thenReturn(true, false);
+    onReadyCaptor.getValue().run();
+    verify(responseObserver, times(1)).onNext(any());
+    assertEquals(1, documentIterator.getConsumed());
+
+    when(responseObserver.isReady()).thenReturn(true);
+    onReadyCaptor.getValue().run();
+    verify(responseObserver, times(3)).onNext(any());
+    verify(responseObserver).onCompleted();
+    assertTrue(documentIterator.isClosed());
+  }
+
+  @Test
+  void testClosesIteratorOnCancel() {
+    final ServerCallStreamObserver<Entity> responseObserver = mock(ServerCallStreamObserver.class);
+    final ArgumentCaptor<Runnable> onCancelCaptor = ArgumentCaptor.forClass(Runnable.class);
+    final ArgumentCaptor<Runnable> onReadyCaptor = ArgumentCaptor.forClass(Runnable.class);
+
+    newStreamer(responseObserver).start();
+
+    verify(responseObserver).setOnCancelHandler(onCancelCaptor.capture());
+    verify(responseObserver).setOnReadyHandler(onReadyCaptor.capture());
+    assertFalse(documentIterator.isClosed());
+
+    onCancelCaptor.getValue().run();
+    assertTrue(documentIterator.isClosed());
+    verify(responseStreamMetricSender).sendCancelled("query");
+
+    when(responseObserver.isReady()).thenReturn(true);
+    onReadyCaptor.getValue().run();
+    verify(responseObserver, never()).onNext(any());
+    verify(responseObserver, never()).onCompleted();
+  }
+
+  @Test
+  void testStopsStreamingOnCancelledContext() throws Exception {
+    final StreamObserver<Entity> responseObserver = mock(StreamObserver.class);
+    final CancellableContext context = Context.current().withCancellation();
+    final EntityStreamer streamer = context.call(() -> newStreamer(responseObserver));
+
+    context.cancel(null);
+    streamer.start();
+
+    verify(responseObserver, never()).onNext(any());
+    verify(responseObserver, never()).onCompleted();
+    verify(responseObserver).onError(any());
+    assertEquals(0, documentIterator.getConsumed());
+    assertTrue(documentIterator.isClosed());
+  }
+
+  private EntityStreamer newStreamer(final StreamObserver<Entity> responseObserver) {
+    return new EntityStreamer(
+        documentIterator,
+        new DocumentParser(),
+        responseObserver,
+        responseStreamMetricSender,
+        "query");
+  }
+}
@@ -47,6 +47,7 @@ import org.hypertrace.core.documentstore.expression.operators.RelationalOperator
 import org.hypertrace.core.documentstore.model.options.UpdateOptions;
 import org.hypertrace.core.documentstore.model.subdoc.SubDocumentUpdate;
 import org.hypertrace.core.documentstore.model.subdoc.SubDocumentValue;
+import org.hypertrace.core.documentstore.model.subdoc.UpdateOperator;
 import org.hypertrace.core.documentstore.query.Query;
 import org.hypertrace.core.grpcutils.context.RequestContext;
 import org.hypertrace.entity.attribute.translator.EntityAttributeChangeEvaluator;
@@ -84,6 +85,7 @@ import org.hypertrace.entity.query.service.v1.UpdateOperation;
 import org.hypertrace.entity.query.service.v1.Value;
 import org.hypertrace.entity.query.service.v1.ValueType;
 import org.hypertrace.entity.service.change.event.api.EntityChangeEventGenerator;
+import org.hypertrace.entity.service.change.event.api.EntityChangeSet;
 import org.hypertrace.entity.service.util.DocStoreJsonFormat;
 import org.hypertrace.entity.type.service.rxclient.EntityTypeClient;
 import org.hypertrace.entity.v1.entitytype.EntityType;
@@ -1000,6 +1002,112 @@ public class EntityQueryServiceImplTest {
     assertEquals("{\"value\":{\"string\":\"Label2\"}}", subDocuments.get(1).toString());
   }
 
+  @Test
+  void testBulkUpdateEntityArrayAttribute_returnsUpdatedEntitiesFromUpdate() throws Exception {
+    List<String> entityIds = List.of("entity-id-1", "entity-id-2");
+    BulkEntityArrayAttributeUpdateRequest request = buildAddLabelRequest(entityIds);
+    List<Entity> updatedEntities =
+        List.of(
+            Entity.newBuilder().setEntityId("entity-id-1").build(),
+            Entity.newBuilder().setEntityId("entity-id-2").build());
+
+    when(mockAttributeMapping.getDocStorePathByAttributeId(requestContext, ATTRIBUTE_ID3))
+        .thenReturn(Optional.of(EDS_COLUMN_NAME3));
+    when(entityAttributeChangeEvaluator.shouldSendNotification(any(), any(), any()))
+        .thenReturn(true);
+    when(entityFetcher.canReturnUpdatedEntities()).thenReturn(true);
+    when(entityFetcher.updateEntitiesByEntityIds(
+            eq(TENANT_ID), eq(TEST_ENTITY_TYPE), eq(entityIds), any()))
+        .thenReturn(updatedEntities);
+
+    bulkUpdateEntityArrayAttribute(request);
+
+    ArgumentCaptor<java.util.Collection<SubDocumentUpdate>> updatesCaptor =
+        ArgumentCaptor.forClass(java.util.Collection.class);
+    verify(entityFetcher, times(1)).getEntitiesByEntityIds(TENANT_ID, entityIds);
+    verify(entityFetcher, times(1))
+        .updateEntitiesByEntityIds(
+            eq(TENANT_ID), eq(TEST_ENTITY_TYPE), eq(entityIds), updatesCaptor.capture());
+    verify(entitiesCollection, Mockito.never()).bulkOperationOnArrayValue(any());
+    ArgumentCaptor<EntityChangeSet> changeSetCaptor =
+        ArgumentCaptor.forClass(EntityChangeSet.class);
+    verify(entityChangeEventGenerator, times(1))
+        .sendChangeNotification(any(), changeSetCaptor.capture());
+    assertEquals(updatedEntities, changeSetCaptor.getValue().getCreatedEntities());
+
+    SubDocumentUpdate update = updatesCaptor.getValue().iterator().next();
+    assertEquals(1, updatesCaptor.getValue().size());
+    assertEquals(EDS_COLUMN_NAME3 + ".valueList.values", update.getSubDocument().getPath());
+    assertEquals(UpdateOperator.ADD_TO_LIST_IF_ABSENT, update.getOperator());
+  }
+
+  @Test
+  void testBulkUpdateEntityArrayAttribute_readsBackWhenDocstoreCannotReturnEntities()
+      throws Exception {
+    List<String> entityIds = List.of("entity-id-1");
+    BulkEntityArrayAttributeUpdateRequest request = buildAddLabelRequest(entityIds);
+
+    when(mockAttributeMapping.getDocStorePathByAttributeId(requestContext, ATTRIBUTE_ID3))
+        .thenReturn(Optional.of(EDS_COLUMN_NAME3));
+    when(entityAttributeChangeEvaluator.shouldSendNotification(any(), any(), any()))
+        .thenReturn(true);
+    when(entityFetcher.canReturnUpdatedEntities()).thenReturn(false);
+
+    bulkUpdateEntityArrayAttribute(request);
+
+    verify(entityFetcher, Mockito.never()).updateEntitiesByEntityIds(any(), any(), any(), any());
+    verify(entitiesCollection, times(1)).bulkOperationOnArrayValue(any());
+    verify(entityFetcher, times(2)).getEntitiesByEntityIds(TENANT_ID, entityIds);
+  }
+
+  @Test
+  void testBulkUpdateEntityArrayAttribute_skipsReadsWithoutNotification() throws Exception {
+    when(mockAttributeMapping.getDocStorePathByAttributeId(requestContext, ATTRIBUTE_ID3))
+        .thenReturn(Optional.of(EDS_COLUMN_NAME3));
+
+    bulkUpdateEntityArrayAttribute(buildAddLabelRequest(List.of("entity-id-1")));
+
+    verify(entitiesCollection, times(1)).bulkOperationOnArrayValue(any());
+    verify(entityFetcher, Mockito.never()).updateEntitiesByEntityIds(any(), any(), any(), any());
+    verify(entityFetcher, Mockito.never())
+        .getEntitiesByEntityIds(TENANT_ID, List.of("entity-id-1"));
+  }
+
+  private BulkEntityArrayAttributeUpdateRequest buildAddLabelRequest(List<String> entityIds) {
+    return BulkEntityArrayAttributeUpdateRequest.newBuilder()
+        .addAllEntityIds(entityIds)
+        .setAttribute(ColumnIdentifier.newBuilder().setColumnName(ATTRIBUTE_ID3).build())
+        .setEntityType(TEST_ENTITY_TYPE)
+        .setOperation(BulkEntityArrayAttributeUpdateRequest.Operation.OPERATION_ADD)
+        .addValues(
+            LiteralConstant.newBuilder().setValue(Value.newBuilder().setString("Label1")).build())
+        .build();
+  }
+
+  private void bulkUpdateEntityArrayAttribute(BulkEntityArrayAttributeUpdateRequest request)
+      throws Exception {
+    Context.current()
+        .withValue(RequestContext.CURRENT, mockRequestContextWithTenantId())
+        .call(
+            () -> {
+              EntityQueryServiceImpl eqs =
+                  new EntityQueryServiceImpl(
+                      entitiesCollection,
+                      mock(Datastore.class),
+                      mockAttributeMapping,
+                      entityChangeEventGenerator,
+                      entityAttributeChangeEvaluator,
+                      new EntityCounterMetricSender(),
+                      entityFetcher,
+                      entityTypeClient,
+                      1,
+                      1000,
+                      5000);
+              eqs.bulkUpdateEntityArrayAttribute(request, mock(StreamObserver.class));
+              return null;
+            });
+  }
+
   @Test
   public void testDeleteEntities() throws IOException {
     Collection mockEntitiesCollection = mock(Collection.class);
@@ -0,0 +1,245 @@
+package org.hypertrace.entity.query.service;
+
+import static org.hypertrace.entity.query.service.v1.ValueType.STRING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.grpc.Context;
+import io.grpc.Context.CancellableContext;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.entity.TestUtils.TrackingIterator;
+import org.hypertrace.entity.metric.ResponseStreamMetricSender;
+import org.hypertrace.entity.query.service.converter.response.DocumentConverter;
+import org.hypertrace.entity.query.service.v1.ColumnMetadata;
+import org.hypertrace.entity.query.service.v1.ResultSetChunk;
+import org.hypertrace.entity.query.service.v1.ResultSetMetadata;
+import org.hypertrace.entity.query.service.v1.Row;
+import org.hypertrace.entity.query.service.v1.Value;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class ResultSetChunkStreamerTest {
+  private DocumentConverter documentConverter;
+  private TrackingIterator documentIterator;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    documentConverter = mock(DocumentConverter.class);
+    when(documentConverter.convertToRow(any(), any())).thenReturn(Row.getDefaultInstance());
+    documentIterator =
+        new TrackingIterator(
+            IntStream.range(0, 5)
+                .mapToObj(i -> mock(Document.class))
+                .collect(Collectors.toUnmodifiableList())
+                .iterator());
+  }
+
+  @Test
+  void testStreamsEverythingForPlainObserver() {
+    final StreamObserver<ResultSetChunk> responseObserver = mock(StreamObserver.class);
+
+    newStreamer(responseObserver).start();
+
+    final ArgumentCaptor<ResultSetChunk> chunkCaptor =
+        ArgumentCaptor.forClass(ResultSetChunk.class);
+    verify(responseObserver, times(3)).onNext(chunkCaptor.capture());
+    verify(responseObserver).onCompleted();
+
+    final List<ResultSetChunk> chunks = chunkCaptor.getAllValues();
+    assertEquals(
+        List.of(2, 2, 1),
+        chunks.stream().map(ResultSetChunk::getRowCount).collect(Collectors.toList()));
+    assertEquals(
+        List.of(0, 1, 2),
+        chunks.stream().map(ResultSetChunk::getChunkId).collect(Collectors.toList()));
+    assertEquals(
+        List.of(false, false, true),
+        chunks.stream().map(ResultSetChunk::getIsLastChunk).collect(Collectors.toList()));
+    assertTrue(documentIterator.isClosed());
+  }
+
+  @Test
+  void testStreamsOnlyWhileReady() {
+    final ServerCallStreamObserver<ResultSetChunk> responseObserver =
+        mock(ServerCallStreamObserver.class);
+    final ArgumentCaptor<Runnable> onReadyCaptor = ArgumentCaptor.forClass(Runnable.class);
+
+    newStreamer(responseObserver).start();
+
+    verify(responseObserver).setOnReadyHandler(onReadyCaptor.capture());
+    verify(responseObserver, never()).onNext(any());
+    assertEquals(0, documentIterator.getConsumed());
+
+    when(responseObserver.isReady()).thenReturn(true, false);
+    onReadyCaptor.getValue().run();
+    verify(responseObserver, times(1)).onNext(any());
+    assertEquals(2, documentIterator.getConsumed());
+
+    when(responseObserver.isReady()).thenReturn(true);
+    onReadyCaptor.getValue().run();
+    verify(responseObserver, times(3)).onNext(any());
+    verify(responseObserver).onCompleted();
+    assertTrue(documentIterator.isClosed());
+  }
+
+  @Test
+  void testClosesIteratorOnCancel() {
+    final ServerCallStreamObserver<ResultSetChunk> responseObserver =
+        mock(ServerCallStreamObserver.class);
+    final ArgumentCaptor<Runnable> onCancelCaptor = ArgumentCaptor.forClass(Runnable.class);
+    final ArgumentCaptor<Runnable> onReadyCaptor = ArgumentCaptor.forClass(Runnable.class);
+
+    newStreamer(responseObserver).start();
+
+    verify(responseObserver).setOnCancelHandler(onCancelCaptor.capture());
+    verify(responseObserver).setOnReadyHandler(onReadyCaptor.capture());
+    assertFalse(documentIterator.isClosed());
+
+    onCancelCaptor.getValue().run();
+    assertTrue(documentIterator.isClosed());
+
+    when(responseObserver.isReady()).thenReturn(true);
+    onReadyCaptor.getValue().run();
+    verify(responseObserver, never()).onNext(any());
+    verify(responseObserver, never()).onCompleted();
+  }
+
+  @Test
+  void testStopsStreamingOnCancelledContext() throws Exception {
+    final StreamObserver<ResultSetChunk> responseObserver = mock(StreamObserver.class);
+    final CancellableContext context = Context.current().withCancellation();
+    final ResultSetChunkStreamer streamer = context.call(() -> newStreamer(responseObserver));
+
+    context.cancel(null);
+    streamer.start();
+
+    // A plain observer is not notified of the cancellation, so the stream is terminated instead
+    final ArgumentCaptor<Throwable> errorCaptor = ArgumentCaptor.forClass(Throwable.class);
+    verify(responseObserver).onError(errorCaptor.capture());
+    assertEquals(Status.Code.CANCELLED, Status.fromThrowable(errorCaptor.getValue()).getCode());
+    verify(responseObserver, never()).onNext(any());
+    verify(responseObserver, never()).onCompleted();
+    assertEquals(0, documentIterator.getConsumed());
+    assertTrue(documentIterator.isClosed());
+  }
+
+  @Test
+  void testSendsMetadataOnlyWithFirstChunk() {
+    final StreamObserver<ResultSetChunk> responseObserver = mock(StreamObserver.class);
+    final ResultSetMetadata resultSetMetadata =
+        ResultSetMetadata.newBuilder()
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("entityId"))
+            .build();
+
+    newStreamer(responseObserver, resultSetMetadata, ResultSetChunkingConfig.ofRows(2)).start();
+
+    final ArgumentCaptor<ResultSetChunk> chunkCaptor =
+        ArgumentCaptor.forClass(ResultSetChunk.class);
+    verify(responseObserver, times(3)).onNext(chunkCaptor.capture());
+    assertEquals(
+        List.of(true, false, false),
+        chunkCaptor.getAllValues().stream()
+            .map(ResultSetChunk::hasResultSetMetadata)
+            .collect(Collectors.toList()));
+    assertEquals(resultSetMetadata, chunkCaptor.getAllValues().get(0).getResultSetMetadata());
+  }
+
+  @Test
+  void testChunksByTargetBytes() throws Exception {
+    final StreamObserver<ResultSetChunk> responseObserver = mock(StreamObserver.class);
+    // Every row takes up a little more than 100 bytes, so two of them reach the target
+    when(documentConverter.convertToRow(any(), any())).thenReturn(rowOfLength(100));
+
+    newStreamer(
+            responseObserver,
+            ResultSetMetadata.getDefaultInstance(),
+            ResultSetChunkingConfig.ofBytes(10, 200, 1000))
+        .start();
+
+    final ArgumentCaptor<ResultSetChunk> chunkCaptor =
+        ArgumentCaptor.forClass(ResultSetChunk.class);
+    verify(responseObserver, times(3)).onNext(chunkCaptor.capture());
+    verify(responseObserver).onCompleted();
+    assertEquals(
+        List.of(2, 2, 1),
+        chunkCaptor.getAllValues().stream()
+            .map(ResultSetChunk::getRowCount)
+            .collect(Collectors.toList()));
+    assertTrue(documentIterator.isClosed());
+  }
+
+  @Test
+  void testMovesRowExceedingMaxBytesToNextChunk() throws Exception {
+    final StreamObserver<ResultSetChunk> responseObserver = mock(StreamObserver.class);
+    when(documentConverter.convertToRow(any(), any()))
+        .thenReturn(rowOfLength(10), rowOfLength(500), rowOfLength(10), rowOfLength(10))
+        .thenReturn(rowOfLength(2000));
+
+    newStreamer(
+            responseObserver,
+            ResultSetMetadata.getDefaultInstance(),
+            ResultSetChunkingConfig.ofBytes(10, 100, 400))
+        .start();
+
+    final ArgumentCaptor<ResultSetChunk> chunkCaptor =
+        ArgumentCaptor.forClass(ResultSetChunk.class);
+    verify(responseObserver, times(4)).onNext(chunkCaptor.capture());
+    verify(responseObserver).onCompleted();
+
+    final List<ResultSetChunk> chunks = chunkCaptor.getAllValues();
+    // The oversized rows are sent on their own, without being dropped
+    assertEquals(
+        List.of(List.of(10), List.of(500), List.of(10, 10), List.of(2000)),
+        chunks.stream()
+            .map(
+                chunk ->
+                    chunk.getRowList().stream()
+                        .map(row -> row.getColumn(0).getString().length())
+                        .collect(Collectors.toList()))
+            .collect(Collectors.toList()));
+    assertEquals(
+        List.of(false, false, false, true),
+        chunks.stream().map(ResultSetChunk::getIsLastChunk).collect(Collectors.toList()));
+  }
+
+  private ResultSetChunkStreamer newStreamer(
+      final StreamObserver<ResultSetChunk> responseObserver) {
+    return newStreamer(
+        responseObserver,
+        ResultSetMetadata.getDefaultInstance(),
+        ResultSetChunkingConfig.ofRows(2));
+  }
+
+  private ResultSetChunkStreamer newStreamer(
+      final StreamObserver<ResultSetChunk> responseObserver,
+      final ResultSetMetadata resultSetMetadata,
+      final ResultSetChunkingConfig chunkingConfig) {
+    return new ResultSetChunkStreamer(
+        documentIterator,
+        documentConverter,
+        resultSetMetadata,
+        chunkingConfig,
+        responseObserver,
+        new ResponseStreamMetricSender());
+  }
+
+  private static Row rowOfLength(final int length) {
+    return Row.newBuilder()
+        .addColumn(Value.newBuilder().setValueType(STRING).setString("x".repeat(length)))
+        .build();
+  }
+}
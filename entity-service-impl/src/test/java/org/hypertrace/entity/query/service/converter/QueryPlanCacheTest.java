@@ -0,0 +1,115 @@
+package org.hypertrace.entity.query.service.converter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hypertrace.entity.query.service.converter.QueryPlanCache.QueryPlan;
+import org.hypertrace.entity.query.service.v1.ColumnIdentifier;
+import org.hypertrace.entity.query.service.v1.EntityQueryRequest;
+import org.hypertrace.entity.query.service.v1.Expression;
+import org.hypertrace.entity.query.service.v1.Filter;
+import org.hypertrace.entity.query.service.v1.LiteralConstant;
+import org.hypertrace.entity.query.service.v1.Operator;
+import org.hypertrace.entity.query.service.v1.Value;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class QueryPlanCacheTest {
+  private static final String TENANT_ID = "tenant-1";
+
+  private final AtomicInteger compilations = new AtomicInteger();
+  private QueryPlanCache queryPlanCache;
+
+  @BeforeEach
+  void setUp() {
+    queryPlanCache = new QueryPlanCache();
+    compilations.set(0);
+  }
+
+  @Test
+  void testReusesPlanForRequestsDifferingOnlyInLiterals() throws ConversionException {
+    final QueryPlan plan = getOrCompile(TENANT_ID, buildRequest("service-1", 10));
+
+    assertSame(plan, getOrCompile(TENANT_ID, buildRequest("service-2", 100)));
+    assertEquals(1, compilations.get());
+  }
+
+  @Test
+  void testCompilesPlanPerTenantAndShape() throws ConversionException {
+    getOrCompile(TENANT_ID, buildRequest("service-1", 10));
+    getOrCompile("tenant-2", buildRequest("service-1", 10));
+    getOrCompile(
+        TENANT_ID,
+        buildRequest("service-1", 10).toBuilder().addSelection(buildColumn("API.name")).build());
+
+    assertEquals(3, compilations.get());
+  }
+
+  @Test
+  void testRecompilesPlanAfterInvalidation() throws ConversionException {
+    getOrCompile(TENANT_ID, buildRequest("service-1", 10));
+    getOrCompile("tenant-2", buildRequest("service-1", 10));
+
+    queryPlanCache.invalidateTenant(TENANT_ID);
+    getOrCompile(TENANT_ID, buildRequest("service-1", 10));
+    getOrCompile("tenant-2", buildRequest("service-1", 10));
+    assertEquals(3, compilations.get());
+
+    queryPlanCache.invalidateAll();
+    getOrCompile("tenant-2", buildRequest("service-1", 10));
+    assertEquals(4, compilations.get());
+  }
+
+  @Test
+  void testPropagatesConversionFailures() {
+    final ConversionException exception = new ConversionException("Unknown column");
+
+    assertSame(
+        exception,
+        assertThrows(
+            ConversionException.class,
+            () ->
+                queryPlanCache.getOrCompile(
+                    TENANT_ID,
+                    buildRequest("service-1", 10),
+                    () -> {
+                      throw exception;
+                    })));
+  }
+
+  private QueryPlan getOrCompile(final String tenantId, final EntityQueryRequest request)
+      throws ConversionException {
+    return queryPlanCache.getOrCompile(
+        tenantId,
+        request,
+        () -> {
+          compilations.incrementAndGet();
+          return new QueryPlan(null, null, null, null);
+        });
+  }
+
+  private static EntityQueryRequest buildRequest(final String serviceName, final int limit) {
+    return EntityQueryRequest.newBuilder()
+        .setEntityType("SERVICE")
+        .addSelection(buildColumn("SERVICE.id"))
+        .setFilter(
+            Filter.newBuilder()
+                .setOperator(Operator.EQ)
+                .setLhs(buildColumn("SERVICE.name"))
+                .setRhs(
+                    Expression.newBuilder()
+                        .setLiteral(
+                            LiteralConstant.newBuilder()
+                                .setValue(Value.newBuilder().setString(serviceName)))))
+        .setLimit(limit)
+        .build();
+  }
+
+  private static Expression buildColumn(final String columnName) {
+    return Expression.newBuilder()
+        .setColumnIdentifier(ColumnIdentifier.newBuilder().setColumnName(columnName))
+        .build();
+  }
+}
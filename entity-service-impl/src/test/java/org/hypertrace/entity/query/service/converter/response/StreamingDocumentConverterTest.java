@@ -0,0 +1,88 @@
+package org.hypertrace.entity.query.service.converter.response;
+
+import static org.hypertrace.entity.query.service.v1.ValueType.STRING;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import java.io.IOException;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.core.documentstore.JSONDocument;
+import org.hypertrace.entity.attribute.translator.EntityAttributeMapping;
+import org.hypertrace.entity.query.service.converter.ConversionException;
+import org.hypertrace.entity.query.service.converter.ConverterModule;
+import org.hypertrace.entity.query.service.v1.ColumnMetadata;
+import org.hypertrace.entity.query.service.v1.ResultSetMetadata;
+import org.hypertrace.entity.query.service.v1.Row;
+import org.hypertrace.entity.query.service.v1.Value;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StreamingDocumentConverterTest {
+  private DocumentConverter streamingDocumentConverter;
+  private DocumentConverter treeDocumentConverter;
+
+  @BeforeEach
+  void setUp() {
+    final Injector injector =
+        Guice.createInjector(new ConverterModule(mock(EntityAttributeMapping.class)));
+    streamingDocumentConverter = injector.getInstance(StreamingDocumentConverter.class);
+    treeDocumentConverter = injector.getInstance(DocumentConverterImpl.class);
+  }
+
+  @Test
+  void testConvertMatchesTreeConverter() throws IOException, ConversionException {
+    final String json =
+        new String(
+            getClass()
+                .getClassLoader()
+                .getResourceAsStream("response/nested_document.json")
+                .readAllBytes());
+    final Document document = new JSONDocument(json);
+
+    final ResultSetMetadata resultSetMetadata =
+        ResultSetMetadata.newBuilder()
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("entityId"))
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("Entity.status"))
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("Entity.status.value"))
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("attributes"))
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("attributes.valueMap"))
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("attributes.address_map"))
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("timestamp_3"))
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("region"))
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("entityId"))
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("nonExisting.column"))
+            .build();
+
+    assertEquals(
+        treeDocumentConverter.convertToRow(document, resultSetMetadata),
+        streamingDocumentConverter.convertToRow(document, resultSetMetadata));
+  }
+
+  @Test
+  void testConvertDoesNotFlattenValueWrappers() throws IOException, ConversionException {
+    final Document document =
+        new JSONDocument(
+            "{\"attributes\": {\"name\": {\"value\": {\"string\": \"some-name\"}}}, "
+                + "\"createdTime\": 1643702835, \"dotted.key\": \"dotted\"}");
+
+    final ResultSetMetadata resultSetMetadata =
+        ResultSetMetadata.newBuilder()
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("attributes.name"))
+            .addColumnMetadata(
+                ColumnMetadata.newBuilder().setColumnName("attributes.name.value.string"))
+            .addColumnMetadata(ColumnMetadata.newBuilder().setColumnName("dotted.key"))
+            .build();
+
+    final Row expectedRow =
+        Row.newBuilder()
+            .addColumn(Value.newBuilder().setValueType(STRING).setString("some-name"))
+            .addColumn(Value.getDefaultInstance())
+            .addColumn(Value.newBuilder().setValueType(STRING).setString("dotted"))
+            .build();
+
+    assertEquals(expectedRow, streamingDocumentConverter.convertToRow(document, resultSetMetadata));
+    assertEquals(expectedRow, treeDocumentConverter.convertToRow(document, resultSetMetadata));
+  }
+}
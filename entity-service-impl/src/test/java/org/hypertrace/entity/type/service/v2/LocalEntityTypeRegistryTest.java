@@ -0,0 +1,127 @@
+package org.hypertrace.entity.type.service.v2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.base.Ticker;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.hypertrace.core.documentstore.CloseableIterator;
+import org.hypertrace.core.documentstore.Collection;
+import org.hypertrace.core.documentstore.Document;
+import org.hypertrace.core.documentstore.JSONDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LocalEntityTypeRegistryTest {
+  private Collection entityTypeCollection;
+  private LocalEntityTypeRegistry registry;
+  private Queue<Runnable> refreshTasks;
+  private AtomicLong tickerNanos;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    entityTypeCollection = mock(Collection.class);
+    when(entityTypeCollection.search(any()))
+        .thenAnswer(
+            invocation ->
+                iteratorOf(
+                    entityTypeDocument("__root", "API"),
+                    entityTypeDocument("tenant-1", "SERVICE")));
+    refreshTasks = new ArrayDeque<>();
+    tickerNanos = new AtomicLong();
+    registry =
+        new LocalEntityTypeRegistry(
+            entityTypeCollection,
+            refreshTasks::add,
+            new Ticker() {
+              @Override
+              public long read() {
+                return tickerNanos.get();
+              }
+            });
+  }
+
+  @Test
+  void testResolvesTypesOfTenantHierarchyFromSingleRead() throws IOException {
+    assertTrue(registry.isV2Type("tenant-1", "API"));
+    assertTrue(registry.isV2Type("tenant-1", "SERVICE"));
+    assertFalse(registry.isV2Type("tenant-1", "BACKEND"));
+
+    verify(entityTypeCollection, times(1)).search(any());
+  }
+
+  @Test
+  void testReloadsTypesOfTenantOnChange() throws IOException {
+    registry.isV2Type("tenant-1", "API");
+    registry.isV2Type("tenant-2", "API");
+
+    registry.onEntityTypesChanged("tenant-1");
+    registry.isV2Type("tenant-1", "API");
+    registry.isV2Type("tenant-2", "API");
+    verify(entityTypeCollection, times(3)).search(any());
+
+    // The types of the root tenant are seen by all the tenants
+    registry.onEntityTypesChanged("__root");
+    registry.isV2Type("tenant-1", "API");
+    registry.isV2Type("tenant-2", "API");
+    verify(entityTypeCollection, times(5)).search(any());
+  }
+
+  @Test
+  void testRefreshesTypesInBackground() throws IOException {
+    assertFalse(registry.isV2Type("tenant-1", "BACKEND"));
+    when(entityTypeCollection.search(any()))
+        .thenAnswer(invocation -> iteratorOf(entityTypeDocument("tenant-1", "BACKEND")));
+    tickerNanos.addAndGet(Duration.ofMinutes(6).toNanos());
+
+    // The last read types are served while the refresh is pending
+    assertFalse(registry.isV2Type("tenant-1", "BACKEND"));
+    verify(entityTypeCollection, times(1)).search(any());
+    assertEquals(1, refreshTasks.size());
+
+    refreshTasks.poll().run();
+    assertTrue(registry.isV2Type("tenant-1", "BACKEND"));
+    verify(entityTypeCollection, times(2)).search(any());
+  }
+
+  private static Document entityTypeDocument(String tenantId, String name) throws IOException {
+    return new JSONDocument(
+        "{\"tenantId\": \""
+            + tenantId
+            + "\", \"name\": \""
+            + name
+            + "\", \"attributeScope\": \""
+            + name
+            + "\", \"idAttributeKey\": \"id\", \"nameAttributeKey\": \"name\"}");
+  }
+
+  private static CloseableIterator<Document> iteratorOf(Document... documents) {
+    Iterator<Document> iterator = List.of(documents).iterator();
+    return new CloseableIterator<>() {
+      @Override
+      public void close() {}
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public Document next() {
+        return iterator.next();
+      }
+    };
+  }
+}
@@ -501,10 +501,10 @@ public class EntityQueryServiceTest {
     assertEquals(createdEntity5.getEntityId(), list.get(2).getRow(0).getColumn(0).getString());
     assertEquals(createdEntity5.getEntityName(), list.get(2).getRow(0).getColumn(1).getString());
 
-    // metadata sent for each chunk
+    // metadata only sent with the first chunk
     assertTrue(list.get(0).getResultSetMetadata().getColumnMetadataCount() > 0);
-    assertTrue(list.get(1).getResultSetMetadata().getColumnMetadataCount() > 0);
-    assertTrue(list.get(2).getResultSetMetadata().getColumnMetadataCount() > 0);
+    assertFalse(list.get(1).hasResultSetMetadata());
+    assertFalse(list.get(2).hasResultSetMetadata());
   }
 
   @Test
@@ -691,7 +691,7 @@ public class EntityQueryServiceTest {
     assertEquals(createdEntity3.getEntityName(), list.get(1).getRow(0).getColumn(1).getString());
 
     assertTrue(list.get(0).getResultSetMetadata().getColumnMetadataCount() > 0);
-    assertTrue(list.get(1).getResultSetMetadata().getColumnMetadataCount() > 0);
+    assertFalse(list.get(1).hasResultSetMetadata());
   }
 
   @Test
@@ -1008,7 +1008,7 @@ public class EntityQueryServiceTest {
     assertEquals(createdEntity6.getEntityName(), list.get(1).getRow(1).getColumn(1).getString());
 
     assertTrue(list.get(0).getResultSetMetadata().getColumnMetadataCount() > 0);
-    assertTrue(list.get(1).getResultSetMetadata().getColumnMetadataCount() > 0);
+    assertFalse(list.get(1).hasResultSetMetadata());
   }
 
   @Test
@@ -1684,9 +1684,9 @@ public class EntityQueryServiceTest {
                 ColumnMetadata.newBuilder().setColumnName("COUNT_" + SERVICE_ID_ATTR).build())
             .build();
 
-    // verify metadata sent for each chunk
+    // verify metadata only sent with the first chunk
     assertEquals(resultSetMetadata, list.get(0).getResultSetMetadata());
-    assertEquals(resultSetMetadata, list.get(1).getResultSetMetadata());
+    assertFalse(list.get(1).hasResultSetMetadata());
   }
 
   @Test
@@ -1873,7 +1873,7 @@ public class EntityQueryServiceTest {
     assertEquals(createdEntity3.getEntityName(), list.get(1).getRow(0).getColumn(1).getString());
 
     assertTrue(list.get(0).getResultSetMetadata().getColumnMetadataCount() > 0);
-    assertTrue(list.get(1).getResultSetMetadata().getColumnMetadataCount() > 0);
+    assertFalse(list.get(1).hasResultSetMetadata());
   }
 
   @Test
@@ -2060,7 +2060,7 @@ public class EntityQueryServiceTest {
     assertEquals(createdEntity3.getEntityName(), list.get(1).getRow(0).getColumn(1).getString());
 
     assertTrue(list.get(0).getResultSetMetadata().getColumnMetadataCount() > 0);
-    assertTrue(list.get(1).getResultSetMetadata().getColumnMetadataCount() > 0);
+    assertFalse(list.get(1).hasResultSetMetadata());
   }
 
   private AttributeValue generateRandomUUIDAttrValue() {
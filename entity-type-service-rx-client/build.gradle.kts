@@ -18,6 +18,8 @@ dependencies {
 
   implementation("org.slf4j:slf4j-api:1.7.30")
   implementation("com.google.guava:guava:32.1.2-jre")
+  annotationProcessor("org.projectlombok:lombok:1.18.30")
+  compileOnly("org.projectlombok:lombok:1.18.30")
 
   testImplementation("org.junit.jupiter:junit-jupiter:5.7.1")
   testImplementation("org.mockito:mockito-core:3.8.0")
@@ -9,34 +9,60 @@ import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import lombok.extern.slf4j.Slf4j;
 import org.hypertrace.entity.type.service.v2.EntityType;
 import org.hypertrace.entity.type.service.v2.EntityTypeServiceGrpc;
 import org.hypertrace.entity.type.service.v2.EntityTypeServiceGrpc.EntityTypeServiceStub;
 import org.hypertrace.entity.type.service.v2.QueryEntityTypesRequest;
 import org.hypertrace.entity.type.service.v2.QueryEntityTypesResponse;
 
+/**
+ * Caches the entity types of each tenant. The types either expire after write, or, if a refresh
+ * interval is given, are refreshed in the background while the last fetched types are served, so
+ * that only the first request of a tenant waits on the type service.
+ */
+@Slf4j
 class EntityTypeCachingClient implements EntityTypeClient {
+  // Refreshes happen at a random point in the last fifth of the interval, to spread them out
+  private static final double REFRESH_JITTER = 0.2;
 
   private final EntityTypeServiceStub entityTypeClient;
   private final LoadingCache<TenantBasedCacheKey, Single<Map<String, EntityType>>> cache;
+  private final LoadingCache<TenantBasedCacheKey, RefreshingEntityTypes> refreshingCache;
+  private final Clock clock;
+  private final Duration refreshInterval;
 
   EntityTypeCachingClient(
+      Clock clock,
       @Nonnull Channel channel,
       @Nonnull CallCredentials credentials,
       int maxCacheContexts,
-      @Nonnull Duration cacheExpiration) {
+      @Nonnull Duration cacheExpiration,
+      @Nullable Duration refreshInterval) {
+    this.clock = clock;
+    this.refreshInterval = refreshInterval;
     this.entityTypeClient = EntityTypeServiceGrpc.newStub(channel).withCallCredentials(credentials);
     this.cache =
         CacheBuilder.newBuilder()
             .maximumSize(maxCacheContexts)
             .expireAfterWrite(cacheExpiration)
             .build(CacheLoader.from(this::fetchTypes));
+    // Refreshed entries only expire once their tenant is no longer asked for
+    this.refreshingCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(maxCacheContexts)
+            .expireAfterAccess(cacheExpiration)
+            .build(CacheLoader.from(RefreshingEntityTypes::new));
   }
 
   @Override
@@ -65,12 +91,81 @@ class EntityTypeCachingClient implements EntityTypeClient {
   }
 
   private Single<Map<String, EntityType>> getOrInvalidate(TenantBasedCacheKey key) {
+    if (this.refreshInterval != null) {
+      return Single.defer(() -> this.refreshingCache.getUnchecked(key).get(key));
+    }
     return this.cache.getUnchecked(key).doOnError(x -> this.cache.invalidate(key));
   }
 
+  private long getNextRefreshMillis() {
+    long intervalMillis = this.refreshInterval.toMillis();
+    long jitterMillis =
+        (long) (intervalMillis * REFRESH_JITTER * ThreadLocalRandom.current().nextDouble());
+    return this.clock.millis() + intervalMillis - jitterMillis;
+  }
+
   private StatusRuntimeException buildErrorForMissingType(String name) {
     return Status.NOT_FOUND
         .withDescription("No entity type found with name: " + name)
         .asRuntimeException();
   }
+
+  private class RefreshingEntityTypes {
+    // The key of the latest request, so that the types are fetched with its credentials, as those
+    // of the first request of the tenant may have expired since
+    private volatile TenantBasedCacheKey key;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // Null until the types have been fetched once, then always the last fetched types
+    private volatile Map<String, EntityType> types;
+    private volatile long nextRefreshMillis;
+    private Single<Map<String, EntityType>> initialFetch;
+
+    private RefreshingEntityTypes(TenantBasedCacheKey key) {
+      this.key = key;
+    }
+
+    private Single<Map<String, EntityType>> get(TenantBasedCacheKey latestKey) {
+      this.key = latestKey;
+      Map<String, EntityType> currentTypes = this.types;
+      if (currentTypes == null) {
+        return this.getInitialFetch();
+      }
+      if (clock.millis() >= this.nextRefreshMillis && this.refreshing.compareAndSet(false, true)) {
+        this.refresh();
+      }
+      return Single.just(currentTypes);
+    }
+
+    private synchronized Single<Map<String, EntityType>> getInitialFetch() {
+      if (this.initialFetch == null) {
+        this.initialFetch =
+            fetchTypes(this.key)
+                .doOnSuccess(this::onFetched)
+                .doOnError(error -> this.clearInitialFetch())
+                .cache();
+      }
+      return this.initialFetch;
+    }
+
+    private synchronized void clearInitialFetch() {
+      this.initialFetch = null;
+    }
+
+    private void refresh() {
+      fetchTypes(this.key)
+          .doFinally(() -> this.refreshing.set(false))
+          .subscribe(
+              this::onFetched,
+              error -> {
+                // The last fetched types are kept, and the refresh is retried an interval later
+                log.warn("Failed to refresh the entity types, serving the last fetched", error);
+                this.nextRefreshMillis = getNextRefreshMillis();
+              });
+    }
+
+    private void onFetched(Map<String, EntityType> fetchedTypes) {
+      this.types = fetchedTypes;
+      this.nextRefreshMillis = getNextRefreshMillis();
+    }
+  }
 }
@@ -4,6 +4,7 @@ import io.grpc.CallCredentials;
 import io.grpc.Channel;
 import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.core.Single;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.Objects;
@@ -23,9 +24,11 @@ public interface EntityTypeClient {
   }
 
   final class Builder {
+    private final Clock clock = Clock.systemUTC();
     private final Channel channel;
     private int maxCacheContexts = 10000;
     private Duration cacheExpiration = Duration.of(15, ChronoUnit.MINUTES);
+    private Duration cacheRefreshInterval;
     private CallCredentials callCredentials =
         RequestContextClientCallCredsProviderFactory.getClientCallCredsProvider().get();
 
@@ -35,7 +38,12 @@ public interface EntityTypeClient {
 
     public EntityTypeClient build() {
       return new EntityTypeCachingClient(
-          this.channel, this.callCredentials, this.maxCacheContexts, this.cacheExpiration);
+          this.clock,
+          this.channel,
+          this.callCredentials,
+          this.maxCacheContexts,
+          this.cacheExpiration,
+          this.cacheRefreshInterval);
     }
 
     /**
@@ -61,6 +69,21 @@ public interface EntityTypeClient {
       return this;
     }
 
+    /**
+     * Refreshes the cached types of a context in the background, at a random point in the last
+     * fifth of the provided interval after they were fetched. The last fetched types are served
+     * meanwhile, and kept if a refresh fails. A cached context then only expires the cache
+     * expiration after its last access. Defaults to no refresh, expiring a cached context after
+     * write instead.
+     *
+     * @param cacheRefreshInterval
+     * @return
+     */
+    public Builder withCacheRefreshInterval(@Nonnull Duration cacheRefreshInterval) {
+      this.cacheRefreshInterval = cacheRefreshInterval;
+      return this;
+    }
+
     /**
      * Use the provided call credentials for propagating context. Defaults to the value provided by
      * {@link RequestContextClientCallCredsProviderFactory}
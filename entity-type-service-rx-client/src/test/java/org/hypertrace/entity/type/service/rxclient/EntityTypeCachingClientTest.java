@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -22,8 +23,11 @@ import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.stub.StreamObserver;
 import io.reactivex.rxjava3.core.Single;
 import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import org.hypertrace.core.grpcutils.client.RequestContextClientCallCredsProviderFactory;
 import org.hypertrace.core.grpcutils.context.RequestContext;
 import org.hypertrace.entity.type.service.v2.EntityType;
 import org.hypertrace.entity.type.service.v2.EntityTypeServiceGrpc.EntityTypeServiceImplBase;
@@ -206,4 +210,77 @@ class EntityTypeCachingClientTest {
         this.responseTypes,
         this.grpcTestContext.call(() -> this.typeClient.getAll().blockingIterable()));
   }
+
+  @Test
+  void servesLastFetchedTypesWhileRefreshing() throws Exception {
+    Clock mockClock = mock(Clock.class);
+    when(mockClock.millis()).thenReturn(0L);
+    this.typeClient = this.buildRefreshingClient(mockClock, Duration.ofMinutes(5));
+    assertSame(
+        this.type1, this.grpcTestContext.call(() -> this.typeClient.get("first").blockingGet()));
+
+    EntityType updatedType1 = EntityType.newBuilder(this.type1).setAttributeScope("other").build();
+    this.responseTypes = List.of(updatedType1);
+    when(mockClock.millis()).thenReturn(Duration.ofMinutes(5).toMillis());
+
+    // The refresh is started, but the last fetched types are served
+    assertSame(
+        this.type1, this.grpcTestContext.call(() -> this.typeClient.get("first").blockingGet()));
+    verify(this.mockTypeService, times(2)).queryEntityTypes(any(), any());
+    assertSame(
+        updatedType1,
+        this.grpcTestContext.call(() -> this.typeClient.get("first").blockingGet()));
+    verifyNoMoreInteractions(this.mockTypeService);
+  }
+
+  @Test
+  void keepsLastFetchedTypesIfRefreshFails() throws Exception {
+    Clock mockClock = mock(Clock.class);
+    when(mockClock.millis()).thenReturn(0L);
+    this.typeClient = this.buildRefreshingClient(mockClock, Duration.ofMinutes(5));
+    this.grpcTestContext.call(() -> this.typeClient.get("first").blockingGet());
+
+    this.responseError = Optional.of(new UnsupportedOperationException());
+    when(mockClock.millis()).thenReturn(Duration.ofMinutes(5).toMillis());
+
+    assertSame(
+        this.type1, this.grpcTestContext.call(() -> this.typeClient.get("first").blockingGet()));
+    assertSame(
+        this.type1, this.grpcTestContext.call(() -> this.typeClient.get("first").blockingGet()));
+    // The failed refresh is not retried before another interval
+    verify(this.mockTypeService, times(2)).queryEntityTypes(any(), any());
+    verifyNoMoreInteractions(this.mockTypeService);
+  }
+
+  @Test
+  void refreshesWithContextOfLatestRequest() throws Exception {
+    Clock mockClock = mock(Clock.class);
+    when(mockClock.millis()).thenReturn(0L);
+    this.typeClient = this.buildRefreshingClient(mockClock, Duration.ofMinutes(5));
+    this.grpcTestContext.call(() -> this.typeClient.get("first").blockingGet());
+
+    RequestContext latestMockContext = mock(RequestContext.class);
+    when(latestMockContext.getTenantId()).thenReturn(Optional.of("default tenant"));
+    when(mockClock.millis()).thenReturn(Duration.ofMinutes(5).toMillis());
+    clearInvocations(this.mockContext);
+
+    assertSame(
+        this.type1,
+        Context.current()
+            .withValue(RequestContext.CURRENT, latestMockContext)
+            .call(() -> this.typeClient.get("first").blockingGet()));
+    verify(this.mockTypeService, times(2)).queryEntityTypes(any(), any());
+    // The context of the first request, and so its credentials, is no longer used
+    verifyNoInteractions(this.mockContext);
+  }
+
+  private EntityTypeClient buildRefreshingClient(Clock clock, Duration refreshInterval) {
+    return new EntityTypeCachingClient(
+        clock,
+        this.grpcChannel,
+        RequestContextClientCallCredsProviderFactory.getClientCallCredsProvider().get(),
+        100,
+        Duration.ofMinutes(15),
+        refreshInterval);
+  }
 }
@@ -22,3 +22,4 @@ include(":entity-service")
 include(":entity-type-service-rx-client")
 include(":entity-data-service-rx-client")
 include(":entity-service-attribute-translator")
+include(":entity-service-id-generator")